@@ -1,9 +1,16 @@
 package com.bookassistant.config;
 
+import com.bookassistant.service.RequestContext;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class AppConfig {
 
@@ -11,5 +18,20 @@ public class AppConfig {
     public ObjectMapper objectMapper() {
         return new ObjectMapper();
     }
+
+    /**
+     * Runs upstream model calls that are fanned out over chunks; its size caps their concurrency.
+     * Tasks keep the deadline of the request that queued them.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService aiExecutor(@Value("${app.ai.max-concurrency:4}") int maxConcurrency) {
+        return new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), Thread.ofPlatform().name("ai-", 0).daemon().factory()) {
+            @Override
+            public void execute(Runnable command) {
+                super.execute(RequestContext.propagate(command));
+            }
+        };
+    }
 }
 
@@ -0,0 +1,41 @@
+package com.bookassistant.config;
+
+import com.bookassistant.service.RequestContext;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Starts the clock for a web request as soon as it arrives: binds a {@link RequestContext}
+ * whose deadline is {@code app.request.timeout-seconds} away, and keeps it as a request
+ * attribute so the async part of the request sees the same deadline.
+ */
+@Component
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    private final Duration timeout;
+
+    public RequestDeadlineFilter(@Value("${app.request.timeout-seconds:300}") long timeoutSeconds) {
+        this.timeout = Duration.ofSeconds(timeoutSeconds);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestContext context = new RequestContext(timeout);
+        request.setAttribute(WebConfig.RequestContextInterceptor.ATTRIBUTE, context);
+        context.bind();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            context.unbind();
+        }
+    }
+}
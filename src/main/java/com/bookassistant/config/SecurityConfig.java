@@ -32,7 +32,7 @@ public class SecurityConfig {
         http
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/", "/home", "/about", "/login", "/register", "/forgot-password", "/css/**", "/js/**", "/styles.css", "/contact", "/feedback", "/app").permitAll()
-                .requestMatchers("/upload/**", "/summary/**", "/qa", "/search/**", "/comprehension", "/plan/**", "/analysis/**").authenticated()
+                .requestMatchers("/upload/**", "/summary/**", "/qa", "/search/**", "/comprehension/**", "/plan/**", "/analysis/**", "/concept-map/**", "/library/**", "/chapters", "/analytics", "/analytics/**", "/actuator/**").authenticated()
                 .anyRequest().permitAll()
             )
             .formLogin(form -> form
@@ -0,0 +1,70 @@
+package com.bookassistant.config;
+
+import com.bookassistant.service.RequestContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.Callable;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    /** Time the async request stays open past its deadline, for the answer to be rendered. */
+    private static final long GRACE_MILLIS = 5_000;
+
+    private final long requestTimeoutSeconds;
+
+    public WebConfig(@Value("${app.request.timeout-seconds:300}") long requestTimeoutSeconds) {
+        this.requestTimeoutSeconds = requestTimeoutSeconds;
+    }
+
+    /**
+     * Controllers that wait on the model return a {@link Callable}. It runs on a virtual thread
+     * with the request's {@link RequestContext} bound, so its model calls get the time left before
+     * the request's deadline. A client that disconnects is not detected; the deadline is what
+     * bounds how long an abandoned call runs.
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("web-async-");
+        executor.setVirtualThreads(true);
+        configurer.setTaskExecutor(executor);
+        configurer.setDefaultTimeout(requestTimeoutSeconds * 1000 + GRACE_MILLIS);
+        configurer.registerCallableInterceptors(new RequestContextInterceptor());
+    }
+
+    static final class RequestContextInterceptor implements CallableProcessingInterceptor {
+
+        static final String ATTRIBUTE = RequestContext.class.getName();
+
+        @Override
+        public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+            // Normally created with the request's deadline by RequestDeadlineFilter
+            if (context(request) == null) {
+                request.setAttribute(ATTRIBUTE, new RequestContext(), RequestAttributes.SCOPE_REQUEST);
+            }
+        }
+
+        @Override
+        public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+            RequestContext context = context(request);
+            if (context != null) context.bind();
+        }
+
+        @Override
+        public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object result) {
+            RequestContext context = context(request);
+            if (context != null) context.unbind();
+        }
+
+        private static RequestContext context(NativeWebRequest request) {
+            return (RequestContext) request.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+}
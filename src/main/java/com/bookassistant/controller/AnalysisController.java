@@ -1,39 +1,57 @@
 package com.bookassistant.controller;
 
+import com.bookassistant.model.ConceptGraph;
 import com.bookassistant.service.AiService;
+import com.bookassistant.service.ConceptGraphService;
+import com.bookassistant.service.RiskScanService;
 import com.bookassistant.session.BookSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.concurrent.Callable;
 
 @Controller
 public class AnalysisController {
 
     private final BookSession bookSession;
     private final AiService aiService;
+    private final RiskScanService riskScanService;
+    private final ConceptGraphService conceptGraphService;
 
-    public AnalysisController(BookSession bookSession, AiService aiService) {
+    public AnalysisController(BookSession bookSession,
+                              AiService aiService,
+                              RiskScanService riskScanService,
+                              ConceptGraphService conceptGraphService) {
         this.bookSession = bookSession;
         this.aiService = aiService;
+        this.riskScanService = riskScanService;
+        this.conceptGraphService = conceptGraphService;
     }
 
     @PostMapping("/reality-check")
-    public String realityCheck(@RequestParam int startPage,
+    public Callable<String> realityCheck(@RequestParam int startPage,
                                @RequestParam int endPage,
                                @RequestParam(value = "outputLanguage", required = false) String outputLanguage,
                                Model model) {
         String text = bookSession.extractRange(startPage, endPage);
         String bookLang = bookSession.getDetectedLanguage();
-        String lang = outputLanguage != null ? outputLanguage : bookLang;
+        String lang = BookSession.outputLanguage(outputLanguage, bookLang);
         String systemPrompt = "en".equals(lang) 
             ? "Check the realism and assumptions in this text." 
             : "افحص مدى واقعية وافتراضات هذا النص.";
-        String answer = aiService.ask(systemPrompt, text, lang);
-        model.addAttribute("realityCheck", answer);
-        model.addAttribute("hasBook", bookSession.hasBook());
-        model.addAttribute("bookLanguage", bookLang);
-        return "index";
+        boolean hasBook = bookSession.hasBook();
+        // Answered off the request thread, with the model call bounded by the request's deadline.
+        return () -> {
+            String answer = aiService.ask(systemPrompt, text, lang);
+            model.addAttribute("realityCheck", answer);
+            model.addAttribute("hasBook", hasBook);
+            model.addAttribute("bookLanguage", bookLang);
+            return "index";
+        };
     }
 
     @PostMapping("/concept-map")
@@ -41,29 +59,49 @@ public class AnalysisController {
                              @RequestParam int endPage,
                              @RequestParam(value = "outputLanguage", required = false) String outputLanguage,
                              Model model) {
-        String text = bookSession.extractRange(startPage, endPage);
         String bookLang = bookSession.getDetectedLanguage();
-        String lang = outputLanguage != null ? outputLanguage : bookLang;
-        String systemPrompt = "en".equals(lang) 
-            ? "Create a text-based concept map of the most important concepts and relationships." 
-            : "أنشئ خريطة مفاهيم نصية لأهم المفاهيم والعلاقات.";
-        String answer = aiService.ask(systemPrompt, text, lang);
+        String lang = BookSession.outputLanguage(outputLanguage, bookLang);
+        String answer = bookSession.getBook()
+            .map(book -> conceptGraphService.describe(
+                    conceptGraphService.graph(book, bookSession.getContentHash(), startPage, endPage, lang), lang))
+            .orElseGet(() -> {
+                String systemPrompt = "en".equals(lang)
+                    ? "Create a text-based concept map of the most important concepts and relationships."
+                    : "أنشئ خريطة مفاهيم نصية لأهم المفاهيم والعلاقات.";
+                return aiService.ask(systemPrompt, "", lang);
+            });
         model.addAttribute("conceptMap", answer);
         model.addAttribute("hasBook", bookSession.hasBook());
         model.addAttribute("bookLanguage", bookLang);
         return "index";
     }
 
+    /** The concept graph of a page range (the whole book by default) as JSON nodes and edges. */
+    @GetMapping("/concept-map/graph")
+    @ResponseBody
+    public ConceptGraph conceptGraph(@RequestParam(required = false) Integer startPage,
+                                     @RequestParam(required = false) Integer endPage,
+                                     @RequestParam(value = "outputLanguage", required = false) String outputLanguage) {
+        String lang = BookSession.outputLanguage(outputLanguage, bookSession.getDetectedLanguage());
+        return bookSession.getBook()
+            .map(book -> conceptGraphService.graph(book, bookSession.getContentHash(),
+                    startPage != null ? startPage : 1, endPage != null ? endPage : book.lastPage(), lang))
+            .orElse(ConceptGraph.EMPTY);
+    }
+
     @PostMapping("/risk-flags")
     public String riskFlags(@RequestParam(value = "outputLanguage", required = false) String outputLanguage,
                             Model model) {
-        String text = bookSession.getBook().map(b -> b.fullText()).orElse("");
         String bookLang = bookSession.getDetectedLanguage();
-        String lang = outputLanguage != null ? outputLanguage : bookLang;
-        String systemPrompt = "en".equals(lang) 
-            ? "Extract risk alerts or important warnings from this book." 
-            : "استخرج تنبيهات مخاطر أو تحذيرات مهمة من هذا الكتاب.";
-        String answer = aiService.ask(systemPrompt, text, lang);
+        String lang = BookSession.outputLanguage(outputLanguage, bookLang);
+        String answer = bookSession.getBook()
+            .map(book -> riskScanService.report(book, bookSession.getContentHash(), lang))
+            .orElseGet(() -> {
+                String systemPrompt = "en".equals(lang)
+                    ? "Extract risk alerts or important warnings from this book."
+                    : "استخرج تنبيهات مخاطر أو تحذيرات مهمة من هذا الكتاب.";
+                return aiService.ask(systemPrompt, "", lang);
+            });
         model.addAttribute("riskFlags", answer);
         model.addAttribute("hasBook", bookSession.hasBook());
         model.addAttribute("bookLanguage", bookLang);
@@ -0,0 +1,40 @@
+package com.bookassistant.controller;
+
+import com.bookassistant.model.BookAnalytics;
+import com.bookassistant.model.DuplicateGroup;
+import com.bookassistant.service.BookAnalyticsService;
+import com.bookassistant.session.BookSession;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.List;
+
+@Controller
+public class AnalyticsController {
+
+    private final BookSession bookSession;
+    private final BookAnalyticsService analyticsService;
+
+    public AnalyticsController(BookSession bookSession, BookAnalyticsService analyticsService) {
+        this.bookSession = bookSession;
+        this.analyticsService = analyticsService;
+    }
+
+    /** Word counts, reading time, keywords and page languages of the current book; 404 without a book. */
+    @GetMapping("/analytics")
+    @ResponseBody
+    public ResponseEntity<BookAnalytics> analytics() {
+        return bookSession.getBook()
+            .map(book -> ResponseEntity.ok(analyticsService.analytics(bookSession.getContentHash(), book)))
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /** Groups of pages with the same or nearly the same text, found when the book was parsed. */
+    @GetMapping("/analytics/duplicates")
+    @ResponseBody
+    public List<DuplicateGroup> duplicates() {
+        return bookSession.getBook().map(book -> book.duplicates()).orElse(List.of());
+    }
+}
@@ -0,0 +1,99 @@
+package com.bookassistant.controller;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.Chapter;
+import com.bookassistant.service.ExtractiveSummarizer;
+import com.bookassistant.service.QuestionBankService;
+import com.bookassistant.service.SummaryTreeService;
+import com.bookassistant.session.BookSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+@Controller
+public class ChapterController {
+
+    private final BookSession bookSession;
+    private final SummaryTreeService summaryTree;
+    private final ExtractiveSummarizer extractiveSummarizer;
+    private final QuestionBankService questionBank;
+    private final int questionsPerQuiz;
+
+    public ChapterController(BookSession bookSession,
+                             SummaryTreeService summaryTree,
+                             ExtractiveSummarizer extractiveSummarizer,
+                             QuestionBankService questionBank,
+                             @Value("${app.questions.per-quiz:10}") int questionsPerQuiz) {
+        this.bookSession = bookSession;
+        this.summaryTree = summaryTree;
+        this.extractiveSummarizer = extractiveSummarizer;
+        this.questionBank = questionBank;
+        this.questionsPerQuiz = questionsPerQuiz;
+    }
+
+    @GetMapping("/chapters")
+    @ResponseBody
+    public List<Chapter> chapters() {
+        return bookSession.getChapters();
+    }
+
+    @PostMapping("/summary/chapter")
+    public String chapterSummary(@RequestParam int chapter,
+                                 @RequestParam(value = "outputLanguage", required = false) String outputLanguage,
+                                 Model model) {
+        String bookLang = bookSession.getDetectedLanguage();
+        String lang = BookSession.outputLanguage(outputLanguage, bookLang);
+        Optional<Chapter> found = bookSession.getChapter(chapter);
+        if (found.isPresent() && bookSession.getBook().isPresent()) {
+            // Chunks never cross chapters, so a chapter is answered from cached tree nodes after the first time
+            Chapter c = found.get();
+            BookData book = bookSession.getBook().get();
+            String summary = extractiveSummarizer.orFallback(
+                summaryTree.summarizeRange(book, bookSession.getContentHash(), c.startPage(), c.endPage(), lang),
+                book.pageRange(c.startPage(), c.endPage()), lang);
+            model.addAttribute("summaryChapter", summary);
+        } else {
+            model.addAttribute("error", chapterNotFound(lang, chapter));
+        }
+        addCommonAttributes(model, bookLang);
+        return "index";
+    }
+
+    @PostMapping("/comprehension/chapter")
+    public String chapterComprehension(@RequestParam int chapter,
+                                       @RequestParam(value = "outputLanguage", required = false) String outputLanguage,
+                                       Model model) {
+        String bookLang = bookSession.getDetectedLanguage();
+        String lang = BookSession.outputLanguage(outputLanguage, bookLang);
+        Optional<Chapter> found = bookSession.getChapter(chapter);
+        if (found.isPresent() && bookSession.getBook().isPresent()) {
+            // Drawn from the per-chunk question bank, like quizzes over any other page range
+            Chapter c = found.get();
+            BookData book = bookSession.getBook().get();
+            model.addAttribute("comprehension", questionBank.quizAsync(book, bookSession.getContentHash(),
+                    c.startPage(), c.endPage(), lang, questionsPerQuiz, new Random()).join());
+        } else {
+            model.addAttribute("error", chapterNotFound(lang, chapter));
+        }
+        addCommonAttributes(model, bookLang);
+        return "index";
+    }
+
+    private void addCommonAttributes(Model model, String bookLang) {
+        model.addAttribute("chapters", bookSession.getChapters());
+        model.addAttribute("hasBook", bookSession.hasBook());
+        model.addAttribute("bookLanguage", bookLang);
+    }
+
+    private static String chapterNotFound(String lang, int chapter) {
+        return "en".equals(lang) ? "Chapter " + chapter + " not found" : "الفصل " + chapter + " غير موجود";
+    }
+}
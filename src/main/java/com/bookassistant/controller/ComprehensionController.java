@@ -1,36 +1,56 @@
 package com.bookassistant.controller;
 
 import com.bookassistant.service.AiService;
+import com.bookassistant.service.PrefetchService;
+import com.bookassistant.service.QuestionBankService;
 import com.bookassistant.session.BookSession;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.util.Random;
+
 @Controller
 public class ComprehensionController {
 
     private final BookSession bookSession;
     private final AiService aiService;
+    private final PrefetchService prefetchService;
+    private final QuestionBankService questionBank;
+    private final int questionsPerQuiz;
 
-    public ComprehensionController(BookSession bookSession, AiService aiService) {
+    public ComprehensionController(BookSession bookSession,
+                                   AiService aiService,
+                                   PrefetchService prefetchService,
+                                   QuestionBankService questionBank,
+                                   @Value("${app.questions.per-quiz:10}") int questionsPerQuiz) {
         this.bookSession = bookSession;
         this.aiService = aiService;
+        this.prefetchService = prefetchService;
+        this.questionBank = questionBank;
+        this.questionsPerQuiz = questionsPerQuiz;
     }
 
     @PostMapping("/comprehension")
     public String comprehension(@RequestParam int startPage,
                                 @RequestParam int endPage,
                                 @RequestParam(value = "outputLanguage", required = false) String outputLanguage,
+                                HttpSession session,
                                 Model model) {
-        String text = bookSession.extractRange(startPage, endPage);
         String bookLang = bookSession.getDetectedLanguage();
-        String lang = outputLanguage != null ? outputLanguage : bookLang;
-        String answer = aiService.generateComprehensionTest(text, startPage, endPage, lang);
+        String lang = BookSession.outputLanguage(outputLanguage, bookLang);
+        String hash = bookSession.getContentHash();
+        String sessionId = session != null ? session.getId() : null;
+        String answer = bookSession.getBook()
+            .map(book -> prefetchService.fetch(sessionId, "comprehension", hash, book.lastPage(), startPage, endPage, lang,
+                    (from, to) -> questionBank.quizAsync(book, hash, from, to, lang, questionsPerQuiz, new Random())))
+            .orElseGet(() -> aiService.generateComprehensionTest("", startPage, endPage, lang));
         model.addAttribute("comprehension", answer);
         model.addAttribute("hasBook", bookSession.hasBook());
         model.addAttribute("bookLanguage", bookLang);
         return "index";
     }
 }
-
@@ -0,0 +1,35 @@
+package com.bookassistant.controller;
+
+import com.bookassistant.service.LibraryService;
+import com.bookassistant.session.BookSession;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.security.Principal;
+
+@Controller
+public class LibraryController {
+
+    private final BookSession bookSession;
+    private final LibraryService libraryService;
+
+    public LibraryController(BookSession bookSession, LibraryService libraryService) {
+        this.bookSession = bookSession;
+        this.libraryService = libraryService;
+    }
+
+    @PostMapping("/library/search")
+    public String search(@RequestParam String query,
+                         @RequestParam(value = "limit", defaultValue = "20") int limit,
+                         Principal principal,
+                         Model model) {
+        String username = principal != null ? principal.getName() : "";
+        model.addAttribute("librarySearch", libraryService.search(username, query, limit));
+        model.addAttribute("libraryBooks", libraryService.listBooks(username));
+        model.addAttribute("hasBook", bookSession.hasBook());
+        model.addAttribute("bookLanguage", bookSession.getDetectedLanguage());
+        return "index";
+    }
+}
@@ -35,6 +35,7 @@ public class PageController {
     public String app(Model model) {
         model.addAttribute("hasBook", bookSession.getBook().isPresent());
         model.addAttribute("bookLanguage", bookSession.getDetectedLanguage());
+        model.addAttribute("chapters", bookSession.getChapters());
         return "index";
     }
 
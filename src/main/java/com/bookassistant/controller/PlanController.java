@@ -1,39 +1,58 @@
 package com.bookassistant.controller;
 
+import com.bookassistant.model.BookData;
 import com.bookassistant.service.AiService;
+import com.bookassistant.service.TranslationCache;
 import com.bookassistant.session.BookSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.util.concurrent.Callable;
+
 @Controller
 public class PlanController {
 
     private final BookSession bookSession;
     private final AiService aiService;
+    private final TranslationCache translations;
 
-    public PlanController(BookSession bookSession, AiService aiService) {
+    public PlanController(BookSession bookSession, AiService aiService, TranslationCache translations) {
         this.bookSession = bookSession;
         this.aiService = aiService;
+        this.translations = translations;
     }
 
     @PostMapping("/action-plan")
-    public String actionPlan(@RequestParam int startPage,
+    public Callable<String> actionPlan(@RequestParam int startPage,
                              @RequestParam int endPage,
                              @RequestParam(value = "outputLanguage", required = false) String outputLanguage,
                              Model model) {
         String text = bookSession.extractRange(startPage, endPage);
         String bookLang = bookSession.getDetectedLanguage();
-        String lang = outputLanguage != null ? outputLanguage : bookLang;
+        String lang = BookSession.outputLanguage(outputLanguage, bookLang);
         String systemPrompt = "en".equals(lang) 
             ? "Convert these pages into an actionable action plan." 
             : "حوّل هذه الصفحات إلى خطة تنفيذية عملية.";
-        String answer = aiService.ask(systemPrompt, text, lang);
-        model.addAttribute("actionPlan", answer);
-        model.addAttribute("hasBook", bookSession.hasBook());
-        model.addAttribute("bookLanguage", bookLang);
-        return "index";
+        boolean hasBook = bookSession.hasBook();
+        BookData book = bookSession.getBook().orElse(null);
+        String contentHash = bookSession.getContentHash();
+        // Answered off the request thread, with the model call bounded by the request's deadline.
+        return () -> {
+            String answer;
+            if (book != null && !lang.equals(bookLang)) {
+                // Pages in the other language are translated once per chunk and then reused.
+                String translated = translations.translateRange(book, contentHash, startPage, endPage, lang);
+                answer = translated.startsWith(AiService.ERROR_PREFIX) ? translated : aiService.ask(systemPrompt, translated, lang);
+            } else {
+                answer = aiService.ask(systemPrompt, text, lang);
+            }
+            model.addAttribute("actionPlan", answer);
+            model.addAttribute("hasBook", hasBook);
+            model.addAttribute("bookLanguage", bookLang);
+            return "index";
+        };
     }
 }
 
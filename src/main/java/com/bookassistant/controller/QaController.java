@@ -1,41 +1,77 @@
 package com.bookassistant.controller;
 
+import com.bookassistant.model.BookData;
 import com.bookassistant.service.AiService;
+import com.bookassistant.service.ChatMessage;
+import com.bookassistant.service.PassageRetriever;
+import com.bookassistant.service.RequestType;
 import com.bookassistant.session.BookSession;
+import com.bookassistant.session.QaConversation;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.util.List;
+import java.util.concurrent.Callable;
+
 @Controller
 public class QaController {
 
     private final BookSession bookSession;
     private final AiService aiService;
+    private final PassageRetriever passageRetriever;
 
-    public QaController(BookSession bookSession, AiService aiService) {
+    public QaController(BookSession bookSession, AiService aiService, PassageRetriever passageRetriever) {
         this.bookSession = bookSession;
         this.aiService = aiService;
+        this.passageRetriever = passageRetriever;
     }
 
     @PostMapping("/qa")
-    public String qa(@RequestParam String question,
+    public Callable<String> qa(@RequestParam String question,
                      @RequestParam(value = "outputLanguage", required = false) String outputLanguage,
                      Model model) {
-        String text = bookSession.getBook().map(b -> b.fullText()).orElse("");
         String bookLang = bookSession.getDetectedLanguage();
-        String lang = outputLanguage != null ? outputLanguage : bookLang;
+        String lang = BookSession.outputLanguage(outputLanguage, bookLang);
         String systemPrompt = "en".equals(lang)
             ? "Answer the question based only on the book content."
             : "أجب عن السؤال بناءً على محتوى الكتاب فقط.";
-        String userContent = "en".equals(lang)
-            ? "Question: " + question + "\n\nText:\n" + text
-            : "السؤال: " + question + "\n\nالنص:\n" + text;
-        String answer = aiService.ask(systemPrompt, userContent, lang);
-        model.addAttribute("qa", answer);
-        model.addAttribute("hasBook", bookSession.hasBook());
-        model.addAttribute("bookLanguage", bookLang);
-        return "index";
+        String questionLine = "en".equals(lang) ? "Question: " + question : "السؤال: " + question;
+        String textLabel = "en".equals(lang) ? "Text:\n" : "النص:\n";
+        BookData book = bookSession.getBook().orElse(null);
+        BookData rawBook = book == null ? null : bookSession.getRawBook().orElse(book);
+        String contentHash = bookSession.getContentHash();
+        boolean hasBook = bookSession.hasBook();
+        QaConversation conversation = bookSession.getConversation();
+        // Answered off the request thread, with the model call bounded by the request's deadline.
+        return () -> {
+            List<ChatMessage> history = conversation.history(lang);
+            String reference = null;
+            String userContent;
+            if (book != null && conversation.bookInPrompt(passageRetriever.fits(book,
+                    aiService.roomFor(systemPrompt, questionLine, lang) - QaConversation.HISTORY_TOKENS))) {
+                // The book goes into the system prompt, so every follow-up repeats the same prompt prefix.
+                reference = textLabel + book.fullText();
+                userContent = questionLine;
+            } else {
+                // Books larger than the prompt budget are answered from the best matching pages.
+                String prefix = questionLine + "\n\n" + textLabel;
+                String text = book == null ? "" : passageRetriever.context(question, book, rawBook, contentHash,
+                        aiService.roomFor(systemPrompt, history, prefix, lang), lang);
+                userContent = prefix + text;
+            }
+            String answer = reference != null
+                    ? aiService.chat(RequestType.QA, systemPrompt, reference, history, userContent, lang)
+                    : aiService.chat(RequestType.QA, systemPrompt, history, userContent, lang);
+            if (!answer.startsWith(AiService.ERROR_PREFIX)) {
+                conversation.record(questionLine, answer, part -> aiService.promptTokens("", part));
+            }
+            model.addAttribute("qa", answer);
+            model.addAttribute("hasBook", hasBook);
+            model.addAttribute("bookLanguage", bookLang);
+            return "index";
+        };
     }
 }
 
@@ -1,41 +1,58 @@
 package com.bookassistant.controller;
 
+import com.bookassistant.model.BookData;
 import com.bookassistant.service.AiService;
+import com.bookassistant.service.PassageRetriever;
+import com.bookassistant.service.RequestType;
 import com.bookassistant.session.BookSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.util.concurrent.Callable;
+
 @Controller
 public class SearchController {
 
     private final BookSession bookSession;
     private final AiService aiService;
+    private final PassageRetriever passageRetriever;
 
-    public SearchController(BookSession bookSession, AiService aiService) {
+    public SearchController(BookSession bookSession, AiService aiService, PassageRetriever passageRetriever) {
         this.bookSession = bookSession;
         this.aiService = aiService;
+        this.passageRetriever = passageRetriever;
     }
 
     @PostMapping("/semantic-search")
-    public String semanticSearch(@RequestParam String query,
+    public Callable<String> semanticSearch(@RequestParam String query,
                                  @RequestParam(value = "outputLanguage", required = false) String outputLanguage,
                                  Model model) {
-        String text = bookSession.getBook().map(b -> b.fullText()).orElse("");
         String bookLang = bookSession.getDetectedLanguage();
-        String lang = outputLanguage != null ? outputLanguage : bookLang;
+        String lang = BookSession.outputLanguage(outputLanguage, bookLang);
         String systemPrompt = "en".equals(lang)
             ? "Search semantically in the text and answer the question."
             : "ابحث دلالياً في النص وأجب عن السؤال.";
-        String userContent = "en".equals(lang)
-            ? "Query: " + query + "\n\nText:\n" + text
-            : "السؤال: " + query + "\n\nالنص:\n" + text;
-        String answer = aiService.ask(systemPrompt, userContent, lang);
-        model.addAttribute("semanticSearch", answer);
-        model.addAttribute("hasBook", bookSession.hasBook());
-        model.addAttribute("bookLanguage", bookLang);
-        return "index";
+        String prefix = "en".equals(lang)
+            ? "Query: " + query + "\n\nText:\n"
+            : "السؤال: " + query + "\n\nالنص:\n";
+        BookData book = bookSession.getBook().orElse(null);
+        BookData rawBook = book == null ? null : bookSession.getRawBook().orElse(book);
+        String contentHash = bookSession.getContentHash();
+        boolean hasBook = bookSession.hasBook();
+        // Answered off the request thread, with the model call bounded by the request's deadline.
+        return () -> {
+            // Books larger than the prompt budget are answered from the best matching pages.
+            String text = book == null ? "" : passageRetriever.context(query, book, rawBook, contentHash,
+                    aiService.roomFor(systemPrompt, prefix, lang), lang);
+            String userContent = prefix + text;
+            String answer = aiService.ask(RequestType.QA, systemPrompt, userContent, lang);
+            model.addAttribute("semanticSearch", answer);
+            model.addAttribute("hasBook", hasBook);
+            model.addAttribute("bookLanguage", bookLang);
+            return "index";
+        };
     }
 }
 
@@ -1,32 +1,44 @@
 package com.bookassistant.controller;
 
-import com.bookassistant.service.AiService;
+import com.bookassistant.service.ExtractiveSummarizer;
+import com.bookassistant.service.PrefetchService;
+import com.bookassistant.service.SummaryTreeService;
 import com.bookassistant.session.BookSession;
+import jakarta.servlet.http.HttpSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
 
 @Controller
 public class SummaryController {
 
     private final BookSession bookSession;
-    private final AiService aiService;
+    private final SummaryTreeService summaryTree;
+    private final PrefetchService prefetchService;
+    private final ExtractiveSummarizer extractiveSummarizer;
 
-    public SummaryController(BookSession bookSession, AiService aiService) {
+    public SummaryController(BookSession bookSession,
+                             SummaryTreeService summaryTree,
+                             PrefetchService prefetchService,
+                             ExtractiveSummarizer extractiveSummarizer) {
         this.bookSession = bookSession;
-        this.aiService = aiService;
+        this.summaryTree = summaryTree;
+        this.prefetchService = prefetchService;
+        this.extractiveSummarizer = extractiveSummarizer;
     }
 
     @PostMapping("/summary/general")
     public String generalSummary(@RequestParam(value = "outputLanguage", required = false) String outputLanguage, Model model) {
-        String text = bookSession.getBook().map(b -> b.fullText()).orElse("");
         String bookLang = bookSession.getDetectedLanguage();
-        String lang = outputLanguage != null ? outputLanguage : bookLang;
-        String systemPrompt = "en".equals(lang) 
-            ? "Summarize the book concisely." 
-            : "لخّص الكتاب بإيجاز.";
-        String answer = aiService.ask(systemPrompt, text, lang);
+        String lang = BookSession.outputLanguage(outputLanguage, bookLang);
+        String answer = bookSession.getBook()
+            .map(book -> extractiveSummarizer.orFallback(
+                    summaryTree.summarizeBook(book, bookSession.getContentHash(), lang), book.pages(), lang))
+            .orElseGet(() -> summaryTree.summarizeText("", lang));
         model.addAttribute("summaryGeneral", answer);
         model.addAttribute("hasBook", bookSession.hasBook());
         model.addAttribute("bookLanguage", bookLang);
@@ -37,18 +49,34 @@ public class SummaryController {
     public String pagesSummary(@RequestParam int startPage,
                                @RequestParam int endPage,
                                @RequestParam(value = "outputLanguage", required = false) String outputLanguage,
+                               HttpSession session,
                                Model model) {
-        String text = bookSession.extractRange(startPage, endPage);
         String bookLang = bookSession.getDetectedLanguage();
-        String lang = outputLanguage != null ? outputLanguage : bookLang;
-        String systemPrompt = "en".equals(lang) 
-            ? "Summarize these pages concisely." 
-            : "لخّص هذه الصفحات بإيجاز.";
-        String answer = aiService.ask(systemPrompt, text, lang);
+        String lang = BookSession.outputLanguage(outputLanguage, bookLang);
+        String hash = bookSession.getContentHash();
+        String sessionId = session != null ? session.getId() : null;
+        String answer = bookSession.getBook()
+            .map(book -> extractiveSummarizer.orFallback(
+                    prefetchService.fetch(sessionId, "summary", hash, book.lastPage(), startPage, endPage, lang,
+                            (from, to) -> summaryTree.summarizeRangeAsync(book, hash, from, to, lang)),
+                    book.pageRange(startPage, endPage), lang))
+            .orElseGet(() -> summaryTree.summarizeText("", lang));
         model.addAttribute("summaryPages", answer);
         model.addAttribute("hasBook", bookSession.hasBook());
         model.addAttribute("bookLanguage", bookLang);
         return "index";
     }
-}
 
+    /** A local extractive summary of a page range (the whole book by default), shown while the full summary loads. */
+    @GetMapping("/summary/preview")
+    @ResponseBody
+    public String preview(@RequestParam(required = false) Integer startPage,
+                          @RequestParam(required = false) Integer endPage,
+                          @RequestParam(value = "outputLanguage", required = false) String outputLanguage) {
+        String lang = BookSession.outputLanguage(outputLanguage, bookSession.getDetectedLanguage());
+        return bookSession.getBook()
+            .map(book -> extractiveSummarizer.summarize(book.pageRange(
+                    startPage != null ? startPage : 1, endPage != null ? endPage : book.lastPage()), lang))
+            .orElse("");
+    }
+}
@@ -1,6 +1,8 @@
 package com.bookassistant.controller;
 
+import com.bookassistant.model.BookData;
 import com.bookassistant.service.FileParserService;
+import com.bookassistant.service.LibraryService;
 import com.bookassistant.session.BookSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -9,24 +11,34 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.security.Principal;
+
 @Controller
 @RequestMapping("/")
 public class UploadController {
 
     private final FileParserService fileParserService;
     private final BookSession bookSession;
+    private final LibraryService libraryService;
 
-    public UploadController(FileParserService fileParserService, BookSession bookSession) {
+    public UploadController(FileParserService fileParserService, BookSession bookSession,
+                            LibraryService libraryService) {
         this.fileParserService = fileParserService;
         this.bookSession = bookSession;
+        this.libraryService = libraryService;
     }
 
     @PostMapping("/upload")
-    public String upload(@RequestParam("file") MultipartFile file, Model model) {
+    public String upload(@RequestParam("file") MultipartFile file, Principal principal, Model model) {
         try {
             bookSession.clear();
-            bookSession.setBook(fileParserService.parse(file));
+            BookData book = fileParserService.parse(file);
+            bookSession.setBook(book);
+            if (principal != null) {
+                libraryService.addBook(principal.getName(), book);
+            }
             model.addAttribute("hasBook", true);
+            model.addAttribute("chapters", book.chapters());
             model.addAttribute("success", "تم رفع الكتاب بنجاح");
         } catch (Exception e) {
             model.addAttribute("error", "فشل في قراءة الملف: " + e.getMessage());
@@ -0,0 +1,22 @@
+package com.bookassistant.model;
+
+import java.util.List;
+
+/**
+ * Facts about a book computed locally: word counts, reading time, vocabulary richness (distinct words
+ * per word), the language of each page and the most distinctive keywords of the book and each chapter.
+ */
+public record BookAnalytics(String fileName,
+                            int pageCount,
+                            long wordCount,
+                            int distinctWords,
+                            double vocabularyRichness,
+                            int readingMinutes,
+                            List<String> pageLanguages,
+                            List<String> topKeywords,
+                            List<ChapterAnalytics> chapters) {
+
+    public record ChapterAnalytics(int number, String title, int startPage, int endPage,
+                                   long wordCount, int readingMinutes, List<String> topKeywords) {
+    }
+}
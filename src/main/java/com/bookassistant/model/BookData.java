@@ -1,7 +1,34 @@
 package com.bookassistant.model;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
-public record BookData(String fileName, List<PageData> pages, String fullText) {
-}
+public record BookData(String fileName, List<PageData> pages, String fullText, List<Chapter> chapters,
+                       List<DuplicateGroup> duplicates) {
+
+    public BookData(String fileName, List<PageData> pages, String fullText) {
+        this(fileName, pages, fullText, List.of());
+    }
+
+    public BookData(String fileName, List<PageData> pages, String fullText, List<Chapter> chapters) {
+        this(fileName, pages, fullText, chapters, List.of());
+    }
 
+    public int lastPage() {
+        return pages.isEmpty() ? 0 : pages.get(pages.size() - 1).pageNumber();
+    }
+
+    /** The pages between {@code startPage} and {@code endPage}, inclusive. */
+    public List<PageData> pageRange(int startPage, int endPage) {
+        return pages.stream()
+                .filter(p -> p.pageNumber() >= startPage && p.pageNumber() <= endPage)
+                .toList();
+    }
+
+    /** Text of the pages between {@code startPage} and {@code endPage}, inclusive. */
+    public String text(int startPage, int endPage) {
+        return pageRange(startPage, endPage).stream()
+                .map(PageData::text)
+                .collect(Collectors.joining("\n\n"));
+    }
+}
@@ -0,0 +1,4 @@
+package com.bookassistant.model;
+
+public record Chapter(int number, String title, int startPage, int endPage) {
+}
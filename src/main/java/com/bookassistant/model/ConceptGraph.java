@@ -0,0 +1,30 @@
+package com.bookassistant.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Concepts and the relations between them. Node ids are normalized labels, so graphs from
+ * different chunks can be merged by id; weights count how many chunks mention a node or edge.
+ * A graph that could not be built carries the upstream error instead of nodes.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ConceptGraph(List<Node> nodes, List<Edge> edges, String error) {
+
+    public static final ConceptGraph EMPTY = new ConceptGraph(List.of(), List.of());
+
+    public ConceptGraph(List<Node> nodes, List<Edge> edges) {
+        this(nodes, edges, null);
+    }
+
+    public static ConceptGraph failed(String error) {
+        return new ConceptGraph(List.of(), List.of(), error);
+    }
+
+    public record Node(String id, String label, int weight, List<Integer> pages) {
+    }
+
+    public record Edge(String source, String target, String label, int weight) {
+    }
+}
@@ -0,0 +1,11 @@
+package com.bookassistant.model;
+
+import java.util.List;
+
+/** Pages with the same or nearly the same text; {@code pages} is sorted and its first page is the original. */
+public record DuplicateGroup(List<Integer> pages) {
+
+    public int firstPage() {
+        return pages.get(0);
+    }
+}
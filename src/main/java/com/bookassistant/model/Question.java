@@ -0,0 +1,7 @@
+package com.bookassistant.model;
+
+import java.util.List;
+
+/** A multiple choice question; {@code answer} is the index of the correct choice. */
+public record Question(String question, List<String> choices, int answer, String explanation) {
+}
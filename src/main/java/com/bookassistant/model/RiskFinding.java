@@ -0,0 +1,7 @@
+package com.bookassistant.model;
+
+import java.util.List;
+
+/** A risk or warning found in a book; {@code severity} is "high", "medium" or "low". */
+public record RiskFinding(String title, String detail, String severity, List<Integer> pages) {
+}
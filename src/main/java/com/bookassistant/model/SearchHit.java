@@ -0,0 +1,4 @@
+package com.bookassistant.model;
+
+public record SearchHit(String fileName, int pageNumber, double score, String snippet) {
+}
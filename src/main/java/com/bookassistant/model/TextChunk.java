@@ -0,0 +1,5 @@
+package com.bookassistant.model;
+
+/** A prompt-sized slice of a book; {@code contentHash} identifies the text for caching. */
+public record TextChunk(int index, int startPage, int endPage, String text, int tokens, String contentHash) {
+}
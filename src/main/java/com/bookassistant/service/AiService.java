@@ -1,78 +1,174 @@
 package com.bookassistant.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.util.HashMap;
+import java.time.Instant;
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 
 @Service
 public class AiService {
 
     private static final Logger log = LoggerFactory.getLogger(AiService.class);
+    /** Starts every answer that reports a failure instead of the model's reply. */
+    public static final String ERROR_PREFIX = "AI error";
+
     private final ObjectMapper mapper;
+    private final TokenCounter tokenCounter;
+    private final BackendPool backendPool;
+    private final RetryPolicy retryPolicy;
+    private final HedgingPolicy hedgingPolicy;
+    private final ModelRouter modelRouter;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(30))
+            .build();
+    private final ScheduledThreadPoolExecutor watchdog;
+    private final int promptBudget;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final DistributionSummary promptTokens;
+    private final DistributionSummary usagePromptTokens;
+    private final DistributionSummary usageCompletionTokens;
+    private final Counter rejected;
+    private final Counter retries;
+    private final Counter hedgesWon;
+    private final Counter hedgesLost;
+    private final Counter cancelled;
+    private final Counter deadlineExceeded;
 
     @Value("${app.ai.api-key}")
     private String apiKey;
 
-    @Value("${app.ai.base-url:https://ollama.com}")
-    private String baseUrl;
-
-    @Value("${app.ai.model:qwen3-coder:480b-cloud}")
-    private String model;
-
     @Value("${app.ai.timeout-seconds:300}")
     private int timeoutSeconds;
 
-    public AiService(ObjectMapper mapper) {
+
+    public AiService(ObjectMapper mapper,
+                     TokenCounter tokenCounter,
+                     BackendPool backendPool,
+                     RetryPolicy retryPolicy,
+                     HedgingPolicy hedgingPolicy,
+                     ModelRouter modelRouter,
+                     MeterRegistry meterRegistry,
+                     @Value("${app.ai.reserved-output-tokens:8192}") int reservedOutputTokens) {
         this.mapper = mapper;
+        this.tokenCounter = tokenCounter;
+        this.backendPool = backendPool;
+        this.retryPolicy = retryPolicy;
+        this.hedgingPolicy = hedgingPolicy;
+        this.modelRouter = modelRouter;
+        this.watchdog = new ScheduledThreadPoolExecutor(1, Thread.ofPlatform().name("ai-watchdog").daemon().factory());
+        this.watchdog.setRemoveOnCancelPolicy(true);
+        // Any prompt that fits the largest model's window can be routed
+        this.promptBudget = Math.max(1, modelRouter.maxContextTokens() - Math.max(0, reservedOutputTokens));
+        this.promptTokens = DistributionSummary.builder("ai.prompt.tokens")
+                .description("Locally counted prompt tokens per request sent upstream")
+                .baseUnit("tokens")
+                .register(meterRegistry);
+        this.usagePromptTokens = DistributionSummary.builder("ai.usage.tokens")
+                .description("Tokens billed by the model, as reported in the response")
+                .baseUnit("tokens")
+                .tag("type", "prompt")
+                .register(meterRegistry);
+        this.usageCompletionTokens = DistributionSummary.builder("ai.usage.tokens")
+                .description("Tokens billed by the model, as reported in the response")
+                .baseUnit("tokens")
+                .tag("type", "completion")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("ai.prompt.rejected")
+                .description("Requests refused locally because the prompt exceeded the token budget")
+                .register(meterRegistry);
+        this.retries = Counter.builder("ai.retries")
+                .description("Upstream calls repeated after a transient failure")
+                .register(meterRegistry);
+        this.hedgesWon = Counter.builder("ai.hedges")
+                .description("Duplicate requests sent because the first one ran slow")
+                .tag("outcome", "won")
+                .register(meterRegistry);
+        this.hedgesLost = Counter.builder("ai.hedges")
+                .description("Duplicate requests sent because the first one ran slow")
+                .tag("outcome", "lost")
+                .register(meterRegistry);
+        this.cancelled = Counter.builder("ai.cancelled")
+                .description("Upstream calls aborted because the work they were made for was cancelled")
+                .register(meterRegistry);
+        this.deadlineExceeded = Counter.builder("ai.deadline.exceeded")
+                .description("Model calls refused because the request had no time left")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
     }
 
     public String ask(String systemPrompt, String userContent) {
-        Map<String, Object> body = new HashMap<>();
-        body.put("model", model);
-        body.put("stream", false);
-        body.put("messages", List.of(
-                Map.of("role", "system", "content", systemPrompt),
-                Map.of("role", "user", "content", userContent)
-        ));
-        return call(body);
+        return send(RequestType.GENERAL, new Prompt(systemPrompt, List.of(), userContent));
     }
 
     public String ask(String systemPrompt, String userContent, String outputLanguage) {
-        // Adjust system prompt based on output language
-        String adjustedSystemPrompt = systemPrompt;
-        if ("en".equals(outputLanguage)) {
-            adjustedSystemPrompt = systemPrompt + " Respond in English.";
-        } else if ("ar".equals(outputLanguage)) {
-            adjustedSystemPrompt = systemPrompt + " أجب باللغة العربية.";
-        }
-        
-        Map<String, Object> body = new HashMap<>();
-        body.put("model", model);
-        body.put("stream", false);
-        body.put("messages", List.of(
-                Map.of("role", "system", "content", adjustedSystemPrompt),
-                Map.of("role", "user", "content", userContent)
-        ));
-        return call(body);
+        return ask(RequestType.GENERAL, systemPrompt, userContent, outputLanguage);
+    }
+
+    /** Like {@link #ask(String, String, String)}, routed to a model suited to {@code type}. */
+    public String ask(RequestType type, String systemPrompt, String userContent, String outputLanguage) {
+        return send(type, new Prompt(withLanguage(systemPrompt, outputLanguage), List.of(), userContent));
+    }
+
+    /**
+     * Asks a follow-up in a conversation. {@code history} holds the earlier turns, sent between
+     * the system prompt and {@code userContent}; keeping the system prompt and history the same
+     * from one question to the next lets backends with prompt caching reuse the shared prefix.
+     */
+    public String chat(RequestType type, String systemPrompt, List<ChatMessage> history, String userContent,
+                       String outputLanguage) {
+        return send(type, new Prompt(withLanguage(systemPrompt, outputLanguage), List.copyOf(history), userContent));
+    }
+
+    /**
+     * Like {@link #chat(RequestType, String, List, String, String)}, with {@code reference} text (such
+     * as a whole book) placed in the system prompt after the instructions, so the language instruction
+     * is not buried behind it.
+     */
+    public String chat(RequestType type, String systemPrompt, String reference, List<ChatMessage> history,
+                       String userContent, String outputLanguage) {
+        String system = withLanguage(systemPrompt, outputLanguage) + "\n\n" + reference;
+        return send(type, new Prompt(system, List.copyOf(history), userContent));
     }
 
     public String generateComprehensionTest(String text, int startPage, int endPage) {
         String system = "أنت مساعد يكتب اختبار فهم من كتاب PDF. اكتب أسئلة اختيار من متعدد وإجابات نموذجية بالعربية.";
         String user = "نص من الصفحات " + startPage + " إلى " + endPage + ":\n" + text;
-        return ask(system, user);
+        return ask(RequestType.COMPREHENSION, system, user, null);
     }
 
     public String generateComprehensionTest(String text, int startPage, int endPage, String outputLanguage) {
@@ -83,84 +179,377 @@ public class AiService {
             system = "أنت مساعد يكتب اختبار فهم من كتاب PDF. اكتب أسئلة اختيار من متعدد وإجابات نموذجية بالعربية.";
         }
         String user = "نص من الصفحات " + startPage + " إلى " + endPage + ":\n" + text;
-        return ask(system, user, outputLanguage);
+        return ask(RequestType.COMPREHENSION, system, user, outputLanguage);
+    }
+
+    /** Prompt tokens a request may use: the context window minus the room kept for the reply. */
+    public int promptBudget() {
+        return promptBudget;
+    }
+
+    /** Tokens the given messages would occupy, counted locally with the model's tokenizer rules. */
+    public int promptTokens(String systemPrompt, String userContent) {
+        return tokenCounter.countPrompt(systemPrompt, userContent);
+    }
+
+    /**
+     * Tokens still free for book text once the system prompt and the fixed part of the user
+     * message are counted, for a later {@code ask(systemPrompt, userPrefix + text, outputLanguage)}.
+     */
+    public int roomFor(String systemPrompt, String userPrefix, String outputLanguage) {
+        return promptBudget - promptTokens(withLanguage(systemPrompt, outputLanguage), userPrefix);
+    }
+
+    /** Like {@link #roomFor(String, String, String)}, for a {@code chat} with earlier turns. */
+    public int roomFor(String systemPrompt, List<ChatMessage> history, String userPrefix, String outputLanguage) {
+        return promptBudget - tokenCounter.countPrompt(withLanguage(systemPrompt, outputLanguage), history, userPrefix);
+    }
+
+    /** Upstream requests currently waiting for a response. */
+    public int inFlightRequests() {
+        return inFlight.get();
+    }
+
+    private static String withLanguage(String systemPrompt, String outputLanguage) {
+        // Adjust system prompt based on output language
+        if ("en".equals(outputLanguage)) {
+            return systemPrompt + " Respond in English.";
+        } else if ("ar".equals(outputLanguage)) {
+            return systemPrompt + " أجب باللغة العربية.";
+        }
+        return systemPrompt;
+    }
+
+    private String send(RequestType type, Prompt prompt) {
+        int tokens = tokenCounter.countPrompt(prompt.system(), prompt.history(), prompt.user());
+        if (tokens > promptBudget) {
+            rejected.increment();
+            log.warn("Refusing prompt of {} tokens, budget is {}", tokens, promptBudget);
+            return ERROR_PREFIX + ": Prompt too large - " + tokens + " tokens exceeds the budget of " + promptBudget;
+        }
+        promptTokens.record(tokens);
+        log.info("Prompt size: {} tokens", tokens);
+
+        return call(modelRouter.route(type, tokens), prompt);
+    }
+
+    /** Messages of one request: system prompt, earlier turns and the new user message. */
+    private record Prompt(String system, List<ChatMessage> history, String user) {
+    }
+
+    /** What one exchange with a backend produced, and whether another attempt may do better. */
+    private record Outcome(String answer, boolean retryable, Duration retryAfter, BackendPool.Backend backend) {
+
+        static Outcome done(String answer, BackendPool.Backend backend) {
+            return new Outcome(answer, false, null, backend);
+        }
+    }
+
+    /**
+     * One request in flight; aborting it cancels the upstream exchange. The request timeout only
+     * bounds the wait for the headers, so once the body is being read, aborting or expiring the
+     * exchange closes the body, which ends a read blocked on it.
+     */
+    private static final class Exchange {
+
+        private final CompletableFuture<HttpResponse<InputStream>> response;
+        private final CompletableFuture<Outcome> outcome = new CompletableFuture<>();
+        private final AtomicBoolean aborted = new AtomicBoolean();
+        private final AtomicBoolean expired = new AtomicBoolean();
+        private volatile InputStream body;
+
+        Exchange(CompletableFuture<HttpResponse<InputStream>> response) {
+            this.response = response;
+        }
+
+        CompletableFuture<Outcome> outcome() {
+            return outcome;
+        }
+
+        /**
+         * Cancels the exchange; true if it was still running and had not been aborted before.
+         * {@code counter}, if given, is counted before the caller can see the cancelled outcome.
+         */
+        boolean abort(Counter counter) {
+            if (outcome.isDone() || !aborted.compareAndSet(false, true)) return false;
+            if (counter != null) counter.increment();
+            response.cancel(true);
+            closeBody();
+            return true;
+        }
+
+        /** Stops a response that is still arriving when the attempt's time is up. */
+        void expire() {
+            if (outcome.isDone() || aborted.get() || !expired.compareAndSet(false, true)) return;
+            closeBody();
+        }
+
+        /** Registers the body being read, closing it at once if the exchange was stopped already. */
+        void reading(InputStream stream) {
+            body = stream;
+            if (aborted.get() || expired.get()) closeBody();
+        }
+
+        boolean aborted() {
+            return aborted.get();
+        }
+
+        boolean expired() {
+            return expired.get();
+        }
+
+        private void closeBody() {
+            InputStream stream = body;
+            if (stream == null) return;
+            try {
+                stream.close();
+            } catch (IOException e) {
+                log.debug("Could not close AI response body", e);
+            }
+        }
     }
 
-    private String call(Map<String, Object> body) {
+    private String call(ModelRouter.Choice route, Prompt prompt) {
+        BackendPool.Backend failed = null;
+        RequestContext context = RequestContext.current().orElse(null);
+        for (int attempt = 1; ; attempt++) {
+            if (context != null && context.isCancelled()) return ERROR_PREFIX + ": Request cancelled";
+            // Each attempt gets the configured timeout or what is left of the request, if less
+            Duration timeout = Duration.ofSeconds(timeoutSeconds);
+            Optional<Duration> remaining = context != null ? context.remaining() : Optional.empty();
+            if (remaining.isPresent()) {
+                if (context.expired()) {
+                    deadlineExceeded.increment();
+                    log.warn("Request deadline passed before AI attempt {}", attempt);
+                    return ERROR_PREFIX + ": Deadline exceeded - no time left for the model call";
+                }
+                if (remaining.get().compareTo(timeout) < 0) timeout = remaining.get();
+            }
+            Outcome outcome = exchange(route, prompt, failed, context, timeout);
+            if (!outcome.retryable()) return outcome.answer();
+            Optional<Duration> wait = retryPolicy.backoff(attempt, outcome.retryAfter());
+            if (wait.isEmpty()) return outcome.answer();
+            if (context != null && context.remaining().filter(left -> left.compareTo(wait.get()) <= 0).isPresent()) {
+                log.warn("No time left to retry AI call after: {}", outcome.answer());
+                return outcome.answer();
+            }
+
+            retries.increment();
+            log.warn("Retrying AI call in {} ms (attempt {} of {}) after: {}", wait.get().toMillis(),
+                    attempt + 1, retryPolicy.maxAttempts(), outcome.answer());
+            failed = outcome.backend();
+            try {
+                Thread.sleep(wait.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return ERROR_PREFIX + ": Request interrupted";
+            }
+        }
+    }
+
+    /** Sends the request to the best backend, hedging on a second one if it runs slow. */
+    private Outcome exchange(ModelRouter.Choice route, Prompt prompt, BackendPool.Backend avoid,
+                             RequestContext context, Duration timeout) {
+        Optional<BackendPool.Backend> acquired = backendPool.acquire(avoid);
+        if (acquired.isEmpty()) {
+            long seconds = Math.max(1, backendPool.retryIn().toSeconds());
+            log.warn("All AI backends have open circuits, refusing request");
+            return Outcome.done(ERROR_PREFIX + ": Model unavailable - all backends are failing, retry in " + seconds + " s", null);
+        }
+        Optional<Duration> hedgeAfter = hedgingPolicy.delayFor();
+        Exchange primary = start(route, acquired.get(), prompt, context, timeout);
+        Exchange hedge = null;
         try {
-            String json = mapper.writeValueAsString(body);
-            log.info("Calling AI API at: {}", baseUrl);
-            log.info("Timeout set to: {} seconds", timeoutSeconds);
-            log.debug("Request body: {}", json);
-
-            // Create client with proper timeout for this request
-            HttpClient requestClient = HttpClient.newBuilder()
-                    .connectTimeout(Duration.ofSeconds(30))
-                    .build();
+            if (hedgeAfter.isPresent()) {
+                try {
+                    return primary.outcome().get(hedgeAfter.get().toNanos(), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    hedge = hedge(route, acquired.get(), prompt, context, timeout);
+                }
+            }
+            if (hedge == null) return primary.outcome().get();
 
+            Outcome first = firstUseful(primary.outcome(), hedge.outcome()).get();
+            boolean hedgeWon = hedge.outcome().isDone() && hedge.outcome().getNow(null) == first;
+            (hedgeWon ? hedgesWon : hedgesLost).increment();
+            return first;
+        } catch (InterruptedException e) {
+            // The web request was abandoned; what is still running upstream is wasted work
+            primary.abort(cancelled);
+            if (hedge != null) hedge.abort(cancelled);
+            Thread.currentThread().interrupt();
+            return Outcome.done(ERROR_PREFIX + ": Request interrupted", acquired.get());
+        } catch (ExecutionException e) {
+            return Outcome.done(ERROR_PREFIX + ": " + e.getCause().getMessage(), acquired.get());
+        } finally {
+            // Whichever exchange is still running is no longer needed
+            primary.abort(null);
+            if (hedge != null) hedge.abort(null);
+        }
+    }
+
+    private Exchange hedge(ModelRouter.Choice route, BackendPool.Backend slow, Prompt prompt,
+                           RequestContext context, Duration timeout) {
+        // A duplicate on the same backend would only add to its load
+        Optional<BackendPool.Backend> other = backendPool.acquireOther(slow);
+        if (other.isEmpty()) return null;
+        if (!hedgingPolicy.tryHedge()) {
+            backendPool.cancel(other.get());
+            return null;
+        }
+        log.info("AI call on {} is slow, hedging on {}", slow.url(), other.get().url());
+        return start(route, other.get(), prompt, context, timeout);
+    }
+
+    /** The first outcome that is not a retryable failure, or the last one if both are. */
+    private static CompletableFuture<Outcome> firstUseful(CompletableFuture<Outcome> a, CompletableFuture<Outcome> b) {
+        CompletableFuture<Outcome> first = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(2);
+        BiConsumer<Outcome, Throwable> settle = (outcome, error) -> {
+            if (outcome != null && !outcome.retryable()) first.complete(outcome);
+            else if (pending.decrementAndGet() == 0) {
+                if (outcome != null) first.complete(outcome);
+                else first.completeExceptionally(error);
+            }
+        };
+        a.whenComplete(settle);
+        b.whenComplete(settle);
+        return first;
+    }
+
+    private Exchange start(ModelRouter.Choice route, BackendPool.Backend backend, Prompt prompt,
+                           RequestContext context, Duration timeout) {
+        long start = System.nanoTime();
+        inFlight.incrementAndGet();
+        log.info("Calling AI API at: {} with model {}", backend.url(), route.model());
+        log.info("Timeout set to: {} seconds", timeout.toSeconds());
+        log.debug("Request prompt: {} system chars, {} earlier messages, {} user chars",
+                prompt.system().length(), prompt.history().size(), prompt.user().length());
+
+        CompletableFuture<HttpResponse<InputStream>> response;
+        try {
             HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(baseUrl + "/v1/chat/completions"))
-                    .timeout(Duration.ofSeconds(timeoutSeconds))
+                    .uri(URI.create(backend.url() + "/v1/chat/completions"))
+                    .timeout(timeout)
                     .header("Authorization", "Bearer " + apiKey)
                     .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
+                    .POST(ChatRequestBody.publisher(mapper.getFactory(), route.model(), prompt.system(),
+                            prompt.history(), prompt.user(), timeout))
                     .build();
-
             log.info("Sending request to Ollama Cloud...");
-            HttpResponse<String> response = requestClient.send(request, HttpResponse.BodyHandlers.ofString());
-            log.info("Response status: {}", response.statusCode());
-            log.debug("Response body: {}", response.body());
+            response = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        AtomicReference<Runnable> unregister = new AtomicReference<>();
+        Exchange exchange = new Exchange(response);
+        CompletableFuture<Outcome> outcome = exchange.outcome();
+        response.handle((r, error) -> {
+            try {
+                return r != null ? read(route, backend, r, start, exchange) : failed(route, backend, error, start);
+            } finally {
+                inFlight.decrementAndGet();
+                Runnable registration = unregister.getAndSet(null);
+                if (registration != null) registration.run();
+            }
+        }).whenComplete((result, error) -> {
+            if (error != null) outcome.completeExceptionally(error);
+            else outcome.complete(result);
+        });
+        // The request timeout ends with the headers; the watchdog bounds reading the body as well
+        ScheduledFuture<?> expiry = watchdog.schedule(exchange::expire, timeout.toNanos(), TimeUnit.NANOSECONDS);
+        outcome.whenComplete((result, error) -> expiry.cancel(false));
+        if (context != null) {
+            unregister.set(context.onCancel(() -> {
+                if (exchange.abort(cancelled)) {
+                    log.info("Request cancelled, aborted AI call to {}", backend.url());
+                }
+            }));
+            if (outcome.isDone()) {
+                Runnable registration = unregister.getAndSet(null);
+                if (registration != null) registration.run();
+            }
+        }
+        return exchange;
+    }
 
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                return extractContent(response.body());
+    private Outcome read(ModelRouter.Choice route, BackendPool.Backend backend, HttpResponse<InputStream> response,
+                         long start, Exchange exchange) {
+        int status = response.statusCode();
+        log.info("Response status: {}", status);
+        // Only failures that say something about the backend count against it
+        boolean healthy = status < 500 && status != 429;
+        boolean aborted = false;
+        try (InputStream body = response.body()) {
+            exchange.reading(body);
+            if (status >= 200 && status < 300) {
+                String answer = extractContent(body);
+                if (exchange.aborted() || exchange.expired()) throw new IOException("Response body closed");
+                Duration latency = Duration.ofNanos(System.nanoTime() - start);
+                hedgingPolicy.record(latency);
+                modelRouter.record(route, latency);
+                return Outcome.done(answer, backend);
             }
-            return "AI error: HTTP " + response.statusCode() + " - " + response.body();
+            String answer = ERROR_PREFIX + ": HTTP " + status + " - " + new String(body.readAllBytes(), StandardCharsets.UTF_8);
+            if (exchange.aborted() || exchange.expired()) throw new IOException("Response body closed");
+            modelRouter.recordFailure(route);
+            Duration retryAfter = RetryPolicy.parseRetryAfter(
+                    response.headers().firstValue("Retry-After").orElse(null), Instant.now());
+            return new Outcome(answer, RetryPolicy.retryable(status), retryAfter, backend);
         } catch (IOException e) {
+            if (exchange.aborted()) {
+                // Aborted by us, so it says nothing about the backend's health
+                aborted = true;
+                return Outcome.done(ERROR_PREFIX + ": Request cancelled", backend);
+            }
+            IOException cause = exchange.expired() ? new HttpTimeoutException("Response not received in time") : e;
+            healthy = false;
+            modelRouter.recordFailure(route);
+            log.error("IO error reading AI API response", cause);
+            return new Outcome(ERROR_PREFIX + ": Connection failed - " + cause.getMessage(), RetryPolicy.retryable(cause),
+                    null, backend);
+        } finally {
+            if (aborted) backendPool.cancel(backend);
+            else backendPool.release(backend, System.nanoTime() - start, healthy);
+        }
+    }
+
+    private Outcome failed(ModelRouter.Choice route, BackendPool.Backend backend, Throwable error, long start) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof CancellationException) {
+            // Aborted by us, so it says nothing about the backend's health
+            backendPool.cancel(backend);
+            return Outcome.done(ERROR_PREFIX + ": Request cancelled", backend);
+        }
+        backendPool.release(backend, System.nanoTime() - start, !(cause instanceof IOException));
+        modelRouter.recordFailure(route);
+        if (cause instanceof IOException e) {
             log.error("IO error calling AI API", e);
-            return "AI error: Connection failed - " + e.getMessage();
-        } catch (InterruptedException e) {
-            log.error("Interrupted while calling AI API", e);
-            Thread.currentThread().interrupt();
-            return "AI error: Request interrupted";
-        } catch (Exception e) {
-            log.error("Unexpected error calling AI API", e);
-            return "AI error: " + e.getMessage();
+            return new Outcome(ERROR_PREFIX + ": Connection failed - " + e.getMessage(), RetryPolicy.retryable(e), null, backend);
         }
+        log.error("Unexpected error calling AI API", cause);
+        return Outcome.done(ERROR_PREFIX + ": " + cause.getMessage(), backend);
     }
 
-    /** استخراج نص الرد من صيغة OpenAI-compatible API: { "choices": [{ "message": { "content": "..." } }] } */
-    @SuppressWarnings("unchecked")
-    private String extractContent(String jsonBody) {
+    /**
+     * استخراج نص الرد من صيغة OpenAI-compatible API: { "choices": [{ "message": { "content": "..." } }] }
+     * أو من صيغة Ollama الأصلية: { "message": { "content": "..." } }
+     */
+    private String extractContent(InputStream body) throws IOException {
+        ChatResponseReader.Reply reply;
         try {
-            Map<String, Object> root = mapper.readValue(jsonBody, Map.class);
-            
-            // Try OpenAI-compatible format first (for Ollama Cloud)
-            Object choices = root.get("choices");
-            if (choices instanceof List && !((List<?>) choices).isEmpty()) {
-                Object firstChoice = ((List<?>) choices).get(0);
-                if (firstChoice instanceof Map) {
-                    Object message = ((Map<String, Object>) firstChoice).get("message");
-                    if (message instanceof Map) {
-                        Object content = ((Map<String, Object>) message).get("content");
-                        if (content != null) {
-                            return content.toString();
-                        }
-                    }
-                }
-            }
-            
-            // Fallback to Ollama native format
-            Object msg = root.get("message");
-            if (msg instanceof Map) {
-                Object content = ((Map<String, Object>) msg).get("content");
-                return content != null ? content.toString() : jsonBody;
-            }
-            
-            return jsonBody;
-        } catch (Exception e) {
-            log.error("Error extracting content from response", e);
-            return jsonBody;
+            reply = ChatResponseReader.read(mapper.getFactory(), body);
+        } catch (JsonProcessingException e) {
+            log.error("Malformed response from AI API", e);
+            return ERROR_PREFIX + ": Malformed response - " + e.getOriginalMessage();
+        }
+        if (reply.promptTokens() >= 0) usagePromptTokens.record(reply.promptTokens());
+        if (reply.completionTokens() >= 0) usageCompletionTokens.record(reply.completionTokens());
+        log.debug("Response: {} chars, {} prompt and {} completion tokens",
+                reply.content() != null ? reply.content().length() : 0, reply.promptTokens(), reply.completionTokens());
+        if (reply.content() == null) {
+            return ERROR_PREFIX + ": Response had no message content";
         }
+        return reply.content();
     }
 }
-
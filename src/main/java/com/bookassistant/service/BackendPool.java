@@ -0,0 +1,275 @@
+package com.bookassistant.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * The model endpoints requests are spread over. Each request goes to the backend with the
+ * lowest expected wait: its requests in flight times its recent latency (a peak-sensitive
+ * moving average that fades while the backend is idle, so it gets probed again), divided by
+ * its weight. Every backend has its own {@link CircuitBreaker}: one that keeps failing or
+ * answering too slowly is skipped until a probe call shows it has recovered, and when all
+ * of them are open requests are refused at once instead of waiting on a dead endpoint.
+ *
+ * <p>Endpoints come from {@code app.ai.backends} as {@code url|weight} entries separated by
+ * commas. When that is empty the pool holds only {@code app.ai.base-url}.
+ */
+@Service
+public class BackendPool {
+
+    private static final Logger log = LoggerFactory.getLogger(BackendPool.class);
+
+    /** Weight of the newest sample in the latency average. */
+    private static final double EWMA_ALPHA = 0.3;
+    /** Latency assumed for a backend nothing is known about yet, so new ones get tried. */
+    private static final long MIN_LATENCY_NANOS = Duration.ofMillis(1).toNanos();
+    private static final long FAILURE_PENALTY_NANOS = Duration.ofSeconds(1).toNanos();
+    /** Time for an idle backend's latency to fade to about a third. */
+    private static final double DECAY_NANOS = Duration.ofSeconds(10).toNanos();
+
+    public static final class Backend {
+
+        private final String url;
+        private final int weight;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private double latencyNanos;
+        private long sampledAt;
+        private CircuitBreaker breaker;
+
+        Backend(String url, int weight) {
+            this.url = url;
+            this.weight = weight;
+        }
+
+        public String url() {
+            return url;
+        }
+
+        public int weight() {
+            return weight;
+        }
+
+        public int outstanding() {
+            return outstanding.get();
+        }
+
+        public CircuitBreaker.State state() {
+            return breaker.state();
+        }
+
+        synchronized double latencyMillis() {
+            return latencyNanos / 1e6;
+        }
+
+        private synchronized double latency(long now) {
+            return latencyNanos * Math.exp(-(now - sampledAt) / DECAY_NANOS);
+        }
+
+        private synchronized double cost(long now) {
+            return (outstanding.get() + 1) * Math.max(latency(now), MIN_LATENCY_NANOS) / weight;
+        }
+    }
+
+    private final List<Backend> backends;
+    private final LongSupplier clock;
+    private final Counter refused;
+
+    @Autowired
+    public BackendPool(MeterRegistry registry,
+                       @Value("${app.ai.base-url:https://ollama.com}") String baseUrl,
+                       @Value("${app.ai.backends:}") String backends,
+                       @Value("${app.ai.breaker.window:20}") int window,
+                       @Value("${app.ai.breaker.minimum-calls:10}") int minimumCalls,
+                       @Value("${app.ai.breaker.failure-rate:0.5}") double failureRate,
+                       @Value("${app.ai.breaker.slow-call-seconds:120}") int slowCallSeconds,
+                       @Value("${app.ai.breaker.slow-call-rate:0.8}") double slowCallRate,
+                       @Value("${app.ai.breaker.consecutive-failures:3}") int consecutiveFailures,
+                       @Value("${app.ai.breaker.open-seconds:30}") int openSeconds,
+                       @Value("${app.ai.breaker.half-open-probes:1}") int halfOpenProbes) {
+        this(registry, baseUrl, backends, new CircuitBreaker.Settings(window, minimumCalls, failureRate,
+                        Duration.ofSeconds(slowCallSeconds).toNanos(), slowCallRate, consecutiveFailures,
+                        Duration.ofSeconds(openSeconds).toNanos(), halfOpenProbes),
+                System::nanoTime);
+    }
+
+    BackendPool(MeterRegistry registry, String baseUrl, String backends, CircuitBreaker.Settings breakerSettings,
+                LongSupplier clock) {
+        this.backends = parse(baseUrl, backends);
+        this.clock = clock;
+        this.refused = Counter.builder("ai.breaker.refused")
+                .description("Requests refused at once because every backend's circuit was open")
+                .register(registry);
+        CircuitBreaker.Listener listener = transitions(registry);
+        for (Backend backend : this.backends) {
+            backend.breaker = new CircuitBreaker(backend.url, breakerSettings, clock, listener);
+            Gauge.builder("ai.backend.outstanding", backend, Backend::outstanding)
+                    .description("Requests in flight to the backend")
+                    .tag("backend", backend.url)
+                    .register(registry);
+            Gauge.builder("ai.backend.latency", backend, Backend::latencyMillis)
+                    .description("Moving average of the backend's response time")
+                    .baseUnit("milliseconds")
+                    .tag("backend", backend.url)
+                    .register(registry);
+            Gauge.builder("ai.breaker.state", backend, b -> b.state().ordinal())
+                    .description("Circuit state of the backend: 0 closed, 1 half-open, 2 open")
+                    .tag("backend", backend.url)
+                    .register(registry);
+        }
+        log.info("AI backends: {}", this.backends.stream().map(b -> b.url + " (weight " + b.weight + ")").toList());
+    }
+
+    public List<Backend> backends() {
+        return backends;
+    }
+
+    /**
+     * Picks the backend for the next request and counts the request against it, or returns
+     * empty when every backend's circuit is open. A returned backend must be passed to
+     * {@link #release} once the request is over.
+     */
+    public Optional<Backend> acquire() {
+        return acquire(null);
+    }
+
+    /**
+     * Like {@link #acquire()}, but prefers any backend other than {@code avoid}, for a retry or
+     * a duplicate of a request that is going badly there.
+     */
+    public Optional<Backend> acquire(Backend avoid) {
+        return acquire(avoid, true);
+    }
+
+    /**
+     * Like {@link #acquire(Backend)}, but never returns {@code avoid}: empty when no other backend
+     * can take the request, as when a duplicate on the same backend would gain nothing.
+     */
+    public Optional<Backend> acquireOther(Backend avoid) {
+        return acquire(avoid, false);
+    }
+
+    private Optional<Backend> acquire(Backend avoid, boolean orAvoided) {
+        // Another request may take the last half-open probe between choosing and reserving
+        for (int attempt = 0; attempt < backends.size(); attempt++) {
+            Backend best = cheapest(clock.getAsLong(), avoid);
+            if (best == null && avoid != null && orAvoided) best = cheapest(clock.getAsLong(), null);
+            if (best == null) break;
+            if (best.breaker.tryAcquire()) {
+                best.outstanding.incrementAndGet();
+                return Optional.of(best);
+            }
+        }
+        if (orAvoided) refused.increment();
+        return Optional.empty();
+    }
+
+    /** Time until the first open circuit lets a probe through. */
+    public Duration retryIn() {
+        long nanos = backends.stream().mapToLong(b -> b.breaker.retryInNanos()).min().orElse(0);
+        return Duration.ofNanos(nanos);
+    }
+
+    private Backend cheapest(long now, Backend avoid) {
+        int size = backends.size();
+        int offset = size > 1 ? ThreadLocalRandom.current().nextInt(size) : 0;
+        Backend best = null;
+        double bestCost = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            Backend backend = backends.get((offset + i) % size);
+            if (backend == avoid || !backend.breaker.allows()) continue;
+            double cost = backend.cost(now);
+            if (cost < bestCost) {
+                best = backend;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Reports how a request to {@code backend} went. Failures (connection errors, timeouts and
+     * overload responses) count against its circuit, and as slow calls in its latency, so a
+     * backend that fails fast does not look fast.
+     */
+    public void release(Backend backend, long elapsedNanos, boolean healthy) {
+        backend.outstanding.decrementAndGet();
+        long now = clock.getAsLong();
+        synchronized (backend) {
+            double latency = backend.latency(now);
+            double sample = healthy
+                    ? elapsedNanos
+                    : Math.max(elapsedNanos, Math.max(2 * latency, FAILURE_PENALTY_NANOS));
+            backend.latencyNanos = sample > latency ? sample : EWMA_ALPHA * sample + (1 - EWMA_ALPHA) * latency;
+            backend.sampledAt = now;
+        }
+        backend.breaker.record(elapsedNanos, !healthy);
+    }
+
+    /**
+     * Returns a backend whose request was cancelled or never sent. Nothing is learned about the
+     * backend, and a half-open probe it was counted as can be taken by the next request.
+     */
+    public void cancel(Backend backend) {
+        backend.outstanding.decrementAndGet();
+        backend.breaker.cancel();
+    }
+
+    private static CircuitBreaker.Listener transitions(MeterRegistry registry) {
+        return (breaker, from, to) -> {
+            Counter.builder("ai.breaker.transitions")
+                    .description("Circuit state changes per backend")
+                    .tag("backend", breaker.name())
+                    .tag("state", to.name().toLowerCase(Locale.ROOT))
+                    .register(registry)
+                    .increment();
+            if (to == CircuitBreaker.State.OPEN) {
+                log.warn("Circuit for AI backend {} is open ({} -> {}), failing its requests fast", breaker.name(), from, to);
+            } else {
+                log.info("Circuit for AI backend {}: {} -> {}", breaker.name(), from, to);
+            }
+        };
+    }
+
+    static List<Backend> parse(String baseUrl, String backends) {
+        List<Backend> parsed = new ArrayList<>();
+        if (backends != null) {
+            for (String entry : backends.split(",")) {
+                entry = entry.strip();
+                if (entry.isEmpty()) continue;
+                int bar = entry.lastIndexOf('|');
+                String url = bar < 0 ? entry : entry.substring(0, bar).strip();
+                int weight = 1;
+                if (bar >= 0) {
+                    try {
+                        weight = Integer.parseInt(entry.substring(bar + 1).strip());
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("app.ai.backends: bad weight in '" + entry + "'");
+                    }
+                    if (weight <= 0) throw new IllegalArgumentException("app.ai.backends: weight must be positive in '" + entry + "'");
+                }
+                parsed.add(new Backend(trimSlash(url), weight));
+            }
+        }
+        if (parsed.isEmpty()) parsed.add(new Backend(trimSlash(baseUrl), 1));
+        return List.copyOf(parsed);
+    }
+
+    private static String trimSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
@@ -0,0 +1,129 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.PageData;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Removes running headers and footers (book title, chapter name, page numbers) from the pages of a book.
+ * A line near the top or bottom of a page is boilerplate when the same line sits in the same place on
+ * many pages; in short lines numbers are ignored, so "Page 12 of 300" matches "Page 13 of 300", except in
+ * chapter headings, so "Chapter 2" is not taken for a repeat of "Chapter 1". Its first
+ * occurrence is kept, so a chapter title still opens its chapter; later repeats are dropped. A page is
+ * never emptied.
+ */
+public final class BoilerplateStripper {
+
+    private static final Pattern LINE_BREAK = Pattern.compile("\\R");
+    private static final Pattern DIGITS = Pattern.compile("[0-9٠-٩]+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final int EDGE_LINES = 3;
+    private static final int MAX_LINE_LENGTH = 120;
+    private static final int MAX_NUMBERED_WORDS = 6;
+    private static final int MIN_PAGES = 4;
+    private static final int MIN_REPEATS = 3;
+    private static final double MIN_SHARE = 0.05;
+
+    private BoilerplateStripper() {
+    }
+
+    /** The book with boilerplate lines removed from every page; the same instance if nothing repeats. */
+    public static BookData strip(BookData book) {
+        List<PageData> pages = book.pages();
+        if (pages.size() < MIN_PAGES) return book;
+
+        List<String[]> lines = new ArrayList<>(pages.size());
+        Map<String, Integer> top = new HashMap<>();
+        Map<String, Integer> bottom = new HashMap<>();
+        for (PageData page : pages) {
+            String[] pageLines = LINE_BREAK.split(page.text(), -1);
+            lines.add(pageLines);
+            edgeKeys(pageLines, true).forEach(key -> top.merge(key, 1, Integer::sum));
+            edgeKeys(pageLines, false).forEach(key -> bottom.merge(key, 1, Integer::sum));
+        }
+
+        int threshold = Math.max(MIN_REPEATS, (int) Math.ceil(pages.size() * MIN_SHARE));
+        Set<String> seenTop = new HashSet<>();
+        Set<String> seenBottom = new HashSet<>();
+        List<PageData> cleaned = new ArrayList<>(pages.size());
+        StringBuilder full = new StringBuilder();
+        boolean changed = false;
+        for (int p = 0; p < pages.size(); p++) {
+            String[] pageLines = lines.get(p);
+            boolean[] drop = new boolean[pageLines.length];
+            boolean marked = mark(pageLines, drop, true, top, threshold, seenTop);
+            marked |= mark(pageLines, drop, false, bottom, threshold, seenBottom);
+            if (marked && !keepsContent(pageLines, drop)) {
+                drop = new boolean[pageLines.length];
+                marked = false;
+            }
+            changed |= marked;
+
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < pageLines.length; i++) {
+                if (drop[i]) continue;
+                if (text.length() > 0) text.append('\n');
+                text.append(pageLines[i]);
+            }
+            String pageText = text.toString().trim();
+            cleaned.add(new PageData(pages.get(p).pageNumber(), pageText));
+            full.append(pageText).append("\n\n");
+        }
+        return changed ? new BookData(book.fileName(), cleaned, full.toString(), book.chapters(), book.duplicates()) : book;
+    }
+
+    /** Marks the repeated lines among the first (or last) non-blank lines of a page. */
+    private static boolean mark(String[] lines, boolean[] drop, boolean fromTop, Map<String, Integer> counts,
+                                int threshold, Set<String> seen) {
+        boolean marked = false;
+        int checked = 0;
+        for (int k = 0; k < lines.length && checked < EDGE_LINES; k++) {
+            int i = fromTop ? k : lines.length - 1 - k;
+            String key = key(lines[i]);
+            if (key == null) continue;
+            checked++;
+            if (counts.getOrDefault(key, 0) < threshold) break;
+            if (seen.add(key) && !key.equals("#")) continue;
+            drop[i] = true;
+            marked = true;
+        }
+        return marked;
+    }
+
+    private static boolean keepsContent(String[] lines, boolean[] drop) {
+        for (int i = 0; i < lines.length; i++) {
+            if (!drop[i] && !lines[i].isBlank()) return true;
+        }
+        return false;
+    }
+
+    private static Set<String> edgeKeys(String[] lines, boolean fromTop) {
+        Set<String> keys = new HashSet<>();
+        for (int k = 0; k < lines.length && keys.size() < EDGE_LINES; k++) {
+            String key = key(lines[fromTop ? k : lines.length - 1 - k]);
+            if (key != null) keys.add(key);
+        }
+        return keys;
+    }
+
+    /**
+     * The line with case and spacing normalized (and numbers, in short lines other than chapter headings),
+     * or null for blank and long lines.
+     */
+    static String key(String line) {
+        String trimmed = line.strip();
+        if (trimmed.isEmpty() || trimmed.length() > MAX_LINE_LENGTH) return null;
+        String collapsed = WHITESPACE.matcher(trimmed).replaceAll(" ").toLowerCase();
+        int words = collapsed.split(" ").length;
+        return words <= MAX_NUMBERED_WORDS && !ChapterDetector.isHeading(trimmed)
+                ? DIGITS.matcher(collapsed).replaceAll("#")
+                : collapsed;
+    }
+}
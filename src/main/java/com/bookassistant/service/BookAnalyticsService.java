@@ -0,0 +1,219 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookAnalytics;
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.Chapter;
+import com.bookassistant.model.PageData;
+import com.bookassistant.session.BookLoadedEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes {@link BookAnalytics} without the model. Counting runs as a fork-join task over page ranges
+ * whose partial {@link TermCounter}s are merged on the way back up. Analytics start as soon as a book is
+ * loaded and are cached per content hash.
+ */
+@Service
+public class BookAnalyticsService {
+
+    private static final Logger log = LoggerFactory.getLogger(BookAnalyticsService.class);
+    private static final int PAGES_PER_TASK = 8;
+    private static final int CACHED_BOOKS = 64;
+    private static final int KEYWORDS = 10;
+    private static final int MIN_KEYWORD_LENGTH = 3;
+
+    private final ForkJoinPool pool;
+    private final int wordsPerMinute;
+    private final Map<String, CompletableFuture<BookAnalytics>> cache = Collections.synchronizedMap(
+            new LinkedHashMap<>(CACHED_BOOKS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<BookAnalytics>> eldest) {
+                    return size() > CACHED_BOOKS;
+                }
+            });
+
+    public BookAnalyticsService(@Value("${app.analytics.parallelism:0}") int parallelism,
+                                @Value("${app.analytics.words-per-minute:200}") int wordsPerMinute) {
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.wordsPerMinute = Math.max(1, wordsPerMinute);
+    }
+
+    @EventListener
+    public void onBookLoaded(BookLoadedEvent event) {
+        analyticsAsync(event.contentHash(), event.book());
+    }
+
+    public BookAnalytics analytics(String contentHash, BookData book) {
+        return analyticsAsync(contentHash, book).join();
+    }
+
+    public CompletableFuture<BookAnalytics> analyticsAsync(String contentHash, BookData book) {
+        synchronized (cache) {
+            return cache.computeIfAbsent(contentHash, hash -> CompletableFuture.supplyAsync(() -> compute(book), pool));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    BookAnalytics compute(BookData book) {
+        long start = System.nanoTime();
+        List<PageData> pages = book.pages();
+        List<Chapter> chapters = book.chapters();
+
+        List<Counts> chapterCounts = new ArrayList<>();
+        Counts bookCounts = new Counts(0);
+        String[] pageLanguages = new String[pages.size()];
+        if (chapters.isEmpty()) {
+            bookCounts = pool.invoke(new CountTask(pages, 0, pages.size(), pageLanguages));
+        } else {
+            for (Chapter chapter : chapters) {
+                int from = firstIndexAtOrAfter(pages, chapter.startPage());
+                int to = firstIndexAtOrAfter(pages, chapter.endPage() + 1);
+                Counts counts = pool.invoke(new CountTask(pages, from, to, pageLanguages));
+                chapterCounts.add(counts);
+                bookCounts.merge(counts);
+            }
+            // Pages before the first and after the last chapter still count towards the book
+            int firstChapterPage = firstIndexAtOrAfter(pages, chapters.get(0).startPage());
+            int afterLastChapter = firstIndexAtOrAfter(pages, chapters.get(chapters.size() - 1).endPage() + 1);
+            bookCounts.merge(pool.invoke(new CountTask(pages, 0, firstChapterPage, pageLanguages)));
+            bookCounts.merge(pool.invoke(new CountTask(pages, afterLastChapter, pages.size(), pageLanguages)));
+        }
+        for (int i = 0; i < pageLanguages.length; i++) {
+            if (pageLanguages[i] == null) pageLanguages[i] = "";
+        }
+
+        List<BookAnalytics.ChapterAnalytics> chapterAnalytics = new ArrayList<>();
+        TermCounter chapterFrequency = new TermCounter();
+        chapterCounts.forEach(c -> c.terms.forEach((term, count) -> chapterFrequency.add(term)));
+        for (int i = 0; i < chapters.size(); i++) {
+            Chapter chapter = chapters.get(i);
+            Counts counts = chapterCounts.get(i);
+            double chapterTotal = chapters.size();
+            List<String> keywords = counts.terms.top(KEYWORDS, (term, count) -> isKeyword(term)
+                    ? count * Math.log(1 + chapterTotal / chapterFrequency.get(term)) : 0);
+            chapterAnalytics.add(new BookAnalytics.ChapterAnalytics(chapter.number(), chapter.title(),
+                    chapter.startPage(), chapter.endPage(), counts.words, minutes(counts.words), keywords));
+        }
+
+        long words = bookCounts.words;
+        int distinct = bookCounts.terms.size();
+        BookAnalytics analytics = new BookAnalytics(book.fileName(), pages.size(), words, distinct,
+                words == 0 ? 0 : (double) distinct / words, minutes(words),
+                List.of(pageLanguages),
+                bookCounts.terms.top(KEYWORDS, (term, count) -> isKeyword(term) ? count : 0),
+                chapterAnalytics);
+        log.info("Analytics for {} ({} pages, {} words) in {} ms", book.fileName(), pages.size(), words,
+                (System.nanoTime() - start) / 1_000_000);
+        return analytics;
+    }
+
+    private int minutes(long words) {
+        return (int) Math.ceil((double) words / wordsPerMinute);
+    }
+
+    private static boolean isKeyword(String term) {
+        return term.length() >= MIN_KEYWORD_LENGTH && !TextNormalizer.isStopword(term)
+                && !term.chars().allMatch(Character::isDigit);
+    }
+
+    private static int firstIndexAtOrAfter(List<PageData> pages, int pageNumber) {
+        int low = 0;
+        int high = pages.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (pages.get(mid).pageNumber() < pageNumber) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /** Word counts of a page range. */
+    private static final class Counts {
+        final TermCounter terms;
+        long words;
+
+        Counts(int expectedTerms) {
+            this.terms = new TermCounter(Math.max(16, expectedTerms));
+        }
+
+        void merge(Counts other) {
+            terms.addAll(other.terms);
+            words += other.words;
+        }
+    }
+
+    /**
+     * Counts pages [from, to), splitting in halves down to a few pages per task. Tasks are
+     * Serializable only through ForkJoinTask and are never serialized.
+     */
+    private static final class CountTask extends RecursiveTask<Counts> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<PageData> pages;
+        private final int from;
+        private final int to;
+        private final String[] pageLanguages;
+
+        CountTask(List<PageData> pages, int from, int to, String[] pageLanguages) {
+            this.pages = pages;
+            this.from = from;
+            this.to = to;
+            this.pageLanguages = pageLanguages;
+        }
+
+        @Override
+        protected Counts compute() {
+            if (to - from <= PAGES_PER_TASK) {
+                Counts counts = new Counts(256 * (to - from));
+                for (int i = from; i < to; i++) {
+                    String text = pages.get(i).text();
+                    pageLanguages[i] = language(text);
+                    for (String term : TextNormalizer.terms(text)) {
+                        counts.terms.add(term);
+                        counts.words++;
+                    }
+                }
+                return counts;
+            }
+            int mid = (from + to) >>> 1;
+            CountTask left = new CountTask(pages, from, mid, pageLanguages);
+            left.fork();
+            Counts right = new CountTask(pages, mid, to, pageLanguages).compute();
+            Counts counts = left.join();
+            counts.merge(right);
+            return counts;
+        }
+
+        /** "ar" or "en" by majority of letters, "" for pages without letters. */
+        private static String language(String text) {
+            int arabic = 0;
+            int latin = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c >= '؀' && c <= 'ۿ') arabic++;
+                else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) latin++;
+            }
+            if (arabic == 0 && latin == 0) return "";
+            return arabic >= latin ? "ar" : "en";
+        }
+    }
+}
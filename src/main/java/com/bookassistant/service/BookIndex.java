@@ -0,0 +1,170 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.PageData;
+import com.bookassistant.model.SearchHit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * In-memory inverted index over the pages of one book. Each term maps to the pages it
+ * appears on with its frequency there; queries are ranked with BM25.
+ */
+public class BookIndex implements SearchShard {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int SNIPPET_LENGTH = 200;
+
+    private final String fileName;
+    private final List<PageData> pages;
+    private final int[] pageLengths;
+    private final double averagePageLength;
+    private final Map<String, Postings> postings;
+
+    private BookIndex(String fileName, List<PageData> pages, int[] pageLengths, Map<String, Postings> postings) {
+        this.fileName = fileName;
+        this.pages = pages;
+        this.pageLengths = pageLengths;
+        this.averagePageLength = Math.max(1.0, Arrays.stream(pageLengths).average().orElse(1.0));
+        this.postings = postings;
+    }
+
+    public static BookIndex build(BookData book) {
+        List<PageData> pages = book.pages();
+        int[] pageLengths = new int[pages.size()];
+        Map<String, PostingsBuilder> builders = new HashMap<>();
+
+        for (int i = 0; i < pages.size(); i++) {
+            List<String> terms = TextNormalizer.terms(pages.get(i).text());
+            pageLengths[i] = terms.size();
+            for (String term : terms) {
+                builders.computeIfAbsent(term, t -> new PostingsBuilder()).add(i);
+            }
+        }
+
+        Map<String, Postings> postings = new HashMap<>(builders.size() * 2);
+        builders.forEach((term, builder) -> postings.put(term, builder.build()));
+        return new BookIndex(book.fileName(), pages, pageLengths, postings);
+    }
+
+    @Override
+    public String fileName() {
+        return fileName;
+    }
+
+    @Override
+    public int pageCount() {
+        return pages.size();
+    }
+
+    @Override
+    public int termCount() {
+        return postings.size();
+    }
+
+    List<PageData> pages() {
+        return pages;
+    }
+
+    int[] pageLengths() {
+        return pageLengths;
+    }
+
+    /** Visits every term with its postings as parallel arrays of page positions and in-page frequencies. */
+    void forEachTerm(PostingsVisitor visitor) {
+        postings.forEach((term, p) -> visitor.visit(term, p.pages, p.freqs));
+    }
+
+    interface PostingsVisitor {
+        void visit(String term, int[] pages, int[] freqs);
+    }
+
+    @Override
+    public List<SearchHit> search(List<String> queryTerms, int limit) {
+        Map<Integer, Double> scores = new HashMap<>();
+        for (String term : queryTerms) {
+            Postings p = postings.get(term);
+            if (p == null) continue;
+            double idf = idf(pages.size(), p.pages.length);
+            for (int i = 0; i < p.pages.length; i++) {
+                int page = p.pages[i];
+                scores.merge(page, bm25(idf, p.freqs[i], pageLengths[page], averagePageLength), Double::sum);
+            }
+        }
+
+        List<SearchHit> hits = new ArrayList<>();
+        for (Map.Entry<Integer, Double> entry : topPages(scores, limit)) {
+            PageData page = pages.get(entry.getKey());
+            hits.add(new SearchHit(fileName, page.pageNumber(), entry.getValue(), snippet(page.text(), queryTerms)));
+        }
+        return hits;
+    }
+
+    /** Picks the {@code limit} highest-scoring page positions, best first. */
+    static List<Map.Entry<Integer, Double>> topPages(Map<Integer, Double> scores, int limit) {
+        PriorityQueue<Map.Entry<Integer, Double>> top =
+                new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+            top.offer(entry);
+            if (top.size() > limit) top.poll();
+        }
+        List<Map.Entry<Integer, Double>> sorted = new ArrayList<>(top);
+        sorted.sort(Map.Entry.<Integer, Double>comparingByValue().reversed());
+        return sorted;
+    }
+
+    static double idf(int pageCount, int documentFrequency) {
+        return Math.log(1 + (pageCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    static double bm25(double idf, int tf, int pageLength, double averagePageLength) {
+        double norm = K1 * (1 - B + B * pageLength / averagePageLength);
+        return idf * tf * (K1 + 1) / (tf + norm);
+    }
+
+    static String snippet(String text, List<String> queryTerms) {
+        if (text == null) return "";
+        String lower = text.toLowerCase();
+        int at = -1;
+        for (String term : queryTerms) {
+            at = lower.indexOf(term);
+            if (at >= 0) break;
+        }
+        int start = Math.max(0, at - SNIPPET_LENGTH / 4);
+        int end = Math.min(text.length(), start + SNIPPET_LENGTH);
+        return text.substring(start, end).replaceAll("\\s+", " ").trim();
+    }
+
+    private record Postings(int[] pages, int[] freqs) {
+    }
+
+    private static final class PostingsBuilder {
+        private int[] pages = new int[4];
+        private int[] freqs = new int[4];
+        private int size;
+
+        void add(int page) {
+            if (size > 0 && pages[size - 1] == page) {
+                freqs[size - 1]++;
+                return;
+            }
+            if (size == pages.length) {
+                pages = Arrays.copyOf(pages, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            pages[size] = page;
+            freqs[size] = 1;
+            size++;
+        }
+
+        Postings build() {
+            return new Postings(Arrays.copyOf(pages, size), Arrays.copyOf(freqs, size));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.Chapter;
+import com.bookassistant.model.PageData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Builds the chapter table of a book, either from outline entries or, when the PDF has no
+ * usable outline, from headings such as "Chapter 3" or "الفصل الثالث" near the top of a page.
+ */
+public final class ChapterDetector {
+
+    private static final Pattern HEADING = Pattern.compile(
+            "^(?:(?i:chapter|part|section)\\s+(?:\\d+|[ivxlc]+|[a-z]+)\\b"
+                    + "|(?:الفصل|الباب|الجزء|القسم)\\s+\\S+).{0,60}$");
+    private static final int HEADING_LINES = 3;
+    private static final int MAX_HEADING_LENGTH = 80;
+
+    private ChapterDetector() {
+    }
+
+    /** Turns (start page, title) pairs into chapters that run until the next chapter starts. */
+    public static List<Chapter> fromStarts(Map<Integer, String> starts, int pageCount) {
+        List<Chapter> chapters = new ArrayList<>();
+        List<Map.Entry<Integer, String>> entries = new ArrayList<>(new TreeMap<>(starts).entrySet());
+        for (int i = 0; i < entries.size(); i++) {
+            int start = entries.get(i).getKey();
+            if (start < 1 || start > pageCount) continue;
+            int end = i + 1 < entries.size() ? Math.min(pageCount, entries.get(i + 1).getKey() - 1) : pageCount;
+            if (end < start) continue;
+            chapters.add(new Chapter(chapters.size() + 1, entries.get(i).getValue(), start, end));
+        }
+        return chapters;
+    }
+
+    /** Detects chapter headings in page text. Pages before the first heading are left out. */
+    public static List<Chapter> detect(List<PageData> pages) {
+        Map<Integer, String> starts = new TreeMap<>();
+        for (PageData page : pages) {
+            String heading = heading(page.text());
+            if (heading != null) {
+                starts.putIfAbsent(page.pageNumber(), heading);
+            }
+        }
+        int pageCount = pages.isEmpty() ? 0 : pages.get(pages.size() - 1).pageNumber();
+        return fromStarts(starts, pageCount);
+    }
+
+    /** Whether the line reads like a chapter heading, such as "Chapter 3" or "الفصل الثالث". */
+    static boolean isHeading(String line) {
+        String trimmed = line.strip();
+        return trimmed.length() <= MAX_HEADING_LENGTH && HEADING.matcher(trimmed).matches();
+    }
+
+    private static String heading(String text) {
+        if (text == null || text.isBlank()) return null;
+        String[] lines = text.strip().split("\\R", HEADING_LINES + 2);
+        int checked = 0;
+        for (int i = 0; i < lines.length && checked < HEADING_LINES; i++) {
+            String line = lines[i].strip();
+            if (line.isEmpty()) continue;
+            checked++;
+            if (isHeading(line)) {
+                String next = i + 1 < lines.length ? lines[i + 1].strip() : "";
+                boolean bareNumber = line.split("\\s+").length <= 2;
+                return bareNumber && !next.isEmpty() && next.length() <= MAX_HEADING_LENGTH
+                        ? line + " - " + next
+                        : line;
+            }
+        }
+        return null;
+    }
+}
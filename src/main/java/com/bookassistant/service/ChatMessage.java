@@ -0,0 +1,13 @@
+package com.bookassistant.service;
+
+/** One earlier message of a conversation, sent between the system prompt and the new question. */
+public record ChatMessage(String role, String content) {
+
+    public static ChatMessage user(String content) {
+        return new ChatMessage("user", content);
+    }
+
+    public static ChatMessage assistant(String content) {
+        return new ChatMessage("assistant", content);
+    }
+}
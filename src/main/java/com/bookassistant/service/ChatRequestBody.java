@@ -0,0 +1,211 @@
+package com.bookassistant.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request body for a chat completion, written by a Jackson generator while the HTTP client
+ * sends it. The prompt strings go through the generator's small encoding buffer in slices
+ * and leave as a chunked upload, so a whole-book prompt is never held a second time as JSON
+ * text or as UTF-8 bytes. Only a few chunks are queued between writer and sender, which keeps
+ * memory per request flat whatever the size of the book.
+ */
+final class ChatRequestBody {
+
+    static final int CHUNK_BYTES = 16 * 1024;
+    private static final int QUEUED_CHUNKS = 4;
+    private static final byte[] END = new byte[0];
+
+    private ChatRequestBody() {
+    }
+
+    /**
+     * A publisher that writes the envelope on a virtual thread each time the client subscribes.
+     * The writer gives up if the sender stops reading for longer than {@code stall}.
+     */
+    static HttpRequest.BodyPublisher publisher(JsonFactory factory, String model, String systemPrompt,
+                                               String userContent, Duration stall) {
+        return publisher(factory, model, systemPrompt, List.of(), userContent, stall);
+    }
+
+    /** A publisher for a conversation: earlier turns go between the system prompt and the new user message. */
+    static HttpRequest.BodyPublisher publisher(JsonFactory factory, String model, String systemPrompt,
+                                               List<ChatMessage> history, String userContent, Duration stall) {
+        return HttpRequest.BodyPublishers.ofInputStream(() -> {
+            Pipe pipe = new Pipe(stall);
+            Thread.ofVirtual().name("ai-request-body").start(() -> {
+                try {
+                    // Only a complete envelope ends the stream; a failure must not look like one.
+                    OutputStream out = pipe.sink();
+                    JsonGenerator gen = factory.createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                    write(gen, model, systemPrompt, history, userContent);
+                    gen.close();
+                    out.close();
+                } catch (IOException | RuntimeException e) {
+                    pipe.fail(e);
+                }
+            });
+            return pipe.source();
+        });
+    }
+
+    /** Writes {@code {"model":..,"stream":false,"messages":[system, user]}}. */
+    static void write(JsonGenerator gen, String model, String systemPrompt, String userContent) throws IOException {
+        write(gen, model, systemPrompt, List.of(), userContent);
+    }
+
+    /** Writes {@code {"model":..,"stream":false,"messages":[system, history.., user]}}. */
+    static void write(JsonGenerator gen, String model, String systemPrompt, List<ChatMessage> history,
+                      String userContent) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("model", model);
+        gen.writeBooleanField("stream", false);
+        gen.writeArrayFieldStart("messages");
+        writeMessage(gen, "system", systemPrompt);
+        for (ChatMessage message : history) writeMessage(gen, message.role(), message.content());
+        writeMessage(gen, "user", userContent);
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    private static void writeMessage(JsonGenerator gen, String role, String content) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("role", role);
+        gen.writeStringField("content", content);
+        gen.writeEndObject();
+    }
+
+    /**
+     * Bounded hand-off of byte chunks from one writer thread to whichever thread the HTTP client
+     * reads on. Unlike piped streams it does not tie either end to a particular thread.
+     */
+    static final class Pipe {
+
+        private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(QUEUED_CHUNKS);
+        private final long stallMillis;
+        private volatile boolean closed;
+        private volatile Exception failure;
+
+        Pipe(Duration stall) {
+            this.stallMillis = stall.toMillis();
+        }
+
+        OutputStream sink() {
+            return new OutputStream() {
+                private byte[] chunk = new byte[CHUNK_BYTES];
+                private int length;
+
+                @Override
+                public void write(int b) throws IOException {
+                    if (length == chunk.length) flush();
+                    chunk[length++] = (byte) b;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    while (len > 0) {
+                        if (length == chunk.length) flush();
+                        int n = Math.min(len, chunk.length - length);
+                        System.arraycopy(b, off, chunk, length, n);
+                        length += n;
+                        off += n;
+                        len -= n;
+                    }
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    if (length == 0) return;
+                    byte[] full = length == chunk.length ? chunk : Arrays.copyOf(chunk, length);
+                    put(full);
+                    chunk = new byte[CHUNK_BYTES];
+                    length = 0;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                    put(END);
+                }
+            };
+        }
+
+        InputStream source() {
+            return new InputStream() {
+                private byte[] chunk = new byte[0];
+                private int position;
+                private boolean done;
+
+                @Override
+                public int read() throws IOException {
+                    byte[] one = new byte[1];
+                    return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (len == 0) return 0;
+                    while (position == chunk.length) {
+                        if (done) return -1;
+                        next();
+                    }
+                    int n = Math.min(len, chunk.length - position);
+                    System.arraycopy(chunk, position, b, off, n);
+                    position += n;
+                    return n;
+                }
+
+                private void next() throws IOException {
+                    try {
+                        byte[] taken = chunks.poll(stallMillis, TimeUnit.MILLISECONDS);
+                        if (failure != null) throw new IOException("Could not write request body", failure);
+                        if (taken == null) throw new IOException("Request body writer stalled");
+                        if (taken == END) done = true;
+                        chunk = taken;
+                        position = 0;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while reading request body");
+                    }
+                }
+
+                @Override
+                public void close() {
+                    closed = true;
+                    chunks.clear();
+                }
+            };
+        }
+
+        void fail(Exception e) {
+            failure = e;
+            chunks.offer(END);
+        }
+
+        private void put(byte[] chunk) throws IOException {
+            try {
+                long waited = 0;
+                while (!chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                    if (closed) throw new IOException("Request body no longer read");
+                    waited += 100;
+                    if (waited >= stallMillis) throw new IOException("Request body not read for " + stallMillis + " ms");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing request body");
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.bookassistant.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Pulls the reply text and token usage out of a chat completion response as it is read,
+ * without building a tree or map of the document. Understands the OpenAI-compatible shape
+ * ({@code choices[0].message.content}, {@code usage}) and Ollama's native one
+ * ({@code message.content}, {@code prompt_eval_count}, {@code eval_count}); everything
+ * else in the response is skipped unread.
+ */
+final class ChatResponseReader {
+
+    /** Reply text, or null when the response carried none; token counts are -1 when absent. */
+    record Reply(String content, long promptTokens, long completionTokens) {
+    }
+
+    private ChatResponseReader() {
+    }
+
+    static Reply read(JsonFactory factory, InputStream body) throws IOException {
+        try (JsonParser parser = factory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) return new Reply(null, -1, -1);
+
+            String content = null;
+            long promptTokens = -1;
+            long completionTokens = -1;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "choices" -> {
+                        String choice = firstChoice(parser, value);
+                        if (choice != null) content = choice;
+                    }
+                    case "message" -> {
+                        String message = messageContent(parser, value);
+                        if (content == null) content = message;
+                    }
+                    case "usage" -> {
+                        if (value != JsonToken.START_OBJECT) {
+                            parser.skipChildren();
+                        } else {
+                            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                                String name = parser.currentName();
+                                JsonToken count = parser.nextToken();
+                                if (!count.isNumeric()) parser.skipChildren();
+                                else if ("prompt_tokens".equals(name)) promptTokens = parser.getLongValue();
+                                else if ("completion_tokens".equals(name)) completionTokens = parser.getLongValue();
+                            }
+                        }
+                    }
+                    case "prompt_eval_count" -> {
+                        if (value.isNumeric()) promptTokens = parser.getLongValue();
+                    }
+                    case "eval_count" -> {
+                        if (value.isNumeric()) completionTokens = parser.getLongValue();
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            return new Reply(content, promptTokens, completionTokens);
+        }
+    }
+
+    /** Content of the first choice's message; later choices are skipped. */
+    private static String firstChoice(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        String content = null;
+        boolean first = true;
+        for (JsonToken item = parser.nextToken(); item != JsonToken.END_ARRAY; item = parser.nextToken()) {
+            if (first && item == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    JsonToken field = parser.nextToken();
+                    if ("message".equals(name)) content = messageContent(parser, field);
+                    else parser.skipChildren();
+                }
+            } else {
+                parser.skipChildren();
+            }
+            first = false;
+        }
+        return content;
+    }
+
+    /** The {@code content} string of a message object, with the parser left after the object. */
+    private static String messageContent(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        String content = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken field = parser.nextToken();
+            if ("content".equals(name) && field == JsonToken.VALUE_STRING) content = parser.getText();
+            else parser.skipChildren();
+        }
+        return content;
+    }
+}
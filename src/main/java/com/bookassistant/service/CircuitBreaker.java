@@ -0,0 +1,183 @@
+package com.bookassistant.service;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker for one model endpoint. While closed it keeps the outcome of the last
+ * {@code window} calls and opens when too many of them failed or were slow, or when several
+ * failed in a row. An open breaker refuses calls until its open time has passed; then it lets
+ * a few probe calls through (half-open) and closes again only if they all succeed quickly.
+ */
+final class CircuitBreaker {
+
+    enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    interface Listener {
+        void onTransition(CircuitBreaker breaker, State from, State to);
+    }
+
+    /**
+     * @param window              calls remembered for the failure and slow-call rates
+     * @param minimumCalls        calls needed in the window before the rates are judged
+     * @param failureRate         share of failed calls that opens the breaker
+     * @param slowCallNanos       duration from which a call counts as slow
+     * @param slowCallRate        share of slow calls that opens the breaker
+     * @param consecutiveFailures failures in a row that open the breaker at once
+     * @param openNanos           how long an open breaker refuses calls
+     * @param halfOpenProbes      calls let through, and required to succeed, while half-open
+     */
+    record Settings(int window, int minimumCalls, double failureRate, long slowCallNanos, double slowCallRate,
+                    int consecutiveFailures, long openNanos, int halfOpenProbes) {
+
+        Settings {
+            window = Math.max(1, window);
+            minimumCalls = Math.max(1, Math.min(minimumCalls, window));
+            consecutiveFailures = Math.max(1, consecutiveFailures);
+            halfOpenProbes = Math.max(1, halfOpenProbes);
+        }
+    }
+
+    private final String name;
+    private final Settings settings;
+    private final LongSupplier clock;
+    private final Listener listener;
+
+    private State state = State.CLOSED;
+    // Ring of recent outcomes while closed
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int next;
+    private int calls;
+    private int failures;
+    private int slowCalls;
+    private int failuresInARow;
+    private long openUntil;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    CircuitBreaker(String name, Settings settings, LongSupplier clock, Listener listener) {
+        this.name = name;
+        this.settings = settings;
+        this.clock = clock;
+        this.listener = listener;
+        this.failed = new boolean[settings.window()];
+        this.slow = new boolean[settings.window()];
+    }
+
+    String name() {
+        return name;
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    /** Whether {@link #tryAcquire} would let a call through now, without reserving it. */
+    synchronized boolean allows() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> clock.getAsLong() >= openUntil;
+            case HALF_OPEN -> probesStarted < settings.halfOpenProbes();
+        };
+    }
+
+    /** Reserves a call; every successful reservation must be followed by {@link #record}. */
+    boolean tryAcquire() {
+        State from;
+        State to;
+        synchronized (this) {
+            from = state;
+            if (state == State.OPEN) {
+                if (clock.getAsLong() < openUntil) return false;
+                state = State.HALF_OPEN;
+                probesStarted = 0;
+                probesSucceeded = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesStarted >= settings.halfOpenProbes()) return false;
+                probesStarted++;
+            }
+            to = state;
+        }
+        report(from, to);
+        return true;
+    }
+
+    /**
+     * Gives back a reservation whose call was cancelled, so it says nothing about the backend.
+     * A half-open probe slot is freed for the next call.
+     */
+    synchronized void cancel() {
+        if (state == State.HALF_OPEN && probesStarted > probesSucceeded) probesStarted--;
+    }
+
+    void record(long elapsedNanos, boolean failure) {
+        boolean slowCall = elapsedNanos >= settings.slowCallNanos();
+        State from;
+        State to;
+        synchronized (this) {
+            from = state;
+            switch (state) {
+                case HALF_OPEN -> {
+                    if (failure || slowCall) open();
+                    else if (++probesSucceeded >= settings.halfOpenProbes()) close();
+                }
+                case CLOSED -> {
+                    add(failure, slowCall);
+                    failuresInARow = failure ? failuresInARow + 1 : 0;
+                    if (tripped()) open();
+                }
+                case OPEN -> {
+                    // A call that started before the breaker opened; it changes nothing.
+                }
+            }
+            to = state;
+        }
+        report(from, to);
+    }
+
+    /** Time until an open breaker lets a probe through; zero when it is not open. */
+    synchronized long retryInNanos() {
+        return state == State.OPEN ? Math.max(0, openUntil - clock.getAsLong()) : 0;
+    }
+
+    private boolean tripped() {
+        if (failuresInARow >= settings.consecutiveFailures()) return true;
+        if (calls < settings.minimumCalls()) return false;
+        return failures >= settings.failureRate() * calls || slowCalls >= settings.slowCallRate() * calls;
+    }
+
+    private void add(boolean failure, boolean slowCall) {
+        if (calls == failed.length) {
+            if (failed[next]) failures--;
+            if (slow[next]) slowCalls--;
+        } else {
+            calls++;
+        }
+        failed[next] = failure;
+        slow[next] = slowCall;
+        if (failure) failures++;
+        if (slowCall) slowCalls++;
+        next = (next + 1) % failed.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = clock.getAsLong() + settings.openNanos();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        next = 0;
+        calls = 0;
+        failures = 0;
+        slowCalls = 0;
+        failuresInARow = 0;
+    }
+
+    private void report(State from, State to) {
+        if (from != to && listener != null) listener.onTransition(this, from, to);
+    }
+}
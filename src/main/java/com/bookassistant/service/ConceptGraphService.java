@@ -0,0 +1,199 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.ConceptGraph;
+import com.bookassistant.model.TextChunk;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Builds concept maps as graphs. Each chunk is asked once for its concepts and relations as JSON,
+ * the per-chunk graph is cached by chunk content, and the graph of any page range is the merge of
+ * its chunks' graphs, with concepts deduplicated by normalized label.
+ */
+@Service
+public class ConceptGraphService {
+
+    private static final Logger log = LoggerFactory.getLogger(ConceptGraphService.class);
+
+    private static final String PROMPT_EN = "Extract the most important concepts of this text and the relationships "
+            + "between them. Answer only with JSON of the form {\"nodes\": [{\"id\": \"...\", \"label\": \"...\"}], "
+            + "\"edges\": [{\"source\": \"node id\", \"target\": \"node id\", \"label\": \"relationship\"}]}.";
+    private static final String PROMPT_AR = "استخرج أهم المفاهيم في هذا النص والعلاقات بينها. "
+            + "أجب فقط بصيغة JSON بالشكل {\"nodes\": [{\"id\": \"...\", \"label\": \"...\"}], "
+            + "\"edges\": [{\"source\": \"معرف المفهوم\", \"target\": \"معرف المفهوم\", \"label\": \"العلاقة\"}]}.";
+
+    private final AiService aiService;
+    private final TextChunker chunker;
+    private final ObjectMapper mapper;
+    private final Executor executor;
+    private final Map<String, CompletableFuture<ConceptGraph>> cache;
+
+    public ConceptGraphService(AiService aiService,
+                               TextChunker chunker,
+                               ObjectMapper mapper,
+                               @Qualifier("aiExecutor") Executor executor,
+                               @Value("${app.concept.cache-size:2000}") int cacheSize) {
+        this.aiService = aiService;
+        this.chunker = chunker;
+        this.mapper = mapper;
+        this.executor = executor;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<ConceptGraph>> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * The merged graph of the chunks covering the range. Chunks whose call failed are left out;
+     * when every chunk failed, the graph carries the first upstream error.
+     */
+    public ConceptGraph graph(BookData book, String bookHash, int startPage, int endPage, String lang) {
+        List<TextChunk> chunks = chunker.cover(bookHash, book, startPage, endPage);
+        List<CompletableFuture<ConceptGraph>> futures = chunks.stream().map(c -> chunkGraph(c, lang)).toList();
+        List<ConceptGraph> graphs = new ArrayList<>();
+        ConceptGraph firstFailure = null;
+        for (CompletableFuture<ConceptGraph> future : futures) {
+            ConceptGraph graph = future.join();
+            if (graph.error() == null) {
+                graphs.add(graph);
+            } else if (firstFailure == null) {
+                firstFailure = graph;
+            }
+        }
+        if (firstFailure != null) {
+            log.warn("Concept graph for pages {}-{}: {} of {} chunks failed",
+                    startPage, endPage, chunks.size() - graphs.size(), chunks.size());
+            if (graphs.isEmpty()) return firstFailure;
+        }
+        ConceptGraph merged = merge(graphs);
+        log.debug("Concept graph for pages {}-{}: {} chunks, {} nodes, {} edges",
+                startPage, endPage, chunks.size(), merged.nodes().size(), merged.edges().size());
+        return merged;
+    }
+
+    /** Renders a graph as a readable outline: each concept followed by its outgoing relations. */
+    public String describe(ConceptGraph graph, String lang) {
+        if (graph.error() != null) return graph.error();
+        if (graph.nodes().isEmpty()) {
+            return "en".equals(lang) ? "No concepts were found in these pages." : "لم يتم العثور على مفاهيم في هذه الصفحات.";
+        }
+        Map<String, String> labels = new HashMap<>();
+        graph.nodes().forEach(n -> labels.put(n.id(), n.label()));
+        StringBuilder out = new StringBuilder();
+        for (ConceptGraph.Node node : graph.nodes()) {
+            out.append("- **").append(node.label()).append("**\n");
+            for (ConceptGraph.Edge edge : graph.edges()) {
+                if (edge.source().equals(node.id())) {
+                    out.append("  - ").append(edge.label()).append(" → ").append(labels.get(edge.target())).append('\n');
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private CompletableFuture<ConceptGraph> chunkGraph(TextChunk chunk, String lang) {
+        String key = chunk.contentHash() + "|" + lang;
+        CompletableFuture<ConceptGraph> graph;
+        synchronized (cache) {
+            graph = cache.get(key);
+            if (graph == null) {
+                graph = CompletableFuture.supplyAsync(() -> ask(chunk, lang), executor);
+                cache.put(key, graph);
+            }
+        }
+        CompletableFuture<ConceptGraph> stored = graph;
+        return graph.handle((g, error) -> {
+            if (error != null || g.error() != null) cache.remove(key, stored);
+            if (error != null) {
+                log.warn("Concept graph for pages {}-{} failed", chunk.startPage(), chunk.endPage(), error);
+                return ConceptGraph.failed(AiService.ERROR_PREFIX + ": " + error.getMessage());
+            }
+            return g;
+        });
+    }
+
+    /** Carries the upstream error when the call failed, so the chunk is asked again next time. */
+    private ConceptGraph ask(TextChunk chunk, String lang) {
+        String answer = aiService.ask("en".equals(lang) ? PROMPT_EN : PROMPT_AR, chunk.text(), lang);
+        if (answer.startsWith(AiService.ERROR_PREFIX)) {
+            log.warn("Concept graph for pages {}-{} failed: {}", chunk.startPage(), chunk.endPage(), answer);
+            return ConceptGraph.failed(answer);
+        }
+        return parse(answer, chunk.startPage());
+    }
+
+    /** An answer without a readable graph counts as a failed call, so the chunk is asked again next time. */
+    ConceptGraph parse(String answer, int page) {
+        int start = answer.indexOf('{');
+        int end = answer.lastIndexOf('}');
+        if (start < 0 || end < start) {
+            log.warn("Concept graph answer for page {} has no JSON object", page);
+            return ConceptGraph.failed(AiService.ERROR_PREFIX + ": no concept graph could be read from the answer");
+        }
+        try {
+            JsonNode root = mapper.readTree(answer.substring(start, end + 1));
+            Map<String, String> ids = new HashMap<>();
+            List<ConceptGraph.Node> nodes = new ArrayList<>();
+            for (JsonNode node : root.path("nodes")) {
+                String label = node.path("label").asText(node.path("id").asText("")).trim();
+                String id = TextNormalizer.normalize(label);
+                if (id.isEmpty()) continue;
+                ids.put(node.path("id").asText(label), id);
+                nodes.add(new ConceptGraph.Node(id, label, 1, List.of(page)));
+            }
+            List<ConceptGraph.Edge> edges = new ArrayList<>();
+            for (JsonNode edge : root.path("edges")) {
+                String source = ids.get(edge.path("source").asText());
+                String target = ids.get(edge.path("target").asText());
+                if (source == null || target == null || source.equals(target)) continue;
+                edges.add(new ConceptGraph.Edge(source, target, edge.path("label").asText("").trim(), 1));
+            }
+            return merge(List.of(new ConceptGraph(nodes, edges)));
+        } catch (JsonProcessingException e) {
+            log.warn("Could not parse concept graph answer: {}", e.getOriginalMessage());
+            return ConceptGraph.failed(AiService.ERROR_PREFIX + ": no concept graph could be read from the answer");
+        }
+    }
+
+    /** Merges graphs by node id and by (source, target, relation); weights add up and pages are united. */
+    static ConceptGraph merge(List<ConceptGraph> graphs) {
+        Map<String, ConceptGraph.Node> nodes = new LinkedHashMap<>();
+        Map<String, ConceptGraph.Edge> edges = new LinkedHashMap<>();
+        for (ConceptGraph graph : graphs) {
+            for (ConceptGraph.Node node : graph.nodes()) {
+                nodes.merge(node.id(), node, (a, b) -> {
+                    TreeSet<Integer> pages = new TreeSet<>(a.pages());
+                    pages.addAll(b.pages());
+                    return new ConceptGraph.Node(a.id(), a.label(), a.weight() + b.weight(), List.copyOf(pages));
+                });
+            }
+            for (ConceptGraph.Edge edge : graph.edges()) {
+                String key = edge.source() + "\u0000" + edge.target() + "\u0000" + TextNormalizer.normalize(edge.label());
+                edges.merge(key, edge, (a, b) -> new ConceptGraph.Edge(a.source(), a.target(), a.label(), a.weight() + b.weight()));
+            }
+        }
+        List<ConceptGraph.Node> sortedNodes = new ArrayList<>(nodes.values());
+        sortedNodes.sort(Comparator.comparingInt(ConceptGraph.Node::weight).reversed());
+        return new ConceptGraph(List.copyOf(sortedNodes), List.copyOf(edges.values()));
+    }
+}
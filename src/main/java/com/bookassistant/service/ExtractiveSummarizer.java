@@ -0,0 +1,190 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.PageData;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Local summaries made of the book's own sentences, for previews and for when the upstream model
+ * fails. Sentences are scored by TF-IDF weight, the best candidates are re-ranked with TextRank over
+ * their cosine similarities, and near-repeats are skipped. Pages are tokenized in parallel.
+ */
+@Service
+public class ExtractiveSummarizer {
+
+    private static final Pattern SENTENCE_END = Pattern.compile("(?<=[.!?؟۔…])\\s+|\\n\\s*\\n");
+    private static final int MIN_TERMS = 5;
+    private static final int MAX_TERMS = 80;
+    private static final int CANDIDATES = 150;
+    private static final double DAMPING = 0.85;
+    private static final int ITERATIONS = 30;
+    private static final double MAX_OVERLAP = 0.5;
+
+    private final int sentences;
+
+    public ExtractiveSummarizer(@Value("${app.extractive.sentences:8}") int sentences) {
+        this.sentences = Math.max(1, sentences);
+    }
+
+    /** A bullet list of the most central sentences, in reading order, each with its page. */
+    public String summarize(List<PageData> pages, String lang) {
+        List<Sentence> picked = rank(pages, sentences);
+        if (picked.isEmpty()) {
+            return "en".equals(lang) ? "No text to summarize." : "لا يوجد نص للتلخيص.";
+        }
+        String pageLabel = "en".equals(lang) ? "p. " : "ص ";
+        StringBuilder out = new StringBuilder();
+        for (Sentence s : picked) {
+            out.append("- ").append(s.text).append(" (").append(pageLabel).append(s.page).append(")\n");
+        }
+        return out.toString();
+    }
+
+    /** Returns the model's answer, or a local summary of the pages when the answer is an upstream error. */
+    public String orFallback(String answer, List<PageData> pages, String lang) {
+        if (answer == null || !answer.startsWith(AiService.ERROR_PREFIX)) return answer;
+        String note = "en".equals(lang)
+                ? "_The AI service is unavailable right now. This is an automatic summary made of sentences from the book._\n\n"
+                : "_خدمة الذكاء الاصطناعي غير متاحة حاليا. هذا ملخص تلقائي مكوّن من جمل الكتاب._\n\n";
+        return note + summarize(pages, lang);
+    }
+
+    List<Sentence> rank(List<PageData> pages, int count) {
+        List<Sentence> all = pages.parallelStream()
+                .map(ExtractiveSummarizer::split)
+                .toList()
+                .stream()
+                .flatMap(List::stream)
+                .toList();
+        if (all.isEmpty()) return List.of();
+
+        Map<String, Integer> documentFrequency = new HashMap<>();
+        for (Sentence s : all) {
+            for (String term : s.termCounts.keySet()) documentFrequency.merge(term, 1, Integer::sum);
+        }
+        double total = all.size();
+        all.parallelStream().forEach(s -> s.weigh(documentFrequency, total));
+
+        List<Sentence> candidates = new ArrayList<>(all);
+        candidates.sort(Comparator.comparingDouble((Sentence s) -> s.tfidfScore).reversed());
+        candidates = candidates.subList(0, Math.min(CANDIDATES, candidates.size()));
+        textRank(candidates);
+
+        candidates.sort(Comparator.comparingDouble((Sentence s) -> s.rank).reversed());
+        List<Sentence> picked = new ArrayList<>();
+        for (Sentence s : candidates) {
+            if (picked.size() == count) break;
+            if (picked.stream().noneMatch(p -> cosine(p, s) > MAX_OVERLAP)) picked.add(s);
+        }
+        picked.sort(Comparator.comparingInt((Sentence s) -> s.page).thenComparingInt(s -> s.position));
+        return picked;
+    }
+
+    private static void textRank(List<Sentence> nodes) {
+        int n = nodes.size();
+        double[][] similarity = new double[n][n];
+        double[] outWeight = new double[n];
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double sim = cosine(nodes.get(i), nodes.get(j));
+                similarity[i][j] = sim;
+                similarity[j][i] = sim;
+                outWeight[i] += sim;
+                outWeight[j] += sim;
+            }
+        }
+        double[] rank = new double[n];
+        Arrays.fill(rank, 1.0 / n);
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            double[] next = new double[n];
+            for (int i = 0; i < n; i++) {
+                double sum = 0;
+                for (int j = 0; j < n; j++) {
+                    if (similarity[j][i] > 0) sum += similarity[j][i] / outWeight[j] * rank[j];
+                }
+                next[i] = (1 - DAMPING) / n + DAMPING * sum;
+            }
+            rank = next;
+        }
+        // Ties in the graph (e.g. isolated sentences) fall back to the TF-IDF order
+        for (int i = 0; i < n; i++) {
+            nodes.get(i).rank = rank[i] + 1e-6 * nodes.get(i).tfidfScore;
+        }
+    }
+
+    private static double cosine(Sentence a, Sentence b) {
+        Map<String, Double> small = a.weights.size() <= b.weights.size() ? a.weights : b.weights;
+        Map<String, Double> large = small == a.weights ? b.weights : a.weights;
+        double dot = 0;
+        for (Map.Entry<String, Double> e : small.entrySet()) {
+            Double other = large.get(e.getKey());
+            if (other != null) dot += e.getValue() * other;
+        }
+        return a.norm == 0 || b.norm == 0 ? 0 : dot / (a.norm * b.norm);
+    }
+
+    private static List<Sentence> split(PageData page) {
+        List<Sentence> sentences = new ArrayList<>();
+        int position = 0;
+        for (String raw : SENTENCE_END.split(page.text())) {
+            String text = raw.replaceAll("\\s+", " ").trim();
+            List<String> terms = TextNormalizer.terms(text);
+            if (terms.size() < MIN_TERMS || terms.size() > MAX_TERMS) continue;
+            Map<String, Integer> counts = new HashMap<>();
+            for (String term : terms) {
+                if (!TextNormalizer.isStopword(term) && !term.chars().allMatch(Character::isDigit)) counts.merge(term, 1, Integer::sum);
+            }
+            if (!counts.isEmpty()) sentences.add(new Sentence(page.pageNumber(), position++, text, counts));
+        }
+        return sentences;
+    }
+
+    static final class Sentence {
+        final int page;
+        final int position;
+        final String text;
+        final Map<String, Integer> termCounts;
+        Map<String, Double> weights = Map.of();
+        double norm;
+        double tfidfScore;
+        double rank;
+
+        Sentence(int page, int position, String text, Map<String, Integer> termCounts) {
+            this.page = page;
+            this.position = position;
+            this.text = text;
+            this.termCounts = termCounts;
+        }
+
+        void weigh(Map<String, Integer> documentFrequency, double total) {
+            Map<String, Double> w = new HashMap<>();
+            double sum = 0;
+            double squares = 0;
+            for (Map.Entry<String, Integer> e : termCounts.entrySet()) {
+                double weight = e.getValue() * Math.log(total / documentFrequency.get(e.getKey()) + 1);
+                w.put(e.getKey(), weight);
+                sum += weight;
+                squares += weight * weight;
+            }
+            weights = w;
+            norm = Math.sqrt(squares);
+            tfidfScore = sum / Math.sqrt(termCounts.size());
+        }
+
+        String text() {
+            return text;
+        }
+
+        int page() {
+            return page;
+        }
+    }
+}
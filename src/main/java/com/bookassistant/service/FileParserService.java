@@ -1,21 +1,32 @@
 package com.bookassistant.service;
 
 import com.bookassistant.model.BookData;
+import com.bookassistant.model.Chapter;
+import com.bookassistant.model.DuplicateGroup;
 import com.bookassistant.model.PageData;
 import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
 import org.apache.pdfbox.text.PDFTextStripper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class FileParserService {
 
+    private static final Logger log = LoggerFactory.getLogger(FileParserService.class);
+
     public BookData parse(MultipartFile file) throws IOException {
         byte[] bytes = file.getBytes();
         try (PDDocument doc = Loader.loadPDF(bytes)) {
@@ -31,8 +42,47 @@ public class FileParserService {
                 pages.add(new PageData(i, pageText));
                 full.append(pageText).append("\n\n");
             }
-            return new BookData(file.getOriginalFilename(), pages, full.toString());
+
+            List<Chapter> chapters = outlineChapters(doc);
+            if (chapters.size() < 2) {
+                chapters = ChapterDetector.detect(pages);
+            }
+            List<DuplicateGroup> duplicates = NearDuplicateDetector.detect(pages);
+            log.info("Parsed {}: {} pages, {} chapters, {} groups of duplicate pages",
+                    file.getOriginalFilename(), pageCount, chapters.size(), duplicates.size());
+            return new BookData(file.getOriginalFilename(), pages, full.toString(), chapters, duplicates);
         }
     }
-}
 
+    /** Chapters from the PDF bookmarks, using the first outline level that has more than one entry. */
+    private List<Chapter> outlineChapters(PDDocument doc) {
+        PDDocumentOutline outline = doc.getDocumentCatalog().getDocumentOutline();
+        if (outline == null) return List.of();
+
+        try {
+            List<PDOutlineItem> items = children(outline.children());
+            while (items.size() == 1 && items.get(0).hasChildren()) {
+                items = children(items.get(0).children());
+            }
+
+            Map<Integer, String> starts = new LinkedHashMap<>();
+            for (PDOutlineItem item : items) {
+                PDPage page = item.findDestinationPage(doc);
+                if (page == null) continue;
+                int pageNumber = doc.getPages().indexOf(page) + 1;
+                String title = item.getTitle() != null ? item.getTitle().strip() : "";
+                if (pageNumber > 0) starts.putIfAbsent(pageNumber, title);
+            }
+            return ChapterDetector.fromStarts(starts, doc.getNumberOfPages());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read PDF outline, falling back to heading detection", e);
+            return List.of();
+        }
+    }
+
+    private static List<PDOutlineItem> children(Iterable<PDOutlineItem> items) {
+        List<PDOutlineItem> list = new ArrayList<>();
+        items.forEach(list::add);
+        return list;
+    }
+}
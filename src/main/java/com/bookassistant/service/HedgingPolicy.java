@@ -0,0 +1,65 @@
+package com.bookassistant.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Decides when a slow model call gets a duplicate (hedge) sent to another backend. The hedge
+ * goes out once the call has run longer than the recent 95th percentile, so only the slowest
+ * few percent are duplicated. A budget keeps the extra load bounded: every call earns a
+ * fraction of a hedge and every hedge spends a whole one, so at most that fraction of calls
+ * is ever doubled.
+ */
+@Service
+public class HedgingPolicy {
+
+    private static final int WINDOW = 200;
+    /** Hedges that can be saved up during quiet periods. */
+    private static final double MAX_SAVED = 10;
+
+    private final boolean enabled;
+    private final double budget;
+    private final Duration minDelay;
+    private final int minSamples;
+    private final LatencyTracker latencies = new LatencyTracker(WINDOW);
+    private double saved;
+
+    public HedgingPolicy(@Value("${app.ai.hedge.enabled:false}") boolean enabled,
+                         @Value("${app.ai.hedge.budget:0.05}") double budget,
+                         @Value("${app.ai.hedge.min-delay-ms:2000}") long minDelayMillis,
+                         @Value("${app.ai.hedge.min-samples:20}") int minSamples) {
+        this.enabled = enabled;
+        this.budget = Math.max(0, budget);
+        this.minDelay = Duration.ofMillis(Math.max(0, minDelayMillis));
+        this.minSamples = Math.max(0, minSamples);
+    }
+
+    /** Records the latency of a successful call. */
+    public void record(Duration latency) {
+        latencies.record(latency);
+    }
+
+    /**
+     * Counts a new call towards the hedge budget and returns how long to wait for it before
+     * hedging, or empty when this call should not be hedged.
+     */
+    public Optional<Duration> delayFor() {
+        if (!enabled) return Optional.empty();
+        synchronized (this) {
+            saved = Math.min(MAX_SAVED, saved + budget);
+        }
+        if (latencies.count() < minSamples) return Optional.empty();
+        Duration p95 = latencies.percentile(95);
+        return Optional.of(p95.compareTo(minDelay) > 0 ? p95 : minDelay);
+    }
+
+    /** Spends one hedge from the budget; false when the budget is used up. */
+    public synchronized boolean tryHedge() {
+        if (saved < 1) return false;
+        saved -= 1;
+        return true;
+    }
+}
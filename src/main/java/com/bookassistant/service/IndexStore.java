@@ -0,0 +1,229 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.PageData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Persists book indexes as one file per content hash and opens them through memory mapping,
+ * so a book that was indexed before is searchable again without rebuilding or loading it
+ * onto the heap.
+ *
+ * <p>File layout (version 1, big-endian):
+ * <pre>
+ * header       magic, version, pageCount, termCount, averagePageLength, section offsets
+ * page texts   UTF-8 bytes of every page, back to back
+ * postings     per term: (page delta, frequency) pairs as unsigned varints
+ * term bytes   UTF-8 bytes of every term, sorted by unsigned byte order
+ * term table   termCount x (termStart:int, termLength:int, postingsStart:long, pageFrequency:int)
+ * page table   pageCount x (pageNumber:int, pageLength:int, textStart:long, textLength:int)
+ * </pre>
+ */
+@Service
+public class IndexStore {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexStore.class);
+
+    static final int MAGIC = 0x424B4958;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int TERM_ENTRY_SIZE = 20;
+    static final int PAGE_ENTRY_SIZE = 20;
+    /** A file is mapped as one buffer and term offsets are stored as ints, so both stay below 2 GB. */
+    static final long MAX_FILE_BYTES = Integer.MAX_VALUE;
+
+    private final Path directory;
+    private final long maxFileBytes;
+
+    @Autowired
+    public IndexStore(@Value("${app.index.dir:${java.io.tmpdir}/book-assistant/index}") String directory) {
+        this(directory, MAX_FILE_BYTES);
+    }
+
+    IndexStore(String directory, long maxFileBytes) {
+        this.directory = Path.of(directory);
+        this.maxFileBytes = maxFileBytes;
+    }
+
+    /** Opens the stored index for this content, or returns empty when it is missing or unreadable. */
+    public Optional<SearchShard> open(String contentHash, String fileName) {
+        Path file = pathFor(contentHash);
+        if (!Files.exists(file)) return Optional.empty();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                log.warn("Ignoring corrupt index file {}", file);
+                return Optional.empty();
+            }
+            if (buffer.getInt(4) != VERSION) {
+                log.info("Ignoring index file {} with format version {}", file, buffer.getInt(4));
+                return Optional.empty();
+            }
+            return Optional.of(new MappedBookIndex(fileName, buffer));
+        } catch (IOException e) {
+            log.warn("Could not open index file {}", file, e);
+            return Optional.empty();
+        }
+    }
+
+    public void write(String contentHash, BookIndex index) throws IOException {
+        Files.createDirectories(directory);
+        Path target = pathFor(contentHash);
+        Path temp = Files.createTempFile(directory, contentHash, ".tmp");
+        try {
+            writeTo(temp, index, maxFileBytes);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Path pathFor(String contentHash) {
+        return directory.resolve(contentHash + ".idx");
+    }
+
+    private static void writeTo(Path file, BookIndex index, long maxBytes) throws IOException {
+        List<PageData> pages = index.pages();
+        int[] pageLengths = index.pageLengths();
+        long[] textStarts = new long[pages.size()];
+        int[] textLengths = new int[pages.size()];
+
+        List<TermEntry> terms = new ArrayList<>(index.termCount());
+        index.forEachTerm((term, termPages, freqs) ->
+                terms.add(new TermEntry(term.getBytes(StandardCharsets.UTF_8), termPages, freqs)));
+        terms.sort((a, b) -> Arrays.compareUnsigned(a.bytes, b.bytes));
+
+        long[] sections = new long[5];
+        String tooLarge = "Index for " + index.fileName() + " exceeds " + maxBytes + " bytes";
+        try (CountingOutputStream counter = new CountingOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)), maxBytes, tooLarge);
+             DataOutputStream out = new DataOutputStream(counter)) {
+            out.write(new byte[HEADER_SIZE]);
+
+            sections[0] = counter.count();
+            for (int i = 0; i < pages.size(); i++) {
+                byte[] text = pages.get(i).text().getBytes(StandardCharsets.UTF_8);
+                textStarts[i] = counter.count() - sections[0];
+                textLengths[i] = text.length;
+                out.write(text);
+            }
+
+            sections[1] = counter.count();
+            long[] postingStarts = new long[terms.size()];
+            for (int t = 0; t < terms.size(); t++) {
+                TermEntry entry = terms.get(t);
+                postingStarts[t] = counter.count() - sections[1];
+                int previous = 0;
+                for (int i = 0; i < entry.pages.length; i++) {
+                    writeVarint(out, entry.pages[i] - previous);
+                    writeVarint(out, entry.freqs[i]);
+                    previous = entry.pages[i];
+                }
+            }
+
+            sections[2] = counter.count();
+            int[] termStarts = new int[terms.size()];
+            for (int t = 0; t < terms.size(); t++) {
+                termStarts[t] = Math.toIntExact(counter.count() - sections[2]);
+                out.write(terms.get(t).bytes);
+            }
+
+            sections[3] = counter.count();
+            for (int t = 0; t < terms.size(); t++) {
+                out.writeInt(termStarts[t]);
+                out.writeInt(terms.get(t).bytes.length);
+                out.writeLong(postingStarts[t]);
+                out.writeInt(terms.get(t).pages.length);
+            }
+
+            sections[4] = counter.count();
+            for (int i = 0; i < pages.size(); i++) {
+                out.writeInt(pages.get(i).pageNumber());
+                out.writeInt(pageLengths[i]);
+                out.writeLong(textStarts[i]);
+                out.writeInt(textLengths[i]);
+            }
+        }
+
+        double averagePageLength = Math.max(1.0, Arrays.stream(pageLengths).average().orElse(1.0));
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(pages.size())
+                .putInt(terms.size())
+                .putDouble(averagePageLength);
+        for (long section : sections) header.putLong(section);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.write(header.array());
+        }
+    }
+
+    static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /** Counts the bytes written and fails before the total would pass {@code limit}. */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private final long limit;
+        private final String message;
+        private long count;
+
+        CountingOutputStream(OutputStream out, long limit, String message) {
+            super(out);
+            this.limit = limit;
+            this.message = message;
+        }
+
+        long count() {
+            return count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            reserve(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            reserve(len);
+            out.write(b, off, len);
+        }
+
+        private void reserve(int bytes) throws IOException {
+            if (count + bytes > limit) throw new IOException(message);
+            count += bytes;
+        }
+    }
+
+    private record TermEntry(byte[] bytes, int[] pages, int[] freqs) {
+    }
+}
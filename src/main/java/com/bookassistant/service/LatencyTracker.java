@@ -0,0 +1,38 @@
+package com.bookassistant.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/** Latencies of the most recent calls, for percentile estimates over a sliding window. */
+final class LatencyTracker {
+
+    private final long[] samples;
+    private int next;
+    private int count;
+
+    LatencyTracker(int window) {
+        this.samples = new long[Math.max(1, window)];
+    }
+
+    synchronized void record(Duration latency) {
+        samples[next] = latency.toNanos();
+        next = (next + 1) % samples.length;
+        if (count < samples.length) count++;
+    }
+
+    synchronized int count() {
+        return count;
+    }
+
+    /** The given percentile (0 to 100) of the window, or zero when nothing was recorded. */
+    Duration percentile(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            if (count == 0) return Duration.ZERO;
+            sorted = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return Duration.ofNanos(sorted[Math.max(0, Math.min(rank, sorted.length - 1))]);
+    }
+}
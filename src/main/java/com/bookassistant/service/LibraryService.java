@@ -0,0 +1,113 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.SearchHit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps every book a user has uploaded as a separate index shard. Searches fan out to all
+ * shards in parallel, each shard returns its own top hits, and the results are merged.
+ * Shards are persisted through {@link IndexStore}, so a book seen before is never re-indexed.
+ */
+@Service
+public class LibraryService {
+
+    private static final Logger log = LoggerFactory.getLogger(LibraryService.class);
+
+    private final Map<String, Map<String, SearchShard>> libraries = new ConcurrentHashMap<>();
+    private final IndexStore indexStore;
+
+    @Value("${app.library.max-books:500}")
+    private int maxBooks;
+
+    public LibraryService(IndexStore indexStore) {
+        this.indexStore = indexStore;
+    }
+
+    public void addBook(String username, BookData book) {
+        String hash = ContentHash.of(book.fullText());
+        Map<String, SearchShard> library = libraries.computeIfAbsent(username, u -> new LinkedHashMap<>());
+        synchronized (library) {
+            SearchShard existing = library.remove(hash);
+            if (existing != null) {
+                library.put(hash, existing);
+                return;
+            }
+        }
+
+        SearchShard shard = shardFor(hash, book);
+        synchronized (library) {
+            library.put(hash, shard);
+            var it = library.keySet().iterator();
+            while (library.size() > maxBooks && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    /** Opens the persisted index for this content, building and storing it first if needed. */
+    public SearchShard shardFor(String hash, BookData book) {
+        long start = System.nanoTime();
+        Optional<SearchShard> stored = indexStore.open(hash, book.fileName());
+        if (stored.isPresent()) {
+            log.info("Opened stored index for {} in {} ms", book.fileName(), (System.nanoTime() - start) / 1_000_000);
+            return stored.get();
+        }
+
+        BookIndex index = BookIndex.build(book);
+        log.info("Indexed {} ({} pages, {} terms) in {} ms", book.fileName(), index.pageCount(),
+                index.termCount(), (System.nanoTime() - start) / 1_000_000);
+        try {
+            indexStore.write(hash, index);
+            return indexStore.open(hash, book.fileName()).orElse(index);
+        } catch (IOException e) {
+            log.warn("Could not persist index for {}, keeping it in memory", book.fileName(), e);
+            return index;
+        }
+    }
+
+    public List<String> listBooks(String username) {
+        return shards(username).stream().map(SearchShard::fileName).toList();
+    }
+
+    public List<SearchHit> search(String username, String query, int limit) {
+        List<String> terms = TextNormalizer.terms(query);
+        List<SearchShard> shards = shards(username);
+        if (terms.isEmpty() || shards.isEmpty() || limit <= 0) return List.of();
+
+        PriorityQueue<SearchHit> top = new PriorityQueue<>(Comparator.comparingDouble(SearchHit::score));
+        shards.parallelStream()
+                .map(shard -> shard.search(terms, limit))
+                .toList()
+                .forEach(hits -> hits.forEach(hit -> {
+                    top.offer(hit);
+                    if (top.size() > limit) top.poll();
+                }));
+
+        List<SearchHit> merged = new ArrayList<>(top);
+        merged.sort(Comparator.comparingDouble(SearchHit::score).reversed());
+        return merged;
+    }
+
+    private List<SearchShard> shards(String username) {
+        Map<String, SearchShard> library = libraries.get(username);
+        if (library == null) return List.of();
+        synchronized (library) {
+            return List.copyOf(library.values());
+        }
+    }
+}
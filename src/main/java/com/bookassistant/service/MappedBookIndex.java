@@ -0,0 +1,139 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.SearchHit;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only view of an index file written by {@link IndexStore}. Terms are found by binary
+ * search over the mapped term table and postings are decoded on the fly, so searching keeps
+ * nothing on the heap beyond the scores of the matching pages.
+ */
+class MappedBookIndex implements SearchShard {
+
+    private final String fileName;
+    private final ByteBuffer buffer;
+    private final int pageCount;
+    private final int termCount;
+    private final double averagePageLength;
+    private final int textOffset;
+    private final int postingsOffset;
+    private final int termBytesOffset;
+    private final int termTableOffset;
+    private final int pageTableOffset;
+
+    MappedBookIndex(String fileName, ByteBuffer buffer) {
+        this.fileName = fileName;
+        this.buffer = buffer;
+        this.pageCount = buffer.getInt(8);
+        this.termCount = buffer.getInt(12);
+        this.averagePageLength = buffer.getDouble(16);
+        this.textOffset = (int) buffer.getLong(24);
+        this.postingsOffset = (int) buffer.getLong(32);
+        this.termBytesOffset = (int) buffer.getLong(40);
+        this.termTableOffset = (int) buffer.getLong(48);
+        this.pageTableOffset = (int) buffer.getLong(56);
+    }
+
+    @Override
+    public String fileName() {
+        return fileName;
+    }
+
+    @Override
+    public int pageCount() {
+        return pageCount;
+    }
+
+    @Override
+    public int termCount() {
+        return termCount;
+    }
+
+    @Override
+    public List<SearchHit> search(List<String> queryTerms, int limit) {
+        Map<Integer, Double> scores = new HashMap<>();
+        for (String term : queryTerms) {
+            int entry = findTerm(term.getBytes(StandardCharsets.UTF_8));
+            if (entry < 0) continue;
+
+            int at = termTableOffset + entry * IndexStore.TERM_ENTRY_SIZE;
+            int position = postingsOffset + (int) buffer.getLong(at + 8);
+            int documentFrequency = buffer.getInt(at + 16);
+            double idf = BookIndex.idf(pageCount, documentFrequency);
+
+            int page = 0;
+            int[] cursor = {position};
+            for (int i = 0; i < documentFrequency; i++) {
+                page += readVarint(cursor);
+                int tf = readVarint(cursor);
+                scores.merge(page, BookIndex.bm25(idf, tf, pageLength(page), averagePageLength), Double::sum);
+            }
+        }
+
+        List<SearchHit> hits = new ArrayList<>();
+        for (Map.Entry<Integer, Double> entry : BookIndex.topPages(scores, limit)) {
+            int page = entry.getKey();
+            hits.add(new SearchHit(fileName, pageNumber(page), entry.getValue(),
+                    BookIndex.snippet(pageText(page), queryTerms)));
+        }
+        return hits;
+    }
+
+    String pageText(int page) {
+        int at = pageTableOffset + page * IndexStore.PAGE_ENTRY_SIZE;
+        int start = textOffset + (int) buffer.getLong(at + 8);
+        int length = buffer.getInt(at + 16);
+        return StandardCharsets.UTF_8.decode(buffer.slice(start, length)).toString();
+    }
+
+    int pageNumber(int page) {
+        return buffer.getInt(pageTableOffset + page * IndexStore.PAGE_ENTRY_SIZE);
+    }
+
+    private int pageLength(int page) {
+        return buffer.getInt(pageTableOffset + page * IndexStore.PAGE_ENTRY_SIZE + 4);
+    }
+
+    private int findTerm(byte[] term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareTerm(mid, term);
+            if (cmp < 0) low = mid + 1;
+            else if (cmp > 0) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private int compareTerm(int entry, byte[] term) {
+        int at = termTableOffset + entry * IndexStore.TERM_ENTRY_SIZE;
+        int start = termBytesOffset + buffer.getInt(at);
+        int length = buffer.getInt(at + 4);
+        int common = Math.min(length, term.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Byte.toUnsignedInt(buffer.get(start + i)) - Byte.toUnsignedInt(term[i]);
+            if (cmp != 0) return cmp;
+        }
+        return length - term.length;
+    }
+
+    private int readVarint(int[] cursor) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(cursor[0]++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,186 @@
+package com.bookassistant.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chooses the model for each call. Models come from {@code app.ai.models} as
+ * {@code name|context-tokens} entries, cheapest first; when that is empty only
+ * {@code app.ai.model} is used. A call goes to the cheapest model whose context window holds
+ * its prompt and reply, and whose recent 95th percentile latency for the request type is
+ * within that type's objective ({@code app.ai.route.<type>.slo-seconds}). When none is fast
+ * enough, the fastest one that fits is used. A failed call counts as one that took
+ * {@value #FAILURE_PENALTY} times the objective, so a model that keeps failing is skipped like a
+ * slow one. Every {@value #PROBE_EVERY}th call of a type goes to the cheapest fitting model
+ * regardless, so one that recovers is noticed.
+ */
+@Service
+public class ModelRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(ModelRouter.class);
+
+    /** Latencies kept per model and request type. */
+    private static final int WINDOW = 50;
+    /** Calls seen before a model's latency is held against it. */
+    static final int MIN_SAMPLES = 10;
+    static final int PROBE_EVERY = 20;
+    /** Multiple of the objective a failed call is recorded as. */
+    static final int FAILURE_PENALTY = 2;
+
+    /** The model picked for a call, to report its latency back with. */
+    public record Choice(String model, RequestType type) {
+    }
+
+    private static final class Model {
+
+        private final String name;
+        private final int contextTokens;
+        private final Map<RequestType, LatencyTracker> latencies = new EnumMap<>(RequestType.class);
+
+        Model(String name, int contextTokens) {
+            this.name = name;
+            this.contextTokens = contextTokens;
+            for (RequestType type : RequestType.values()) latencies.put(type, new LatencyTracker(WINDOW));
+        }
+    }
+
+    private final List<Model> models;
+    private final int reservedOutputTokens;
+    private final Map<RequestType, Duration> objectives = new EnumMap<>(RequestType.class);
+    private final Map<RequestType, AtomicLong> calls = new EnumMap<>(RequestType.class);
+    private final MeterRegistry registry;
+
+    public ModelRouter(MeterRegistry registry,
+                       @Value("${app.ai.model:" + TokenCounter.DEFAULT_MODEL + "}") String model,
+                       @Value("${app.ai.models:}") String models,
+                       @Value("${app.ai.context-tokens:131072}") int contextTokens,
+                       @Value("${app.ai.reserved-output-tokens:8192}") int reservedOutputTokens,
+                       @Value("${app.ai.route.qa.slo-seconds:30}") int qaSeconds,
+                       @Value("${app.ai.route.summary.slo-seconds:180}") int summarySeconds,
+                       @Value("${app.ai.route.comprehension.slo-seconds:120}") int comprehensionSeconds,
+                       @Value("${app.ai.route.translation.slo-seconds:180}") int translationSeconds,
+                       @Value("${app.ai.route.general.slo-seconds:120}") int generalSeconds) {
+        this.registry = registry;
+        this.models = parse(model, contextTokens, models);
+        this.reservedOutputTokens = Math.max(0, reservedOutputTokens);
+        objectives.put(RequestType.QA, Duration.ofSeconds(qaSeconds));
+        objectives.put(RequestType.SUMMARY, Duration.ofSeconds(summarySeconds));
+        objectives.put(RequestType.COMPREHENSION, Duration.ofSeconds(comprehensionSeconds));
+        objectives.put(RequestType.TRANSLATION, Duration.ofSeconds(translationSeconds));
+        objectives.put(RequestType.GENERAL, Duration.ofSeconds(generalSeconds));
+        for (RequestType type : RequestType.values()) calls.put(type, new AtomicLong());
+        log.info("AI models by cost: {}", this.models.stream().map(m -> m.name + " (" + m.contextTokens + " tokens)").toList());
+    }
+
+    /** The largest context window among the models, which bounds every prompt. */
+    public int maxContextTokens() {
+        return largest().contextTokens;
+    }
+
+    /** Model names, cheapest first. */
+    public List<String> models() {
+        return models.stream().map(m -> m.name).toList();
+    }
+
+    /** Picks the model for a call of {@code type} with a prompt of {@code promptTokens}. */
+    public Choice route(RequestType type, int promptTokens) {
+        List<Model> fitting = new ArrayList<>();
+        for (Model model : models) {
+            if (promptTokens + reservedOutputTokens <= model.contextTokens) fitting.add(model);
+        }
+        // AiService refuses prompts that do not fit the largest window; this is a safeguard
+        if (fitting.isEmpty()) fitting.add(largest());
+
+        Model chosen = null;
+        if (calls.get(type).incrementAndGet() % PROBE_EVERY == 0) {
+            chosen = fitting.get(0);
+        } else {
+            Duration objective = objectives.get(type);
+            Model fastest = null;
+            Duration fastestLatency = null;
+            for (Model model : fitting) {
+                LatencyTracker tracker = model.latencies.get(type);
+                if (tracker.count() < MIN_SAMPLES) {
+                    chosen = model;
+                    break;
+                }
+                Duration p95 = tracker.percentile(95);
+                if (p95.compareTo(objective) <= 0) {
+                    chosen = model;
+                    break;
+                }
+                if (fastest == null || p95.compareTo(fastestLatency) < 0) {
+                    fastest = model;
+                    fastestLatency = p95;
+                }
+            }
+            if (chosen == null) chosen = fastest;
+        }
+        Counter.builder("ai.route")
+                .description("Model calls per request type and chosen model")
+                .tag("type", type.name().toLowerCase(Locale.ROOT))
+                .tag("model", chosen.name)
+                .register(registry)
+                .increment();
+        return new Choice(chosen.name, type);
+    }
+
+    /** Reports how long a successful call took on the model it was routed to. */
+    public void record(Choice choice, Duration latency) {
+        for (Model model : models) {
+            if (model.name.equals(choice.model())) {
+                model.latencies.get(choice.type()).record(latency);
+                return;
+            }
+        }
+    }
+
+    /** Reports a call that failed on the model it was routed to, as a sample well over the objective. */
+    public void recordFailure(Choice choice) {
+        record(choice, objectives.get(choice.type()).multipliedBy(FAILURE_PENALTY));
+    }
+
+    private Model largest() {
+        Model largest = models.get(0);
+        for (Model model : models) {
+            if (model.contextTokens > largest.contextTokens) largest = model;
+        }
+        return largest;
+    }
+
+    private static List<Model> parse(String model, int contextTokens, String models) {
+        List<Model> parsed = new ArrayList<>();
+        if (models != null) {
+            for (String entry : models.split(",")) {
+                entry = entry.strip();
+                if (entry.isEmpty()) continue;
+                int bar = entry.lastIndexOf('|');
+                String name = bar < 0 ? entry : entry.substring(0, bar).strip();
+                int tokens = contextTokens;
+                if (bar >= 0) {
+                    try {
+                        tokens = Integer.parseInt(entry.substring(bar + 1).strip());
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("app.ai.models: bad context size in '" + entry + "'");
+                    }
+                    if (tokens <= 0) throw new IllegalArgumentException("app.ai.models: context size must be positive in '" + entry + "'");
+                }
+                parsed.add(new Model(name, tokens));
+            }
+        }
+        if (parsed.isEmpty()) parsed.add(new Model(model, contextTokens));
+        return List.copyOf(parsed);
+    }
+}
@@ -0,0 +1,185 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.DuplicateGroup;
+import com.bookassistant.model.PageData;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Finds pages whose text is the same or nearly the same (reprinted pages, repeated exam sheets).
+ * Each page gets a MinHash signature over its word 3-grams; locality-sensitive hashing groups
+ * signatures by bands so only pages sharing a band are compared, and pairs whose estimated Jaccard
+ * similarity reaches the threshold are joined into groups.
+ */
+public final class NearDuplicateDetector {
+
+    static final double SIMILARITY = 0.85;
+    private static final int HASHES = 128;
+    private static final int BANDS = 16;
+    private static final int ROWS = HASHES / BANDS;
+    private static final int SHINGLE = 3;
+    private static final int MIN_TERMS = 10;
+    private static final long[] SEEDS = new long[HASHES];
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < HASHES; i++) {
+            seed = mix(seed + i);
+            SEEDS[i] = seed;
+        }
+    }
+
+    private NearDuplicateDetector() {
+    }
+
+    public static List<DuplicateGroup> detect(List<PageData> pages) {
+        // Signatures are independent per page, so they are computed in parallel
+        int[][] signatures = IntStream.range(0, pages.size()).parallel()
+                .mapToObj(i -> signature(pages.get(i).text()))
+                .toArray(int[][]::new);
+
+        int[] parent = IntStream.range(0, pages.size()).toArray();
+        for (int band = 0; band < BANDS; band++) {
+            Map<Long, Integer> buckets = new HashMap<>();
+            for (int page = 0; page < pages.size(); page++) {
+                if (signatures[page] == null) continue;
+                Integer head = buckets.putIfAbsent(bandKey(signatures[page], band), page);
+                if (head != null && find(parent, head) != find(parent, page)
+                        && similarity(signatures[head], signatures[page]) >= SIMILARITY) {
+                    union(parent, head, page);
+                }
+            }
+        }
+
+        Map<Integer, List<Integer>> groups = new TreeMap<>();
+        for (int page = 0; page < pages.size(); page++) {
+            groups.computeIfAbsent(find(parent, page), root -> new ArrayList<>()).add(pages.get(page).pageNumber());
+        }
+        return groups.values().stream()
+                .filter(group -> group.size() > 1)
+                .map(group -> new DuplicateGroup(List.copyOf(group)))
+                .sorted((a, b) -> Integer.compare(a.firstPage(), b.firstPage()))
+                .toList();
+    }
+
+    /**
+     * The book with a full text that carries each exactly repeated page once; later copies become a
+     * short pointer to the first one. Pages keep their own text, so chunks and page ranges never point
+     * at a page they do not contain. Near duplicates that differ in any word are left alone.
+     */
+    public static BookData collapse(BookData book, String lang) {
+        Map<Integer, Integer> originalOf = exactRepeats(book);
+        if (originalOf.isEmpty()) return book;
+        return new BookData(book.fileName(), book.pages(), text(book.pages(), originalOf, lang), book.chapters(),
+                book.duplicates());
+    }
+
+    /**
+     * Text of the pages between {@code startPage} and {@code endPage}, with exact repeats of a page
+     * inside the same range replaced by a pointer to it.
+     */
+    public static String text(BookData book, int startPage, int endPage, String lang) {
+        Map<Integer, Integer> originalOf = exactRepeats(book);
+        originalOf.values().removeIf(original -> original < startPage || original > endPage);
+        return text(book.pageRange(startPage, endPage), originalOf, lang);
+    }
+
+    /** Maps every page that repeats an earlier page of its group word for word to that page. */
+    private static Map<Integer, Integer> exactRepeats(BookData book) {
+        Map<Integer, Integer> originalOf = new HashMap<>();
+        if (book.duplicates().isEmpty()) return originalOf;
+        Map<Integer, String> textOf = new HashMap<>();
+        for (PageData page : book.pages()) textOf.put(page.pageNumber(), page.text());
+        for (DuplicateGroup group : book.duplicates()) {
+            Map<String, Integer> firstWith = new HashMap<>();
+            for (int page : group.pages()) {
+                String text = textOf.get(page);
+                if (text == null) continue;
+                String key = ContentHash.of(WHITESPACE.matcher(text).replaceAll(" ").strip());
+                Integer original = firstWith.putIfAbsent(key, page);
+                if (original != null) originalOf.put(page, original);
+            }
+        }
+        return originalOf;
+    }
+
+    private static String text(List<PageData> pages, Map<Integer, Integer> originalOf, String lang) {
+        StringBuilder text = new StringBuilder();
+        for (PageData page : pages) {
+            if (!text.isEmpty()) text.append("\n\n");
+            Integer original = originalOf.get(page.pageNumber());
+            text.append(original == null ? page.text()
+                    : "en".equals(lang) ? "[Same as page " + original + "]" : "[مطابقة للصفحة " + original + "]");
+        }
+        return text.toString();
+    }
+
+    /** MinHash signature of the page's word 3-grams, or null for pages too short to compare. */
+    static int[] signature(String text) {
+        List<String> terms = TextNormalizer.terms(text);
+        if (terms.size() < MIN_TERMS) return null;
+        int[] termHashes = new int[terms.size()];
+        for (int i = 0; i < termHashes.length; i++) termHashes[i] = terms.get(i).hashCode();
+
+        long[] min = new long[HASHES];
+        Arrays.fill(min, Long.MAX_VALUE);
+        for (int i = 0; i + SHINGLE <= termHashes.length; i++) {
+            long shingle = termHashes[i];
+            for (int k = 1; k < SHINGLE; k++) shingle = shingle * 0x100000001B3L + termHashes[i + k];
+            for (int h = 0; h < HASHES; h++) {
+                long value = mix(shingle ^ SEEDS[h]);
+                if (value < min[h]) min[h] = value;
+            }
+        }
+        int[] signature = new int[HASHES];
+        for (int h = 0; h < HASHES; h++) signature[h] = (int) (min[h] >>> 32);
+        return signature;
+    }
+
+    /** Fraction of equal MinHash values, an estimate of the Jaccard similarity of the two shingle sets. */
+    static double similarity(int[] a, int[] b) {
+        int equal = 0;
+        for (int h = 0; h < HASHES; h++) {
+            if (a[h] == b[h]) equal++;
+        }
+        return (double) equal / HASHES;
+    }
+
+    private static long bandKey(int[] signature, int band) {
+        long key = band;
+        for (int r = band * ROWS; r < (band + 1) * ROWS; r++) key = key * 0x9E3779B97F4A7C15L + signature[r];
+        return mix(key);
+    }
+
+    /** SplitMix64 finalizer. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        // The lower page stays the root, so a group's root is its first page
+        if (rootA < rootB) parent[rootB] = rootA;
+        else parent[rootA] = rootB;
+    }
+}
@@ -0,0 +1,74 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.PageData;
+import com.bookassistant.model.SearchHit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Picks the book text that goes into a question prompt. A book that fits the remaining token
+ * room is sent whole; a larger one is reduced to the pages the search index ranks highest for
+ * the question, added in score order until the room is used up and then put back in reading
+ * order, each marked with its page number.
+ */
+@Service
+public class PassageRetriever {
+
+    private static final Logger log = LoggerFactory.getLogger(PassageRetriever.class);
+
+    private final LibraryService libraryService;
+    private final TokenCounter tokenCounter;
+
+    public PassageRetriever(LibraryService libraryService, TokenCounter tokenCounter) {
+        this.libraryService = libraryService;
+        this.tokenCounter = tokenCounter;
+    }
+
+    /** Whether the whole book fits in {@code room} tokens. */
+    public boolean fits(BookData book, int room) {
+        return tokenCounter.count(book.fullText()) <= room;
+    }
+
+    /**
+     * @param book     the prompt text of the book
+     * @param rawBook  the parsed book the search index is built from
+     * @param room     tokens left for book text once the rest of the prompt is counted
+     */
+    public String context(String query, BookData book, BookData rawBook, String contentHash, int room, String lang) {
+        if (fits(book, room)) return book.fullText();
+
+        Map<Integer, PageData> pages = new HashMap<>();
+        for (PageData page : book.pages()) pages.put(page.pageNumber(), page);
+
+        SearchShard shard = libraryService.shardFor(contentHash, rawBook);
+        Set<Integer> ranked = new LinkedHashSet<>();
+        for (SearchHit hit : shard.search(TextNormalizer.terms(query), shard.pageCount())) {
+            ranked.add(hit.pageNumber());
+        }
+        // Pages no search term reaches follow in reading order, so the room is still used.
+        for (PageData page : book.pages()) ranked.add(page.pageNumber());
+
+        TreeMap<Integer, String> chosen = new TreeMap<>();
+        int used = 0;
+        for (int number : ranked) {
+            PageData page = pages.get(number);
+            if (page == null || page.text() == null || page.text().isBlank()) continue;
+            String passage = ("en".equals(lang) ? "[p. " : "[ص ") + number + "]\n" + page.text().strip();
+            int tokens = tokenCounter.count(passage) + 1;
+            if (used + tokens > room) continue;
+            chosen.put(number, passage);
+            used += tokens;
+        }
+        log.info("Book of {} pages exceeds {} prompt tokens, sending {} retrieved pages ({} tokens)",
+                book.pages().size(), room, chosen.size(), used);
+        return String.join("\n\n", chosen.values());
+    }
+}
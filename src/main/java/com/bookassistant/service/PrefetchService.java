@@ -0,0 +1,195 @@
+package com.bookassistant.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Learns how each reader steps through page ranges and computes the next range in the background.
+ * A stride is trusted once a range follows the previous one directly or repeats the last step.
+ * Each HTTP session has at most {@code app.prefetch.budget} prefetched ranges waiting; older ones are
+ * dropped and counted as waste. Their upstream calls are aborted unless another request or prefetch is
+ * waiting on the same cached results. Sessions idle for {@code app.prefetch.idle-minutes} are forgotten
+ * the same way.
+ */
+@Service
+public class PrefetchService {
+
+    private static final Logger log = LoggerFactory.getLogger(PrefetchService.class);
+    private static final int MAX_STREAMS = 8;
+    private static final long SWEEP_NANOS = Duration.ofMinutes(1).toNanos();
+
+    /** Starts computing one page range. */
+    @FunctionalInterface
+    public interface RangeLoader {
+        CompletableFuture<String> load(int startPage, int endPage);
+    }
+
+    private final Map<String, ReadingState> sessions = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final int budget;
+    private final long idleNanos;
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter issued;
+    private final Counter wasted;
+
+    public PrefetchService(MeterRegistry registry,
+                           @Value("${app.prefetch.enabled:true}") boolean enabled,
+                           @Value("${app.prefetch.budget:2}") int budget,
+                           @Value("${app.prefetch.idle-minutes:30}") int idleMinutes) {
+        this.enabled = enabled;
+        this.budget = Math.max(1, budget);
+        this.idleNanos = Duration.ofMinutes(Math.max(1, idleMinutes)).toNanos();
+        Counter hits = Counter.builder("prefetch.requests").tag("outcome", "hit").register(registry);
+        Counter issued = Counter.builder("prefetch.issued").register(registry);
+        Counter wasted = Counter.builder("prefetch.wasted").register(registry);
+        this.hits = hits;
+        this.misses = Counter.builder("prefetch.requests").tag("outcome", "miss").register(registry);
+        this.issued = issued;
+        this.wasted = wasted;
+        Gauge.builder("prefetch.hit.ratio", () -> ratio(hits, issued)).register(registry);
+        Gauge.builder("prefetch.waste.ratio", () -> ratio(wasted, issued)).register(registry);
+    }
+
+    /**
+     * Returns the result for the range, taking it from a finished or running prefetch when there is one,
+     * and then prefetches the range the user is expected to ask for next.
+     *
+     * @param session id of the reader's HTTP session, or null to only load the requested range
+     * @param flow    name of the feature, so summaries and tests keep separate strides
+     */
+    public String fetch(String session, String flow, String bookHash, int lastPage,
+                        int startPage, int endPage, String lang, RangeLoader loader) {
+        if (!enabled || session == null) {
+            return loader.load(startPage, endPage).join();
+        }
+        expireIdle();
+        ReadingState state = sessions.computeIfAbsent(session, s -> new ReadingState());
+        String stream = flow + "|" + bookHash + "|" + lang;
+        Prefetch pending;
+        int[] next;
+        synchronized (state) {
+            state.lastSeen = System.nanoTime();
+            pending = state.pending.remove(key(stream, startPage, endPage));
+            next = state.observe(stream, startPage, endPage);
+        }
+
+        String result = pending != null ? pending.result().join() : null;
+        if (result != null && !result.startsWith(AiService.ERROR_PREFIX)) {
+            hits.increment();
+        } else {
+            if (pending != null) wasted.increment();
+            misses.increment();
+            result = loader.load(startPage, endPage).join();
+        }
+
+        if (next != null && next[0] <= lastPage) {
+            prefetch(state, stream, next[0], Math.min(next[1], lastPage), loader);
+        }
+        return result;
+    }
+
+    double hitRatio() {
+        return ratio(hits, issued);
+    }
+
+    double wasteRatio() {
+        return ratio(wasted, issued);
+    }
+
+    private static double ratio(Counter part, Counter total) {
+        return total.count() == 0 ? 0 : part.count() / total.count();
+    }
+
+    /** Forgets sessions that have not fetched anything for a while, aborting their prefetches. */
+    private void expireIdle() {
+        long now = System.nanoTime();
+        long last = lastSweep.get();
+        if (now - last < SWEEP_NANOS || !lastSweep.compareAndSet(last, now)) return;
+        sessions.entrySet().removeIf(entry -> {
+            ReadingState state = entry.getValue();
+            synchronized (state) {
+                if (now - state.lastSeen < idleNanos) return false;
+                state.pending.values().forEach(this::drop);
+                state.pending.clear();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Gives up a prefetch nobody claimed. Cached results it was computing keep running while anyone else
+     * waits on them; the others are aborted and started again when needed.
+     */
+    private void drop(Prefetch prefetch) {
+        prefetch.context().cancel();
+        wasted.increment();
+    }
+
+    private void prefetch(ReadingState state, String stream, int startPage, int endPage, RangeLoader loader) {
+        String key = key(stream, startPage, endPage);
+        synchronized (state) {
+            if (state.pending.containsKey(key)) return;
+            Iterator<Prefetch> it = state.pending.values().iterator();
+            while (state.pending.size() >= budget && it.hasNext()) {
+                drop(it.next());
+                it.remove();
+            }
+            // Started in a context of its own, so dropping it gives up the results it asked for
+            RequestContext context = RequestContext.background();
+            state.pending.put(key, new Prefetch(context.within(() -> loader.load(startPage, endPage)), context));
+        }
+        issued.increment();
+        log.debug("Prefetching pages {}-{} for {}", startPage, endPage, stream);
+    }
+
+    private static String key(String stream, int startPage, int endPage) {
+        return stream + "|" + startPage + "-" + endPage;
+    }
+
+    /** A prefetched range and the context its upstream calls run in. */
+    private record Prefetch(CompletableFuture<String> result, RequestContext context) {
+    }
+
+    /** Per-session prefetches waiting to be claimed and the last range seen in each flow. */
+    private static final class ReadingState {
+        final LinkedHashMap<String, Prefetch> pending = new LinkedHashMap<>();
+        long lastSeen = System.nanoTime();
+        final LinkedHashMap<String, Cursor> cursors = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cursor> eldest) {
+                return size() > MAX_STREAMS;
+            }
+        };
+
+        /** Records the range and returns the predicted next one, or null when there is no stride yet. */
+        int[] observe(String stream, int startPage, int endPage) {
+            Cursor last = cursors.get(stream);
+            Cursor current = new Cursor(startPage, endPage, last != null ? startPage - last.startPage : 0);
+            cursors.put(stream, current);
+            if (last == null || current.stride <= 0) return null;
+            boolean sameWidth = endPage - startPage == last.endPage - last.startPage;
+            boolean sequential = startPage == last.endPage + 1 || current.stride == last.stride;
+            return sameWidth && sequential
+                    ? new int[] {startPage + current.stride, endPage + current.stride}
+                    : null;
+        }
+    }
+
+    private record Cursor(int startPage, int endPage, int stride) {
+    }
+}
@@ -0,0 +1,223 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.Question;
+import com.bookassistant.model.TextChunk;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Comprehension questions generated once per chunk and shared by everyone reading the same book.
+ * Each chunk's questions are kept in memory and in a JSON file named after the chunk's content hash,
+ * language and prompt format version, so a quiz for any page range is drawn locally from the chunks
+ * that cover it: questions are sampled and their choices shuffled for each request. Questions in another language
+ * than the book's are written from the chunk's translation when {@link TranslationCache} has one.
+ */
+@Service
+public class QuestionBankService {
+
+    private static final Logger log = LoggerFactory.getLogger(QuestionBankService.class);
+    private static final TypeReference<List<Question>> QUESTION_LIST = new TypeReference<>() {
+    };
+    /** Part of every bank key; raise it when the prompts change so older files are not read back. */
+    private static final int FORMAT_VERSION = 2;
+
+    private static final String PROMPT_EN = "You are an assistant that creates comprehension tests from a PDF book. "
+            + "Write %d multiple choice questions about this text in English. Answer only with a JSON array of objects "
+            + "with the fields \"question\", \"choices\" (four strings), \"answer\" (index of the correct choice, from 0) "
+            + "and \"explanation\".";
+    private static final String PROMPT_AR = "أنت مساعد يكتب اختبار فهم من كتاب PDF. اكتب %d أسئلة اختيار من متعدد "
+            + "عن هذا النص بالعربية. أجب فقط بمصفوفة JSON من كائنات تحتوي الحقول \"question\" و\"choices\" (أربعة خيارات) "
+            + "و\"answer\" (رقم الخيار الصحيح بدءا من 0) و\"explanation\".";
+
+    /** The questions of one chunk, or the upstream error that prevented generating them. */
+    private record ChunkQuestions(List<Question> questions, String error) {
+    }
+
+    private final AiService aiService;
+    private final TextChunker chunker;
+    private final TranslationCache translations;
+    private final ObjectMapper mapper;
+    private final Executor executor;
+    private final Path directory;
+    private final int perChunk;
+    private final Map<String, CompletableFuture<ChunkQuestions>> bank;
+
+    public QuestionBankService(AiService aiService,
+                               TextChunker chunker,
+                               TranslationCache translations,
+                               ObjectMapper mapper,
+                               @Qualifier("aiExecutor") Executor executor,
+                               @Value("${app.questions.dir:${java.io.tmpdir}/book-assistant/questions}") String directory,
+                               @Value("${app.questions.per-chunk:5}") int perChunk,
+                               @Value("${app.questions.cache-size:2000}") int cacheSize) {
+        this.aiService = aiService;
+        this.chunker = chunker;
+        this.translations = translations;
+        this.mapper = mapper;
+        this.executor = executor;
+        this.directory = Path.of(directory);
+        this.perChunk = Math.max(1, perChunk);
+        this.bank = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<ChunkQuestions>> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * A quiz of up to {@code count} questions for the page range, formatted for display. Completes with
+     * the upstream error when no chunk in the range has questions.
+     */
+    public CompletableFuture<String> quizAsync(BookData book, String bookHash, int startPage, int endPage,
+                                               String lang, int count, Random random) {
+        List<CompletableFuture<ChunkQuestions>> chunks = chunker.cover(bookHash, book, startPage, endPage).stream()
+                .map(chunk -> questions(chunk, lang))
+                .toList();
+        return CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new)).thenApply(done -> {
+            List<Question> pool = new ArrayList<>();
+            String error = null;
+            for (CompletableFuture<ChunkQuestions> chunk : chunks) {
+                ChunkQuestions result = chunk.join();
+                pool.addAll(result.questions());
+                if (result.error() != null && error == null) error = result.error();
+            }
+            if (pool.isEmpty() && error != null) return error;
+            return format(sample(pool, count, random), lang);
+        });
+    }
+
+    /** Picks {@code count} questions at random and shuffles the choices of each. */
+    static List<Question> sample(List<Question> pool, int count, Random random) {
+        List<Question> picked = new ArrayList<>(pool);
+        Collections.shuffle(picked, random);
+        picked = picked.subList(0, Math.min(count, picked.size()));
+
+        List<Question> shuffled = new ArrayList<>(picked.size());
+        for (Question q : picked) {
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < q.choices().size(); i++) order.add(i);
+            Collections.shuffle(order, random);
+            List<String> choices = order.stream().map(q.choices()::get).toList();
+            shuffled.add(new Question(q.question(), choices, order.indexOf(q.answer()), q.explanation()));
+        }
+        return shuffled;
+    }
+
+    private CompletableFuture<ChunkQuestions> questions(TextChunk chunk, String lang) {
+        String key = chunk.contentHash() + "-" + lang + "-v" + FORMAT_VERSION;
+        // Failures are not kept, so the next quiz over this chunk tries again
+        CompletableFuture<ChunkQuestions> questions = SharedFuture.claim(bank, key, executor,
+                result -> result.error() != null,
+                calls -> CompletableFuture.supplyAsync(() -> loadOrGenerate(key, chunk, lang), calls));
+        return questions.handle((result, error) -> {
+            if (error != null) {
+                log.warn("Question generation for pages {}-{} failed", chunk.startPage(), chunk.endPage(), error);
+                return new ChunkQuestions(List.of(), AiService.ERROR_PREFIX + ": " + error.getMessage());
+            }
+            return result;
+        });
+    }
+
+    private ChunkQuestions loadOrGenerate(String key, TextChunk chunk, String lang) {
+        Path file = directory.resolve(key + ".json");
+        if (Files.exists(file)) {
+            try {
+                return new ChunkQuestions(mapper.readValue(file.toFile(), QUESTION_LIST), null);
+            } catch (IOException e) {
+                log.warn("Could not read question file {}, generating again", file, e);
+            }
+        }
+
+        String system = String.format("en".equals(lang) ? PROMPT_EN : PROMPT_AR, perChunk);
+        String text = translations.cached(chunk.contentHash(), lang).orElse(chunk.text());
+        String user = "en".equals(lang)
+                ? "Text from pages " + chunk.startPage() + " to " + chunk.endPage() + ":\n" + text
+                : "نص من الصفحات " + chunk.startPage() + " إلى " + chunk.endPage() + ":\n" + text;
+        String answer = aiService.ask(RequestType.COMPREHENSION, system, user, lang);
+        if (answer.startsWith(AiService.ERROR_PREFIX)) {
+            return new ChunkQuestions(List.of(), answer);
+        }
+        List<Question> questions = parse(answer);
+        if (questions.isEmpty()) {
+            return new ChunkQuestions(List.of(), AiService.ERROR_PREFIX + ": no questions could be read from the answer");
+        }
+        log.info("Generated {} questions for pages {}-{}", questions.size(), chunk.startPage(), chunk.endPage());
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            try {
+                mapper.writeValue(temp.toFile(), questions);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            log.warn("Could not store questions for pages {}-{}, keeping them in memory",
+                    chunk.startPage(), chunk.endPage(), e);
+        }
+        return new ChunkQuestions(questions, null);
+    }
+
+    List<Question> parse(String answer) {
+        int start = answer.indexOf('[');
+        int end = answer.lastIndexOf(']');
+        if (start < 0 || end < start) return List.of();
+        List<Question> questions = new ArrayList<>();
+        try {
+            for (JsonNode node : mapper.readTree(answer.substring(start, end + 1))) {
+                String question = node.path("question").asText("").trim();
+                List<String> choices = new ArrayList<>();
+                node.path("choices").forEach(c -> choices.add(c.asText().trim()));
+                int correct = node.path("answer").asInt(-1);
+                if (question.isEmpty() || choices.size() < 2 || choices.size() > 8 || correct < 0 || correct >= choices.size()) continue;
+                questions.add(new Question(question, List.copyOf(choices), correct, node.path("explanation").asText("").trim()));
+            }
+        } catch (Exception e) {
+            log.warn("Could not parse generated questions: {}", e.getMessage());
+        }
+        return questions;
+    }
+
+    static String format(List<Question> questions, String lang) {
+        boolean en = "en".equals(lang);
+        String letters = en ? "ABCDEFGH" : "أبجدهوزح";
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < questions.size(); i++) {
+            Question q = questions.get(i);
+            out.append(i + 1).append(". ").append(q.question()).append('\n');
+            for (int c = 0; c < q.choices().size() && c < letters.length(); c++) {
+                out.append("   ").append(letters.charAt(c)).append(") ").append(q.choices().get(c)).append('\n');
+            }
+            out.append('\n');
+        }
+        out.append(en ? "**Model answers**\n" : "**الإجابات النموذجية**\n");
+        for (int i = 0; i < questions.size(); i++) {
+            Question q = questions.get(i);
+            out.append(i + 1).append(". ").append(letters.charAt(q.answer()));
+            if (!q.explanation().isEmpty()) out.append(" - ").append(q.explanation());
+            out.append('\n');
+        }
+        return out.toString();
+    }
+}
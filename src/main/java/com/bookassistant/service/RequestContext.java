@@ -0,0 +1,160 @@
+package com.bookassistant.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * State of the web request a model call is made for, bound to the thread that handles it.
+ * A request may carry a deadline, set when it arrives. Every later stage (queueing for a
+ * worker, each attempt and retry of a model call) gets only the time that is left, and work
+ * that would start after the deadline fails at once.
+ *
+ * <p>A cancelled context aborts the upstream exchanges registered with it instead of letting
+ * them run on for a reply nobody will read. Background work nobody waits on yet, such as a
+ * prefetch, runs in a {@link #background()} context: cancelling it also cancels the tasks it
+ * handed to worker threads.
+ */
+public final class RequestContext {
+
+    private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<>();
+
+    private final boolean hasDeadline;
+    private final long deadlineNanos;
+    private final boolean cancelsWorkers;
+    private final List<Runnable> onCancel = new ArrayList<>();
+    private boolean cancelled;
+
+    /** A context without a deadline. */
+    public RequestContext() {
+        this(false, 0, false);
+    }
+
+    /** A context whose deadline is {@code budget} from now. */
+    public RequestContext(Duration budget) {
+        this(true, System.nanoTime() + budget.toNanos(), false);
+    }
+
+    private RequestContext(boolean hasDeadline, long deadlineNanos, boolean cancelsWorkers) {
+        this.hasDeadline = hasDeadline;
+        this.deadlineNanos = deadlineNanos;
+        this.cancelsWorkers = cancelsWorkers;
+    }
+
+    /** A context without a deadline whose cancellation reaches the tasks it hands to workers. */
+    public static RequestContext background() {
+        return new RequestContext(false, 0, true);
+    }
+
+    /**
+     * A context for work the calling thread starts and others may share: it keeps the caller's
+     * deadline, and cancelling it reaches the tasks it hands to workers.
+     */
+    static RequestContext forSharedWork() {
+        RequestContext caller = CURRENT.get();
+        return caller != null && caller.hasDeadline
+                ? new RequestContext(true, caller.deadlineNanos, true)
+                : background();
+    }
+
+    /** Whether cancelling this context is something its owner may do, as for background work. */
+    boolean cancelsWorkers() {
+        return cancelsWorkers;
+    }
+
+    /** The context bound to the calling thread, if it is handling a web request. */
+    public static Optional<RequestContext> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    /** Binds this context to the calling thread until {@link #unbind} is called. */
+    public void bind() {
+        CURRENT.set(this);
+    }
+
+    public void unbind() {
+        if (CURRENT.get() == this) CURRENT.remove();
+    }
+
+    /** Runs {@code work} with this context bound, then restores the calling thread's own context. */
+    public <T> T within(Supplier<T> work) {
+        RequestContext previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return work.get();
+        } finally {
+            if (previous != null) CURRENT.set(previous);
+            else CURRENT.remove();
+        }
+    }
+
+    /**
+     * Wraps a task handed to a worker thread so it runs with the submitting thread's deadline.
+     * The task gets a context of its own rather than the request's: its result may be shared
+     * with other requests, so one request timing out must not cancel it. Only a
+     * {@link #background()} context passes its cancellation on to the task.
+     */
+    public static Runnable propagate(Runnable task) {
+        RequestContext context = CURRENT.get();
+        if (context == null || !(context.hasDeadline || context.cancelsWorkers)) return task;
+        RequestContext child = new RequestContext(context.hasDeadline, context.deadlineNanos, context.cancelsWorkers);
+        Runnable unlink = context.cancelsWorkers ? context.onCancel(child::cancel) : () -> { };
+        return () -> {
+            try {
+                child.within(() -> {
+                    task.run();
+                    return null;
+                });
+            } finally {
+                unlink.run();
+            }
+        };
+    }
+
+    /** Time left before the deadline, never negative; empty when there is no deadline. */
+    public Optional<Duration> remaining() {
+        if (!hasDeadline) return Optional.empty();
+        return Optional.of(Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime())));
+    }
+
+    public boolean expired() {
+        return hasDeadline && deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** Cancels the request and runs every registered action once. */
+    public void cancel() {
+        List<Runnable> actions;
+        synchronized (this) {
+            if (cancelled) return;
+            cancelled = true;
+            actions = List.copyOf(onCancel);
+            onCancel.clear();
+        }
+        actions.forEach(Runnable::run);
+    }
+
+    /**
+     * Registers an action to run when the request is cancelled, at once if it already was.
+     * The returned handle removes the action again once the work it would abort is over.
+     */
+    public Runnable onCancel(Runnable action) {
+        synchronized (this) {
+            if (!cancelled) {
+                onCancel.add(action);
+                return () -> remove(action);
+            }
+        }
+        action.run();
+        return () -> { };
+    }
+
+    private synchronized void remove(Runnable action) {
+        onCancel.remove(action);
+    }
+}
@@ -0,0 +1,15 @@
+package com.bookassistant.service;
+
+/** What a model call is for; each type is routed against its own latency objective. */
+public enum RequestType {
+    /** Questions and searches answered from the book, where the reader is waiting. */
+    QA,
+    /** Page, range and whole-book summaries, including the summary tree's nodes. */
+    SUMMARY,
+    /** Comprehension tests and question bank generation. */
+    COMPREHENSION,
+    /** Book chunks translated into the requested output language. */
+    TRANSLATION,
+    /** Everything else: plans, reality checks, risk and concept scans. */
+    GENERAL
+}
@@ -0,0 +1,82 @@
+package com.bookassistant.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * When and how long to wait before calling the model again. Only failures that may pass on
+ * their own are retried: throttling and gateway status codes, and connection errors. A call
+ * that already used its whole timeout is not repeated. Waits grow exponentially with full
+ * jitter, so clients that failed together do not come back together; a {@code Retry-After}
+ * from the server is honoured, and one longer than the longest allowed wait ends the retries.
+ */
+@Service
+public class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    public RetryPolicy(@Value("${app.ai.retry.max-attempts:3}") int maxAttempts,
+                       @Value("${app.ai.retry.base-delay-ms:500}") long baseDelayMillis,
+                       @Value("${app.ai.retry.max-delay-ms:10000}") long maxDelayMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMillis = Math.max(1, baseDelayMillis);
+        this.maxDelayMillis = Math.max(this.baseDelayMillis, maxDelayMillis);
+    }
+
+    public int maxAttempts() {
+        return maxAttempts;
+    }
+
+    public static boolean retryable(int status) {
+        return status == 408 || status == 425 || status == 429
+                || status == 500 || status == 502 || status == 503 || status == 504;
+    }
+
+    public static boolean retryable(IOException e) {
+        return e instanceof HttpConnectTimeoutException || !(e instanceof HttpTimeoutException);
+    }
+
+    /**
+     * Wait before attempt {@code attempt + 1}, or empty when no further attempt should be made.
+     *
+     * @param retryAfter the server's requested wait, or null
+     */
+    public Optional<Duration> backoff(int attempt, Duration retryAfter) {
+        if (attempt >= maxAttempts) return Optional.empty();
+        if (retryAfter != null) {
+            return retryAfter.toMillis() <= maxDelayMillis ? Optional.of(retryAfter) : Optional.empty();
+        }
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+        return Optional.of(Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1)));
+    }
+
+    /** Parses a {@code Retry-After} header given in seconds or as an HTTP date; null if absent or bad. */
+    public static Duration parseRetryAfter(String header, Instant now) {
+        if (header == null || header.isBlank()) return null;
+        String value = header.strip();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            // not a number of seconds, try a date
+        }
+        try {
+            Instant at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return at.isAfter(now) ? Duration.between(now, at) : Duration.ZERO;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.RiskFinding;
+import com.bookassistant.model.TextChunk;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Scans a book for risks and warnings one chunk at a time. Each answer is a JSON list of findings with
+ * a page number, and findings from different chunks that describe the same risk (by term overlap) are
+ * merged into one with all of their pages. Each chunk's findings are cached by chunk content and
+ * language, so scanning the same book again only asks for the chunks that failed before.
+ *
+ * <p>Chunks are sent on the shared AI executor, so no more than {@code app.ai.max-concurrency} of
+ * them are in flight at once, alongside other features' calls. A first scan of a book of N chunks
+ * therefore takes about N / max-concurrency chunk calls end to end.
+ */
+@Service
+public class RiskScanService {
+
+    private static final Logger log = LoggerFactory.getLogger(RiskScanService.class);
+    private static final List<String> SEVERITIES = List.of("high", "medium", "low");
+
+    private static final String PROMPT_EN = "Extract risk alerts or important warnings from this part of a book. "
+            + "Answer only with a JSON array of objects with the fields \"title\", \"detail\", "
+            + "\"severity\" (high, medium or low) and \"page\" (the page number where it appears). "
+            + "Answer with [] if there are none.";
+    private static final String PROMPT_AR = "استخرج تنبيهات مخاطر أو تحذيرات مهمة من هذا الجزء من الكتاب. "
+            + "أجب فقط بمصفوفة JSON من كائنات تحتوي الحقول \"title\" و\"detail\" "
+            + "و\"severity\" (high أو medium أو low) و\"page\" (رقم الصفحة التي ورد فيها). "
+            + "أجب بـ [] إذا لم توجد تنبيهات.";
+
+    private final AiService aiService;
+    private final TextChunker chunker;
+    private final ObjectMapper mapper;
+    private final Executor executor;
+    private final double mergeThreshold;
+    private final Map<String, CompletableFuture<ChunkScan>> cache;
+
+    /** The findings of one chunk, or the upstream error that prevented scanning it. */
+    private record ChunkScan(List<RiskFinding> findings, String error) {
+    }
+
+    public RiskScanService(AiService aiService,
+                           TextChunker chunker,
+                           ObjectMapper mapper,
+                           @Qualifier("aiExecutor") Executor executor,
+                           @Value("${app.risk.merge-threshold:0.5}") double mergeThreshold,
+                           @Value("${app.risk.cache-size:2000}") int cacheSize) {
+        this.aiService = aiService;
+        this.chunker = chunker;
+        this.mapper = mapper;
+        this.executor = executor;
+        this.mergeThreshold = mergeThreshold;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<ChunkScan>> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /** Returns the merged findings as a readable list, or the upstream error if every chunk failed. */
+    public String report(BookData book, String bookHash, String lang) {
+        List<TextChunk> chunks = chunker.chunk(bookHash, book);
+        List<CompletableFuture<ChunkScan>> scans = chunks.stream().map(chunk -> chunkScan(chunk, lang)).toList();
+
+        List<RiskFinding> findings = new ArrayList<>();
+        String firstError = null;
+        int failed = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            ChunkScan scan = scans.get(i).join();
+            if (scan.error() != null) {
+                if (firstError == null) firstError = scan.error();
+                failed++;
+                continue;
+            }
+            findings.addAll(scan.findings());
+        }
+        if (failed > 0) {
+            log.warn("Risk scan of {}: {} of {} chunks failed", book.fileName(), failed, chunks.size());
+        }
+        if (firstError != null && failed == chunks.size()) {
+            return firstError;
+        }
+        List<RiskFinding> merged = merge(findings);
+        log.info("Risk scan of {}: {} findings merged into {} from {} chunks",
+                book.fileName(), findings.size(), merged.size(), chunks.size());
+        return format(merged, lang);
+    }
+
+    private CompletableFuture<ChunkScan> chunkScan(TextChunk chunk, String lang) {
+        String key = chunk.contentHash() + "|" + lang;
+        CompletableFuture<ChunkScan> scan;
+        synchronized (cache) {
+            scan = cache.get(key);
+            if (scan == null) {
+                scan = CompletableFuture.supplyAsync(() -> scanChunk(chunk, lang), executor);
+                cache.put(key, scan);
+            }
+        }
+        CompletableFuture<ChunkScan> stored = scan;
+        return scan.handle((result, error) -> {
+            // Failures are not kept, so the next scan asks for the chunk again
+            if (error != null || result.error() != null) cache.remove(key, stored);
+            if (error != null) {
+                log.warn("Risk scan of pages {}-{} failed", chunk.startPage(), chunk.endPage(), error);
+                return new ChunkScan(List.of(), AiService.ERROR_PREFIX + ": " + error.getMessage());
+            }
+            return result;
+        });
+    }
+
+    private ChunkScan scanChunk(TextChunk chunk, String lang) {
+        String header = "en".equals(lang)
+                ? "Pages " + chunk.startPage() + "-" + chunk.endPage() + ":\n"
+                : "الصفحات " + chunk.startPage() + "-" + chunk.endPage() + ":\n";
+        String answer = aiService.ask("en".equals(lang) ? PROMPT_EN : PROMPT_AR, header + chunk.text(), lang);
+        if (answer.startsWith(AiService.ERROR_PREFIX)) return new ChunkScan(List.of(), answer);
+        return new ChunkScan(parse(answer, chunk), null);
+    }
+
+    /** Reads the JSON array in an answer; page numbers outside the chunk fall back to its first page. */
+    List<RiskFinding> parse(String answer, TextChunk chunk) {
+        int start = answer.indexOf('[');
+        int end = answer.lastIndexOf(']');
+        if (start < 0 || end < start) {
+            log.warn("Risk scan answer for pages {}-{} had no JSON array", chunk.startPage(), chunk.endPage());
+            return List.of();
+        }
+        List<RiskFinding> findings = new ArrayList<>();
+        try {
+            for (JsonNode node : mapper.readTree(answer.substring(start, end + 1))) {
+                String title = node.path("title").asText("").trim();
+                if (title.isEmpty()) continue;
+                String severity = node.path("severity").asText("").trim().toLowerCase();
+                if (!SEVERITIES.contains(severity)) severity = "medium";
+                int page = node.path("page").asInt(chunk.startPage());
+                if (page < chunk.startPage() || page > chunk.endPage()) page = chunk.startPage();
+                findings.add(new RiskFinding(title, node.path("detail").asText("").trim(), severity, List.of(page)));
+            }
+        } catch (Exception e) {
+            log.warn("Could not parse risk scan answer for pages {}-{}: {}",
+                    chunk.startPage(), chunk.endPage(), e.getMessage());
+        }
+        return findings;
+    }
+
+    /** Greedily merges findings whose terms overlap by at least the threshold (Jaccard similarity). */
+    List<RiskFinding> merge(List<RiskFinding> findings) {
+        List<RiskFinding> merged = new ArrayList<>();
+        List<Set<String>> mergedTerms = new ArrayList<>();
+        for (RiskFinding finding : findings) {
+            Set<String> terms = new HashSet<>(TextNormalizer.terms(finding.title() + " " + finding.detail()));
+            int match = -1;
+            for (int i = 0; i < merged.size() && match < 0; i++) {
+                if (jaccard(terms, mergedTerms.get(i)) >= mergeThreshold) match = i;
+            }
+            if (match < 0) {
+                merged.add(finding);
+                mergedTerms.add(terms);
+            } else {
+                merged.set(match, combine(merged.get(match), finding));
+                mergedTerms.get(match).addAll(terms);
+            }
+        }
+        merged.sort(Comparator.comparingInt((RiskFinding f) -> SEVERITIES.indexOf(f.severity()))
+                .thenComparingInt(f -> f.pages().get(0)));
+        return merged;
+    }
+
+    private static RiskFinding combine(RiskFinding a, RiskFinding b) {
+        Set<Integer> pages = new TreeSet<>(a.pages());
+        pages.addAll(b.pages());
+        String severity = SEVERITIES.indexOf(a.severity()) <= SEVERITIES.indexOf(b.severity()) ? a.severity() : b.severity();
+        String detail = a.detail().length() >= b.detail().length() ? a.detail() : b.detail();
+        return new RiskFinding(a.title(), detail, severity, List.copyOf(pages));
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() && b.isEmpty()) return 1;
+        int common = 0;
+        for (String term : a) {
+            if (b.contains(term)) common++;
+        }
+        return (double) common / (a.size() + b.size() - common);
+    }
+
+    private static String format(List<RiskFinding> findings, String lang) {
+        boolean en = "en".equals(lang);
+        if (findings.isEmpty()) {
+            return en ? "No risk alerts or warnings were found in this book." : "لم يتم العثور على تنبيهات مخاطر أو تحذيرات في هذا الكتاب.";
+        }
+        StringBuilder out = new StringBuilder();
+        for (RiskFinding f : findings) {
+            out.append("- **[").append(f.severity()).append("] ").append(f.title()).append("**");
+            out.append(en ? " (pages " : " (الصفحات ");
+            out.append(String.join(", ", f.pages().stream().map(String::valueOf).toList())).append(")");
+            if (!f.detail().isEmpty()) out.append(": ").append(f.detail());
+            out.append('\n');
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,18 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.SearchHit;
+
+import java.util.List;
+
+/** One book's worth of searchable pages, either built in memory or opened from disk. */
+public interface SearchShard {
+
+    String fileName();
+
+    int pageCount();
+
+    int termCount();
+
+    /** Returns up to {@code limit} best-scoring pages for the given normalized query terms. */
+    List<SearchHit> search(List<String> queryTerms, int limit);
+}
@@ -0,0 +1,117 @@
+package com.bookassistant.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A cached result that every caller asking for the same content waits on. Its upstream calls run
+ * in a context of their own, so one caller giving up does not abort them for the others. Callers
+ * in a {@link RequestContext#background()} context, such as prefetches and warm-up, hold a claim
+ * that they give back when their context is cancelled; the work is aborted once no claim is left.
+ * Any other caller, such as a web request, keeps the work running until it completes.
+ */
+final class SharedFuture<V> extends CompletableFuture<V> {
+
+    private final RequestContext context;
+    private final List<Runnable> links = new ArrayList<>();
+    private int claims;
+    private boolean pinned;
+    private boolean abandoned;
+
+    private SharedFuture(RequestContext context) {
+        this.context = context;
+    }
+
+    /**
+     * The entry for {@code key}, claimed for the calling thread's context. When there is none, or the
+     * one there was abandoned meanwhile, {@code work} is started with an executor that runs its tasks
+     * in the entry's context, and the entry is removed again if it fails or {@code failed} says so.
+     */
+    static <V> CompletableFuture<V> claim(Map<String, CompletableFuture<V>> cache, String key, Executor executor,
+                                          Predicate<V> failed, Function<Executor, CompletableFuture<V>> work) {
+        while (true) {
+            CompletableFuture<V> future = cache.get(key);
+            if (future == null) {
+                SharedFuture<V> fresh = new SharedFuture<>(RequestContext.forSharedWork());
+                future = cache.putIfAbsent(key, fresh);
+                if (future == null) {
+                    fresh.whenComplete((result, error) -> {
+                        if (error != null || failed.test(result)) cache.remove(key, fresh);
+                    });
+                    fresh.claim();
+                    fresh.start(executor, work);
+                    return fresh;
+                }
+            }
+            if (claimed(future)) return future;
+            cache.remove(key, future);
+        }
+    }
+
+    /** Claims futures that work already running depends on, for the calling thread's context. */
+    static void claimAll(List<? extends CompletableFuture<?>> futures) {
+        futures.forEach(SharedFuture::claimed);
+    }
+
+    private static boolean claimed(CompletableFuture<?> future) {
+        return !(future instanceof SharedFuture<?> shared) || shared.claim();
+    }
+
+    private void start(Executor executor, Function<Executor, CompletableFuture<V>> work) {
+        // Tasks are handed over with this context bound, so RequestContext.propagate links them to it
+        Executor bound = task -> context.within(() -> {
+            executor.execute(task);
+            return null;
+        });
+        CompletableFuture<V> result;
+        try {
+            result = context.within(() -> work.apply(bound));
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, error) -> {
+            if (error != null) completeExceptionally(error);
+            else complete(value);
+            unlink();
+        });
+    }
+
+    /** False when the work was abandoned and has to be started again. */
+    private boolean claim() {
+        RequestContext requester = RequestContext.current().orElse(null);
+        synchronized (this) {
+            if (abandoned) return false;
+            if (isDone()) return true;
+            if (requester == null || !requester.cancelsWorkers()) {
+                pinned = true;
+                return true;
+            }
+            if (requester.isCancelled()) return true;
+            claims++;
+            links.add(requester.onCancel(this::release));
+            return true;
+        }
+    }
+
+    private void release() {
+        synchronized (this) {
+            if (--claims > 0 || pinned || abandoned || isDone()) return;
+            abandoned = true;
+        }
+        context.cancel();
+    }
+
+    private void unlink() {
+        List<Runnable> done;
+        synchronized (this) {
+            done = List.copyOf(links);
+            links.clear();
+        }
+        done.forEach(Runnable::run);
+    }
+}
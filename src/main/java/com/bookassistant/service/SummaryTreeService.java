@@ -0,0 +1,256 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.PageData;
+import com.bookassistant.model.TextChunk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Summarizes books as a tree. Leaves are the book's fixed chunks, each internal node combines
+ * up to {@code fanout} consecutive children, and every node is cached under a hash of its
+ * content. A page range is answered from the largest cached nodes that fit inside it, plus
+ * fresh leaves for the partial chunks at its edges, so overlapping requests reuse earlier work.
+ * A leaf in another language than the book's is summarized from the chunk's translation when
+ * {@link TranslationCache} already has one, which takes fewer tokens than the original.
+ */
+@Service
+public class SummaryTreeService {
+
+    private static final Logger log = LoggerFactory.getLogger(SummaryTreeService.class);
+
+    private final AiService aiService;
+    private final TextChunker chunker;
+    private final TranslationCache translations;
+    private final Executor executor;
+    private final int fanout;
+    private final Map<String, CompletableFuture<String>> cache;
+
+    public SummaryTreeService(AiService aiService,
+                              TextChunker chunker,
+                              TranslationCache translations,
+                              @Qualifier("aiExecutor") Executor executor,
+                              @Value("${app.summary.fanout:8}") int fanout,
+                              @Value("${app.summary.cache-size:10000}") int cacheSize) {
+        this.aiService = aiService;
+        this.chunker = chunker;
+        this.translations = translations;
+        this.executor = executor;
+        this.fanout = Math.max(2, fanout);
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<String>> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    public String summarizeBook(BookData book, String bookHash, String lang) {
+        return summarizeBookAsync(book, bookHash, lang).join();
+    }
+
+    public CompletableFuture<String> summarizeBookAsync(BookData book, String bookHash, String lang) {
+        return summarizeBookAsync(book, bookHash, lang, executor);
+    }
+
+    /** Like {@link #summarizeBookAsync(BookData, String, String)}, making any missing calls on {@code calls}. */
+    public CompletableFuture<String> summarizeBookAsync(BookData book, String bookHash, String lang, Executor calls) {
+        return summarizeRangeAsync(book, bookHash, 1, book.lastPage(), lang, calls);
+    }
+
+    public String summarizeRange(BookData book, String bookHash, int startPage, int endPage, String lang) {
+        return summarizeRangeAsync(book, bookHash, startPage, endPage, lang).join();
+    }
+
+    public CompletableFuture<String> summarizeRangeAsync(BookData book, String bookHash,
+                                                         int startPage, int endPage, String lang) {
+        return summarizeRangeAsync(book, bookHash, startPage, endPage, lang, executor);
+    }
+
+    /**
+     * Like {@link #summarizeRangeAsync(BookData, String, int, int, String)}, making any missing calls on
+     * {@code calls} instead of the shared AI executor.
+     */
+    public CompletableFuture<String> summarizeRangeAsync(BookData book, String bookHash, int startPage, int endPage,
+                                                         String lang, Executor calls) {
+        List<TextChunk> grid = chunker.chunk(bookHash, book);
+        int first = -1;
+        int last = -1;
+        for (TextChunk chunk : grid) {
+            if (chunk.startPage() >= startPage && chunk.endPage() <= endPage) {
+                if (first < 0) first = chunk.index();
+                last = chunk.index();
+            }
+        }
+
+        List<CompletableFuture<String>> parts = new ArrayList<>();
+        List<String> partKeys = new ArrayList<>();
+        if (first < 0) {
+            addLeaves(chunker.chunk(pagesBetween(book, startPage, endPage)), lang, calls, parts, partKeys);
+        } else {
+            addLeaves(chunker.leadingEdge(book, grid, first, startPage), lang, calls, parts, partKeys);
+            List<String> leafKeys = grid.stream().map(c -> leafKey(c.contentHash(), lang)).toList();
+            int levels = levelsFor(grid.size());
+            cover(grid, leafKeys, levels, 0, first, last, lang, calls, parts, partKeys);
+            addLeaves(chunker.trailingEdge(book, grid, last, endPage), lang, calls, parts, partKeys);
+        }
+
+        if (parts.isEmpty()) {
+            return leaf("", ContentHash.of(""), lang, calls);
+        }
+        log.debug("Summary for pages {}-{} assembled from {} parts", startPage, endPage, parts.size());
+        return combineAll(parts, partKeys, lang, calls);
+    }
+
+    /** Summarizes one of the book's chunks, a leaf of its tree, making the call on {@code calls} if needed. */
+    public CompletableFuture<String> summarizeLeafAsync(TextChunk chunk, String lang, Executor calls) {
+        return leaf(chunk.text(), chunk.contentHash(), lang, calls);
+    }
+
+    /** Summarizes a single piece of text with the leaf prompt, using the cache. */
+    public String summarizeText(String text, String lang) {
+        return leaf(text, ContentHash.of(text), lang, executor).join();
+    }
+
+    private void addLeaves(List<TextChunk> chunks, String lang, Executor calls,
+                           List<CompletableFuture<String>> parts, List<String> partKeys) {
+        for (TextChunk chunk : chunks) {
+            parts.add(leaf(chunk.text(), chunk.contentHash(), lang, calls));
+            partKeys.add(leafKey(chunk.contentHash(), lang));
+        }
+    }
+
+    private static List<PageData> pagesBetween(BookData book, int from, int to) {
+        return book.pages().stream()
+                .filter(p -> p.pageNumber() >= from && p.pageNumber() <= to)
+                .toList();
+    }
+
+    /** Adds the largest aligned tree nodes lying inside leaves [first, last]. */
+    private void cover(List<TextChunk> grid, List<String> leafKeys, int level, int position,
+                       int first, int last, String lang, Executor calls,
+                       List<CompletableFuture<String>> parts, List<String> partKeys) {
+        int span = span(level);
+        int lo = position * span;
+        int hi = Math.min(grid.size(), lo + span) - 1;
+        if (hi < first || lo > last) return;
+        if (lo >= first && hi <= last) {
+            parts.add(node(grid, leafKeys, level, position, lang, calls));
+            partKeys.add(nodeKey(leafKeys, level, position, lang));
+            return;
+        }
+        for (int child = 0; child < fanout; child++) {
+            cover(grid, leafKeys, level - 1, position * fanout + child, first, last, lang, calls, parts, partKeys);
+        }
+    }
+
+    private CompletableFuture<String> node(List<TextChunk> grid, List<String> leafKeys,
+                                           int level, int position, String lang, Executor calls) {
+        if (level == 0) {
+            TextChunk chunk = grid.get(position);
+            return leaf(chunk.text(), chunk.contentHash(), lang, calls);
+        }
+        // A node with a single child covers the same leaves, so it shares the child's key
+        if ((position * fanout + 1) * span(level - 1) >= grid.size()) {
+            return node(grid, leafKeys, level - 1, position * fanout, lang, calls);
+        }
+        return cached(nodeKey(leafKeys, level, position, lang), calls, own -> {
+            List<CompletableFuture<String>> children = new ArrayList<>();
+            for (int child = 0; child < fanout; child++) {
+                int childPosition = position * fanout + child;
+                if (childPosition * span(level - 1) >= grid.size()) break;
+                children.add(node(grid, leafKeys, level - 1, childPosition, lang, calls));
+            }
+            return combine(children, lang, own);
+        });
+    }
+
+    private CompletableFuture<String> combineAll(List<CompletableFuture<String>> parts, List<String> partKeys,
+                                                 String lang, Executor calls) {
+        if (parts.size() == 1) return parts.get(0);
+
+        List<CompletableFuture<String>> combined = new ArrayList<>();
+        List<String> combinedKeys = new ArrayList<>();
+        for (int i = 0; i < parts.size(); i += fanout) {
+            int end = Math.min(parts.size(), i + fanout);
+            String key = ContentHash.of("range|" + lang + "|" + String.join(",", partKeys.subList(i, end)));
+            List<CompletableFuture<String>> group = parts.subList(i, end);
+            combined.add(group.size() == 1 ? group.get(0) : cached(key, calls, own -> {
+                SharedFuture.claimAll(group);
+                return combine(group, lang, own);
+            }));
+            combinedKeys.add(key);
+        }
+        return combineAll(combined, combinedKeys, lang, calls);
+    }
+
+    private CompletableFuture<String> combine(List<CompletableFuture<String>> children, String lang, Executor calls) {
+        return CompletableFuture.allOf(children.toArray(CompletableFuture[]::new))
+                .thenApplyAsync(ignored -> {
+                    List<String> summaries = children.stream().map(CompletableFuture::join).toList();
+                    for (String summary : summaries) {
+                        if (summary.startsWith(AiService.ERROR_PREFIX)) return summary;
+                    }
+                    String system = "en".equals(lang)
+                            ? "These are summaries of consecutive parts of a book. Combine them into one concise summary."
+                            : "هذه ملخصات لأجزاء متتالية من كتاب. ادمجها في ملخص واحد موجز.";
+                    return aiService.ask(RequestType.SUMMARY, system, String.join("\n\n---\n\n", summaries), lang);
+                }, calls);
+    }
+
+    private CompletableFuture<String> leaf(String text, String textHash, String lang, Executor calls) {
+        return cached(leafKey(textHash, lang), calls, own -> CompletableFuture.supplyAsync(() -> {
+            String system = "en".equals(lang)
+                    ? "Summarize these pages concisely."
+                    : "لخّص هذه الصفحات بإيجاز.";
+            String source = translations.cached(textHash, lang).orElse(text);
+            return aiService.ask(RequestType.SUMMARY, system, source, lang);
+        }, own));
+    }
+
+    /**
+     * Returns the cached future for this key, or starts one whose calls run on {@code calls}; concurrent
+     * callers share a single call and failed results are not kept. Dropping a prefetch or warm-up that
+     * asked for it aborts the work only when nobody else is waiting on it (see {@link SharedFuture}).
+     */
+    private CompletableFuture<String> cached(String key, Executor calls,
+                                             Function<Executor, CompletableFuture<String>> compute) {
+        return SharedFuture.claim(cache, key, calls,
+                result -> result == null || result.startsWith(AiService.ERROR_PREFIX), compute);
+    }
+
+    private int levelsFor(int leaves) {
+        int levels = 0;
+        while (span(levels) < leaves) levels++;
+        return levels;
+    }
+
+    private int span(int level) {
+        int span = 1;
+        for (int i = 0; i < level; i++) span *= fanout;
+        return span;
+    }
+
+    private static String leafKey(String textHash, String lang) {
+        return ContentHash.of("leaf|" + lang + "|" + textHash);
+    }
+
+    private String nodeKey(List<String> leafKeys, int level, int position, String lang) {
+        int lo = position * span(level);
+        int hi = Math.min(leafKeys.size(), lo + span(level));
+        if (level == 0) return leafKeys.get(lo);
+        return ContentHash.of("node|" + lang + "|" + fanout + "|" + String.join(",", leafKeys.subList(lo, hi)));
+    }
+}
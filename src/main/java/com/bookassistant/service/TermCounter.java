@@ -0,0 +1,133 @@
+package com.bookassistant.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleBiFunction;
+
+/**
+ * Counts terms in an open-addressing table of parallel {@code String[]}/{@code int[]} arrays with linear
+ * probing, so counting a book's words does not box an Integer per update the way HashMap does.
+ */
+final class TermCounter {
+
+    @FunctionalInterface
+    interface Visitor {
+        void visit(String term, int count);
+    }
+
+    private String[] keys;
+    private int[] counts;
+    private int size;
+    private long total;
+
+    TermCounter() {
+        this(64);
+    }
+
+    TermCounter(int expectedTerms) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedTerms * 2 - 1)) << 1;
+        keys = new String[capacity];
+        counts = new int[capacity];
+    }
+
+    void add(String term) {
+        add(term, 1);
+    }
+
+    void add(String term, int count) {
+        total += count;
+        int mask = keys.length - 1;
+        int i = slot(term, mask);
+        while (keys[i] != null) {
+            if (keys[i].equals(term)) {
+                counts[i] += count;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = term;
+        counts[i] = count;
+        if (++size * 2 > keys.length) grow();
+    }
+
+    void addAll(TermCounter other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != null) add(other.keys[i], other.counts[i]);
+        }
+    }
+
+    int get(String term) {
+        int mask = keys.length - 1;
+        int i = slot(term, mask);
+        while (keys[i] != null) {
+            if (keys[i].equals(term)) return counts[i];
+            i = (i + 1) & mask;
+        }
+        return 0;
+    }
+
+    /** Number of distinct terms. */
+    int size() {
+        return size;
+    }
+
+    /** Sum of all counts. */
+    long total() {
+        return total;
+    }
+
+    void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) visitor.visit(keys[i], counts[i]);
+        }
+    }
+
+    /** The {@code k} terms with the highest positive score, best first; ties go to the alphabetically smaller term. */
+    List<String> top(int k, ToDoubleBiFunction<String, Integer> score) {
+        // Insertion into a sorted window of k slots: cheap for the small k used for keywords
+        int[] best = new int[Math.max(0, k)];
+        double[] bestScores = new double[best.length];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null) continue;
+            double s = score.applyAsDouble(keys[i], counts[i]);
+            if (s <= 0) continue;
+            int pos = n;
+            while (pos > 0 && better(s, keys[i], bestScores[pos - 1], keys[best[pos - 1]])) pos--;
+            if (pos >= best.length) continue;
+            int last = Math.min(n, best.length - 1);
+            System.arraycopy(best, pos, best, pos + 1, last - pos);
+            System.arraycopy(bestScores, pos, bestScores, pos + 1, last - pos);
+            best[pos] = i;
+            bestScores[pos] = s;
+            if (n < best.length) n++;
+        }
+        List<String> top = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) top.add(keys[best[i]]);
+        return top;
+    }
+
+    private static boolean better(double score, String term, double otherScore, String otherTerm) {
+        return score > otherScore || (score == otherScore && term.compareTo(otherTerm) < 0);
+    }
+
+    private void grow() {
+        String[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new String[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == null) continue;
+            int i = slot(oldKeys[j], mask);
+            while (keys[i] != null) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            counts[i] = oldCounts[j];
+        }
+    }
+
+    private static int slot(String term, int mask) {
+        int h = term.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,266 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.Chapter;
+import com.bookassistant.model.PageData;
+import com.bookassistant.model.TextChunk;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Splits book pages into prompt-sized chunks. Text is cut at paragraph boundaries first,
+ * then at sentence boundaries (Arabic and Latin punctuation), and only as a last resort
+ * between words. Consecutive chunks share up to the configured overlap, and every chunk
+ * remembers the pages it came from. When the book has a chapter table, no chunk crosses a
+ * chapter boundary.
+ */
+@Service
+public class TextChunker {
+
+    private static final Pattern PARAGRAPH_BREAK = Pattern.compile("\\n\\s*\\n");
+    private static final Pattern SENTENCE_END = Pattern.compile("(?<=[.!?؟۔…])\\s+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final int CACHED_BOOKS = 16;
+
+    private final TokenCounter tokenCounter;
+    private final int maxTokens;
+    private final int overlapTokens;
+    private final Map<String, List<TextChunk>> bookChunks = Collections.synchronizedMap(
+            new LinkedHashMap<>(CACHED_BOOKS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<TextChunk>> eldest) {
+                    return size() > CACHED_BOOKS;
+                }
+            });
+
+    @Autowired
+    public TextChunker(TokenCounter tokenCounter,
+                       @Value("${app.chunk.max-tokens:2000}") int maxTokens,
+                       @Value("${app.chunk.overlap-tokens:200}") int overlapTokens) {
+        if (maxTokens <= 0) throw new IllegalArgumentException("app.chunk.max-tokens must be positive");
+        this.tokenCounter = tokenCounter;
+        this.maxTokens = maxTokens;
+        this.overlapTokens = Math.max(0, Math.min(overlapTokens, maxTokens / 2));
+    }
+
+    /** Chunker for the default model's tokenizer. */
+    public TextChunker(int maxTokens, int overlapTokens) {
+        this(new TokenCounter(TokenCounter.DEFAULT_MODEL), maxTokens, overlapTokens);
+    }
+
+    public int maxTokens() {
+        return maxTokens;
+    }
+
+    /**
+     * Chunks of a whole book, computed once per content hash. Because the split is fixed per
+     * book, chunks make stable cache units for anything derived from them.
+     */
+    public List<TextChunk> chunk(String contentHash, BookData book) {
+        List<TextChunk> chunks = bookChunks.get(contentHash);
+        if (chunks == null) {
+            chunks = List.copyOf(chunk(book));
+            bookChunks.put(contentHash, chunks);
+        }
+        return chunks;
+    }
+
+    /**
+     * Chunks covering a page range: the book's own chunks that lie inside it, plus fresh chunks
+     * for the pages at either end that no whole book chunk covers. Ranges that line up with the
+     * book's chunks therefore reuse anything cached per chunk.
+     */
+    public List<TextChunk> cover(String contentHash, BookData book, int startPage, int endPage) {
+        List<TextChunk> grid = chunk(contentHash, book);
+        int first = -1;
+        int last = -1;
+        for (TextChunk chunk : grid) {
+            if (chunk.startPage() >= startPage && chunk.endPage() <= endPage) {
+                if (first < 0) first = chunk.index();
+                last = chunk.index();
+            }
+        }
+        if (first < 0) {
+            return chunk(pagesBetween(book.pages(), startPage, endPage));
+        }
+        List<TextChunk> chunks = new ArrayList<>(leadingEdge(book, grid, first, startPage));
+        chunks.addAll(grid.subList(first, last + 1));
+        chunks.addAll(trailingEdge(book, grid, last, endPage));
+        return chunks;
+    }
+
+    /**
+     * Fresh chunks for the pages from {@code startPage} to where the book chunk {@code first} begins.
+     * Chunks are cut between paragraphs, so when the chunk before it ends on that same page, part of
+     * the page is in neither; the edge then takes the whole page.
+     */
+    public List<TextChunk> leadingEdge(BookData book, List<TextChunk> grid, int first, int startPage) {
+        int to = grid.get(first).startPage();
+        if (first == 0 || grid.get(first - 1).endPage() < to) to--;
+        return chunk(pagesBetween(book.pages(), startPage, to));
+    }
+
+    /** Like {@link #leadingEdge}, for the pages after the book chunk {@code last} up to {@code endPage}. */
+    public List<TextChunk> trailingEdge(BookData book, List<TextChunk> grid, int last, int endPage) {
+        int from = grid.get(last).endPage();
+        if (last == grid.size() - 1 || grid.get(last + 1).startPage() > from) from++;
+        return chunk(pagesBetween(book.pages(), from, endPage));
+    }
+
+    public List<TextChunk> chunk(BookData book) {
+        if (book.chapters().isEmpty()) {
+            return chunk(book.pages());
+        }
+
+        List<TextChunk> chunks = new ArrayList<>();
+        int firstChapterPage = book.chapters().get(0).startPage();
+        List<List<PageData>> sections = new ArrayList<>();
+        sections.add(pagesBetween(book.pages(), 1, firstChapterPage - 1));
+        for (Chapter chapter : book.chapters()) {
+            sections.add(pagesBetween(book.pages(), chapter.startPage(), chapter.endPage()));
+        }
+        for (List<PageData> section : sections) {
+            for (TextChunk chunk : chunk(section)) {
+                chunks.add(new TextChunk(chunks.size(), chunk.startPage(), chunk.endPage(), chunk.text(),
+                        chunk.tokens(), chunk.contentHash()));
+            }
+        }
+        return chunks;
+    }
+
+    public List<TextChunk> chunk(List<PageData> pages) {
+        List<TextChunk> chunks = new ArrayList<>();
+        Deque<Unit> current = new ArrayDeque<>();
+        int currentTokens = 0;
+
+        for (PageData page : pages) {
+            for (Unit unit : units(page)) {
+                if (currentTokens + unit.tokens > maxTokens && !current.isEmpty()) {
+                    chunks.add(toChunk(chunks.size(), current));
+                    currentTokens = keepOverlap(current, Math.min(overlapTokens, maxTokens - unit.tokens));
+                }
+                current.addLast(unit);
+                currentTokens += unit.tokens;
+            }
+        }
+        if (!current.isEmpty() && (chunks.isEmpty() || current.stream().anyMatch(u -> !u.overlap))) {
+            chunks.add(toChunk(chunks.size(), current));
+        }
+        return chunks;
+    }
+
+    private static List<PageData> pagesBetween(List<PageData> pages, int startPage, int endPage) {
+        return pages.stream()
+                .filter(p -> p.pageNumber() >= startPage && p.pageNumber() <= endPage)
+                .toList();
+    }
+
+    /** Keeps the trailing units that fit the overlap budget; returns their token count. */
+    private static int keepOverlap(Deque<Unit> current, int budget) {
+        int kept = 0;
+        Deque<Unit> tail = new ArrayDeque<>();
+        while (!current.isEmpty()) {
+            Unit last = current.peekLast();
+            if (kept + last.tokens > budget) break;
+            tail.addFirst(current.pollLast().asOverlap());
+            kept += last.tokens;
+        }
+        current.clear();
+        current.addAll(tail);
+        return kept;
+    }
+
+    private List<Unit> units(PageData page) {
+        List<Unit> units = new ArrayList<>();
+        String text = page.text();
+        if (text == null || text.isBlank()) return units;
+
+        for (String paragraph : PARAGRAPH_BREAK.split(text)) {
+            paragraph = paragraph.strip();
+            if (paragraph.isEmpty()) continue;
+            int tokens = tokenCounter.count(paragraph);
+            if (tokens <= maxTokens) {
+                units.add(new Unit(page.pageNumber(), paragraph, tokens, true, false));
+                continue;
+            }
+            boolean first = true;
+            for (String sentence : SENTENCE_END.split(paragraph)) {
+                for (String piece : fitSentence(sentence)) {
+                    units.add(new Unit(page.pageNumber(), piece, tokenCounter.count(piece), first, false));
+                    first = false;
+                }
+            }
+        }
+        return units;
+    }
+
+    private List<String> fitSentence(String sentence) {
+        if (tokenCounter.count(sentence) <= maxTokens) return List.of(sentence);
+
+        List<String> pieces = new ArrayList<>();
+        StringBuilder piece = new StringBuilder();
+        int pieceTokens = 0;
+        for (String word : words(sentence)) {
+            int wordTokens = tokenCounter.count(word) + 1;
+            if (pieceTokens + wordTokens > maxTokens && piece.length() > 0) {
+                pieces.add(piece.toString());
+                piece.setLength(0);
+                pieceTokens = 0;
+            }
+            if (piece.length() > 0) piece.append(' ');
+            piece.append(word);
+            pieceTokens += wordTokens;
+        }
+        if (piece.length() > 0) pieces.add(piece.toString());
+        return pieces;
+    }
+
+    /** Whitespace-separated words, with runs too long for one chunk cut into slices. */
+    private List<String> words(String sentence) {
+        List<String> words = new ArrayList<>();
+        for (String word : WHITESPACE.split(sentence)) {
+            if (word.length() < maxTokens) {
+                words.add(word);
+                continue;
+            }
+            int slice = Math.max(1, maxTokens - 1);
+            for (int i = 0; i < word.length(); i += slice) {
+                words.add(word.substring(i, Math.min(word.length(), i + slice)));
+            }
+        }
+        return words;
+    }
+
+    private static TextChunk toChunk(int index, Deque<Unit> units) {
+        StringBuilder text = new StringBuilder();
+        int tokens = 0;
+        int startPage = Integer.MAX_VALUE;
+        int endPage = Integer.MIN_VALUE;
+        for (Unit unit : units) {
+            if (text.length() > 0) text.append(unit.paragraphStart ? "\n\n" : " ");
+            text.append(unit.text);
+            tokens += unit.tokens;
+            startPage = Math.min(startPage, unit.page);
+            endPage = Math.max(endPage, unit.page);
+        }
+        String chunkText = text.toString();
+        return new TextChunk(index, startPage, endPage, chunkText, tokens, ContentHash.of(chunkText));
+    }
+
+    private record Unit(int page, String text, int tokens, boolean paragraphStart, boolean overlap) {
+        Unit asOverlap() {
+            return new Unit(page, text, tokens, paragraphStart, true);
+        }
+    }
+}
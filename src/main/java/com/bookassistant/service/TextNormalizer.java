@@ -0,0 +1,70 @@
+package com.bookassistant.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits Arabic and English text into normalized search terms: lower-cased, diacritics and
+ * tatweel removed, and the common alef/yaa/taa-marbuta spelling variants folded together.
+ */
+public final class TextNormalizer {
+
+    /** Common English and Arabic function words, in normalized form. */
+    private static final Set<String> STOPWORDS = Set.of(
+            "the", "and", "of", "to", "in", "is", "it", "that", "for", "on", "as", "with", "was", "are", "be",
+            "this", "by", "an", "or", "at", "from", "but", "not", "have", "has", "had", "they", "we", "you",
+            "he", "she", "his", "her", "their", "its", "which", "were", "will", "would", "can", "there", "so",
+            "في", "من", "علي", "الي", "عن", "ان", "او", "ما", "لا", "هذا", "هذه", "ذلك", "التي", "الذي",
+            "مع", "كان", "كانت", "قد", "هو", "هي", "ثم", "كل", "بين", "لم", "لن", "اذا", "حتي", "عند");
+
+    private TextNormalizer() {
+    }
+
+    public static boolean isStopword(String term) {
+        return STOPWORDS.contains(term);
+    }
+
+    public static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) return terms;
+
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isDiacritic(c)) continue;
+            if (Character.isLetterOrDigit(c)) {
+                current.append(fold(c));
+            } else if (current.length() > 0) {
+                addTerm(terms, current);
+            }
+        }
+        if (current.length() > 0) addTerm(terms, current);
+        return terms;
+    }
+
+    public static String normalize(String word) {
+        List<String> terms = terms(word);
+        return terms.isEmpty() ? "" : String.join(" ", terms);
+    }
+
+    private static void addTerm(List<String> terms, StringBuilder current) {
+        if (current.length() > 1) {
+            terms.add(current.toString());
+        }
+        current.setLength(0);
+    }
+
+    private static boolean isDiacritic(char c) {
+        return (c >= 'ً' && c <= 'ْ') || c == 'ٰ' || c == 'ـ';
+    }
+
+    private static char fold(char c) {
+        return switch (c) {
+            case 'أ', 'إ', 'آ', 'ٱ' -> 'ا';
+            case 'ى' -> 'ي';
+            case 'ة' -> 'ه';
+            default -> Character.toLowerCase(c);
+        };
+    }
+}
@@ -0,0 +1,104 @@
+package com.bookassistant.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Local token counter that mimics how byte-pair-encoding tokenizers split text, so prompts
+ * can be measured before they are sent. Text is pre-tokenized the way BPE models do it
+ * (letter runs with their leading space, digit groups, punctuation runs, line breaks) and
+ * each piece is charged the number of sub-word merges a typical vocabulary needs for it.
+ * Without the model's vocabulary the count is an approximation, but it follows the same
+ * boundaries as the real tokenizer, so errors stay small and do not grow with text length.
+ *
+ * <p>Chat requests also pay a few tokens of framing per message; {@link #countPrompt} adds
+ * those so the result can be compared against the model's context window.
+ */
+@Service
+public class TokenCounter {
+
+    public static final String DEFAULT_MODEL = "qwen3-coder:480b-cloud";
+
+    /** Framing tokens around every chat message (role markers and separators). */
+    static final int TOKENS_PER_MESSAGE = 4;
+    /** Tokens that open the assistant's reply. */
+    static final int REPLY_PRIMING = 3;
+
+    private final int digitsPerToken;
+
+    public TokenCounter(@Value("${app.ai.model:" + DEFAULT_MODEL + "}") String model) {
+        // Qwen vocabularies split numbers into single digits; most others merge up to three.
+        this.digitsPerToken = model != null && model.toLowerCase(Locale.ROOT).startsWith("qwen") ? 1 : 3;
+    }
+
+    /** Tokens a system plus user chat request will occupy in the context window. */
+    public int countPrompt(String systemPrompt, String userContent) {
+        return count(systemPrompt) + count(userContent) + 2 * TOKENS_PER_MESSAGE + REPLY_PRIMING;
+    }
+
+    /** Like {@link #countPrompt(String, String)}, with earlier turns between the two messages. */
+    public int countPrompt(String systemPrompt, List<ChatMessage> history, String userContent) {
+        int tokens = countPrompt(systemPrompt, userContent);
+        for (ChatMessage message : history) tokens += count(message.content()) + TOKENS_PER_MESSAGE;
+        return tokens;
+    }
+
+    public int count(CharSequence text) {
+        if (text == null) return 0;
+        int tokens = 0;
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            char c = text.charAt(i);
+            int start = i;
+            if (Character.isLetter(c)) {
+                boolean arabic = isArabic(c);
+                boolean ideographic = Character.isIdeographic(c);
+                while (i < n && (Character.isLetter(text.charAt(i)) || isMark(text.charAt(i)))) i++;
+                tokens += ideographic ? i - start : wordTokens(i - start, arabic);
+            } else if (Character.isDigit(c)) {
+                while (i < n && Character.isDigit(text.charAt(i))) i++;
+                tokens += (i - start + digitsPerToken - 1) / digitsPerToken;
+            } else if (Character.isWhitespace(c)) {
+                boolean lineBreak = false;
+                while (i < n && Character.isWhitespace(text.charAt(i))) {
+                    lineBreak |= text.charAt(i) == '\n';
+                    i++;
+                }
+                // A single space merges into the next word; longer runs and line breaks do not.
+                if (lineBreak || i - start > 1 || c != ' ') tokens++;
+            } else {
+                while (i < n && isSymbol(text.charAt(i))) i++;
+                if (i == start) i++;
+                tokens += (i - start + 1) / 2;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Common short words are single vocabulary entries; longer ones split into pieces of a
+     * few letters. Arabic words carry attached prefixes and suffixes, so they split sooner.
+     */
+    private static int wordTokens(int letters, boolean arabic) {
+        return arabic ? (letters + 2) / 3 : (letters + 5) / 6;
+    }
+
+    private static boolean isArabic(char c) {
+        return (c >= '؀' && c <= 'ۿ') || (c >= 'ݐ' && c <= 'ݿ')
+                || (c >= 'ﭐ' && c <= '﻿');
+    }
+
+    /** Diacritics stay attached to the word they mark. */
+    private static boolean isMark(char c) {
+        int type = Character.getType(c);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK;
+    }
+
+    private static boolean isSymbol(char c) {
+        return !Character.isLetterOrDigit(c) && !Character.isWhitespace(c) && !isMark(c);
+    }
+}
@@ -0,0 +1,170 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.TextChunk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Translations of book chunks, made once per chunk and output language and shared by everyone
+ * reading the same book. Each translation is kept in memory and in a text file named after the
+ * chunk's content hash and language. Requests that need a page range in another language than
+ * the book's are sent the translated chunks instead of having the model translate the range
+ * again; summaries and quizzes use a translation when one already exists.
+ */
+@Service
+public class TranslationCache {
+
+    private static final Logger log = LoggerFactory.getLogger(TranslationCache.class);
+
+    private static final String PROMPT_EN = "Translate this text from a book into English. Keep the paragraphs, "
+            + "names and numbers as they are. Answer only with the translation.";
+    private static final String PROMPT_AR = "ترجم هذا النص من كتاب إلى العربية. حافظ على الفقرات والأسماء والأرقام "
+            + "كما هي. أجب بالترجمة فقط.";
+
+    private final AiService aiService;
+    private final TextChunker chunker;
+    private final Executor executor;
+    private final Path directory;
+    private final Map<String, CompletableFuture<String>> translations;
+
+    public TranslationCache(AiService aiService,
+                            TextChunker chunker,
+                            @Qualifier("aiExecutor") Executor executor,
+                            @Value("${app.translations.dir:${java.io.tmpdir}/book-assistant/translations}") String directory,
+                            @Value("${app.translations.cache-size:2000}") int cacheSize) {
+        this.aiService = aiService;
+        this.chunker = chunker;
+        this.executor = executor;
+        this.directory = Path.of(directory);
+        this.translations = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<String>> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * The page range translated into {@code lang}, chunk by chunk. Neighbouring chunks share a
+     * little text, which then appears twice. Completes with the upstream error when a chunk
+     * could not be translated.
+     */
+    public CompletableFuture<String> translateRangeAsync(BookData book, String bookHash, int startPage, int endPage,
+                                                         String lang) {
+        List<CompletableFuture<String>> chunks = chunker.cover(bookHash, book, startPage, endPage).stream()
+                .map(chunk -> translate(chunk, lang))
+                .toList();
+        return CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new)).thenApply(done -> {
+            List<String> texts = chunks.stream().map(CompletableFuture::join).toList();
+            for (String text : texts) {
+                if (text.startsWith(AiService.ERROR_PREFIX)) return text;
+            }
+            return String.join("\n\n", texts);
+        });
+    }
+
+    public String translateRange(BookData book, String bookHash, int startPage, int endPage, String lang) {
+        return translateRangeAsync(book, bookHash, startPage, endPage, lang).join();
+    }
+
+    /** The chunk in {@code lang}, translated on first use; failed translations are not kept. */
+    public CompletableFuture<String> translate(TextChunk chunk, String lang) {
+        String key = key(chunk.contentHash(), lang);
+        CompletableFuture<String> translation = SharedFuture.claim(translations, key, executor,
+                text -> text.startsWith(AiService.ERROR_PREFIX),
+                calls -> CompletableFuture.supplyAsync(() -> loadOrTranslate(key, chunk, lang), calls));
+        return translation.handle((text, error) -> {
+            if (error != null) {
+                log.warn("Translation of pages {}-{} failed", chunk.startPage(), chunk.endPage(), error);
+                return AiService.ERROR_PREFIX + ": " + error.getMessage();
+            }
+            return text;
+        });
+    }
+
+    /**
+     * The translation of the text with hash {@code textHash} into {@code lang}, if one has been
+     * made; never calls the model. Empty for languages that are never translated into.
+     */
+    public Optional<String> cached(String textHash, String lang) {
+        if (!supported(lang)) return Optional.empty();
+        String key = key(textHash, lang);
+        CompletableFuture<String> translation = translations.get(key);
+        if (translation != null) {
+            if (!translation.isDone() || translation.isCompletedExceptionally()) return Optional.empty();
+            String text = translation.join();
+            return text.startsWith(AiService.ERROR_PREFIX) ? Optional.empty() : Optional.of(text);
+        }
+        Optional<String> stored = load(key);
+        stored.ifPresent(text -> translations.putIfAbsent(key, CompletableFuture.completedFuture(text)));
+        return stored;
+    }
+
+    private String loadOrTranslate(String key, TextChunk chunk, String lang) {
+        Optional<String> stored = load(key);
+        if (stored.isPresent()) return stored.get();
+
+        String system = "en".equals(lang) ? PROMPT_EN : PROMPT_AR;
+        String answer = aiService.ask(RequestType.TRANSLATION, system, chunk.text(), lang);
+        if (answer.startsWith(AiService.ERROR_PREFIX)) return answer;
+        log.info("Translated pages {}-{} into {}", chunk.startPage(), chunk.endPage(), lang);
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            try {
+                Files.writeString(temp, answer, StandardCharsets.UTF_8);
+                Files.move(temp, file(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            log.warn("Could not store the translation of pages {}-{}, keeping it in memory",
+                    chunk.startPage(), chunk.endPage(), e);
+        }
+        return answer;
+    }
+
+    private Optional<String> load(String key) {
+        Path file = file(key);
+        if (!Files.exists(file)) return Optional.empty();
+        try {
+            return Optional.of(Files.readString(file, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            log.warn("Could not read translation file {}", file, e);
+            return Optional.empty();
+        }
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key + ".txt");
+    }
+
+    /** Keys name files, so only the languages the app writes are accepted. */
+    private static String key(String textHash, String lang) {
+        if (!supported(lang)) {
+            throw new IllegalArgumentException("Unsupported translation language: " + lang);
+        }
+        return textHash + "-" + lang;
+    }
+
+    private static boolean supported(String lang) {
+        return "en".equals(lang) || "ar".equals(lang);
+    }
+}
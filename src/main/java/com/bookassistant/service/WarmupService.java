@@ -0,0 +1,158 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.Chapter;
+import com.bookassistant.model.TextChunk;
+import com.bookassistant.session.BookClearedEvent;
+import com.bookassistant.session.BookLoadedEvent;
+import com.bookassistant.session.BookSession;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Precomputes the retrieval index, chapter summaries and the general summary right after a book is loaded,
+ * so the first click usually finds them in the caches. The summary tree is built one leaf at a time and
+ * each step only starts while the upstream model is mostly idle. Warm-up makes its model calls on a
+ * single thread of its own, never on the shared AI executor, so it has at most one call in flight and
+ * foreground requests never queue behind it. Loading another book or clearing the session cancels the
+ * remaining steps and aborts the call in flight, unless a request is waiting on the same summary.
+ */
+@Service
+public class WarmupService {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmupService.class);
+    private static final long IDLE_POLL_MS = 200;
+
+    private final SummaryTreeService summaryTree;
+    private final TextChunker chunker;
+    private final LibraryService libraryService;
+    private final AiService aiService;
+    private final boolean enabled;
+    private final int maxInFlight;
+    private final ExecutorService worker;
+    private final ExecutorService calls;
+    private final Map<BookSession, Run> running = new ConcurrentHashMap<>();
+
+    /** One book's warm-up: the coordinating task and the context it asks for summaries in. */
+    private record Run(Future<?> task, RequestContext context) {
+    }
+
+    public WarmupService(SummaryTreeService summaryTree,
+                         TextChunker chunker,
+                         LibraryService libraryService,
+                         AiService aiService,
+                         @Value("${app.warmup.enabled:false}") boolean enabled,
+                         @Value("${app.warmup.max-in-flight:1}") int maxInFlight) {
+        this.summaryTree = summaryTree;
+        this.chunker = chunker;
+        this.libraryService = libraryService;
+        this.aiService = aiService;
+        this.enabled = enabled;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.worker = Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("warmup-", 0).priority(Thread.MIN_PRIORITY).daemon().factory());
+        this.calls = Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("warmup-call-", 0).priority(Thread.MIN_PRIORITY).daemon().factory());
+    }
+
+    @EventListener
+    public void onBookLoaded(BookLoadedEvent event) {
+        if (!enabled) return;
+        BookSession session = event.session();
+        cancel(session);
+        RequestContext context = RequestContext.background();
+        FutureTask<Void> task = new FutureTask<>(() -> context.within(() -> {
+            warm(event, callsOnOwnThread());
+            return null;
+        }), null);
+        Run run = new Run(task, context);
+        running.put(session, run);
+        worker.execute(() -> {
+            try {
+                task.run();
+            } finally {
+                running.remove(session, run);
+            }
+        });
+    }
+
+    @EventListener
+    public void onBookCleared(BookClearedEvent event) {
+        cancel(event.session());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+        calls.shutdownNow();
+    }
+
+    private void cancel(BookSession session) {
+        Run previous = running.remove(session);
+        if (previous == null) return;
+        // Gives up the summaries it asked for: the call in flight is aborted unless a request waits on it too
+        previous.context().cancel();
+        if (previous.task().cancel(true)) {
+            log.info("Cancelled warm-up of the previous book");
+        }
+    }
+
+    /** Runs tasks on the warm-up call thread in the context of the cached summary they compute. */
+    private Executor callsOnOwnThread() {
+        return task -> calls.execute(RequestContext.propagate(task));
+    }
+
+    private void warm(BookLoadedEvent event, Executor calls) {
+        BookData book = event.book();
+        String hash = event.contentHash();
+        String lang = event.language();
+        long start = System.nanoTime();
+        try {
+            libraryService.shardFor(hash, event.rawBook());
+            // Leaves first, one call at a time; the chapter and book summaries then only combine them
+            for (TextChunk chunk : chunker.chunk(hash, book)) {
+                awaitIdle();
+                await(summaryTree.summarizeLeafAsync(chunk, lang, calls));
+            }
+            for (Chapter chapter : book.chapters()) {
+                awaitIdle();
+                await(summaryTree.summarizeRangeAsync(book, hash, chapter.startPage(), chapter.endPage(), lang, calls));
+            }
+            awaitIdle();
+            await(summaryTree.summarizeBookAsync(book, hash, lang, calls));
+            log.info("Warmed up {} ({} chapters) in {} ms", book.fileName(), book.chapters().size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (InterruptedException e) {
+            log.debug("Warm-up of {} interrupted", book.fileName());
+        }
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        while (aiService.inFlightRequests() >= maxInFlight) {
+            Thread.sleep(IDLE_POLL_MS);
+        }
+        if (Thread.interrupted()) throw new InterruptedException();
+    }
+
+    private static void await(CompletableFuture<String> summary) throws InterruptedException {
+        try {
+            summary.get();
+        } catch (ExecutionException e) {
+            log.warn("Warm-up step failed: {}", e.getCause().getMessage());
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.bookassistant.session;
+
+/** Published by {@link BookSession} when its book is cleared or about to be replaced. */
+public record BookClearedEvent(BookSession session) {
+}
@@ -0,0 +1,10 @@
+package com.bookassistant.session;
+
+import com.bookassistant.model.BookData;
+
+/**
+ * Published by {@link BookSession} when a book is loaded; {@code session} identifies who loaded it.
+ * {@code book} is the text meant for prompts and {@code rawBook} the text exactly as parsed.
+ */
+public record BookLoadedEvent(BookSession session, BookData book, BookData rawBook, String contentHash, String language) {
+}
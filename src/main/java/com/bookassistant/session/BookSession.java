@@ -1,13 +1,18 @@
 package com.bookassistant.session;
 
 import com.bookassistant.model.BookData;
-import com.bookassistant.model.PageData;
+import com.bookassistant.model.Chapter;
+import com.bookassistant.service.BoilerplateStripper;
+import com.bookassistant.service.ContentHash;
+import com.bookassistant.service.NearDuplicateDetector;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 import org.springframework.web.context.annotation.SessionScope;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 @Component
 @SessionScope
@@ -15,22 +20,69 @@ public class BookSession {
 
     private static final Pattern ARABIC_PATTERN = Pattern.compile("[\\u0600-\\u06FF]");
     
+    private final ApplicationEventPublisher events;
+
     private BookData currentBook;
+    private BookData rawBook;
     private String detectedLanguage;
+    private String contentHash;
+    private QaConversation conversation = new QaConversation();
+
+    public BookSession() {
+        this(null);
+    }
+
+    @Autowired
+    public BookSession(ApplicationEventPublisher events) {
+        this.events = events;
+    }
 
     public void setBook(BookData book) {
-        this.currentBook = book;
+        if (currentBook != null) publish(new BookClearedEvent(this));
+        this.rawBook = book;
         this.detectedLanguage = detectLanguage(book.fullText());
+        this.currentBook = NearDuplicateDetector.collapse(BoilerplateStripper.strip(book), detectedLanguage);
+        this.contentHash = ContentHash.of(book.fullText());
+        this.conversation = new QaConversation();
+        publish(new BookLoadedEvent(this, currentBook, rawBook, contentHash, detectedLanguage));
     }
 
+    /**
+     * The book as sent to the model: running headers, footers and page numbers are removed, and
+     * repeated pages point to their first occurrence instead of repeating its text.
+     */
     public Optional<BookData> getBook() {
         return Optional.ofNullable(currentBook);
     }
 
+    /** The book exactly as parsed, for search indexes. */
+    public Optional<BookData> getRawBook() {
+        return Optional.ofNullable(rawBook);
+    }
+
     public boolean hasBook() {
         return currentBook != null;
     }
 
+    /** SHA-256 of the book text, used as the cache key for everything derived from it. */
+    public String getContentHash() {
+        return contentHash != null ? contentHash : "";
+    }
+
+    /** The questions asked about the current book so far; starts over with every new book. */
+    public QaConversation getConversation() {
+        return conversation;
+    }
+
+    /**
+     * The language to answer in: {@code requested} when it is one the app writes ("en" or "ar"),
+     * otherwise the book's own. Request parameters go through here before they reach prompts,
+     * cache keys or file names.
+     */
+    public static String outputLanguage(String requested, String bookLanguage) {
+        return "en".equals(requested) || "ar".equals(requested) ? requested : bookLanguage;
+    }
+
     public String getDetectedLanguage() {
         return detectedLanguage != null ? detectedLanguage : "ar";
     }
@@ -54,17 +106,29 @@ public class BookSession {
         return arabicChars >= latinChars ? "ar" : "en";
     }
 
+    public List<Chapter> getChapters() {
+        return currentBook != null ? currentBook.chapters() : List.of();
+    }
+
+    public Optional<Chapter> getChapter(int number) {
+        return getChapters().stream().filter(c -> c.number() == number).findFirst();
+    }
+
     public String extractRange(int startPage, int endPage) {
         if (currentBook == null) return "";
-        return currentBook.pages().stream()
-                .filter(p -> p.pageNumber() >= startPage && p.pageNumber() <= endPage)
-                .map(PageData::text)
-                .collect(Collectors.joining("\n\n"));
+        return NearDuplicateDetector.text(currentBook, startPage, endPage, getDetectedLanguage());
     }
 
     public void clear() {
+        if (currentBook != null) publish(new BookClearedEvent(this));
         this.currentBook = null;
+        this.rawBook = null;
         this.detectedLanguage = null;
+        this.contentHash = null;
+        this.conversation = new QaConversation();
     }
-}
 
+    private void publish(Object event) {
+        if (events != null) events.publishEvent(event);
+    }
+}
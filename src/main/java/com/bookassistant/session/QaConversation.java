@@ -0,0 +1,96 @@
+package com.bookassistant.session;
+
+import com.bookassistant.service.ChatMessage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * The question-and-answer exchange about the current book, so follow-up questions can refer
+ * to earlier ones. The latest turns are kept word for word; older ones are folded into a short
+ * digest (each question with the start of its answer), so the history stays small however
+ * long the conversation runs. Turns are only ever appended until a fold, which keeps the
+ * messages sent before the new question the same from one request to the next.
+ *
+ * <p>Held by {@link BookSession} and replaced when another book is loaded. The object itself
+ * is not session scoped, so it can be used from the thread that answers the question.
+ */
+public class QaConversation {
+
+    /** Turns kept word for word. */
+    static final int KEEP_TURNS = 4;
+    /** Tokens the kept turns and the digest may take together. */
+    public static final int HISTORY_TOKENS = 8192;
+    /** Characters of an answer that survive in the digest. */
+    static final int DIGEST_ANSWER_CHARS = 200;
+    static final int MAX_DIGEST_LINES = 20;
+
+    private record Turn(String question, String answer) {
+    }
+
+    private final Deque<Turn> turns = new ArrayDeque<>();
+    private final Deque<String> digest = new ArrayDeque<>();
+    private Boolean bookInPrompt;
+
+    /**
+     * Whether the whole book goes into the system prompt for this conversation. Decided once,
+     * on the first question, so the prompt prefix stays the same for every follow-up.
+     */
+    public synchronized boolean bookInPrompt(boolean fitsNow) {
+        if (bookInPrompt == null) bookInPrompt = fitsNow;
+        return bookInPrompt;
+    }
+
+    /** Earlier turns as chat messages, digest first. */
+    public synchronized List<ChatMessage> history(String lang) {
+        List<ChatMessage> messages = new ArrayList<>();
+        if (!digest.isEmpty()) {
+            String heading = "en".equals(lang)
+                    ? "Earlier questions in this conversation, in brief:"
+                    : "أسئلة سابقة في هذه المحادثة باختصار:";
+            messages.add(ChatMessage.user(heading + "\n" + String.join("\n", digest)));
+            messages.add(ChatMessage.assistant("en".equals(lang) ? "Noted." : "حسناً."));
+        }
+        for (Turn turn : turns) {
+            messages.add(ChatMessage.user(turn.question()));
+            messages.add(ChatMessage.assistant(turn.answer()));
+        }
+        return messages;
+    }
+
+    public synchronized int turns() {
+        return digest.size() + turns.size();
+    }
+
+    /**
+     * Adds a finished turn and folds the oldest ones into the digest while more than
+     * {@link #KEEP_TURNS} are kept or the history exceeds {@link #HISTORY_TOKENS}.
+     */
+    public synchronized void record(String question, String answer, ToIntFunction<String> tokens) {
+        turns.addLast(new Turn(question, answer));
+        while (turns.size() > KEEP_TURNS || (turns.size() > 1 && size(tokens) > HISTORY_TOKENS)) {
+            Turn oldest = turns.removeFirst();
+            digest.addLast("- " + oneLine(oldest.question()) + " → " + brief(oldest.answer()));
+            if (digest.size() > MAX_DIGEST_LINES) digest.removeFirst();
+        }
+    }
+
+    private int size(ToIntFunction<String> tokens) {
+        int total = 0;
+        for (String line : digest) total += tokens.applyAsInt(line);
+        for (Turn turn : turns) total += tokens.applyAsInt(turn.question()) + tokens.applyAsInt(turn.answer());
+        return total;
+    }
+
+    private static String brief(String answer) {
+        String line = oneLine(answer);
+        return line.length() <= DIGEST_ANSWER_CHARS ? line : line.substring(0, DIGEST_ANSWER_CHARS) + "…";
+    }
+
+    private static String oneLine(String text) {
+        return text.strip().replaceAll("\\s+", " ");
+    }
+}
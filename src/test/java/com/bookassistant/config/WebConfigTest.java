@@ -0,0 +1,39 @@
+package com.bookassistant.config;
+
+import com.bookassistant.service.RequestContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.Optional;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for WebConfig.RequestContextInterceptor.
+ * Tests that the request's context is bound around the callable.
+ */
+class WebConfigTest {
+
+    private final WebConfig.RequestContextInterceptor interceptor = new WebConfig.RequestContextInterceptor();
+    private final Callable<String> task = () -> "index";
+
+    @Test
+    void testPreAndPostProcess_BindAndUnbindContext() throws Exception {
+        // Arrange
+        ServletWebRequest request = new ServletWebRequest(new MockHttpServletRequest(), new MockHttpServletResponse());
+        interceptor.beforeConcurrentHandling(request, task);
+        RequestContext context = (RequestContext) request.getRequest().getAttribute(WebConfig.RequestContextInterceptor.ATTRIBUTE);
+
+        // Act
+        interceptor.preProcess(request, task);
+        Optional<RequestContext> bound = RequestContext.current();
+        interceptor.postProcess(request, task, "index");
+
+        // Assert
+        assertSame(context, bound.orElseThrow());
+        assertTrue(RequestContext.current().isEmpty());
+    }
+}
@@ -3,7 +3,11 @@ package com.bookassistant.controller;
 import com.bookassistant.model.BookData;
 import com.bookassistant.model.PageData;
 import com.bookassistant.service.AiService;
+import com.bookassistant.service.ChatMessage;
+import com.bookassistant.service.PassageRetriever;
+import com.bookassistant.service.RequestType;
 import com.bookassistant.session.BookSession;
+import com.bookassistant.session.QaConversation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -31,6 +35,9 @@ class QaControllerTest {
     @Mock
     private AiService aiService;
 
+    @Mock
+    private PassageRetriever passageRetriever;
+
     @Mock
     private Model model;
 
@@ -38,6 +45,7 @@ class QaControllerTest {
     private QaController qaController;
 
     private BookData testBook;
+    private QaConversation conversation;
 
     @BeforeEach
     void setUp() {
@@ -46,24 +54,27 @@ class QaControllerTest {
             new PageData(2, "Page 2 content")
         );
         testBook = new BookData("test.pdf", pages, "Full book content with the answer");
+        conversation = new QaConversation();
+        lenient().when(bookSession.getConversation()).thenReturn(conversation);
     }
 
     @Test
-    void testQa_Success() {
+    void testQa_Success() throws Exception {
         // Arrange
         when(bookSession.getBook()).thenReturn(Optional.of(testBook));
         when(bookSession.hasBook()).thenReturn(true);
         when(bookSession.getDetectedLanguage()).thenReturn("ar");
-        when(aiService.ask(anyString(), anyString(), anyString())).thenReturn("إجابة السؤال");
+        when(aiService.chat(eq(RequestType.QA), anyString(), anyList(), anyString(), anyString())).thenReturn("إجابة السؤال");
         when(model.addAttribute(anyString(), any())).thenReturn(model);
 
         // Act
-        String view = qaController.qa("ما هو الموضوع الرئيسي؟", null, model);
+        String view = qaController.qa("ما هو الموضوع الرئيسي؟", null, model).call();
 
         // Assert
         assertEquals("index", view);
-        verify(aiService).ask(
+        verify(aiService).chat(eq(RequestType.QA),
             argThat(s -> s != null && s.contains("أجب عن السؤال")),
+            anyList(),
             argThat(s -> s != null && s.contains("ما هو الموضوع الرئيسي؟")),
             eq("ar")
         );
@@ -73,78 +84,81 @@ class QaControllerTest {
     }
 
     @Test
-    void testQa_EnglishOutput() {
+    void testQa_EnglishOutput() throws Exception {
         // Arrange
         when(bookSession.getBook()).thenReturn(Optional.of(testBook));
         when(bookSession.hasBook()).thenReturn(true);
         when(bookSession.getDetectedLanguage()).thenReturn("ar");
-        when(aiService.ask(anyString(), anyString(), anyString())).thenReturn("Answer to the question");
+        when(aiService.chat(eq(RequestType.QA), anyString(), anyList(), anyString(), anyString())).thenReturn("Answer to the question");
         when(model.addAttribute(anyString(), any())).thenReturn(model);
 
         // Act
-        String view = qaController.qa("What is the main topic?", "en", model);
+        String view = qaController.qa("What is the main topic?", "en", model).call();
 
         // Assert
         assertEquals("index", view);
-        verify(aiService).ask(
+        verify(aiService).chat(eq(RequestType.QA),
             argThat(s -> s != null && s.contains("Answer")),
+            anyList(),
             argThat(s -> s != null && s.contains("What is the main topic?")),
             eq("en")
         );
     }
 
     @Test
-    void testQa_NoBook() {
+    void testQa_NoBook() throws Exception {
         // Arrange
         when(bookSession.getBook()).thenReturn(Optional.empty());
         when(bookSession.hasBook()).thenReturn(false);
         when(bookSession.getDetectedLanguage()).thenReturn("ar");
-        when(aiService.ask(anyString(), anyString(), anyString())).thenReturn("");
+        when(aiService.chat(eq(RequestType.QA), anyString(), anyList(), anyString(), anyString())).thenReturn("");
         when(model.addAttribute(anyString(), any())).thenReturn(model);
 
         // Act
-        String view = qaController.qa("Any question", null, model);
+        String view = qaController.qa("Any question", null, model).call();
 
         // Assert
         assertEquals("index", view);
-        verify(aiService).ask(anyString(), argThat(s -> s != null && s.contains("Any question")), eq("ar"));
+        verify(aiService).chat(eq(RequestType.QA), anyString(), anyList(), argThat(s -> s != null && s.contains("Any question")), eq("ar"));
     }
 
     @Test
-    void testQa_UserContentIsBilingual() {
+    void testQa_UserContentIsBilingual() throws Exception {
         // Arrange
         when(bookSession.getBook()).thenReturn(Optional.of(testBook));
         when(bookSession.hasBook()).thenReturn(true);
         when(bookSession.getDetectedLanguage()).thenReturn("en");
-        when(aiService.ask(anyString(), anyString(), anyString())).thenReturn("Answer");
+        when(aiService.chat(eq(RequestType.QA), anyString(), anyList(), anyString(), anyString())).thenReturn("Answer");
         when(model.addAttribute(anyString(), any())).thenReturn(model);
 
         // Act - English question
-        qaController.qa("What is this?", "en", model);
+        qaController.qa("What is this?", "en", model).call();
 
         // Assert - user content should be in English
-        verify(aiService).ask(
+        verify(aiService).chat(eq(RequestType.QA),
             anyString(),
+            anyList(),
             argThat(content -> content.contains("Question:") && content.contains("What is this?")),
             eq("en")
         );
     }
 
     @Test
-    void testQa_ArabicQuestion() {
+    void testQa_ArabicQuestion() throws Exception {
         // Arrange
         when(bookSession.getBook()).thenReturn(Optional.of(testBook));
         when(bookSession.hasBook()).thenReturn(true);
         when(bookSession.getDetectedLanguage()).thenReturn("ar");
-        when(aiService.ask(anyString(), anyString(), anyString())).thenReturn("الجواب");
+        when(aiService.chat(eq(RequestType.QA), anyString(), anyList(), anyString(), anyString())).thenReturn("الجواب");
         when(model.addAttribute(anyString(), any())).thenReturn(model);
 
         // Act - Arabic question
-        qaController.qa("ما هذا؟", "ar", model);
+        qaController.qa("ما هذا؟", "ar", model).call();
 
         // Assert - user content should be in Arabic
-        verify(aiService).ask(
+        verify(aiService).chat(eq(RequestType.QA),
             anyString(),
+            anyList(),
             argThat(content -> content.contains("السؤال:") && content.contains("ما هذا؟")),
             eq("ar")
         );
@@ -156,42 +170,133 @@ class QaControllerTest {
     }
 
     @Test
-    void testQa_WithComplexQuestion() {
+    void testQa_WithComplexQuestion() throws Exception {
         // Arrange
         when(bookSession.getBook()).thenReturn(Optional.of(testBook));
         when(bookSession.hasBook()).thenReturn(true);
         when(bookSession.getDetectedLanguage()).thenReturn("ar");
         String complexQuestion = "ما هي الفصول الرئيسية المذكورة في الكتاب؟ وما هي الأفكار الأساسية؟";
-        when(aiService.ask(anyString(), anyString(), anyString())).thenReturn("إجابة مفصلة");
+        when(aiService.chat(eq(RequestType.QA), anyString(), anyList(), anyString(), anyString())).thenReturn("إجابة مفصلة");
         when(model.addAttribute(anyString(), any())).thenReturn(model);
 
         // Act
-        String view = qaController.qa(complexQuestion, "ar", model);
+        String view = qaController.qa(complexQuestion, "ar", model).call();
 
         // Assert
         assertEquals("index", view);
-        verify(aiService).ask(
+        verify(aiService).chat(eq(RequestType.QA),
             anyString(),
+            anyList(),
             argThat(content -> content.contains(complexQuestion)),
             eq("ar")
         );
     }
 
     @Test
-    void testQa_ModelAttributes() {
+    void testQa_ModelAttributes() throws Exception {
         // Arrange
         when(bookSession.getBook()).thenReturn(Optional.of(testBook));
         when(bookSession.hasBook()).thenReturn(true);
         when(bookSession.getDetectedLanguage()).thenReturn("en");
-        when(aiService.ask(anyString(), anyString(), anyString())).thenReturn("Answer");
+        when(aiService.chat(eq(RequestType.QA), anyString(), anyList(), anyString(), anyString())).thenReturn("Answer");
         when(model.addAttribute(anyString(), any())).thenReturn(model);
 
         // Act
-        qaController.qa("Test question", "en", model);
+        qaController.qa("Test question", "en", model).call();
 
         // Assert - verify all required model attributes are set
         verify(model).addAttribute("qa", "Answer");
         verify(model).addAttribute("hasBook", true);
         verify(model).addAttribute("bookLanguage", "en");
     }
+
+    @Test
+    void testQa_SendsRetrievedContextWithinRemainingRoom() throws Exception {
+        // Arrange
+        when(bookSession.getBook()).thenReturn(Optional.of(testBook));
+        when(bookSession.getRawBook()).thenReturn(Optional.of(testBook));
+        when(bookSession.getContentHash()).thenReturn("hash-1");
+        when(bookSession.getDetectedLanguage()).thenReturn("en");
+        when(aiService.roomFor(anyString(), anyString(), eq("en"))).thenReturn(QaConversation.HISTORY_TOKENS + 1000);
+        when(aiService.roomFor(anyString(), anyList(), anyString(), eq("en"))).thenReturn(500);
+        when(passageRetriever.context("Where is the answer?", testBook, testBook, "hash-1", 500, "en"))
+            .thenReturn("[p. 1]\nPage 1 content with answer");
+        when(aiService.chat(eq(RequestType.QA), anyString(), anyList(), anyString(), anyString())).thenReturn("On page 1");
+        when(model.addAttribute(anyString(), any())).thenReturn(model);
+
+        // Act
+        qaController.qa("Where is the answer?", "en", model).call();
+
+        // Assert
+        verify(aiService).chat(eq(RequestType.QA),
+            anyString(),
+            anyList(),
+            eq("Question: Where is the answer?\n\nText:\n[p. 1]\nPage 1 content with answer"),
+            eq("en")
+        );
+        verify(passageRetriever).fits(testBook, 1000);
+        verify(model).addAttribute("qa", "On page 1");
+    }
+
+    @Test
+    void testQa_BookThatFitsGoesInSystemPrompt() throws Exception {
+        // Arrange
+        when(bookSession.getBook()).thenReturn(Optional.of(testBook));
+        when(bookSession.getDetectedLanguage()).thenReturn("en");
+        when(passageRetriever.fits(eq(testBook), anyInt())).thenReturn(true);
+        when(aiService.chat(eq(RequestType.QA), anyString(), anyString(), anyList(), anyString(), anyString())).thenReturn("Answer");
+        when(model.addAttribute(anyString(), any())).thenReturn(model);
+
+        // Act
+        qaController.qa("Where is the answer?", "en", model).call();
+
+        // Assert - the book is part of the stable prefix, the question alone follows it
+        verify(aiService).chat(eq(RequestType.QA),
+            eq("Answer the question based only on the book content."),
+            eq("Text:\nFull book content with the answer"),
+            eq(List.of()),
+            eq("Question: Where is the answer?"),
+            eq("en")
+        );
+        verify(passageRetriever, never()).context(any(), any(), any(), any(), anyInt(), any());
+    }
+
+    @Test
+    void testQa_FollowUpSendsEarlierTurns() throws Exception {
+        // Arrange
+        when(bookSession.getBook()).thenReturn(Optional.of(testBook));
+        when(bookSession.getDetectedLanguage()).thenReturn("en");
+        when(passageRetriever.fits(eq(testBook), anyInt())).thenReturn(true);
+        when(aiService.chat(eq(RequestType.QA), anyString(), anyString(), anyList(), anyString(), anyString()))
+            .thenReturn("It is about gardens.", "Chapter two.");
+        when(model.addAttribute(anyString(), any())).thenReturn(model);
+
+        // Act
+        qaController.qa("What is the book about?", "en", model).call();
+        qaController.qa("Where does it say so?", "en", model).call();
+
+        // Assert
+        verify(aiService).chat(eq(RequestType.QA), anyString(), anyString(),
+            eq(List.of(ChatMessage.user("Question: What is the book about?"), ChatMessage.assistant("It is about gardens."))),
+            eq("Question: Where does it say so?"),
+            eq("en")
+        );
+        assertEquals(2, conversation.turns());
+    }
+
+    @Test
+    void testQa_FailedAnswerIsNotRemembered() throws Exception {
+        // Arrange
+        when(bookSession.getBook()).thenReturn(Optional.of(testBook));
+        when(bookSession.getDetectedLanguage()).thenReturn("en");
+        when(aiService.chat(eq(RequestType.QA), anyString(), anyList(), anyString(), anyString()))
+            .thenReturn("AI error: Request timed out");
+        when(model.addAttribute(anyString(), any())).thenReturn(model);
+
+        // Act
+        qaController.qa("What is the book about?", "en", model).call();
+
+        // Assert
+        assertEquals(0, conversation.turns());
+    }
 }
@@ -3,11 +3,17 @@ package com.bookassistant.controller;
 import com.bookassistant.model.BookData;
 import com.bookassistant.model.PageData;
 import com.bookassistant.service.AiService;
+import com.bookassistant.service.ExtractiveSummarizer;
+import com.bookassistant.service.PrefetchService;
+import com.bookassistant.service.RequestType;
+import com.bookassistant.service.SummaryTreeService;
+import com.bookassistant.service.TextChunker;
+import com.bookassistant.service.TranslationCache;
 import com.bookassistant.session.BookSession;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.ui.Model;
@@ -31,10 +37,12 @@ class SummaryControllerTest {
     @Mock
     private AiService aiService;
 
+    @Mock
+    private TranslationCache translations;
+
     @Mock
     private Model model;
 
-    @InjectMocks
     private SummaryController summaryController;
 
     private BookData testBook;
@@ -46,15 +54,19 @@ class SummaryControllerTest {
             new PageData(2, "Page 2 content")
         );
         testBook = new BookData("test.pdf", pages, "Full book content");
+        SummaryTreeService summaryTree = new SummaryTreeService(aiService, new TextChunker(2000, 200), translations, Runnable::run, 8, 100);
+        summaryController = new SummaryController(bookSession, summaryTree,
+                new PrefetchService(new SimpleMeterRegistry(), true, 2, 30), new ExtractiveSummarizer(8));
     }
 
     @Test
     void testGeneralSummary_Success() {
         // Arrange
         when(bookSession.getBook()).thenReturn(Optional.of(testBook));
+        when(bookSession.getContentHash()).thenReturn("hash");
         when(bookSession.hasBook()).thenReturn(true);
         when(bookSession.getDetectedLanguage()).thenReturn("ar");
-        when(aiService.ask(anyString(), anyString(), anyString())).thenReturn("ملخص الكتاب");
+        when(aiService.ask(eq(RequestType.SUMMARY), anyString(), anyString(), anyString())).thenReturn("ملخص الكتاب");
         when(model.addAttribute(anyString(), any())).thenReturn(model);
 
         // Act
@@ -62,7 +74,7 @@ class SummaryControllerTest {
 
         // Assert
         assertEquals("index", view);
-        verify(aiService).ask(anyString(), eq("Full book content"), eq("ar"));
+        verify(aiService).ask(eq(RequestType.SUMMARY), anyString(), eq("Page 1 content\n\nPage 2 content"), eq("ar"));
         verify(model).addAttribute("summaryGeneral", "ملخص الكتاب");
         verify(model).addAttribute("hasBook", true);
         verify(model).addAttribute("bookLanguage", "ar");
@@ -72,9 +84,10 @@ class SummaryControllerTest {
     void testGeneralSummary_EnglishOutput() {
         // Arrange
         when(bookSession.getBook()).thenReturn(Optional.of(testBook));
+        when(bookSession.getContentHash()).thenReturn("hash");
         when(bookSession.hasBook()).thenReturn(true);
         when(bookSession.getDetectedLanguage()).thenReturn("en");
-        when(aiService.ask(anyString(), anyString(), anyString())).thenReturn("Book summary");
+        when(aiService.ask(eq(RequestType.SUMMARY), anyString(), anyString(), anyString())).thenReturn("Book summary");
         when(model.addAttribute(anyString(), any())).thenReturn(model);
 
         // Act
@@ -82,7 +95,7 @@ class SummaryControllerTest {
 
         // Assert
         assertEquals("index", view);
-        verify(aiService).ask(anyString(), eq("Full book content"), eq("en"));
+        verify(aiService).ask(eq(RequestType.SUMMARY), anyString(), eq("Page 1 content\n\nPage 2 content"), eq("en"));
         verify(model).addAttribute("summaryGeneral", "Book summary");
     }
 
@@ -92,7 +105,7 @@ class SummaryControllerTest {
         when(bookSession.getBook()).thenReturn(Optional.empty());
         when(bookSession.hasBook()).thenReturn(false);
         when(bookSession.getDetectedLanguage()).thenReturn("ar");
-        when(aiService.ask(anyString(), anyString(), anyString())).thenReturn("");
+        when(aiService.ask(eq(RequestType.SUMMARY), anyString(), anyString(), anyString())).thenReturn("");
         when(model.addAttribute(anyString(), any())).thenReturn(model);
 
         // Act
@@ -100,24 +113,25 @@ class SummaryControllerTest {
 
         // Assert
         assertEquals("index", view);
-        verify(aiService).ask(anyString(), eq(""), eq("ar"));
+        verify(aiService).ask(eq(RequestType.SUMMARY), anyString(), eq(""), eq("ar"));
     }
 
     @Test
     void testPagesSummary_Success() {
         // Arrange
-        when(bookSession.extractRange(1, 2)).thenReturn("Page 1 content\n\nPage 2 content");
+        when(bookSession.getBook()).thenReturn(Optional.of(testBook));
+        when(bookSession.getContentHash()).thenReturn("hash");
         when(bookSession.hasBook()).thenReturn(true);
         when(bookSession.getDetectedLanguage()).thenReturn("ar");
-        when(aiService.ask(anyString(), anyString(), anyString())).thenReturn("ملخص الصفحات");
+        when(aiService.ask(eq(RequestType.SUMMARY), anyString(), anyString(), anyString())).thenReturn("ملخص الصفحات");
         when(model.addAttribute(anyString(), any())).thenReturn(model);
 
         // Act
-        String view = summaryController.pagesSummary(1, 2, null, model);
+        String view = summaryController.pagesSummary(1, 2, null, null, model);
 
         // Assert
         assertEquals("index", view);
-        verify(aiService).ask(anyString(), argThat(s -> s != null && s.contains("Page 1 content")), eq("ar"));
+        verify(aiService).ask(eq(RequestType.SUMMARY), anyString(), argThat(s -> s != null && s.contains("Page 1 content")), eq("ar"));
         verify(model).addAttribute("summaryPages", "ملخص الصفحات");
         verify(model).addAttribute("hasBook", true);
     }
@@ -125,35 +139,37 @@ class SummaryControllerTest {
     @Test
     void testPagesSummary_EnglishOutput() {
         // Arrange
-        when(bookSession.extractRange(1, 5)).thenReturn("Content from pages 1-5");
+        when(bookSession.getBook()).thenReturn(Optional.of(testBook));
+        when(bookSession.getContentHash()).thenReturn("hash");
         when(bookSession.hasBook()).thenReturn(true);
         when(bookSession.getDetectedLanguage()).thenReturn("en");
-        when(aiService.ask(anyString(), anyString(), anyString())).thenReturn("Pages summary");
+        when(aiService.ask(eq(RequestType.SUMMARY), anyString(), anyString(), anyString())).thenReturn("Pages summary");
         when(model.addAttribute(anyString(), any())).thenReturn(model);
 
         // Act
-        String view = summaryController.pagesSummary(1, 5, "en", model);
+        String view = summaryController.pagesSummary(1, 5, "en", null, model);
 
         // Assert
         assertEquals("index", view);
-        verify(aiService).ask(anyString(), eq("Content from pages 1-5"), eq("en"));
+        verify(aiService).ask(eq(RequestType.SUMMARY), anyString(), eq("Page 1 content\n\nPage 2 content"), eq("en"));
     }
 
     @Test
     void testPagesSummary_InvalidRange() {
         // Arrange
-        when(bookSession.extractRange(10, 5)).thenReturn("");
+        when(bookSession.getBook()).thenReturn(Optional.of(testBook));
+        when(bookSession.getContentHash()).thenReturn("hash");
         when(bookSession.hasBook()).thenReturn(true);
         when(bookSession.getDetectedLanguage()).thenReturn("ar");
-        when(aiService.ask(anyString(), anyString(), anyString())).thenReturn("");
+        when(aiService.ask(eq(RequestType.SUMMARY), anyString(), anyString(), anyString())).thenReturn("");
         when(model.addAttribute(anyString(), any())).thenReturn(model);
 
         // Act
-        String view = summaryController.pagesSummary(10, 5, null, model);
+        String view = summaryController.pagesSummary(10, 5, null, null, model);
 
         // Assert
         assertEquals("index", view);
-        verify(aiService).ask(anyString(), eq(""), eq("ar"));
+        verify(aiService).ask(eq(RequestType.SUMMARY), anyString(), eq(""), eq("ar"));
     }
 
     @Test
@@ -166,31 +182,33 @@ class SummaryControllerTest {
     void testLanguageFallbackToBookLanguage() {
         // Arrange - outputLanguage is null, should use book language
         when(bookSession.getBook()).thenReturn(Optional.of(testBook));
+        when(bookSession.getContentHash()).thenReturn("hash");
         when(bookSession.hasBook()).thenReturn(true);
         when(bookSession.getDetectedLanguage()).thenReturn("en");
-        when(aiService.ask(anyString(), anyString(), anyString())).thenReturn("Summary");
+        when(aiService.ask(eq(RequestType.SUMMARY), anyString(), anyString(), anyString())).thenReturn("Summary");
         when(model.addAttribute(anyString(), any())).thenReturn(model);
 
         // Act
         String view = summaryController.generalSummary(null, model);
 
         // Assert - should use book language (en) when outputLanguage is null
-        verify(aiService).ask(anyString(), anyString(), eq("en"));
+        verify(aiService).ask(eq(RequestType.SUMMARY), anyString(), anyString(), eq("en"));
     }
 
     @Test
     void testOutputLanguageOverridesBookLanguage() {
         // Arrange - outputLanguage is "ar" but book is English
         when(bookSession.getBook()).thenReturn(Optional.of(testBook));
+        when(bookSession.getContentHash()).thenReturn("hash");
         when(bookSession.hasBook()).thenReturn(true);
         when(bookSession.getDetectedLanguage()).thenReturn("en");
-        when(aiService.ask(anyString(), anyString(), anyString())).thenReturn("ملخص");
+        when(aiService.ask(eq(RequestType.SUMMARY), anyString(), anyString(), anyString())).thenReturn("ملخص");
         when(model.addAttribute(anyString(), any())).thenReturn(model);
 
         // Act
         String view = summaryController.generalSummary("ar", model);
 
         // Assert - should use outputLanguage (ar) even though book is English
-        verify(aiService).ask(anyString(), anyString(), eq("ar"));
+        verify(aiService).ask(eq(RequestType.SUMMARY), anyString(), anyString(), eq("ar"));
     }
 }
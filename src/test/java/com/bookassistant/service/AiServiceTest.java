@@ -1,14 +1,23 @@
 package com.bookassistant.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
-import java.net.http.HttpClient;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -19,20 +28,60 @@ import static org.junit.jupiter.api.Assertions.*;
 @ExtendWith(MockitoExtension.class)
 class AiServiceTest {
 
-    @Mock
-    private HttpClient httpClient;
-
     @Mock
     private ObjectMapper objectMapper;
 
-    @InjectMocks
     private AiService aiService;
 
+    private SimpleMeterRegistry meterRegistry;
+
     @BeforeEach
     void setUp() {
-        // Note: Real AiService doesn't use httpClient anymore
-        // It creates its own HttpClient per request
-        aiService = new AiService(objectMapper);
+        // Note: AiService builds its own HttpClient
+        meterRegistry = new SimpleMeterRegistry();
+        aiService = service(objectMapper, pool(UNREACHABLE), 131072);
+    }
+
+    /** Nothing listens here, so calls fail fast without leaving the machine. */
+    private static final String UNREACHABLE = "http://127.0.0.1:1";
+
+    private BackendPool pool(String... urls) {
+        return pool(3, urls);
+    }
+
+    private BackendPool pool(int consecutiveFailures, String... urls) {
+        CircuitBreaker.Settings settings = new CircuitBreaker.Settings(20, 10, 0.5, Duration.ofSeconds(120).toNanos(),
+                0.8, consecutiveFailures, Duration.ofSeconds(60).toNanos(), 1);
+        return new BackendPool(meterRegistry, urls[0], String.join(",", urls), settings, System::nanoTime);
+    }
+
+    /** A service that makes a single attempt and never hedges. */
+    private AiService service(ObjectMapper mapper, BackendPool pool, int contextTokens) {
+        return service(mapper, pool, new RetryPolicy(1, 1, 1), new HedgingPolicy(false, 0, 0, 0), contextTokens, 8192);
+    }
+
+    private AiService service(ObjectMapper mapper, BackendPool pool, RetryPolicy retry, HedgingPolicy hedging,
+                              int contextTokens, int reservedOutputTokens) {
+        return service(mapper, pool, retry, hedging, router(TokenCounter.DEFAULT_MODEL, "", contextTokens),
+                reservedOutputTokens);
+    }
+
+    private AiService service(ObjectMapper mapper, BackendPool pool, RetryPolicy retry, HedgingPolicy hedging,
+                              ModelRouter router, int reservedOutputTokens) {
+        return new AiService(mapper, new TokenCounter(TokenCounter.DEFAULT_MODEL), pool, retry, hedging, router,
+                meterRegistry, reservedOutputTokens);
+    }
+
+    private ModelRouter router(String model, String models) {
+        return router(model, models, 131072);
+    }
+
+    private ModelRouter router(String model, String models, int contextTokens) {
+        return new ModelRouter(meterRegistry, model, models, contextTokens, 8192, 30, 180, 120, 180, 120);
+    }
+
+    private static String url(HttpServer server) {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
     }
 
     @Test
@@ -74,4 +123,491 @@ class AiServiceTest {
             aiService.generateComprehensionTest("Test text", 1, 10, "en");
         });
     }
+
+    @Test
+    void testAsk_RejectsPromptOverBudgetWithoutCallingUpstream() {
+        // Arrange
+        AiService small = service(objectMapper, pool(UNREACHABLE), new RetryPolicy(1, 1, 1),
+                new HedgingPolicy(false, 0, 0, 0), 100, 40);
+
+        // Act
+        String answer = small.ask("Summarize.", "word ".repeat(200), "en");
+
+        // Assert
+        assertTrue(answer.startsWith("AI error: Prompt too large"));
+        assertTrue(answer.contains("budget of 60"));
+        assertEquals(1.0, meterRegistry.counter("ai.prompt.rejected").count());
+        assertEquals(0L, meterRegistry.get("ai.prompt.tokens").summary().count());
+        assertEquals(0, small.inFlightRequests());
+    }
+
+    @Test
+    void testRoomFor_LeavesBudgetMinusFixedPromptParts() {
+        // Arrange
+        String system = "Answer the question based only on the book content.";
+        String prefix = "Question: Why?\n\nText:\n";
+
+        // Act
+        int room = aiService.roomFor(system, prefix, "en");
+
+        // Assert
+        assertEquals(aiService.promptBudget() - aiService.promptTokens(system + " Respond in English.", prefix), room);
+        assertEquals(131072 - 8192, aiService.promptBudget());
+    }
+
+    @Test
+    void testPromptBudget_FollowsTheLargestRoutedModel() {
+        // Arrange
+        ModelRouter router = router("small", "small|8192, large|65536, medium|32768", 8192);
+
+        // Act
+        AiService service = service(objectMapper, pool(UNREACHABLE), new RetryPolicy(1, 1, 1),
+                new HedgingPolicy(false, 0, 0, 0), router, 4096);
+
+        // Assert
+        assertEquals(65536 - 4096, service.promptBudget());
+    }
+
+    @Test
+    void testAsk_StreamsRequestBodyToServerAndReadsReply() throws Exception {
+        // Arrange
+        ObjectMapper realMapper = new ObjectMapper();
+        AtomicReference<String> received = new AtomicReference<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            received.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            byte[] reply = "{\"choices\":[{\"message\":{\"content\":\"Done\"}}],\"usage\":{\"prompt_tokens\":42,\"completion_tokens\":1}}"
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, reply.length);
+            exchange.getResponseBody().write(reply);
+            exchange.close();
+        });
+        server.start();
+        AiService service = service(realMapper, pool(url(server)), new RetryPolicy(1, 1, 1),
+                new HedgingPolicy(false, 0, 0, 0), router("qwen3", ""), 8192);
+        ReflectionTestUtils.setField(service, "timeoutSeconds", 10);
+        String book = "سطر من الكتاب\n".repeat(10_000);
+
+        try {
+            // Act
+            String answer = service.ask("Summarize.", book, "en");
+
+            // Assert
+            assertEquals("Done", answer);
+            var root = realMapper.readTree(received.get());
+            assertEquals("qwen3", root.path("model").asText());
+            assertEquals("Summarize. Respond in English.", root.path("messages").path(0).path("content").asText());
+            assertEquals(book, root.path("messages").path(1).path("content").asText());
+            assertEquals(42.0, meterRegistry.get("ai.usage.tokens").tag("type", "prompt").summary().totalAmount());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testChat_PutsReferenceTextAfterTheLanguageInstruction() throws Exception {
+        // Arrange
+        ObjectMapper realMapper = new ObjectMapper();
+        AtomicReference<String> received = new AtomicReference<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            received.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            byte[] reply = "{\"choices\":[{\"message\":{\"content\":\"Done\"}}]}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, reply.length);
+            exchange.getResponseBody().write(reply);
+            exchange.close();
+        });
+        server.start();
+        AiService service = service(realMapper, pool(url(server)), new RetryPolicy(1, 1, 1),
+                new HedgingPolicy(false, 0, 0, 0), router("qwen3", ""), 8192);
+        ReflectionTestUtils.setField(service, "timeoutSeconds", 10);
+
+        try {
+            // Act
+            service.chat(RequestType.QA, "Answer from the book.", "Text:\nThe book.", List.of(), "Question: Why?", "en");
+
+            // Assert
+            var root = realMapper.readTree(received.get());
+            assertEquals("Answer from the book. Respond in English.\n\nText:\nThe book.",
+                    root.path("messages").path(0).path("content").asText());
+            assertTrue(root.path("keep_alive").isMissingNode());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testAsk_ReportsHttpErrorsAndEmptyRepliesAsAiErrors() throws Exception {
+        // Arrange
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            boolean busy = exchange.getRequestHeaders().getFirst("Authorization").endsWith("busy");
+            byte[] reply = (busy ? "overloaded" : "{\"choices\":[]}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(busy ? 503 : 200, reply.length);
+            exchange.getResponseBody().write(reply);
+            exchange.close();
+        });
+        server.start();
+        AiService service = service(new ObjectMapper(), pool(url(server)), 131072);
+        ReflectionTestUtils.setField(service, "timeoutSeconds", 10);
+
+        try {
+            // Act
+            ReflectionTestUtils.setField(service, "apiKey", "busy");
+            String busy = service.ask("Summarize.", "Text");
+            ReflectionTestUtils.setField(service, "apiKey", "ok");
+            String empty = service.ask("Summarize.", "Text");
+
+            // Assert
+            assertEquals("AI error: HTTP 503 - overloaded", busy);
+            assertEquals("AI error: Response had no message content", empty);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testAsk_SpreadsRequestsOverBackendsAndStopsUsingAFailingOne() throws Exception {
+        // Arrange
+        AtomicInteger goodHits = new AtomicInteger();
+        AtomicInteger badHits = new AtomicInteger();
+        // The healthy backend is slower, so the untried failing one is always picked early
+        HttpServer good = stub(200, "{\"message\":{\"content\":\"Done\"}}", goodHits, 20);
+        HttpServer bad = stub(502, "bad gateway", badHits, 0);
+        BackendPool pool = pool(1, url(good), url(bad));
+        AiService service = service(new ObjectMapper(), pool, 131072);
+        ReflectionTestUtils.setField(service, "timeoutSeconds", 10);
+        List<String> answers = new ArrayList<>();
+
+        try {
+            // Act
+            for (int i = 0; i < 6; i++) answers.add(service.ask("Summarize.", "Text"));
+
+            // Assert
+            assertEquals(1, badHits.get(), "the failing backend is tried once, then ejected");
+            assertEquals(5, goodHits.get());
+            assertEquals(5, answers.stream().filter("Done"::equals).count());
+            assertEquals(1.0, meterRegistry.get("ai.breaker.transitions")
+                    .tag("backend", url(bad)).tag("state", "open").counter().count());
+        } finally {
+            good.stop(0);
+            bad.stop(0);
+        }
+    }
+
+    @Test
+    void testAsk_FailsFastOnceTheOnlyBackendsCircuitIsOpen() throws Exception {
+        // Arrange
+        AtomicInteger hits = new AtomicInteger();
+        HttpServer down = stub(503, "unavailable", hits, 0);
+        AiService service = service(new ObjectMapper(), pool(2, url(down)), 131072);
+        ReflectionTestUtils.setField(service, "timeoutSeconds", 10);
+
+        try {
+            service.ask("Summarize.", "Text");
+            service.ask("Summarize.", "Text");
+
+            // Act
+            long start = System.nanoTime();
+            String refused = service.ask("Summarize.", "Text");
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            // Assert
+            assertEquals(2, hits.get());
+            assertTrue(refused.startsWith("AI error: Model unavailable"), refused);
+            assertTrue(elapsedMillis < 50, "refused in " + elapsedMillis + " ms");
+            assertEquals(0, service.inFlightRequests());
+        } finally {
+            down.stop(0);
+        }
+    }
+
+    @Test
+    void testAsk_RetriesTransientFailuresOnAnotherAttempt() throws Exception {
+        // Arrange
+        AtomicInteger hits = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            boolean first = hits.incrementAndGet() == 1;
+            byte[] reply = (first ? "busy" : "{\"message\":{\"content\":\"Done\"}}").getBytes(StandardCharsets.UTF_8);
+            if (first) exchange.getResponseHeaders().add("Retry-After", "0");
+            exchange.sendResponseHeaders(first ? 503 : 200, reply.length);
+            exchange.getResponseBody().write(reply);
+            exchange.close();
+        });
+        server.start();
+        AiService service = service(new ObjectMapper(), pool(url(server)), new RetryPolicy(3, 10, 100),
+                new HedgingPolicy(false, 0, 0, 0), 131072, 8192);
+        ReflectionTestUtils.setField(service, "timeoutSeconds", 10);
+
+        try {
+            // Act
+            String answer = service.ask("Summarize.", "Text");
+
+            // Assert
+            assertEquals("Done", answer);
+            assertEquals(2, hits.get());
+            assertEquals(1.0, meterRegistry.counter("ai.retries").count());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testAsk_DoesNotRetryClientErrors() throws Exception {
+        // Arrange
+        AtomicInteger hits = new AtomicInteger();
+        HttpServer server = stub(400, "bad request", hits, 0);
+        AiService service = service(new ObjectMapper(), pool(url(server)), new RetryPolicy(3, 10, 100),
+                new HedgingPolicy(false, 0, 0, 0), 131072, 8192);
+        ReflectionTestUtils.setField(service, "timeoutSeconds", 10);
+
+        try {
+            // Act
+            String answer = service.ask("Summarize.", "Text");
+
+            // Assert
+            assertEquals("AI error: HTTP 400 - bad request", answer);
+            assertEquals(1, hits.get());
+            assertEquals(0.0, meterRegistry.counter("ai.retries").count());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testAsk_HedgesASlowCallOnAnotherBackend() throws Exception {
+        // Arrange
+        AtomicInteger slowHits = new AtomicInteger();
+        AtomicInteger fastHits = new AtomicInteger();
+        HttpServer slow = stub(200, "{\"message\":{\"content\":\"Slow\"}}", slowHits, 1000);
+        HttpServer fast = stub(200, "{\"message\":{\"content\":\"Fast\"}}", fastHits, 0);
+        // The heavy weight makes the slow backend the first choice
+        BackendPool pool = new BackendPool(meterRegistry, url(slow), url(slow) + "|10," + url(fast),
+                new CircuitBreaker.Settings(20, 10, 0.5, Duration.ofSeconds(120).toNanos(), 0.8, 3,
+                        Duration.ofSeconds(60).toNanos(), 1), System::nanoTime);
+        AiService service = service(new ObjectMapper(), pool, new RetryPolicy(1, 1, 1),
+                new HedgingPolicy(true, 1.0, 50, 0), 131072, 8192);
+        ReflectionTestUtils.setField(service, "timeoutSeconds", 10);
+
+        try {
+            // Act
+            long start = System.nanoTime();
+            String answer = service.ask("Summarize.", "Text");
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            // Assert
+            assertEquals("Fast", answer);
+            assertEquals(1, slowHits.get());
+            assertEquals(1, fastHits.get());
+            assertTrue(elapsedMillis < 900, "answered in " + elapsedMillis + " ms");
+            assertEquals(1.0, meterRegistry.get("ai.hedges").tag("outcome", "won").counter().count());
+        } finally {
+            slow.stop(0);
+            fast.stop(0);
+        }
+    }
+
+    @Test
+    void testAsk_CancelsTheUpstreamCallWhenTheContextIsCancelled() throws Exception {
+        // Arrange
+        AtomicInteger hits = new AtomicInteger();
+        HttpServer slow = stub(200, "{\"message\":{\"content\":\"Late\"}}", hits, 3000);
+        AiService service = service(new ObjectMapper(), pool(url(slow)), new RetryPolicy(3, 10, 100),
+                new HedgingPolicy(false, 0, 0, 0), 131072, 8192);
+        ReflectionTestUtils.setField(service, "timeoutSeconds", 10);
+        RequestContext context = new RequestContext();
+
+        try {
+            // Act
+            Thread.ofVirtual().start(() -> {
+                try {
+                    while (hits.get() == 0) Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                context.cancel();
+            });
+            long start = System.nanoTime();
+            context.bind();
+            String answer;
+            try {
+                answer = service.ask("Summarize.", "Text");
+            } finally {
+                context.unbind();
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            // Assert
+            assertEquals("AI error: Request cancelled", answer);
+            assertTrue(elapsedMillis < 2000, "returned after " + elapsedMillis + " ms");
+            assertEquals(1, hits.get(), "a cancelled call is not retried");
+            assertEquals(1.0, meterRegistry.counter("ai.cancelled").count());
+            assertEquals(0.0, meterRegistry.counter("ai.retries").count());
+        } finally {
+            slow.stop(0);
+        }
+    }
+
+    @Test
+    void testAsk_FailsFastWhenTheRequestDeadlineHasPassed() throws Exception {
+        // Arrange
+        AtomicInteger hits = new AtomicInteger();
+        HttpServer server = stub(200, "{\"message\":{\"content\":\"Done\"}}", hits, 0);
+        AiService service = service(new ObjectMapper(), pool(url(server)), 131072);
+        ReflectionTestUtils.setField(service, "timeoutSeconds", 10);
+        RequestContext context = new RequestContext(Duration.ZERO);
+
+        try {
+            // Act
+            context.bind();
+            String answer;
+            try {
+                answer = service.ask("Summarize.", "Text");
+            } finally {
+                context.unbind();
+            }
+
+            // Assert
+            assertTrue(answer.startsWith("AI error: Deadline exceeded"), answer);
+            assertEquals(0, hits.get());
+            assertEquals(1.0, meterRegistry.counter("ai.deadline.exceeded").count());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testAsk_LimitsTheCallToTheTimeLeftAndSkipsRetriesThatCannotFit() throws Exception {
+        // Arrange
+        AtomicInteger hits = new AtomicInteger();
+        HttpServer slow = stub(200, "{\"message\":{\"content\":\"Late\"}}", hits, 2000);
+        AiService service = service(new ObjectMapper(), pool(url(slow)), new RetryPolicy(3, 10, 100),
+                new HedgingPolicy(false, 0, 0, 0), 131072, 8192);
+        ReflectionTestUtils.setField(service, "timeoutSeconds", 10);
+        RequestContext context = new RequestContext(Duration.ofMillis(300));
+
+        try {
+            // Act
+            long start = System.nanoTime();
+            context.bind();
+            String answer;
+            try {
+                answer = service.ask("Summarize.", "Text");
+            } finally {
+                context.unbind();
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            // Assert
+            assertTrue(answer.startsWith("AI error"), answer);
+            assertTrue(elapsedMillis < 1500, "returned after " + elapsedMillis + " ms");
+            assertEquals(1, hits.get());
+        } finally {
+            slow.stop(0);
+        }
+    }
+
+    @Test
+    void testAsk_StopsReadingABodyThatStallsAfterTheHeaders() throws Exception {
+        // Arrange
+        HttpServer stalling = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stalling.createContext("/v1/chat/completions", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, 0);
+            exchange.getResponseBody().write("{\"message\":{\"content\":\"Par".getBytes(StandardCharsets.UTF_8));
+            exchange.getResponseBody().flush();
+            try {
+                Thread.sleep(3000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        stalling.start();
+        AiService service = service(new ObjectMapper(), pool(url(stalling)), 131072);
+        ReflectionTestUtils.setField(service, "timeoutSeconds", 1);
+
+        try {
+            // Act
+            long start = System.nanoTime();
+            String answer = service.ask("Summarize.", "Text");
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            // Assert
+            assertEquals("AI error: Connection failed - Response not received in time", answer);
+            assertTrue(elapsedMillis < 2500, "returned after " + elapsedMillis + " ms");
+        } finally {
+            stalling.stop(0);
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void testAsk_CancellingAbortsABodyThatIsStillArriving() throws Exception {
+        // Arrange
+        AtomicInteger hits = new AtomicInteger();
+        HttpServer stalling = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stalling.createContext("/v1/chat/completions", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, 0);
+            exchange.getResponseBody().flush();
+            hits.incrementAndGet();
+            try {
+                Thread.sleep(3000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        stalling.start();
+        AiService service = service(new ObjectMapper(), pool(url(stalling)), 131072);
+        ReflectionTestUtils.setField(service, "timeoutSeconds", 10);
+        RequestContext context = new RequestContext();
+
+        try {
+            // Act
+            Thread.ofVirtual().start(() -> {
+                try {
+                    while (hits.get() == 0) Thread.sleep(10);
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                context.cancel();
+            });
+            long start = System.nanoTime();
+            String answer = context.within(() -> service.ask("Summarize.", "Text"));
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            // Assert
+            assertEquals("AI error: Request cancelled", answer);
+            assertTrue(elapsedMillis < 2500, "returned after " + elapsedMillis + " ms");
+            assertEquals(1.0, meterRegistry.counter("ai.cancelled").count());
+        } finally {
+            stalling.stop(0);
+            service.shutdown();
+        }
+    }
+
+    private static HttpServer stub(int status, String reply, AtomicInteger hits, long delayMillis) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            hits.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] bytes = reply.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
 }
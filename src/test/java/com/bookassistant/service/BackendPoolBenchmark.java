@@ -0,0 +1,99 @@
+package com.bookassistant.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Throughput of AiService against one, two and four stub inference nodes that each serve one
+ * request at a time in 50 ms. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class BackendPoolBenchmark {
+
+    private static final int CLIENTS = 8;
+    private static final int REQUESTS = 80;
+    private static final long SERVICE_MILLIS = 50;
+
+    @Test
+    void benchmarkThroughputScalesWithNodes() throws Exception {
+        double one = throughput(1);
+        double two = throughput(2);
+        double four = throughput(4);
+
+        assertTrue(four > 2.5 * one, "4 nodes: " + four + " req/s, 1 node: " + one + " req/s");
+        assertTrue(two > 1.5 * one);
+    }
+
+    private double throughput(int nodes) throws Exception {
+        List<HttpServer> servers = new ArrayList<>();
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            HttpServer server = node();
+            servers.add(server);
+            urls.add("http://127.0.0.1:" + server.getAddress().getPort());
+        }
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CircuitBreaker.Settings breaker = new CircuitBreaker.Settings(20, 10, 0.5, Duration.ofSeconds(120).toNanos(),
+                0.8, 3, Duration.ofSeconds(30).toNanos(), 1);
+        BackendPool pool = new BackendPool(registry, urls.get(0), String.join(",", urls), breaker, System::nanoTime);
+        AiService service = new AiService(new ObjectMapper(), new TokenCounter(TokenCounter.DEFAULT_MODEL),
+                pool, new RetryPolicy(1, 1, 1), new HedgingPolicy(false, 0, 0, 0),
+                new ModelRouter(registry, TokenCounter.DEFAULT_MODEL, "", 131072, 8192, 30, 180, 120, 180, 120),
+                registry, 8192);
+        ReflectionTestUtils.setField(service, "timeoutSeconds", 30);
+
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            long start = System.nanoTime();
+            List<Future<String>> answers = new ArrayList<>();
+            for (int i = 0; i < REQUESTS; i++) {
+                answers.add(clients.submit(() -> service.ask("Summarize.", "A page of text.")));
+            }
+            for (Future<String> answer : answers) assertEquals("Done", answer.get());
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double perSecond = REQUESTS / seconds;
+            System.out.printf("BackendPool (%d node%s): %d requests in %.2f s, %.1f req/s%n",
+                    nodes, nodes == 1 ? "" : "s", REQUESTS, seconds, perSecond);
+            return perSecond;
+        } finally {
+            clients.shutdownNow();
+            servers.forEach(server -> server.stop(0));
+        }
+    }
+
+    /** A stub inference node that handles one request at a time. */
+    private static HttpServer node() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newSingleThreadExecutor());
+        server.createContext("/v1/chat/completions", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(SERVICE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] reply = "{\"message\":{\"content\":\"Done\"}}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, reply.length);
+            exchange.getResponseBody().write(reply);
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,151 @@
+package com.bookassistant.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for BackendPool.
+ * Tests endpoint parsing, weighted least-loaded selection and per-backend circuits.
+ */
+class BackendPoolTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicLong clock = new AtomicLong();
+
+    private BackendPool pool(String backends, int consecutiveFailures) {
+        CircuitBreaker.Settings settings = new CircuitBreaker.Settings(20, 10, 0.5, Duration.ofSeconds(120).toNanos(),
+                0.8, consecutiveFailures, Duration.ofSeconds(30).toNanos(), 1);
+        return new BackendPool(registry, "http://base", backends, settings, clock::get);
+    }
+
+    private BackendPool.Backend byUrl(BackendPool pool, String url) {
+        return pool.backends().stream().filter(b -> b.url().equals(url)).findFirst().orElseThrow();
+    }
+
+    @Test
+    void testParse_UsesBaseUrlWhenNoBackendsAreListed() {
+        List<BackendPool.Backend> backends = BackendPool.parse("http://base/", " ");
+
+        assertEquals(1, backends.size());
+        assertEquals("http://base", backends.get(0).url());
+        assertEquals(1, backends.get(0).weight());
+    }
+
+    @Test
+    void testParse_ReadsUrlsAndWeights() {
+        List<BackendPool.Backend> backends = BackendPool.parse("http://base", "http://a:8080|3, http://b:8080/ ,");
+
+        assertEquals(List.of("http://a:8080", "http://b:8080"), backends.stream().map(BackendPool.Backend::url).toList());
+        assertEquals(List.of(3, 1), backends.stream().map(BackendPool.Backend::weight).toList());
+        assertThrows(IllegalArgumentException.class, () -> BackendPool.parse("http://base", "http://a|x"));
+        assertThrows(IllegalArgumentException.class, () -> BackendPool.parse("http://base", "http://a|0"));
+    }
+
+    @Test
+    void testAcquire_SpreadsOutstandingRequestsByWeight() {
+        // Arrange
+        BackendPool pool = pool("http://a|3,http://b|1", 3);
+        Map<String, Integer> picks = new HashMap<>();
+
+        // Act - requests that have not finished yet
+        for (int i = 0; i < 8; i++) picks.merge(pool.acquire().orElseThrow().url(), 1, Integer::sum);
+
+        // Assert
+        assertEquals(6, picks.get("http://a"));
+        assertEquals(2, picks.get("http://b"));
+        assertEquals(6, byUrl(pool, "http://a").outstanding());
+    }
+
+    @Test
+    void testAcquire_PrefersTheFasterBackend() {
+        // Arrange - two requests in flight always land on different backends
+        BackendPool pool = pool("http://a,http://b", 3);
+        BackendPool.Backend slow = pool.acquire().orElseThrow();
+        BackendPool.Backend fast = pool.acquire().orElseThrow();
+        pool.release(slow, Duration.ofMillis(850).toNanos(), true);
+        pool.release(fast, Duration.ofMillis(100).toNanos(), true);
+
+        // Act & Assert - the fast one takes requests until its queue outweighs the latency gap
+        for (int i = 0; i < 8; i++) assertSame(fast, pool.acquire().orElseThrow());
+        assertSame(slow, pool.acquire().orElseThrow());
+    }
+
+    @Test
+    void testRelease_OpenCircuitTakesBackendOutUntilAProbeSucceeds() {
+        // Arrange
+        BackendPool pool = pool("http://a,http://b", 1);
+        BackendPool.Backend failing = pool.acquire().orElseThrow();
+        BackendPool.Backend healthy = pool.acquire().orElseThrow();
+
+        // Act
+        pool.release(failing, 1_000, false);
+        pool.release(healthy, Duration.ofSeconds(2).toNanos(), true);
+
+        // Assert
+        assertEquals(CircuitBreaker.State.OPEN, failing.state());
+        for (int i = 0; i < 5; i++) assertSame(healthy, pool.acquire().orElseThrow());
+        assertEquals(1.0, registry.get("ai.breaker.transitions")
+                .tag("backend", failing.url()).tag("state", "open").counter().count());
+
+        clock.addAndGet(Duration.ofSeconds(31).toNanos());
+        BackendPool.Backend probe = pool.acquire().orElseThrow();
+        assertSame(failing, probe);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, failing.state());
+        pool.release(probe, 1_000, true);
+        assertEquals(CircuitBreaker.State.CLOSED, failing.state());
+    }
+
+    @Test
+    void testAcquire_RefusesWhenEveryCircuitIsOpen() {
+        // Arrange
+        BackendPool pool = pool("http://a,http://b", 1);
+        BackendPool.Backend first = pool.acquire().orElseThrow();
+        BackendPool.Backend second = pool.acquire().orElseThrow();
+        pool.release(first, 1_000, false);
+        clock.addAndGet(Duration.ofSeconds(5).toNanos());
+        pool.release(second, 1_000, false);
+
+        // Act & Assert
+        assertTrue(pool.acquire().isEmpty());
+        assertEquals(Duration.ofSeconds(25), pool.retryIn());
+        assertEquals(1.0, registry.get("ai.breaker.refused").counter().count());
+        assertEquals(2.0, registry.get("ai.breaker.state").tag("backend", first.url()).gauge().value());
+    }
+
+    @Test
+    void testAcquireOther_NeverReturnsTheAvoidedBackend() {
+        // Arrange
+        BackendPool single = pool("", 3);
+        BackendPool.Backend only = single.acquire().orElseThrow();
+
+        // Act & Assert
+        assertTrue(single.acquireOther(only).isEmpty());
+        assertSame(only, single.acquire(only).orElseThrow());
+        assertEquals(0.0, registry.get("ai.breaker.refused").counter().count());
+    }
+
+    @Test
+    void testCancel_DoesNotCountAsAProbeResult() {
+        // Arrange
+        BackendPool pool = pool("", 1);
+        pool.release(pool.acquire().orElseThrow(), 1_000, false);
+        clock.addAndGet(Duration.ofSeconds(31).toNanos());
+        BackendPool.Backend probe = pool.acquire().orElseThrow();
+
+        // Act
+        pool.cancel(probe);
+
+        // Assert - still half-open, and the next request may probe
+        assertEquals(CircuitBreaker.State.HALF_OPEN, probe.state());
+        assertEquals(0, probe.outstanding());
+        assertSame(probe, pool.acquire().orElseThrow());
+    }
+}
@@ -0,0 +1,68 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.PageData;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Prompt token reduction of BoilerplateStripper on sample books. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class BoilerplateStripperBenchmark {
+
+    private static final int PAGES = 300;
+
+    @Test
+    void benchmarkTokenReductionEnglish() {
+        report("English novel", book(i -> "A Long Walk Home\nChapter " + (i / 30 + 1) + ": " + CHAPTERS_EN[i / 30 % CHAPTERS_EN.length],
+                i -> "Page " + i + " of " + PAGES,
+                "She walked along the river for hours, thinking about everything that had happened since spring. "));
+    }
+
+    @Test
+    void benchmarkTokenReductionArabic() {
+        report("Arabic textbook", book(i -> "مبادئ علم الأحياء\nالفصل " + (i / 30 + 1) + " - " + CHAPTERS_AR[i / 30 % CHAPTERS_AR.length],
+                i -> "صفحة " + i,
+                "تتكون الخلية من أجزاء عديدة تعمل معا للحفاظ على الحياة وتنظيم العمليات الحيوية المختلفة. "));
+    }
+
+    private static final String[] CHAPTERS_EN = {"The River", "Spring Rain", "Old Friends", "The Bridge", "Home"};
+    private static final String[] CHAPTERS_AR = {"الخلية", "الوراثة", "التطور", "البيئة", "الأنسجة"};
+
+    private interface Line {
+        String at(int page);
+    }
+
+    private static BookData book(Line header, Line footer, String sentence) {
+        List<PageData> pages = new ArrayList<>(PAGES);
+        StringBuilder full = new StringBuilder();
+        for (int i = 1; i <= PAGES; i++) {
+            StringBuilder body = new StringBuilder();
+            // A short page body (~120 words) so headers matter, as on small-format books
+            for (int s = 0; s < 8; s++) body.append(sentence.replace("hours", "hours " + (i * 8 + s)));
+            String text = header.at(i) + "\n" + body.toString().trim() + "\n" + footer.at(i);
+            pages.add(new PageData(i, text));
+            full.append(text).append("\n\n");
+        }
+        return new BookData("sample.pdf", pages, full.toString());
+    }
+
+    private static void report(String name, BookData book) {
+        long start = System.nanoTime();
+        BookData stripped = BoilerplateStripper.strip(book);
+        double millis = (System.nanoTime() - start) / 1e6;
+
+        TokenCounter tokens = new TokenCounter(TokenCounter.DEFAULT_MODEL);
+        int before = tokens.count(book.fullText());
+        int after = tokens.count(stripped.fullText());
+        System.out.printf("BoilerplateStripper (%s, %d pages): %d -> %d tokens, %.1f%% fewer, %.1f ms%n",
+                name, PAGES, before, after, 100.0 * (before - after) / before, millis);
+        assertTrue(after < before);
+    }
+}
@@ -0,0 +1,113 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.Chapter;
+import com.bookassistant.model.PageData;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for BoilerplateStripper.
+ * Tests removal of running headers, footers and page numbers while body text is kept.
+ */
+class BoilerplateStripperTest {
+
+    private BookData bookWithRunningHeaders(int pageCount) {
+        List<PageData> pages = new ArrayList<>();
+        StringBuilder full = new StringBuilder();
+        for (int i = 1; i <= pageCount; i++) {
+            String chapter = i <= pageCount / 2 ? "Chapter One: Roots" : "Chapter Two: Leaves";
+            String text = "The Book of Trees\n" + chapter + "\n"
+                    + "Body text of page " + i + " talks about trees in its own words.\n"
+                    + "Another distinct sentence number " + (i * 7) + " follows here to close the page.\n"
+                    + "- " + i + " -";
+            pages.add(new PageData(i, text));
+            full.append(text).append("\n\n");
+        }
+        return new BookData("trees.pdf", pages, full.toString(),
+                List.of(new Chapter(1, "Roots", 1, pageCount / 2), new Chapter(2, "Leaves", pageCount / 2 + 1, pageCount)));
+    }
+
+    @Test
+    void testRunningHeadersAndPageNumbersAreRemoved() {
+        BookData stripped = BoilerplateStripper.strip(bookWithRunningHeaders(20));
+
+        String page5 = stripped.pages().get(4).text();
+        assertFalse(page5.contains("The Book of Trees"));
+        assertFalse(page5.contains("Chapter One"));
+        assertFalse(page5.contains("- 5 -"));
+        assertTrue(page5.startsWith("Body text of page 5"));
+        assertTrue(page5.endsWith("to close the page."));
+        assertFalse(stripped.fullText().contains("- 12 -"));
+    }
+
+    @Test
+    void testFirstOccurrenceOfRepeatedHeadingIsKept() {
+        BookData stripped = BoilerplateStripper.strip(bookWithRunningHeaders(20));
+
+        assertTrue(stripped.pages().get(0).text().startsWith("The Book of Trees\nChapter One: Roots"));
+        assertTrue(stripped.pages().get(10).text().startsWith("Chapter Two: Leaves"));
+        assertFalse(stripped.pages().get(11).text().contains("Chapter Two"));
+    }
+
+    @Test
+    void testPagesAndChaptersArePreserved() {
+        BookData book = bookWithRunningHeaders(20);
+
+        BookData stripped = BoilerplateStripper.strip(book);
+
+        assertEquals(20, stripped.pages().size());
+        assertEquals(book.chapters(), stripped.chapters());
+        assertEquals(7, stripped.pages().get(6).pageNumber());
+    }
+
+    @Test
+    void testArabicHeadersWithArabicIndicDigits() {
+        List<PageData> pages = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            pages.add(new PageData(i, "كتاب الأشجار\nنص الصفحة الخاص رقم " + i + " عن الجذور والأوراق.\nصفحة ٣" + i));
+        }
+
+        BookData stripped = BoilerplateStripper.strip(new BookData("ar.pdf", pages, ""));
+
+        assertTrue(stripped.pages().get(3).text().startsWith("نص الصفحة"));
+        assertFalse(stripped.pages().get(3).text().contains("صفحة ٣"));
+    }
+
+    @Test
+    void testNumberedChapterHeadingsAreKept() {
+        List<PageData> pages = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            pages.add(new PageData(i, "Chapter " + i + "\nThe story of part " + "abcdefghij".charAt(i - 1)
+                    + " begins on this page and runs on."));
+        }
+
+        BookData stripped = BoilerplateStripper.strip(new BookData("chapters.pdf", pages, ""));
+
+        for (int i = 1; i <= 10; i++) {
+            assertTrue(stripped.pages().get(i - 1).text().startsWith("Chapter " + i + "\n"));
+        }
+    }
+
+    @Test
+    void testBookWithoutRepeatsIsReturnedUnchanged() {
+        List<PageData> pages = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            pages.add(new PageData(i, "Unique opening line " + "abcdefghij".charAt(i - 1) + "\nBody " + "klmnopqrst".charAt(i - 1)));
+        }
+        BookData book = new BookData("plain.pdf", pages, "");
+
+        assertSame(book, BoilerplateStripper.strip(book));
+    }
+
+    @Test
+    void testShortBooksAreNotStripped() {
+        BookData book = bookWithRunningHeaders(3);
+
+        assertSame(book, BoilerplateStripper.strip(book));
+    }
+}
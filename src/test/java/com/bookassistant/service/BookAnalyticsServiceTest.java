@@ -0,0 +1,98 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookAnalytics;
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.Chapter;
+import com.bookassistant.model.PageData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for BookAnalyticsService.
+ * Tests word counts, reading time, page languages, keywords and caching.
+ */
+class BookAnalyticsServiceTest {
+
+    private final BookAnalyticsService analyticsService = new BookAnalyticsService(4, 100);
+
+    @AfterEach
+    void tearDown() {
+        analyticsService.shutdown();
+    }
+
+    private BookData book() {
+        List<PageData> pages = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            pages.add(new PageData(i, "The garden needs water and the garden needs light."));
+        }
+        for (int i = 21; i <= 40; i++) {
+            pages.add(new PageData(i, "المحرك يحتاج وقودا ثم المحرك يحتاج صيانة"));
+        }
+        return new BookData("book.pdf", pages, "full text",
+                List.of(new Chapter(1, "Gardens", 1, 20), new Chapter(2, "المحركات", 21, 40)));
+    }
+
+    @Test
+    void testAnalytics_CountsWordsAndReadingTime() {
+        // Act
+        BookAnalytics analytics = analyticsService.analytics("hash", book());
+
+        // Assert: 9 words per English page and 7 per Arabic page
+        assertEquals(40, analytics.pageCount());
+        assertEquals(20 * 9 + 20 * 7, analytics.wordCount());
+        assertEquals(4, analytics.readingMinutes());
+        assertEquals(analytics.distinctWords() / (double) analytics.wordCount(), analytics.vocabularyRichness());
+    }
+
+    @Test
+    void testAnalytics_DetectsLanguagePerPage() {
+        // Act
+        BookAnalytics analytics = analyticsService.analytics("hash", book());
+
+        // Assert
+        assertEquals("en", analytics.pageLanguages().get(0));
+        assertEquals("ar", analytics.pageLanguages().get(39));
+    }
+
+    @Test
+    void testAnalytics_ChapterKeywordsAreDistinctive() {
+        // Act
+        BookAnalytics analytics = analyticsService.analytics("hash", book());
+
+        // Assert
+        assertEquals(2, analytics.chapters().size());
+        assertEquals("garden", analytics.chapters().get(0).topKeywords().get(0));
+        assertFalse(analytics.chapters().get(0).topKeywords().contains("the"));
+        assertEquals("المحرك", analytics.chapters().get(1).topKeywords().get(0));
+        assertEquals(180, analytics.chapters().get(0).wordCount());
+    }
+
+    @Test
+    void testAnalytics_IsCachedPerContentHash() {
+        // Act
+        BookAnalytics first = analyticsService.analytics("hash", book());
+        BookAnalytics second = analyticsService.analytics("hash", book());
+
+        // Assert
+        assertSame(first, second);
+    }
+
+    @Test
+    void testAnalytics_BookWithoutChapters() {
+        // Arrange
+        BookData book = new BookData("plain.pdf", List.of(new PageData(1, "One two three"), new PageData(2, "")), "");
+
+        // Act
+        BookAnalytics analytics = analyticsService.analytics("plain", book);
+
+        // Assert
+        assertEquals(3, analytics.wordCount());
+        assertEquals(List.of("en", ""), analytics.pageLanguages());
+        assertTrue(analytics.chapters().isEmpty());
+    }
+}
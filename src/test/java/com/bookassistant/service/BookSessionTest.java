@@ -6,6 +6,7 @@ import com.bookassistant.session.BookSession;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -179,4 +180,42 @@ class BookSessionTest {
         
         assertEquals("ar", bookSession.getDetectedLanguage());
     }
+
+    @Test
+    void testSetBook_StripsRunningHeadersButKeepsRawBook() {
+        // Every page opens with the book title and ends with its page number
+        List<PageData> pages = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            pages.add(new PageData(i, "The Garden Book\nText about planting seeds in the month number " + i + " of the year.\n" + i));
+        }
+        BookData book = new BookData("garden.pdf", pages, "Full text");
+
+        bookSession.setBook(book);
+
+        assertFalse(bookSession.extractRange(5, 5).contains("The Garden Book"));
+        assertTrue(bookSession.extractRange(5, 5).contains("planting seeds"));
+        assertSame(book, bookSession.getRawBook().orElseThrow());
+        assertEquals(10, bookSession.getBook().orElseThrow().pages().size());
+    }
+
+    @Test
+    void testSetBook_StartsNewConversation() {
+        // Arrange
+        bookSession.setBook(new BookData("a.pdf", List.of(), "First book"));
+        bookSession.getConversation().record("Q", "A", String::length);
+
+        // Act
+        bookSession.setBook(new BookData("b.pdf", List.of(), "Second book"));
+
+        // Assert
+        assertEquals(0, bookSession.getConversation().turns());
+    }
+
+    @Test
+    void testOutputLanguage_UnsupportedValueFallsBackToBookLanguage() {
+        assertEquals("en", BookSession.outputLanguage("en", "ar"));
+        assertEquals("ar", BookSession.outputLanguage("ar", "en"));
+        assertEquals("ar", BookSession.outputLanguage("../fr", "ar"));
+        assertEquals("en", BookSession.outputLanguage(null, "en"));
+    }
 }
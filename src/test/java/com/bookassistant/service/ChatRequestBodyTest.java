@@ -0,0 +1,148 @@
+package com.bookassistant.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ChatRequestBody.
+ * Tests the streamed JSON envelope and the bounded hand-off between writer and sender.
+ */
+class ChatRequestBodyTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void testWrite_MatchesMapperSerializationOfTheEnvelope() throws Exception {
+        // Arrange
+        String system = "Answer \"only\" from the book.";
+        String user = "السؤال: ما هذا؟\n\nText:\n\tline with \\ backslash";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        try (var gen = mapper.getFactory().createGenerator(out)) {
+            ChatRequestBody.write(gen, "qwen3", system, user);
+        }
+
+        // Assert
+        JsonNode expected = mapper.valueToTree(Map.of(
+                "model", "qwen3",
+                "stream", false,
+                "messages", List.of(
+                        Map.of("role", "system", "content", system),
+                        Map.of("role", "user", "content", user))));
+        assertEquals(expected, mapper.readTree(out.toByteArray()));
+    }
+
+    @Test
+    void testWrite_PutsHistoryBetweenSystemAndUser() throws Exception {
+        // Arrange
+        List<ChatMessage> history = List.of(ChatMessage.user("Q1"), ChatMessage.assistant("A1"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        try (var gen = mapper.getFactory().createGenerator(out)) {
+            ChatRequestBody.write(gen, "qwen3", "system", history, "Q2");
+        }
+
+        // Assert
+        JsonNode expected = mapper.valueToTree(Map.of(
+                "model", "qwen3",
+                "stream", false,
+                "messages", List.of(
+                        Map.of("role", "system", "content", "system"),
+                        Map.of("role", "user", "content", "Q1"),
+                        Map.of("role", "assistant", "content", "A1"),
+                        Map.of("role", "user", "content", "Q2"))));
+        assertEquals(expected, mapper.readTree(out.toByteArray()));
+    }
+
+    @Test
+    void testPublisher_StreamsLargePromptAcrossManyChunks() throws Exception {
+        // Arrange
+        String book = "صفحة من كتاب طويل مع بعض النص. A page of a long book.\n".repeat(20_000);
+        HttpRequest.BodyPublisher publisher = ChatRequestBody.publisher(mapper.getFactory(), "qwen3",
+                "Summarize.", book, Duration.ofSeconds(10));
+
+        // Act
+        byte[] body = drain(publisher).get(10, TimeUnit.SECONDS);
+
+        // Assert
+        assertTrue(body.length > 50 * ChatRequestBody.CHUNK_BYTES);
+        JsonNode root = mapper.readTree(body);
+        assertEquals(book, root.path("messages").path(1).path("content").asText());
+        assertFalse(root.path("stream").asBoolean());
+    }
+
+    @Test
+    void testPipe_WriterFailureIsReportedInsteadOfEndOfStream() throws Exception {
+        // Arrange
+        ChatRequestBody.Pipe pipe = new ChatRequestBody.Pipe(Duration.ofSeconds(5));
+        OutputStream sink = pipe.sink();
+        InputStream source = pipe.source();
+        sink.write(new byte[ChatRequestBody.CHUNK_BYTES + 10]);
+
+        // Act
+        pipe.fail(new IOException("disk full"));
+
+        // Assert
+        IOException e = assertThrows(IOException.class, () -> source.readAllBytes());
+        assertEquals("disk full", e.getCause().getMessage());
+    }
+
+    @Test
+    void testPipe_WriterGivesUpWhenNobodyReads() {
+        // Arrange
+        ChatRequestBody.Pipe pipe = new ChatRequestBody.Pipe(Duration.ofMillis(300));
+        OutputStream sink = pipe.sink();
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> {
+            for (int i = 0; i < 10; i++) sink.write(new byte[ChatRequestBody.CHUNK_BYTES]);
+        });
+    }
+
+    private static CompletableFuture<byte[]> drain(HttpRequest.BodyPublisher publisher) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        ByteArrayOutputStream collected = new ByteArrayOutputStream();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                byte[] bytes = new byte[item.remaining()];
+                item.get(bytes);
+                collected.writeBytes(bytes);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                result.complete(collected.toByteArray());
+            }
+        });
+        return result;
+    }
+}
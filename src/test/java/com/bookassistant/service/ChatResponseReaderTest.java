@@ -0,0 +1,68 @@
+package com.bookassistant.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ChatResponseReader.
+ * Tests both response shapes, usage counts and skipping of unrelated fields.
+ */
+class ChatResponseReaderTest {
+
+    private final JsonFactory factory = new JsonFactory();
+
+    private ChatResponseReader.Reply read(String json) throws IOException {
+        return ChatResponseReader.read(factory, new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testOpenAiShapeReadsFirstChoiceAndUsage() throws IOException {
+        ChatResponseReader.Reply reply = read("""
+                {"id":"x","object":"chat.completion","choices":[
+                  {"index":0,"message":{"role":"assistant","content":"ملخص \\"الكتاب\\"","tool_calls":[]},"finish_reason":"stop"},
+                  {"index":1,"message":{"role":"assistant","content":"second"}}],
+                 "usage":{"prompt_tokens":1200,"completion_tokens":85,"total_tokens":1285,"details":{"cached":0}}}
+                """);
+
+        assertEquals("ملخص \"الكتاب\"", reply.content());
+        assertEquals(1200, reply.promptTokens());
+        assertEquals(85, reply.completionTokens());
+    }
+
+    @Test
+    void testNativeOllamaShape() throws IOException {
+        ChatResponseReader.Reply reply = read("""
+                {"model":"qwen3","created_at":"2025-01-01T00:00:00Z",
+                 "message":{"role":"assistant","content":"Hello","images":null},
+                 "done":true,"prompt_eval_count":26,"eval_count":3,"context":[1,2,3]}
+                """);
+
+        assertEquals("Hello", reply.content());
+        assertEquals(26, reply.promptTokens());
+        assertEquals(3, reply.completionTokens());
+    }
+
+    @Test
+    void testMissingContentAndUsageAreReportedAsAbsent() throws IOException {
+        ChatResponseReader.Reply reply = read("""
+                {"choices":[{"message":{"role":"assistant","content":null}}],"usage":null}
+                """);
+
+        assertNull(reply.content());
+        assertEquals(-1, reply.promptTokens());
+        assertEquals(-1, reply.completionTokens());
+        assertNull(read("[]").content());
+    }
+
+    @Test
+    void testTruncatedResponseFails() {
+        assertThrows(JsonProcessingException.class, () -> read("{\"choices\":[{\"message\":{\"content\":\"cut"));
+    }
+}
@@ -0,0 +1,126 @@
+package com.bookassistant.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CircuitBreaker.
+ * Tests the failure-rate, slow-call and consecutive-failure trips and half-open probing.
+ */
+class CircuitBreakerTest {
+
+    private static final long FAST = Duration.ofMillis(200).toNanos();
+    private static final long SLOW = Duration.ofSeconds(90).toNanos();
+
+    private final AtomicLong clock = new AtomicLong();
+    private final List<String> transitions = new ArrayList<>();
+
+    private CircuitBreaker breaker(int consecutiveFailures, int probes) {
+        CircuitBreaker.Settings settings = new CircuitBreaker.Settings(10, 4, 0.5, Duration.ofSeconds(60).toNanos(),
+                0.75, consecutiveFailures, Duration.ofSeconds(30).toNanos(), probes);
+        return new CircuitBreaker("http://a", settings, clock::get, (b, from, to) -> transitions.add(from + "->" + to));
+    }
+
+    private void call(CircuitBreaker breaker, long elapsed, boolean failure) {
+        assertTrue(breaker.tryAcquire());
+        breaker.record(elapsed, failure);
+    }
+
+    @Test
+    void testFailureRateOpensOnlyOnceEnoughCallsWereSeen() {
+        CircuitBreaker breaker = breaker(10, 1);
+
+        call(breaker, FAST, true);
+        call(breaker, FAST, false);
+        call(breaker, FAST, true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        call(breaker, FAST, false);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.allows());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(Duration.ofSeconds(30).toNanos(), breaker.retryInNanos());
+        assertEquals(List.of("CLOSED->OPEN"), transitions);
+    }
+
+    @Test
+    void testSlowCallsOpenEvenWhenTheySucceed() {
+        CircuitBreaker breaker = breaker(10, 1);
+
+        for (int i = 0; i < 3; i++) call(breaker, SLOW, false);
+        call(breaker, FAST, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void testOldOutcomesLeaveTheWindow() {
+        CircuitBreaker breaker = breaker(10, 1);
+
+        call(breaker, FAST, true);
+        for (int i = 0; i < 9; i++) call(breaker, FAST, false);
+        for (int i = 0; i < 4; i++) call(breaker, FAST, true);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void testConsecutiveFailuresOpenAtOnce() {
+        CircuitBreaker breaker = breaker(2, 1);
+
+        call(breaker, FAST, true);
+        call(breaker, FAST, true);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void testHalfOpenLetsProbesThroughAndClosesWhenTheyAllSucceed() {
+        CircuitBreaker breaker = breaker(1, 2);
+        call(breaker, FAST, true);
+        clock.addAndGet(Duration.ofSeconds(30).toNanos());
+
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        breaker.record(FAST, false);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        breaker.record(FAST, false);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertEquals(List.of("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED"), transitions);
+    }
+
+    @Test
+    void testFailedProbeReopens() {
+        CircuitBreaker breaker = breaker(1, 1);
+        call(breaker, FAST, true);
+        clock.addAndGet(Duration.ofSeconds(31).toNanos());
+
+        call(breaker, SLOW, false);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertEquals(Duration.ofSeconds(30).toNanos(), breaker.retryInNanos());
+    }
+
+    @Test
+    void testCancelledProbeLeavesTheCircuitHalfOpen() {
+        CircuitBreaker breaker = breaker(1, 1);
+        call(breaker, FAST, true);
+        clock.addAndGet(Duration.ofSeconds(31).toNanos());
+        assertTrue(breaker.tryAcquire());
+
+        breaker.cancel();
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        call(breaker, FAST, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+}
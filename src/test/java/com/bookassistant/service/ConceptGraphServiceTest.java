@@ -0,0 +1,144 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.ConceptGraph;
+import com.bookassistant.model.PageData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ConceptGraphService.
+ * Tests per-chunk graph caching, merging with label deduplication and the text outline.
+ */
+@ExtendWith(MockitoExtension.class)
+class ConceptGraphServiceTest {
+
+    @Mock
+    private AiService aiService;
+
+    private ConceptGraphService conceptGraphService;
+    private BookData book;
+
+    @BeforeEach
+    void setUp() {
+        // One page per chunk: each page is ~12 tokens and the budget is 15
+        conceptGraphService = new ConceptGraphService(aiService, new TextChunker(15, 0), new ObjectMapper(), Runnable::run, 100);
+        List<PageData> pages = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            pages.add(new PageData(i, "Page " + i + " describes one more step of the long story in detail"));
+        }
+        book = new BookData("book.pdf", pages, "full text");
+        lenient().when(aiService.ask(anyString(), anyString(), anyString())).thenReturn("""
+                {"nodes": [{"id": "n1", "label": "Photosynthesis"}, {"id": "n2", "label": "Chlorophyll"}],
+                 "edges": [{"source": "n2", "target": "n1", "label": "enables"}]}""");
+    }
+
+    @Test
+    void testGraph_SameLabelsAcrossChunks_AreMergedIntoOneNode() {
+        // Act
+        ConceptGraph graph = conceptGraphService.graph(book, "hash", 1, 3, "en");
+
+        // Assert
+        assertEquals(2, graph.nodes().size());
+        assertEquals(new ConceptGraph.Node("photosynthesis", "Photosynthesis", 3, List.of(1, 2, 3)), graph.nodes().get(0));
+        assertEquals(List.of(new ConceptGraph.Edge("chlorophyll", "photosynthesis", "enables", 3)), graph.edges());
+    }
+
+    @Test
+    void testGraph_LargerRange_ReusesCachedChunkGraphs() {
+        // Arrange
+        conceptGraphService.graph(book, "hash", 1, 3, "en");
+
+        // Act
+        conceptGraphService.graph(book, "hash", 1, 6, "en");
+
+        // Assert: pages 1-3 were already asked, only 4-6 are new
+        verify(aiService, times(6)).ask(anyString(), anyString(), eq("en"));
+    }
+
+    @Test
+    void testGraph_FailedChunk_IsNotCached() {
+        // Arrange
+        when(aiService.ask(anyString(), anyString(), eq("en"))).thenReturn("AI error: HTTP 503");
+
+        // Act
+        ConceptGraph first = conceptGraphService.graph(book, "hash", 1, 1, "en");
+        conceptGraphService.graph(book, "hash", 1, 1, "en");
+
+        // Assert
+        assertTrue(first.nodes().isEmpty());
+        assertEquals("AI error: HTTP 503", first.error());
+        verify(aiService, times(2)).ask(anyString(), anyString(), eq("en"));
+    }
+
+    @Test
+    void testGraph_SomeChunksFail_MergesTheOthers() {
+        // Arrange
+        when(aiService.ask(anyString(), contains("Page 2 "), eq("en"))).thenReturn("AI error: HTTP 503");
+
+        // Act
+        ConceptGraph graph = conceptGraphService.graph(book, "hash", 1, 3, "en");
+
+        // Assert
+        assertNull(graph.error());
+        assertEquals(List.of(1, 3), graph.nodes().get(0).pages());
+    }
+
+    @Test
+    void testDescribe_FailedGraph_ReturnsError() {
+        // Act
+        String text = conceptGraphService.describe(ConceptGraph.failed("AI error: HTTP 503"), "en");
+
+        // Assert
+        assertEquals("AI error: HTTP 503", text);
+    }
+
+    @Test
+    void testParse_ArabicLabelVariants_AreDeduplicated() {
+        // Act
+        ConceptGraph graph = conceptGraphService.parse("""
+                ```json
+                {"nodes": [{"id": "a", "label": "الطاقة"}, {"id": "b", "label": "الطاقةُ"}, {"id": "c", "label": "الضوء"}],
+                 "edges": [{"source": "c", "target": "a", "label": "ينتج"}, {"source": "a", "target": "b", "label": "نفس"}]}
+                ```""", 4);
+
+        // Assert
+        assertEquals(2, graph.nodes().size());
+        assertEquals(2, graph.nodes().get(0).weight());
+        assertEquals(1, graph.edges().size());
+    }
+
+    @Test
+    void testParse_AnswerWithoutReadableJson_IsAFailure() {
+        // Act
+        ConceptGraph prose = conceptGraphService.parse("The text is about photosynthesis.", 1);
+        ConceptGraph broken = conceptGraphService.parse("{\"nodes\": [{\"id\": \"a\", }", 1);
+
+        // Assert
+        assertTrue(prose.error().startsWith("AI error"), prose.error());
+        assertTrue(broken.error().startsWith("AI error"), broken.error());
+    }
+
+    @Test
+    void testDescribe_ListsConceptsWithRelations() {
+        // Arrange
+        ConceptGraph graph = conceptGraphService.graph(book, "hash", 1, 1, "en");
+
+        // Act
+        String outline = conceptGraphService.describe(graph, "en");
+
+        // Assert
+        assertEquals("- **Photosynthesis**\n- **Chlorophyll**\n  - enables → Photosynthesis\n", outline);
+    }
+}
@@ -0,0 +1,82 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.PageData;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ExtractiveSummarizer.
+ * Tests sentence selection, reading order, redundancy removal and the error fallback.
+ */
+class ExtractiveSummarizerTest {
+
+    private final ExtractiveSummarizer summarizer = new ExtractiveSummarizer(2);
+
+    private final List<PageData> pages = List.of(
+            new PageData(1, "Solar panels convert sunlight into electricity for homes. "
+                    + "The weather was pleasant on the morning of the trip. "
+                    + "Solar panels convert sunlight into electricity for houses."),
+            new PageData(2, "Batteries store the electricity that solar panels produce during the day. "
+                    + "Batteries release stored electricity at night when panels are idle."));
+
+    @Test
+    void testSummarize_PicksCentralSentencesWithPages() {
+        // Act
+        String summary = summarizer.summarize(pages, "en");
+
+        // Assert
+        assertEquals(2, summary.lines().count());
+        assertTrue(summary.contains("(p. "));
+        assertFalse(summary.contains("weather"));
+    }
+
+    @Test
+    void testRank_SkipsNearDuplicatesAndKeepsReadingOrder() {
+        // Act
+        List<ExtractiveSummarizer.Sentence> picked = summarizer.rank(pages, 3);
+
+        // Assert
+        assertTrue(picked.get(0).page() <= picked.get(picked.size() - 1).page());
+        long solarSentences = picked.stream().filter(s -> s.text().startsWith("Solar panels")).count();
+        assertTrue(solarSentences <= 1, "both near-identical solar sentences were picked");
+    }
+
+    @Test
+    void testSummarize_Arabic_UsesArabicPageLabel() {
+        // Arrange
+        List<PageData> arabic = List.of(new PageData(3,
+                "تحول الألواح الشمسية ضوء الشمس إلى كهرباء للمنازل. "
+                        + "تخزن البطاريات الكهرباء التي تنتجها الألواح الشمسية خلال النهار."));
+
+        // Act
+        String summary = summarizer.summarize(arabic, "ar");
+
+        // Assert
+        assertTrue(summary.contains("(ص 3)"));
+    }
+
+    @Test
+    void testOrFallback_ErrorAnswer_ReturnsLocalSummary() {
+        // Act
+        String answer = summarizer.orFallback("AI error: HTTP 503", pages, "en");
+
+        // Assert
+        assertTrue(answer.startsWith("_The AI service is unavailable"));
+        assertTrue(answer.contains("Solar panels") || answer.contains("Batteries"));
+    }
+
+    @Test
+    void testOrFallback_NormalAnswer_IsUnchanged() {
+        // Act & Assert
+        assertEquals("A good summary", summarizer.orFallback("A good summary", pages, "en"));
+    }
+
+    @Test
+    void testSummarize_NoText_ReturnsMessage() {
+        // Act & Assert
+        assertEquals("No text to summarize.", summarizer.summarize(List.of(new PageData(1, "")), "en"));
+    }
+}
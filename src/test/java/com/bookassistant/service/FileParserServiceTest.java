@@ -1,11 +1,17 @@
 package com.bookassistant.service;
 
 import com.bookassistant.model.BookData;
+import com.bookassistant.model.Chapter;
 import com.bookassistant.model.PageData;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageFitDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.mock.web.MockMultipartFile;
@@ -185,6 +191,50 @@ class FileParserServiceTest {
         assertEquals("my-custom-book.pdf", result.fileName());
     }
 
+    @Test
+    void testParsePdf_ChaptersFromOutline() throws Exception {
+        byte[] pdfBytes = createPdfWithOutline(10, 1, 4, 8);
+
+        BookData result = fileParserService.parse(new MockMultipartFile(
+            "file", "outlined.pdf", "application/pdf", pdfBytes));
+
+        List<Chapter> chapters = result.chapters();
+        assertEquals(3, chapters.size());
+        assertEquals(new Chapter(1, "Chapter 1", 1, 3), chapters.get(0));
+        assertEquals(new Chapter(2, "Chapter 2", 4, 7), chapters.get(1));
+        assertEquals(new Chapter(3, "Chapter 3", 8, 10), chapters.get(2));
+    }
+
+    @Test
+    void testParsePdf_ChaptersFromHeadingsWithoutOutline() throws Exception {
+        byte[] pdfBytes = createPdfWithText(
+            "Preface", "Chapter 1\nBeginnings", "More text", "Chapter 2\nEndings", "Last page");
+
+        BookData result = fileParserService.parse(new MockMultipartFile(
+            "file", "headings.pdf", "application/pdf", pdfBytes));
+
+        List<Chapter> chapters = result.chapters();
+        assertEquals(2, chapters.size());
+        assertEquals(new Chapter(1, "Chapter 1 - Beginnings", 2, 3), chapters.get(0));
+        assertEquals(new Chapter(2, "Chapter 2 - Endings", 4, 5), chapters.get(1));
+    }
+
+    @Test
+    void testDetectArabicChapterHeadings() {
+        List<PageData> pages = List.of(
+            new PageData(1, "المقدمة"),
+            new PageData(2, "الفصل الأول\nالبدايات\nنص"),
+            new PageData(3, "نص"),
+            new PageData(4, "الفصل الثاني: النهايات\nنص")
+        );
+
+        List<Chapter> chapters = ChapterDetector.detect(pages);
+
+        assertEquals(2, chapters.size());
+        assertEquals(new Chapter(1, "الفصل الأول - البدايات", 2, 3), chapters.get(0));
+        assertEquals(new Chapter(2, "الفصل الثاني: النهايات", 4, 4), chapters.get(1));
+    }
+
     // Helper method to create a minimal valid PDF
     private byte[] createMinimalPdf() throws IOException {
         try (PDDocument document = new PDDocument()) {
@@ -210,4 +260,53 @@ class FileParserServiceTest {
             return baos.toByteArray();
         }
     }
+
+    // Helper method to create PDF with one bookmark per chapter start page
+    private byte[] createPdfWithOutline(int pageCount, int... chapterStarts) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < pageCount; i++) {
+                document.addPage(new PDPage(PDRectangle.A4));
+            }
+            PDDocumentOutline outline = new PDDocumentOutline();
+            for (int i = 0; i < chapterStarts.length; i++) {
+                PDPageFitDestination destination = new PDPageFitDestination();
+                destination.setPage(document.getPage(chapterStarts[i] - 1));
+                PDOutlineItem item = new PDOutlineItem();
+                item.setTitle("Chapter " + (i + 1));
+                item.setDestination(destination);
+                outline.addLast(item);
+            }
+            document.getDocumentCatalog().setDocumentOutline(outline);
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            document.save(baos);
+            return baos.toByteArray();
+        }
+    }
+
+    // Helper method to create PDF whose pages contain the given lines of text
+    private byte[] createPdfWithText(String... pageTexts) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (String pageText : pageTexts) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(font, 12);
+                    content.setLeading(16);
+                    content.newLineAtOffset(50, 750);
+                    for (String line : pageText.split("\n")) {
+                        content.showText(line);
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            document.save(baos);
+            return baos.toByteArray();
+        }
+    }
 }
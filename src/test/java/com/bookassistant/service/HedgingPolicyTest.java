@@ -0,0 +1,53 @@
+package com.bookassistant.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for HedgingPolicy.
+ * Tests the percentile-based hedge delay and the hedge budget.
+ */
+class HedgingPolicyTest {
+
+    @Test
+    void testDisabledPolicyNeverHedges() {
+        HedgingPolicy policy = new HedgingPolicy(false, 1.0, 0, 0);
+
+        assertTrue(policy.delayFor().isEmpty());
+        assertFalse(policy.tryHedge());
+    }
+
+    @Test
+    void testDelayWaitsForEnoughSamplesThenFollowsThe95thPercentile() {
+        HedgingPolicy policy = new HedgingPolicy(true, 0.05, 100, 20);
+        for (int i = 1; i < 20; i++) policy.record(Duration.ofMillis(i * 50L));
+
+        assertTrue(policy.delayFor().isEmpty());
+
+        policy.record(Duration.ofMillis(1000));
+        assertEquals(Duration.ofMillis(950), policy.delayFor().orElseThrow());
+    }
+
+    @Test
+    void testDelayIsNeverShorterThanTheMinimum() {
+        HedgingPolicy policy = new HedgingPolicy(true, 0.05, 2000, 1);
+        policy.record(Duration.ofMillis(10));
+
+        assertEquals(Duration.ofMillis(2000), policy.delayFor().orElseThrow());
+    }
+
+    @Test
+    void testBudgetAllowsOneHedgePerTwentyCallsAtFivePercent() {
+        HedgingPolicy policy = new HedgingPolicy(true, 0.05, 0, 0);
+
+        for (int i = 0; i < 19; i++) policy.delayFor();
+        assertFalse(policy.tryHedge());
+
+        policy.delayFor();
+        assertTrue(policy.tryHedge());
+        assertFalse(policy.tryHedge());
+    }
+}
@@ -0,0 +1,102 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.PageData;
+import com.bookassistant.model.SearchHit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for IndexStore.
+ * Tests the on-disk index format round trip and version handling.
+ */
+class IndexStoreTest {
+
+    @TempDir
+    Path indexDir;
+
+    private IndexStore indexStore;
+    private BookData book;
+
+    @BeforeEach
+    void setUp() {
+        indexStore = new IndexStore(indexDir.toString());
+        List<PageData> pages = new ArrayList<>();
+        for (int i = 1; i <= 300; i++) {
+            String extra = i % 50 == 0 ? " rare landmark" : "";
+            pages.add(new PageData(i, "Page " + i + " talks about gardens and rivers" + extra));
+        }
+        pages.add(new PageData(301, "الفصل الأخير عن الحدائق"));
+        book = new BookData("book.pdf", pages, "Full text");
+    }
+
+    @Test
+    void testIndexOverTheSizeLimitIsRejected() {
+        IndexStore small = new IndexStore(indexDir.toString(), 4096);
+
+        IOException error = assertThrows(IOException.class, () -> small.write("hash", BookIndex.build(book)));
+
+        assertTrue(error.getMessage().contains("book.pdf"));
+        assertTrue(small.open("hash", "book.pdf").isEmpty());
+    }
+
+    @Test
+    void testOpenMissingIndex() {
+        assertTrue(indexStore.open("missing", "book.pdf").isEmpty());
+    }
+
+    @Test
+    void testMappedIndexMatchesInMemoryIndex() throws Exception {
+        BookIndex memory = BookIndex.build(book);
+        indexStore.write("hash", memory);
+
+        SearchShard mapped = indexStore.open("hash", "book.pdf").orElseThrow();
+
+        assertEquals(memory.pageCount(), mapped.pageCount());
+        assertEquals(memory.termCount(), mapped.termCount());
+        for (String query : List.of("rare landmark", "gardens", "الحدائق", "absent")) {
+            List<String> terms = TextNormalizer.terms(query);
+            List<SearchHit> expected = memory.search(terms, 10);
+            List<SearchHit> actual = mapped.search(terms, 10);
+            assertEquals(expected.size(), actual.size(), query);
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).pageNumber(), actual.get(i).pageNumber(), query);
+                assertEquals(expected.get(i).score(), actual.get(i).score(), 1e-9, query);
+                assertEquals(expected.get(i).snippet(), actual.get(i).snippet(), query);
+            }
+        }
+    }
+
+    @Test
+    void testPostingsAreDeltaEncoded() throws Exception {
+        indexStore.write("hash", BookIndex.build(book));
+
+        // About 15 KB of page text; varint postings keep the whole file well below 64 KB
+        long size = Files.size(indexDir.resolve("hash.idx"));
+        assertTrue(size < 64_000, "index file is " + size + " bytes");
+    }
+
+    @Test
+    void testUnknownVersionIsIgnored() throws Exception {
+        indexStore.write("hash", BookIndex.build(book));
+        Path file = indexDir.resolve("hash.idx");
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(4, IndexStore.VERSION + 1);
+        Files.write(file, bytes);
+
+        Optional<SearchShard> opened = indexStore.open("hash", "book.pdf");
+
+        assertTrue(opened.isEmpty());
+    }
+}
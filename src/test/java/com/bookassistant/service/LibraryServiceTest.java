@@ -0,0 +1,100 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.PageData;
+import com.bookassistant.model.SearchHit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LibraryService.
+ * Tests per-user sharded search across several books.
+ */
+class LibraryServiceTest {
+
+    @TempDir
+    Path indexDir;
+
+    private LibraryService libraryService;
+
+    @BeforeEach
+    void setUp() {
+        libraryService = new LibraryService(new IndexStore(indexDir.toString()));
+        ReflectionTestUtils.setField(libraryService, "maxBooks", 3);
+    }
+
+    private BookData book(String name, String... pageTexts) {
+        List<PageData> pages = new ArrayList<>();
+        for (int i = 0; i < pageTexts.length; i++) {
+            pages.add(new PageData(i + 1, pageTexts[i]));
+        }
+        return new BookData(name, pages, String.join("\n\n", pageTexts));
+    }
+
+    @Test
+    void testSearchReturnsHitsFromEveryBook() {
+        libraryService.addBook("alice", book("first.pdf", "Cooking with rice", "Baking bread at home"));
+        libraryService.addBook("alice", book("second.pdf", "History of bread in Egypt", "Modern farming"));
+
+        List<SearchHit> hits = libraryService.search("alice", "bread", 10);
+
+        assertEquals(2, hits.size());
+        assertTrue(hits.stream().anyMatch(h -> h.fileName().equals("first.pdf") && h.pageNumber() == 2));
+        assertTrue(hits.stream().anyMatch(h -> h.fileName().equals("second.pdf") && h.pageNumber() == 1));
+    }
+
+    @Test
+    void testLibrariesAreIsolatedPerUser() {
+        libraryService.addBook("alice", book("alice.pdf", "Secret garden notes"));
+
+        assertTrue(libraryService.search("bob", "garden", 10).isEmpty());
+        assertEquals(List.of("alice.pdf"), libraryService.listBooks("alice"));
+    }
+
+    @Test
+    void testArabicSearchIgnoresDiacriticsAndAlefForms() {
+        libraryService.addBook("alice", book("arabic.pdf", "الإِيمَانُ بالله", "نص آخر"));
+
+        List<SearchHit> hits = libraryService.search("alice", "الايمان", 10);
+
+        assertEquals(1, hits.size());
+        assertEquals(1, hits.get(0).pageNumber());
+    }
+
+    @Test
+    void testResultsAreMergedByScoreAndLimited() {
+        libraryService.addBook("alice", book("a.pdf", "tea tea tea", "tea"));
+        libraryService.addBook("alice", book("b.pdf", "coffee and tea", "tea tea"));
+
+        List<SearchHit> hits = libraryService.search("alice", "tea", 2);
+
+        assertEquals(2, hits.size());
+        assertTrue(hits.get(0).score() >= hits.get(1).score());
+    }
+
+    @Test
+    void testSameContentIsIndexedOnce() {
+        libraryService.addBook("alice", book("copy1.pdf", "identical content"));
+        libraryService.addBook("alice", book("copy2.pdf", "identical content"));
+
+        assertEquals(1, libraryService.listBooks("alice").size());
+    }
+
+    @Test
+    void testOldestBookIsEvictedWhenLibraryIsFull() {
+        libraryService.addBook("alice", book("1.pdf", "one"));
+        libraryService.addBook("alice", book("2.pdf", "two"));
+        libraryService.addBook("alice", book("3.pdf", "three"));
+        libraryService.addBook("alice", book("4.pdf", "four"));
+
+        assertEquals(List.of("2.pdf", "3.pdf", "4.pdf"), libraryService.listBooks("alice"));
+    }
+}
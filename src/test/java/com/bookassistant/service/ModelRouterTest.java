@@ -0,0 +1,97 @@
+package com.bookassistant.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ModelRouter.
+ * Tests routing by prompt size, per-type latency objectives, failures and model list parsing.
+ */
+class ModelRouterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private ModelRouter router(String models) {
+        return new ModelRouter(registry, "big", models, 131072, 1000, 30, 180, 120, 180, 120);
+    }
+
+    private static void record(ModelRouter router, String model, RequestType type, int samples, Duration latency) {
+        for (int i = 0; i < samples; i++) router.record(new ModelRouter.Choice(model, type), latency);
+    }
+
+    @Test
+    void testWithoutAModelListOnlyTheConfiguredModelIsUsed() {
+        ModelRouter router = router("");
+
+        assertEquals(List.of("big"), router.models());
+        assertEquals("big", router.route(RequestType.SUMMARY, 100_000).model());
+    }
+
+    @Test
+    void testPromptGoesToTheCheapestModelWhoseWindowHoldsIt() {
+        ModelRouter router = router("small|8192, medium|32768, large|262144");
+
+        assertEquals("small", router.route(RequestType.QA, 5_000).model());
+        assertEquals("medium", router.route(RequestType.QA, 8_000).model());
+        assertEquals("large", router.route(RequestType.SUMMARY, 100_000).model());
+        assertEquals(1.0, registry.get("ai.route").tag("type", "summary").tag("model", "large").counter().count());
+    }
+
+    @Test
+    void testLargestWindowIsFoundWhereverItIsListed() {
+        ModelRouter router = router("medium|32768, large|262144, cheap-long|65536");
+
+        assertEquals(262144, router.maxContextTokens());
+        assertEquals("large", router.route(RequestType.SUMMARY, 300_000).model(), "too large for all, sent to the largest");
+    }
+
+    @Test
+    void testModelThatMissesTheObjectiveIsSkippedForThatTypeOnly() {
+        ModelRouter router = router("small|8192, large|262144");
+        record(router, "small", RequestType.QA, ModelRouter.MIN_SAMPLES, Duration.ofSeconds(45));
+
+        assertEquals("large", router.route(RequestType.QA, 1_000).model());
+        assertEquals("small", router.route(RequestType.SUMMARY, 1_000).model(), "45 s is within the summary objective");
+    }
+
+    @Test
+    void testFastestFittingModelIsUsedWhenNoneMeetsTheObjective() {
+        ModelRouter router = router("small|8192, large|262144");
+        record(router, "small", RequestType.QA, ModelRouter.MIN_SAMPLES, Duration.ofSeconds(40));
+        record(router, "large", RequestType.QA, ModelRouter.MIN_SAMPLES, Duration.ofSeconds(90));
+
+        assertEquals("small", router.route(RequestType.QA, 1_000).model());
+    }
+
+    @Test
+    void testModelThatKeepsFailingIsSkipped() {
+        ModelRouter router = router("small|8192, large|262144");
+        for (int i = 0; i < ModelRouter.MIN_SAMPLES; i++) router.recordFailure(new ModelRouter.Choice("small", RequestType.QA));
+
+        assertEquals("large", router.route(RequestType.QA, 1_000).model());
+    }
+
+    @Test
+    void testSkippedModelIsStillProbedNowAndThen() {
+        ModelRouter router = router("small|8192, large|262144");
+        record(router, "small", RequestType.QA, ModelRouter.MIN_SAMPLES, Duration.ofSeconds(45));
+
+        long small = 0;
+        for (int i = 0; i < ModelRouter.PROBE_EVERY * 3; i++) {
+            if ("small".equals(router.route(RequestType.QA, 1_000).model())) small++;
+        }
+
+        assertEquals(3, small);
+    }
+
+    @Test
+    void testBadContextSizeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> router("small|lots"));
+        assertThrows(IllegalArgumentException.class, () -> router("small|0"));
+    }
+}
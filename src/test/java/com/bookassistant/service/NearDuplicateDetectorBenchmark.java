@@ -0,0 +1,58 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.DuplicateGroup;
+import com.bookassistant.model.PageData;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Throughput benchmark for NearDuplicateDetector on a thousand-page book in which every tenth page
+ * repeats an earlier one. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class NearDuplicateDetectorBenchmark {
+
+    private static final int PAGES = 1_000;
+    private static final int WORDS_PER_PAGE = 350;
+
+    @Test
+    void benchmarkDetectionThroughput() {
+        Random random = new Random(7);
+        List<PageData> pages = new ArrayList<>(PAGES);
+        for (int i = 1; i <= PAGES; i++) {
+            String text = i % 10 == 0 ? pages.get(random.nextInt(i - 1)).text() : randomPage(random);
+            pages.add(new PageData(i, text));
+        }
+
+        for (int i = 0; i < 3; i++) {
+            NearDuplicateDetector.detect(pages);
+        }
+
+        int runs = 5;
+        List<DuplicateGroup> groups = List.of();
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            groups = NearDuplicateDetector.detect(pages);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int duplicatePages = groups.stream().mapToInt(g -> g.pages().size() - 1).sum();
+        System.out.printf("NearDuplicateDetector: %d pages, %d groups, %d repeated pages, %.0f ms per book, %.0f pages/s%n",
+                PAGES, groups.size(), duplicatePages, seconds * 1000 / runs, PAGES * runs / seconds);
+        assertEquals(PAGES / 10, duplicatePages);
+    }
+
+    private static String randomPage(Random random) {
+        StringBuilder text = new StringBuilder();
+        for (int w = 0; w < WORDS_PER_PAGE; w++) {
+            text.append("term").append(random.nextInt(20_000)).append(w % 15 == 14 ? ".\n" : " ");
+        }
+        return text.toString();
+    }
+}
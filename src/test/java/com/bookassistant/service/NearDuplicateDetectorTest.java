@@ -0,0 +1,101 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.DuplicateGroup;
+import com.bookassistant.model.PageData;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for NearDuplicateDetector.
+ * Tests exact and near duplicate grouping, distinct pages and collapsing for prompts.
+ */
+class NearDuplicateDetectorTest {
+
+    private static final String EXAM = "Question one asks the student to explain how plants turn sunlight into "
+            + "chemical energy and why leaves are green during the summer months while roots stay underground "
+            + "to collect water and minerals from the soil around them";
+
+    private static String uniquePage(int i) {
+        StringBuilder text = new StringBuilder();
+        for (int w = 0; w < 40; w++) text.append("word").append(i * 100 + w).append(' ');
+        return text.toString();
+    }
+
+    @Test
+    void testExactAndNearDuplicatesAreGrouped() {
+        List<PageData> pages = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) pages.add(new PageData(i, uniquePage(i)));
+        pages.set(2, new PageData(3, EXAM));
+        pages.set(6, new PageData(7, EXAM));
+        pages.set(8, new PageData(9, EXAM.replace("summer", "warm summer")));
+
+        List<DuplicateGroup> groups = NearDuplicateDetector.detect(pages);
+
+        assertEquals(List.of(new DuplicateGroup(List.of(3, 7, 9))), groups);
+        assertEquals(3, groups.get(0).firstPage());
+    }
+
+    @Test
+    void testDistinctPagesAreNotGrouped() {
+        List<PageData> pages = new ArrayList<>();
+        for (int i = 1; i <= 50; i++) pages.add(new PageData(i, uniquePage(i)));
+
+        assertTrue(NearDuplicateDetector.detect(pages).isEmpty());
+    }
+
+    @Test
+    void testShortAndBlankPagesAreIgnored() {
+        List<PageData> pages = List.of(new PageData(1, ""), new PageData(2, ""), new PageData(3, "Chapter 1"),
+                new PageData(4, "Chapter 1"));
+
+        assertTrue(NearDuplicateDetector.detect(pages).isEmpty());
+    }
+
+    @Test
+    void testSimilarityEstimatesJaccard() {
+        int[] a = NearDuplicateDetector.signature(EXAM);
+        int[] b = NearDuplicateDetector.signature(EXAM + " " + uniquePage(1));
+
+        double similarity = NearDuplicateDetector.similarity(a, b);
+
+        // 29 shared 3-grams out of 29 + 40 in the union
+        assertEquals(29.0 / 69, similarity, 0.12);
+        assertEquals(1.0, NearDuplicateDetector.similarity(a, NearDuplicateDetector.signature(EXAM)));
+    }
+
+    @Test
+    void testCollapseKeepsRepeatedPagesOnceInFullText() {
+        List<PageData> pages = List.of(new PageData(1, "Intro"), new PageData(2, EXAM), new PageData(3, EXAM));
+        BookData book = new BookData("exam.pdf", pages, "", List.of(), List.of(new DuplicateGroup(List.of(2, 3))));
+
+        BookData collapsed = NearDuplicateDetector.collapse(book, "en");
+
+        assertEquals(EXAM, collapsed.pages().get(2).text());
+        assertEquals("Intro\n\n" + EXAM + "\n\n[Same as page 2]", collapsed.fullText());
+    }
+
+    @Test
+    void testCollapseKeepsNearDuplicatesThatDiffer() {
+        String edited = EXAM.replace("Question", "Exercise");
+        List<PageData> pages = List.of(new PageData(1, EXAM), new PageData(2, edited));
+        BookData book = new BookData("exam.pdf", pages, "full", List.of(), List.of(new DuplicateGroup(List.of(1, 2))));
+
+        BookData collapsed = NearDuplicateDetector.collapse(book, "en");
+
+        assertSame(book, collapsed);
+    }
+
+    @Test
+    void testRangeTextPointsOnlyToPagesInsideTheRange() {
+        List<PageData> pages = List.of(new PageData(1, "Intro"), new PageData(2, EXAM), new PageData(3, EXAM));
+        BookData book = new BookData("exam.pdf", pages, "", List.of(), List.of(new DuplicateGroup(List.of(2, 3))));
+
+        assertEquals(EXAM + "\n\n[Same as page 2]", NearDuplicateDetector.text(book, 2, 3, "en"));
+        assertEquals(EXAM, NearDuplicateDetector.text(book, 3, 3, "en"));
+    }
+}
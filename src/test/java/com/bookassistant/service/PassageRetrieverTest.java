@@ -0,0 +1,72 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.PageData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PassageRetriever.
+ * Tests whole-book prompts and retrieval of the best pages for over-budget books.
+ */
+class PassageRetrieverTest {
+
+    @TempDir
+    Path indexDir;
+
+    private PassageRetriever retriever;
+    private BookData book;
+
+    @BeforeEach
+    void setUp() {
+        retriever = new PassageRetriever(new LibraryService(new IndexStore(indexDir.toString())),
+                new TokenCounter(TokenCounter.DEFAULT_MODEL));
+        List<PageData> pages = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            String text = i == 13
+                    ? "The lighthouse keeper trims the lamp wick every evening before the storm."
+                    : "Page " + i + " follows the farmers through another ordinary day in the valley.";
+            pages.add(new PageData(i, text));
+        }
+        book = new BookData("valley.pdf", pages,
+                String.join("\n\n", pages.stream().map(PageData::text).toList()));
+    }
+
+    @Test
+    void testContext_BookThatFitsIsSentWhole() {
+        // Act
+        String context = retriever.context("lighthouse", book, book, "hash-1", 10_000, "en");
+
+        // Assert
+        assertEquals(book.fullText(), context);
+    }
+
+    @Test
+    void testContext_LargeBookIsReducedToMatchingPagesWithinRoom() {
+        // Act
+        String context = retriever.context("Who trims the lighthouse lamp?", book, book, "hash-1", 60, "en");
+
+        // Assert
+        assertTrue(context.contains("[p. 13]\nThe lighthouse keeper"));
+        assertTrue(new TokenCounter(TokenCounter.DEFAULT_MODEL).count(context) <= 60);
+        assertTrue(context.length() < book.fullText().length());
+    }
+
+    @Test
+    void testContext_RetrievedPagesKeepReadingOrder() {
+        // Act
+        String context = retriever.context("lighthouse", book, book, "hash-1", 100, "ar");
+
+        // Assert
+        assertTrue(context.contains("[ص 13]"));
+        int thirteen = context.indexOf("[ص 13]");
+        assertTrue(context.indexOf("[ص 1]") < thirteen);
+    }
+}
@@ -0,0 +1,132 @@
+package com.bookassistant.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PrefetchService.
+ * Tests stride detection, serving prefetched ranges, the per-session budget and the hit/waste metrics.
+ */
+class PrefetchServiceTest {
+
+    private SimpleMeterRegistry registry;
+    private PrefetchService prefetchService;
+    private List<String> loaded;
+    private PrefetchService.RangeLoader loader;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        prefetchService = new PrefetchService(registry, true, 1, 30);
+        loaded = new ArrayList<>();
+        loader = (from, to) -> {
+            loaded.add(from + "-" + to);
+            return CompletableFuture.completedFuture("summary " + from + "-" + to);
+        };
+    }
+
+    @Test
+    void testFetch_SequentialRanges_PrefetchesNextRange() {
+        // Act
+        String first = prefetchService.fetch("alice", "summary", "hash", 100, 1, 10, "en", loader);
+        String second = prefetchService.fetch("alice", "summary", "hash", 100, 11, 20, "en", loader);
+
+        // Assert
+        assertEquals("summary 1-10", first);
+        assertEquals("summary 11-20", second);
+        assertEquals(List.of("1-10", "11-20", "21-30"), loaded);
+    }
+
+    @Test
+    void testFetch_PrefetchedRange_IsServedWithoutLoading() {
+        // Arrange
+        prefetchService.fetch("alice", "summary", "hash", 100, 1, 10, "en", loader);
+        prefetchService.fetch("alice", "summary", "hash", 100, 11, 20, "en", loader);
+
+        // Act
+        String third = prefetchService.fetch("alice", "summary", "hash", 100, 21, 30, "en", loader);
+
+        // Assert
+        assertEquals("summary 21-30", third);
+        assertEquals(List.of("1-10", "11-20", "21-30", "31-40"), loaded);
+        assertEquals(1.0, registry.get("prefetch.requests").tag("outcome", "hit").counter().count());
+        assertEquals(0.5, prefetchService.hitRatio());
+    }
+
+    @Test
+    void testFetch_RandomRanges_DoesNotPrefetch() {
+        // Act
+        prefetchService.fetch("alice", "summary", "hash", 100, 40, 50, "en", loader);
+        prefetchService.fetch("alice", "summary", "hash", 100, 1, 5, "en", loader);
+        prefetchService.fetch("alice", "summary", "hash", 100, 70, 72, "en", loader);
+
+        // Assert
+        assertEquals(List.of("40-50", "1-5", "70-72"), loaded);
+    }
+
+    @Test
+    void testFetch_StrideLeavesBook_PrefetchIsClampedToLastPage() {
+        // Act
+        prefetchService.fetch("alice", "summary", "hash", 25, 1, 10, "en", loader);
+        prefetchService.fetch("alice", "summary", "hash", 25, 11, 20, "en", loader);
+
+        // Assert
+        assertEquals("21-25", loaded.get(2));
+    }
+
+    @Test
+    void testFetch_BudgetExceeded_DropsOldestPrefetchAsWaste() {
+        // Arrange: the summary stride leaves 21-30 waiting, then the comprehension stride needs the budget
+        prefetchService.fetch("alice", "summary", "hash", 100, 1, 10, "en", loader);
+        prefetchService.fetch("alice", "summary", "hash", 100, 11, 20, "en", loader);
+
+        // Act
+        prefetchService.fetch("alice", "comprehension", "hash", 100, 1, 5, "en", loader);
+        prefetchService.fetch("alice", "comprehension", "hash", 100, 6, 10, "en", loader);
+        prefetchService.fetch("alice", "summary", "hash", 100, 21, 30, "en", loader);
+
+        // Assert: 21-30 had to be loaded again, and prefetching 31-40 then dropped the waiting 11-15
+        assertEquals(2, loaded.stream().filter("21-30"::equals).count());
+        assertEquals(2.0, registry.get("prefetch.wasted").counter().count());
+        assertTrue(prefetchService.wasteRatio() > 0);
+    }
+
+    @Test
+    void testFetch_BudgetExceeded_AbortsDroppedPrefetch() {
+        // Arrange: each load remembers the context its upstream calls would run in
+        Map<String, RequestContext> contexts = new HashMap<>();
+        PrefetchService.RangeLoader tracking = (from, to) -> {
+            RequestContext.current().ifPresent(context -> contexts.put(from + "-" + to, context));
+            return CompletableFuture.completedFuture("summary " + from + "-" + to);
+        };
+        prefetchService.fetch("alice", "summary", "hash", 100, 1, 10, "en", loader);
+        prefetchService.fetch("alice", "summary", "hash", 100, 11, 20, "en", tracking);
+
+        // Act: the comprehension stride takes the only slot
+        prefetchService.fetch("alice", "comprehension", "hash", 100, 1, 5, "en", loader);
+        prefetchService.fetch("alice", "comprehension", "hash", 100, 6, 10, "en", tracking);
+
+        // Assert
+        assertTrue(contexts.get("21-30").isCancelled());
+        assertFalse(contexts.get("11-15").isCancelled());
+    }
+
+    @Test
+    void testFetch_NoUser_OnlyLoadsRequestedRange() {
+        // Act
+        prefetchService.fetch(null, "summary", "hash", 100, 1, 10, "en", loader);
+        prefetchService.fetch(null, "summary", "hash", 100, 11, 20, "en", loader);
+
+        // Assert
+        assertEquals(List.of("1-10", "11-20"), loaded);
+    }
+}
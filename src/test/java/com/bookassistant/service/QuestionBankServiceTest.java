@@ -0,0 +1,179 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.PageData;
+import com.bookassistant.model.Question;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for QuestionBankService.
+ * Tests one-time generation per chunk, disk persistence, sampling and choice shuffling.
+ */
+@ExtendWith(MockitoExtension.class)
+class QuestionBankServiceTest {
+
+    private static final String QUESTIONS = """
+            [{"question": "Q1?", "choices": ["a", "b", "c", "d"], "answer": 1, "explanation": "because b"},
+             {"question": "Q2?", "choices": ["a", "b", "c", "d"], "answer": 3, "explanation": ""}]""";
+
+    @Mock
+    private AiService aiService;
+
+    @TempDir
+    Path tempDir;
+
+    private BookData book;
+
+    @BeforeEach
+    void setUp() {
+        book = new BookData("book.pdf", List.of(
+                new PageData(1, "Page 1 describes one more step of the long story in detail"),
+                new PageData(2, "Page 2 describes one more step of the long story in detail")),
+                "full text");
+    }
+
+    private QuestionBankService newBank() {
+        // One page per chunk: each page is ~12 tokens and the budget is 15
+        return new QuestionBankService(aiService, new TextChunker(15, 0), translations(), new ObjectMapper(),
+                Runnable::run, tempDir.toString(), 5, 100);
+    }
+
+    private TranslationCache translations() {
+        return new TranslationCache(aiService, new TextChunker(15, 0), Runnable::run,
+                tempDir.resolve("translations").toString(), 100);
+    }
+
+    @Test
+    void testQuizAsync_SecondQuiz_IsServedFromBank() {
+        // Arrange
+        when(aiService.ask(eq(RequestType.COMPREHENSION), anyString(), anyString(), eq("en"))).thenReturn(QUESTIONS);
+        QuestionBankService bank = newBank();
+
+        // Act
+        String first = bank.quizAsync(book, "hash", 1, 2, "en", 10, new Random(1)).join();
+        String second = bank.quizAsync(book, "hash", 1, 2, "en", 10, new Random(2)).join();
+
+        // Assert
+        verify(aiService, times(2)).ask(eq(RequestType.COMPREHENSION), anyString(), anyString(), eq("en"));
+        assertTrue(first.contains("**Model answers**"));
+        assertEquals(4, second.split("Q\\d\\?").length - 1);
+    }
+
+    @Test
+    void testQuizAsync_NewInstance_ReadsQuestionsFromDisk() {
+        // Arrange
+        when(aiService.ask(eq(RequestType.COMPREHENSION), anyString(), anyString(), eq("en"))).thenReturn(QUESTIONS);
+        newBank().quizAsync(book, "hash", 1, 2, "en", 10, new Random(1)).join();
+
+        // Act
+        String quiz = newBank().quizAsync(book, "hash", 1, 2, "en", 3, new Random(1)).join();
+
+        // Assert
+        verify(aiService, times(2)).ask(eq(RequestType.COMPREHENSION), anyString(), anyString(), eq("en"));
+        assertEquals(3, quiz.lines().filter(l -> l.matches("\\d\\. Q\\d\\?")).count());
+    }
+
+    @Test
+    void testQuizAsync_GenerationFails_ReturnsErrorAndRetriesLater() {
+        // Arrange
+        when(aiService.ask(eq(RequestType.COMPREHENSION), anyString(), anyString(), eq("en"))).thenReturn("AI error: HTTP 500");
+        QuestionBankService bank = newBank();
+
+        // Act
+        String quiz = bank.quizAsync(book, "hash", 1, 1, "en", 10, new Random(1)).join();
+        bank.quizAsync(book, "hash", 1, 1, "en", 10, new Random(1)).join();
+
+        // Assert
+        assertEquals("AI error: HTTP 500", quiz);
+        verify(aiService, times(2)).ask(eq(RequestType.COMPREHENSION), anyString(), anyString(), eq("en"));
+    }
+
+    @Test
+    void testQuizAsync_GenerationThrows_ReturnsErrorAndRetriesLater() {
+        // Arrange
+        when(aiService.ask(eq(RequestType.COMPREHENSION), anyString(), anyString(), eq("en")))
+                .thenThrow(new IllegalStateException("boom"))
+                .thenReturn(QUESTIONS);
+        QuestionBankService bank = newBank();
+
+        // Act
+        String failed = bank.quizAsync(book, "hash", 1, 1, "en", 10, new Random(1)).join();
+        String retried = bank.quizAsync(book, "hash", 1, 1, "en", 10, new Random(1)).join();
+
+        // Assert
+        assertTrue(failed.startsWith("AI error"));
+        assertTrue(retried.contains("**Model answers**"));
+    }
+
+    @Test
+    void testSample_ShufflesChoicesAndKeepsCorrectAnswer() {
+        // Arrange
+        List<Question> pool = List.of(
+                new Question("Q1?", List.of("w1", "right", "w2", "w3"), 1, ""),
+                new Question("Q2?", List.of("w1", "w2", "w3", "right"), 3, ""),
+                new Question("Q3?", List.of("right", "w1", "w2", "w3"), 0, ""));
+
+        // Act
+        List<Question> quiz = QuestionBankService.sample(pool, 2, new Random(7));
+
+        // Assert
+        assertEquals(2, quiz.size());
+        for (Question q : quiz) {
+            assertEquals("right", q.choices().get(q.answer()));
+        }
+    }
+
+    @Test
+    void testParse_SkipsInvalidQuestions() {
+        // Act
+        List<Question> questions = newBank().parse("""
+                [{"question": "ok?", "choices": ["a", "b"], "answer": 0},
+                 {"question": "bad answer?", "choices": ["a", "b"], "answer": 5},
+                 {"question": "", "choices": ["a", "b"], "answer": 0}]""");
+
+        // Assert
+        assertEquals(List.of(new Question("ok?", List.of("a", "b"), 0, "")), questions);
+    }
+
+    @Test
+    void testQuizAsync_UsesExistingTranslation() {
+        // Arrange
+        when(aiService.ask(eq(RequestType.TRANSLATION), anyString(), anyString(), eq("en"))).thenReturn("Translated page");
+        when(aiService.ask(eq(RequestType.COMPREHENSION), anyString(), anyString(), eq("en"))).thenReturn(QUESTIONS);
+        translations().translateRange(book, "hash", 1, 1, "en");
+
+        // Act
+        newBank().quizAsync(book, "hash", 1, 1, "en", 10, new Random(1)).join();
+
+        // Assert
+        verify(aiService).ask(eq(RequestType.COMPREHENSION), anyString(),
+                eq("Text from pages 1 to 1:\nTranslated page"), eq("en"));
+    }
+
+    @Test
+    void testQuizAsync_ArabicChunk_IsFramedInArabic() {
+        // Arrange
+        when(aiService.ask(eq(RequestType.COMPREHENSION), anyString(), anyString(), eq("ar"))).thenReturn(QUESTIONS);
+
+        // Act
+        newBank().quizAsync(book, "hash", 1, 1, "ar", 10, new Random(1)).join();
+
+        // Assert
+        verify(aiService).ask(eq(RequestType.COMPREHENSION), anyString(),
+                startsWith("نص من الصفحات 1 إلى 1:\n"), eq("ar"));
+    }
+}
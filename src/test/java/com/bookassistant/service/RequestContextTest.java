@@ -0,0 +1,124 @@
+package com.bookassistant.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RequestContext.
+ * Tests thread binding, running cancel actions exactly once and deadlines.
+ */
+class RequestContextTest {
+
+    @Test
+    void testContextIsVisibleOnlyWhileBound() {
+        RequestContext context = new RequestContext();
+
+        assertTrue(RequestContext.current().isEmpty());
+        context.bind();
+        try {
+            assertSame(context, RequestContext.current().orElseThrow());
+        } finally {
+            context.unbind();
+        }
+        assertTrue(RequestContext.current().isEmpty());
+    }
+
+    @Test
+    void testCancelRunsRegisteredActionsOnce() {
+        RequestContext context = new RequestContext();
+        AtomicInteger runs = new AtomicInteger();
+        context.onCancel(runs::incrementAndGet);
+
+        context.cancel();
+        context.cancel();
+
+        assertTrue(context.isCancelled());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void testRemovedActionIsNotRunAndLateActionRunsAtOnce() {
+        RequestContext context = new RequestContext();
+        AtomicInteger runs = new AtomicInteger();
+        Runnable unregister = context.onCancel(runs::incrementAndGet);
+        unregister.run();
+
+        context.cancel();
+        assertEquals(0, runs.get());
+
+        context.onCancel(runs::incrementAndGet);
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void testDeadlineCountsDown() throws Exception {
+        RequestContext context = new RequestContext(Duration.ofMillis(50));
+
+        assertTrue(context.remaining().orElseThrow().compareTo(Duration.ofMillis(50)) <= 0);
+        assertFalse(context.expired());
+        Thread.sleep(60);
+        assertTrue(context.expired());
+        assertEquals(Duration.ZERO, context.remaining().orElseThrow());
+        assertTrue(new RequestContext().remaining().isEmpty());
+    }
+
+    @Test
+    void testPropagatedTaskKeepsTheDeadlineButNotTheCancellation() throws Exception {
+        RequestContext context = new RequestContext(Duration.ofSeconds(30));
+        AtomicReference<RequestContext> seen = new AtomicReference<>();
+        Runnable task;
+        context.bind();
+        try {
+            task = RequestContext.propagate(() -> seen.set(RequestContext.current().orElse(null)));
+        } finally {
+            context.unbind();
+        }
+        context.cancel();
+
+        Thread worker = new Thread(task);
+        worker.start();
+        worker.join();
+
+        RequestContext child = seen.get();
+        assertNotNull(child);
+        assertNotSame(context, child);
+        assertFalse(child.isCancelled());
+        assertTrue(child.remaining().orElseThrow().compareTo(Duration.ofSeconds(29)) > 0);
+    }
+
+    @Test
+    void testBackgroundContextCancelsPropagatedTasks() throws Exception {
+        RequestContext context = RequestContext.background();
+        AtomicReference<RequestContext> seen = new AtomicReference<>();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        Runnable task = context.within(() -> RequestContext.propagate(() -> {
+            RequestContext child = RequestContext.current().orElseThrow();
+            seen.set(child);
+            child.onCancel(cancelled::countDown);
+            running.countDown();
+            try {
+                cancelled.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        Thread worker = new Thread(task);
+        worker.start();
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        context.cancel();
+        worker.join();
+
+        assertNotSame(context, seen.get());
+        assertTrue(seen.get().isCancelled());
+        assertTrue(RequestContext.current().isEmpty());
+    }
+}
@@ -0,0 +1,81 @@
+package com.bookassistant.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RetryPolicy.
+ * Tests jittered backoff bounds, Retry-After handling and which failures are retried.
+ */
+class RetryPolicyTest {
+
+    @Test
+    void testBackoffStaysWithinTheGrowingCeiling() {
+        RetryPolicy policy = new RetryPolicy(5, 100, 300);
+
+        for (int i = 0; i < 200; i++) {
+            long first = policy.backoff(1, null).orElseThrow().toMillis();
+            long second = policy.backoff(2, null).orElseThrow().toMillis();
+            long fourth = policy.backoff(4, null).orElseThrow().toMillis();
+            assertTrue(first >= 0 && first <= 100, "first wait " + first);
+            assertTrue(second >= 0 && second <= 200, "second wait " + second);
+            assertTrue(fourth >= 0 && fourth <= 300, "capped wait " + fourth);
+        }
+    }
+
+    @Test
+    void testBackoffEndsAfterTheLastAttempt() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 1000);
+
+        assertTrue(policy.backoff(2, null).isPresent());
+        assertTrue(policy.backoff(3, null).isEmpty());
+        assertTrue(new RetryPolicy(1, 100, 1000).backoff(1, null).isEmpty());
+    }
+
+    @Test
+    void testBackoffHonoursRetryAfterUpToTheMaximumWait() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 5000);
+
+        assertEquals(Duration.ofSeconds(2), policy.backoff(1, Duration.ofSeconds(2)).orElseThrow());
+        assertTrue(policy.backoff(1, Duration.ofSeconds(60)).isEmpty());
+    }
+
+    @Test
+    void testOnlyTransientStatusCodesAreRetryable() {
+        assertTrue(RetryPolicy.retryable(429));
+        assertTrue(RetryPolicy.retryable(502));
+        assertTrue(RetryPolicy.retryable(503));
+        assertTrue(RetryPolicy.retryable(504));
+        assertFalse(RetryPolicy.retryable(400));
+        assertFalse(RetryPolicy.retryable(401));
+        assertFalse(RetryPolicy.retryable(404));
+        assertFalse(RetryPolicy.retryable(501));
+    }
+
+    @Test
+    void testConnectionErrorsAreRetryableButRequestTimeoutsAreNot() {
+        assertTrue(RetryPolicy.retryable(new ConnectException("refused")));
+        assertTrue(RetryPolicy.retryable(new HttpConnectTimeoutException("connect timed out")));
+        assertTrue(RetryPolicy.retryable(new IOException("reset")));
+        assertFalse(RetryPolicy.retryable(new HttpTimeoutException("request timed out")));
+    }
+
+    @Test
+    void testParseRetryAfterReadsSecondsAndDates() {
+        Instant now = Instant.parse("2024-05-01T10:00:00Z");
+
+        assertEquals(Duration.ofSeconds(7), RetryPolicy.parseRetryAfter(" 7 ", now));
+        assertEquals(Duration.ofSeconds(30), RetryPolicy.parseRetryAfter("Wed, 1 May 2024 10:00:30 GMT", now));
+        assertEquals(Duration.ZERO, RetryPolicy.parseRetryAfter("Wed, 1 May 2024 09:00:00 GMT", now));
+        assertNull(RetryPolicy.parseRetryAfter("soon", now));
+        assertNull(RetryPolicy.parseRetryAfter(null, now));
+    }
+}
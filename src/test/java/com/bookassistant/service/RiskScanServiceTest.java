@@ -0,0 +1,151 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.PageData;
+import com.bookassistant.model.RiskFinding;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for RiskScanService.
+ * Tests the per-chunk scan, page references, merging of duplicate findings and error handling.
+ */
+@ExtendWith(MockitoExtension.class)
+class RiskScanServiceTest {
+
+    @Mock
+    private AiService aiService;
+
+    private RiskScanService riskScanService;
+    private BookData book;
+
+    @BeforeEach
+    void setUp() {
+        // One page per chunk: each page is ~12 tokens and the budget is 15
+        riskScanService = new RiskScanService(aiService, new TextChunker(15, 0), new ObjectMapper(), Runnable::run, 0.5, 100);
+        book = new BookData("book.pdf", List.of(
+                new PageData(1, "Page 1 describes one more step of the long story in detail"),
+                new PageData(2, "Page 2 describes one more step of the long story in detail"),
+                new PageData(3, "Page 3 describes one more step of the long story in detail")),
+                "full text");
+    }
+
+    @Test
+    void testReport_ScansEveryChunk() {
+        // Arrange
+        when(aiService.ask(anyString(), anyString(), eq("en"))).thenReturn("[]");
+
+        // Act
+        String report = riskScanService.report(book, "hash", "en");
+
+        // Assert
+        verify(aiService, times(3)).ask(anyString(), anyString(), eq("en"));
+        assertEquals("No risk alerts or warnings were found in this book.", report);
+    }
+
+    @Test
+    void testReport_RepeatedScan_IsAnsweredFromCachedChunks() {
+        // Arrange
+        when(aiService.ask(anyString(), anyString(), anyString())).thenReturn("[]");
+        riskScanService.report(book, "hash", "en");
+
+        // Act
+        riskScanService.report(book, "hash", "en");
+        riskScanService.report(book, "hash", "ar");
+
+        // Assert
+        verify(aiService, times(3)).ask(anyString(), anyString(), eq("en"));
+        verify(aiService, times(3)).ask(anyString(), anyString(), eq("ar"));
+    }
+
+    @Test
+    void testReport_FailedChunks_AreScannedAgain() {
+        // Arrange
+        when(aiService.ask(anyString(), anyString(), eq("en"))).thenReturn("[]");
+        when(aiService.ask(anyString(), contains("Page 2 "), eq("en"))).thenReturn("AI error: timeout", "[]");
+        riskScanService.report(book, "hash", "en");
+
+        // Act
+        riskScanService.report(book, "hash", "en");
+
+        // Assert
+        verify(aiService, times(2)).ask(anyString(), contains("Page 2 "), eq("en"));
+        verify(aiService, times(1)).ask(anyString(), contains("Page 1 "), eq("en"));
+    }
+
+    @Test
+    void testReport_DuplicateFindings_AreMergedWithAllPages() {
+        // Arrange
+        when(aiService.ask(anyString(), contains("Page 1 "), eq("en"))).thenReturn(
+                "```json\n[{\"title\": \"Lithium battery fire risk\", \"detail\": \"Do not charge overnight\", \"severity\": \"high\", \"page\": 1}]\n```");
+        when(aiService.ask(anyString(), contains("Page 2 "), eq("en"))).thenReturn(
+                "[{\"title\": \"Fire risk from lithium battery\", \"detail\": \"Do not charge overnight unattended\", \"severity\": \"medium\", \"page\": 2}]");
+        when(aiService.ask(anyString(), contains("Page 3 "), eq("en"))).thenReturn(
+                "[{\"title\": \"Sharp blade\", \"detail\": \"Wear gloves\", \"severity\": \"low\", \"page\": 3}]");
+
+        // Act
+        String report = riskScanService.report(book, "hash", "en");
+
+        // Assert
+        assertEquals("- **[high] Lithium battery fire risk** (pages 1, 2): Do not charge overnight unattended\n"
+                + "- **[low] Sharp blade** (pages 3): Wear gloves\n", report);
+    }
+
+    @Test
+    void testReport_AllChunksFail_ReturnsError() {
+        // Arrange
+        when(aiService.ask(anyString(), anyString(), eq("en"))).thenReturn("AI error: HTTP 500");
+
+        // Act
+        String report = riskScanService.report(book, "hash", "en");
+
+        // Assert
+        assertEquals("AI error: HTTP 500", report);
+    }
+
+    @Test
+    void testReport_SomeChunksFail_KeepsOtherFindings() {
+        // Arrange
+        when(aiService.ask(anyString(), anyString(), eq("en"))).thenReturn("AI error: timeout");
+        when(aiService.ask(anyString(), contains("Page 3 "), eq("en"))).thenReturn(
+                "[{\"title\": \"Sharp blade\", \"detail\": \"\", \"severity\": \"low\", \"page\": 3}]");
+
+        // Act
+        String report = riskScanService.report(book, "hash", "en");
+
+        // Assert
+        assertEquals("- **[low] Sharp blade** (pages 3)\n", report);
+    }
+
+    @Test
+    void testParse_PageOutsideChunkAndUnknownSeverity_AreCorrected() {
+        // Arrange
+        var chunk = new TextChunker(15, 0).chunk(book.pages()).get(1);
+
+        // Act
+        List<RiskFinding> findings = riskScanService.parse(
+                "[{\"title\": \"Risk\", \"severity\": \"critical\", \"page\": 40}, {\"detail\": \"no title\"}]", chunk);
+
+        // Assert
+        assertEquals(List.of(new RiskFinding("Risk", "", "medium", List.of(2))), findings);
+    }
+
+    @Test
+    void testParse_NoJson_ReturnsNoFindings() {
+        // Arrange
+        var chunk = new TextChunker(15, 0).chunk(book.pages()).get(0);
+
+        // Act & Assert
+        assertTrue(riskScanService.parse("There are no warnings here.", chunk).isEmpty());
+    }
+}
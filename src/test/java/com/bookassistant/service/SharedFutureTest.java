@@ -0,0 +1,116 @@
+package com.bookassistant.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SharedFuture.
+ * Tests that shared work is aborted only once every background claim on it was given up.
+ */
+class SharedFutureTest {
+
+    private final Map<String, CompletableFuture<String>> cache = Collections.synchronizedMap(new HashMap<>());
+    private final List<RequestContext> started = new ArrayList<>();
+    private final List<CompletableFuture<String>> calls = new ArrayList<>();
+    private Function<Executor, CompletableFuture<String>> work;
+    private boolean abortsAtOnce = true;
+
+    @BeforeEach
+    void setUp() {
+        // Stands in for a model call that runs until the context it was started in is cancelled
+        work = executor -> {
+            RequestContext context = RequestContext.current().orElseThrow();
+            CompletableFuture<String> call = new CompletableFuture<>();
+            if (abortsAtOnce) context.onCancel(() -> call.complete("AI error: Request cancelled"));
+            started.add(context);
+            calls.add(call);
+            return call;
+        };
+    }
+
+    @Test
+    void testClaim_AbortsWorkWhenItsOnlyBackgroundClaimIsGivenUp() {
+        // Arrange
+        RequestContext prefetch = RequestContext.background();
+        CompletableFuture<String> future = prefetch.within(() -> claim("key"));
+
+        // Act
+        prefetch.cancel();
+
+        // Assert
+        assertTrue(started.get(0).isCancelled());
+        assertEquals("AI error: Request cancelled", future.join());
+        assertFalse(cache.containsKey("key"));
+    }
+
+    @Test
+    void testClaim_KeepsWorkRunningWhileARequestWaitsOnIt() {
+        // Arrange
+        RequestContext prefetch = RequestContext.background();
+        CompletableFuture<String> prefetched = prefetch.within(() -> claim("key"));
+        CompletableFuture<String> requested = new RequestContext().within(() -> claim("key"));
+
+        // Act
+        prefetch.cancel();
+        calls.get(0).complete("summary");
+
+        // Assert
+        assertSame(prefetched, requested);
+        assertEquals(1, started.size());
+        assertFalse(started.get(0).isCancelled());
+        assertEquals("summary", requested.join());
+        assertTrue(cache.containsKey("key"));
+    }
+
+    @Test
+    void testClaim_AbortsWorkOnlyAfterTheLastBackgroundClaimIsGivenUp() {
+        // Arrange
+        RequestContext first = RequestContext.background();
+        RequestContext second = RequestContext.background();
+        first.within(() -> claim("key"));
+        second.within(() -> claim("key"));
+
+        // Act
+        first.cancel();
+        boolean abortedEarly = started.get(0).isCancelled();
+        second.cancel();
+
+        // Assert
+        assertFalse(abortedEarly);
+        assertTrue(started.get(0).isCancelled());
+    }
+
+    @Test
+    void testClaim_StartsAbandonedWorkAgain() {
+        // Arrange
+        abortsAtOnce = false;
+        RequestContext prefetch = RequestContext.background();
+        prefetch.within(() -> claim("key"));
+        // The aborted call has not returned yet, so its entry is still cached
+        prefetch.cancel();
+
+        // Act
+        CompletableFuture<String> requested = claim("key");
+        calls.get(1).complete("summary");
+
+        // Assert
+        assertEquals(2, started.size());
+        assertEquals("summary", requested.join());
+        assertSame(requested, cache.get("key"));
+    }
+
+    private CompletableFuture<String> claim(String key) {
+        return SharedFuture.claim(cache, key, Runnable::run, result -> result.startsWith("AI error"), work);
+    }
+}
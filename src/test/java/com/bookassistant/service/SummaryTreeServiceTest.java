@@ -0,0 +1,172 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.PageData;
+import com.bookassistant.model.TextChunk;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for SummaryTreeService.
+ * Tests that overlapping ranges reuse cached leaves and tree nodes.
+ */
+@ExtendWith(MockitoExtension.class)
+class SummaryTreeServiceTest {
+
+    @Mock
+    private AiService aiService;
+
+    @Mock
+    private TranslationCache translations;
+
+    private SummaryTreeService summaryTree;
+    private BookData book;
+
+    @BeforeEach
+    void setUp() {
+        // One page per chunk: each page is ~12 tokens and the budget is 15
+        summaryTree = new SummaryTreeService(aiService, new TextChunker(15, 0), translations, Runnable::run, 4, 1000);
+        List<PageData> pages = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            pages.add(new PageData(i, "Page " + i + " describes one more step of the long story in detail"));
+        }
+        book = new BookData("book.pdf", pages, "full text");
+        lenient().when(aiService.ask(eq(RequestType.SUMMARY), anyString(), anyString(), anyString()))
+            .thenAnswer(inv -> "summary of " + inv.getArgument(1, String.class).hashCode());
+    }
+
+    @Test
+    void testSinglePageRangeIsOneCall() {
+        String summary = summaryTree.summarizeRange(book, "hash", 5, 5, "en");
+
+        assertTrue(summary.startsWith("summary of"));
+        verify(aiService, times(1)).ask(eq(RequestType.SUMMARY), anyString(), anyString(), eq("en"));
+    }
+
+    @Test
+    void testConcurrentRequestsForSameLeafShareOneCall() throws Exception {
+        // Handing a task over is slow, so both requests are inside the cache lookup together
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        Executor slowHandOff = task -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pool.execute(task);
+        };
+        SummaryTreeService service = new SummaryTreeService(aiService, new TextChunker(15, 0), translations, slowHandOff, 4, 1000);
+        try {
+            CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> service.summarizeText("same text", "en"), callers);
+            CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> service.summarizeText("same text", "en"), callers);
+
+            assertEquals(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+            verify(aiService, times(1)).ask(eq(RequestType.SUMMARY), anyString(), eq("same text"), eq("en"));
+        } finally {
+            pool.shutdownNow();
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void testRepeatedRangeIsServedFromCache() {
+        String first = summaryTree.summarizeRange(book, "hash", 1, 50, "en");
+        int calls = mockingDetails(aiService).getInvocations().size();
+
+        String second = summaryTree.summarizeRange(book, "hash", 1, 50, "en");
+
+        assertEquals(first, second);
+        assertEquals(calls, mockingDetails(aiService).getInvocations().size());
+    }
+
+    @Test
+    void testLargerRangeReusesSmallerRange() {
+        summaryTree.summarizeBook(book, "hash", "en");
+        int fromScratch = mockingDetails(aiService).getInvocations().size();
+        clearInvocations(aiService);
+        SummaryTreeService fresh = new SummaryTreeService(aiService, new TextChunker(15, 0), translations, Runnable::run, 4, 1000);
+
+        fresh.summarizeRange(book, "hash", 1, 50, "en");
+        clearInvocations(aiService);
+        fresh.summarizeRange(book, "hash", 1, 100, "en");
+        int afterHalf = mockingDetails(aiService).getInvocations().size();
+
+        // The 50 leaves of the first half and their parents are already known
+        assertTrue(afterHalf <= fromScratch - 50, afterHalf + " calls vs " + fromScratch + " from scratch");
+    }
+
+    @Test
+    void testWholeBookAfterRangesCostsLittle() {
+        summaryTree.summarizeRange(book, "hash", 1, 64, "en");
+        summaryTree.summarizeRange(book, "hash", 65, 100, "en");
+        int before = mockingDetails(aiService).getInvocations().size();
+
+        summaryTree.summarizeBook(book, "hash", "en");
+
+        assertTrue(mockingDetails(aiService).getInvocations().size() - before <= 3);
+    }
+
+    @Test
+    void testLanguagesAreCachedSeparately() {
+        summaryTree.summarizeRange(book, "hash", 1, 1, "en");
+        summaryTree.summarizeRange(book, "hash", 1, 1, "ar");
+
+        verify(aiService).ask(eq(RequestType.SUMMARY), anyString(), anyString(), eq("en"));
+        verify(aiService).ask(eq(RequestType.SUMMARY), anyString(), anyString(), eq("ar"));
+    }
+
+    @Test
+    void testErrorsAreNotCached() {
+        when(aiService.ask(eq(RequestType.SUMMARY), anyString(), anyString(), anyString()))
+            .thenReturn("AI error: HTTP 503")
+            .thenReturn("fine");
+
+        assertEquals("AI error: HTTP 503", summaryTree.summarizeRange(book, "hash", 3, 3, "en"));
+        assertEquals("fine", summaryTree.summarizeRange(book, "hash", 3, 3, "en"));
+    }
+
+    @Test
+    void testChildErrorSkipsCombine() {
+        when(aiService.ask(eq(RequestType.SUMMARY), anyString(), anyString(), anyString())).thenReturn("AI error: timeout");
+
+        String summary = summaryTree.summarizeRange(book, "hash", 1, 4, "en");
+
+        assertEquals("AI error: timeout", summary);
+        verify(aiService, times(4)).ask(eq(RequestType.SUMMARY), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void testRangeStartingOnAPageSplitBetweenChunksSummarizesTheWholePage() {
+        // Three paragraphs per chunk and two per page, so every other chunk starts mid-page
+        List<PageData> pages = new ArrayList<>();
+        for (int i = 1; i <= 12; i++) {
+            pages.add(new PageData(i, "Page " + i + " opens the scene.\n\nPage " + i + " closes the scene."));
+        }
+        BookData split = new BookData("split.pdf", pages, "full text");
+        TextChunker chunker = new TextChunker(20, 0);
+        SummaryTreeService service = new SummaryTreeService(aiService, chunker, translations, Runnable::run, 4, 1000);
+        TextChunk second = chunker.chunk("split", split).get(1);
+        assertTrue(second.text().startsWith("Page " + second.startPage() + " closes"), second.text());
+
+        service.summarizeRange(split, "split", second.startPage(), 12, "en");
+
+        verify(aiService).ask(eq(RequestType.SUMMARY), anyString(),
+                contains("Page " + second.startPage() + " opens the scene."), eq("en"));
+    }
+}
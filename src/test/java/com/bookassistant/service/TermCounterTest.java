@@ -0,0 +1,65 @@
+package com.bookassistant.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for TermCounter.
+ * Tests counting, growth, merging and top-k selection against a HashMap reference.
+ */
+class TermCounterTest {
+
+    @Test
+    void testCountsMatchHashMapAfterGrowth() {
+        TermCounter counter = new TermCounter(4);
+        Map<String, Integer> reference = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            String term = "t" + random.nextInt(5_000);
+            counter.add(term);
+            reference.merge(term, 1, Integer::sum);
+        }
+
+        assertEquals(reference.size(), counter.size());
+        assertEquals(50_000, counter.total());
+        reference.forEach((term, count) -> assertEquals(count, counter.get(term), term));
+        assertEquals(0, counter.get("missing"));
+    }
+
+    @Test
+    void testAddAllMergesCounts() {
+        TermCounter a = new TermCounter();
+        a.add("book", 2);
+        a.add("page");
+        TermCounter b = new TermCounter();
+        b.add("book");
+        b.add("chapter", 3);
+
+        a.addAll(b);
+
+        assertEquals(3, a.get("book"));
+        assertEquals(1, a.get("page"));
+        assertEquals(3, a.get("chapter"));
+        assertEquals(7, a.total());
+    }
+
+    @Test
+    void testTopReturnsBestTermsWithAlphabeticalTies() {
+        TermCounter counter = new TermCounter();
+        counter.add("delta", 5);
+        counter.add("alpha", 3);
+        counter.add("charlie", 3);
+        counter.add("bravo", 9);
+        counter.add("echo", 1);
+
+        assertEquals(List.of("bravo", "delta", "alpha"), counter.top(3, (term, count) -> count));
+        assertEquals(List.of("delta", "alpha"), counter.top(5, (term, count) -> term.startsWith("b") ? 0 : count).subList(0, 2));
+        assertTrue(counter.top(0, (term, count) -> count).isEmpty());
+    }
+}
@@ -0,0 +1,67 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.PageData;
+import com.bookassistant.model.TextChunk;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Throughput benchmark for TextChunker. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class TextChunkerBenchmark {
+
+    private static final int PAGES = 2_000;
+
+    @Test
+    void benchmarkChunkingThroughput() {
+        List<PageData> pages = new ArrayList<>(PAGES);
+        long bytes = 0;
+        for (int i = 1; i <= PAGES; i++) {
+            String text = syntheticPage(i);
+            bytes += text.getBytes(StandardCharsets.UTF_8).length;
+            pages.add(new PageData(i, text));
+        }
+        TextChunker chunker = new TextChunker(2000, 200);
+
+        for (int i = 0; i < 3; i++) {
+            chunker.chunk(pages);
+        }
+
+        int runs = 5;
+        List<TextChunk> chunks = List.of();
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            chunks = chunker.chunk(pages);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double megabytesPerSecond = bytes * runs / seconds / (1024 * 1024);
+
+        System.out.printf("TextChunker: %.1f MB in %d chunks, %.1f MB/s%n",
+                bytes / (1024.0 * 1024), chunks.size(), megabytesPerSecond);
+        assertEquals(PAGES, chunks.get(chunks.size() - 1).endPage());
+    }
+
+    private static String syntheticPage(int page) {
+        StringBuilder text = new StringBuilder();
+        for (int p = 0; p < 6; p++) {
+            for (int s = 0; s < 8; s++) {
+                if ((page + p + s) % 2 == 0) {
+                    text.append("The reader follows sentence ").append(s).append(" of paragraph ").append(p)
+                            .append(" on page ").append(page).append(", which discusses ideas at length. ");
+                } else {
+                    text.append("يتابع القارئ الجملة ").append(s).append(" من الفقرة ").append(p)
+                            .append(" في الصفحة ").append(page).append(" التي تناقش الأفكار بالتفصيل؟ ");
+                }
+            }
+            text.append("\n\n");
+        }
+        return text.toString();
+    }
+}
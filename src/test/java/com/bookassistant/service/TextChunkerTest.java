@@ -0,0 +1,157 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.Chapter;
+import com.bookassistant.model.PageData;
+import com.bookassistant.model.TextChunk;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for TextChunker.
+ * Tests token budgets, boundary choice, overlap and page provenance.
+ */
+class TextChunkerTest {
+
+    private List<PageData> pages(int count, String paragraph) {
+        List<PageData> pages = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            pages.add(new PageData(i, paragraph + " " + i + ".\n\n" + paragraph + " again " + i + "."));
+        }
+        return pages;
+    }
+
+    @Test
+    void testSmallBookIsOneChunk() {
+        TextChunker chunker = new TextChunker(2000, 200);
+
+        List<TextChunk> chunks = chunker.chunk(pages(3, "A short paragraph on page"));
+
+        assertEquals(1, chunks.size());
+        assertEquals(1, chunks.get(0).startPage());
+        assertEquals(3, chunks.get(0).endPage());
+    }
+
+    @Test
+    void testChunksRespectTokenBudget() {
+        TextChunker chunker = new TextChunker(60, 10);
+
+        List<TextChunk> chunks = chunker.chunk(pages(40, "This paragraph is long enough to need several chunks across the book"));
+
+        assertTrue(chunks.size() > 5);
+        for (TextChunk chunk : chunks) {
+            assertTrue(chunk.tokens() <= 60, "chunk " + chunk.index() + " has " + chunk.tokens() + " tokens");
+            assertEquals(new TokenCounter(TokenCounter.DEFAULT_MODEL).count(chunk.text().replace("\n\n", " ")), chunk.tokens(), 2);
+        }
+        assertEquals(1, chunks.get(0).startPage());
+        assertEquals(40, chunks.get(chunks.size() - 1).endPage());
+    }
+
+    @Test
+    void testConsecutiveChunksOverlap() {
+        TextChunker chunker = new TextChunker(60, 25);
+
+        List<TextChunk> chunks = chunker.chunk(pages(10, "Overlap keeps context between neighbouring chunks"));
+
+        assertTrue(chunks.size() > 1);
+        for (int i = 1; i < chunks.size(); i++) {
+            List<String> previous = List.of(chunks.get(i - 1).text().split("\n\n"));
+            List<String> next = List.of(chunks.get(i).text().split("\n\n"));
+            // The chunk opens with the paragraphs the previous one ended with
+            int shared = 0;
+            for (int k = 1; k < next.size() && k <= previous.size(); k++) {
+                if (previous.subList(previous.size() - k, previous.size()).equals(next.subList(0, k))) shared = k;
+            }
+            assertTrue(shared > 0, "chunk " + i + " does not start with overlap");
+        }
+    }
+
+    @Test
+    void testLongArabicParagraphSplitsOnSentences() {
+        TextChunker chunker = new TextChunker(40, 0);
+        String paragraph = "هذه جملة عربية طويلة نسبياً عن موضوع الكتاب؟ ".repeat(10).strip();
+
+        List<TextChunk> chunks = chunker.chunk(List.of(new PageData(7, paragraph)));
+
+        assertTrue(chunks.size() > 1);
+        for (TextChunk chunk : chunks) {
+            assertTrue(chunk.text().endsWith("؟"), chunk.text());
+            assertEquals(7, chunk.startPage());
+            assertEquals(7, chunk.endPage());
+        }
+    }
+
+    @Test
+    void testOversizedWordIsSliced() {
+        TextChunker chunker = new TextChunker(20, 0);
+
+        List<TextChunk> chunks = chunker.chunk(List.of(new PageData(1, "x".repeat(500))));
+
+        assertFalse(chunks.isEmpty());
+        chunks.forEach(chunk -> assertTrue(chunk.tokens() <= 20));
+    }
+
+    @Test
+    void testChunksDoNotCrossChapters() {
+        TextChunker chunker = new TextChunker(2000, 200);
+        List<PageData> pages = pages(6, "Short page");
+        BookData book = new BookData("book.pdf", pages, "", List.of(
+            new Chapter(1, "One", 2, 3),
+            new Chapter(2, "Two", 4, 6)
+        ));
+
+        List<TextChunk> chunks = chunker.chunk(book);
+
+        assertEquals(3, chunks.size());
+        assertEquals(List.of(1, 2, 4), chunks.stream().map(TextChunk::startPage).toList());
+        assertEquals(List.of(1, 3, 6), chunks.stream().map(TextChunk::endPage).toList());
+        assertEquals(List.of(0, 1, 2), chunks.stream().map(TextChunk::index).toList());
+    }
+
+    @Test
+    void testEmptyPagesProduceNoChunks() {
+        TextChunker chunker = new TextChunker(100, 10);
+
+        assertTrue(chunker.chunk(List.of(new PageData(1, ""), new PageData(2, "  "))).isEmpty());
+    }
+
+    @Test
+    void testCoverReusesBookChunksInsideRange() {
+        TextChunker chunker = new TextChunker(60, 0);
+        BookData book = new BookData("book.pdf", pages(20, "This paragraph is long enough to need several chunks across the book"), "");
+        List<TextChunk> grid = chunker.chunk("hash", book);
+
+        List<TextChunk> cover = chunker.cover("hash", book, 3, 17);
+
+        assertEquals(3, cover.get(0).startPage());
+        assertEquals(17, cover.get(cover.size() - 1).endPage());
+        List<String> gridHashes = grid.stream().map(TextChunk::contentHash).toList();
+        assertTrue(cover.stream().filter(c -> gridHashes.contains(c.contentHash())).count() >= cover.size() - 2);
+    }
+
+    @Test
+    void testCoverKeepsTheWholeOfPagesSplitAtTheRangeEdges() {
+        // Three paragraphs per chunk and two per page, so chunks end and begin mid-page
+        TextChunker chunker = new TextChunker(20, 0);
+        List<PageData> pages = new ArrayList<>();
+        for (int i = 1; i <= 12; i++) {
+            pages.add(new PageData(i, "Page " + i + " opens the scene.\n\nPage " + i + " closes the scene."));
+        }
+        BookData book = new BookData("book.pdf", pages, "");
+        List<TextChunk> grid = chunker.chunk("hash", book);
+        int startPage = grid.get(1).startPage();
+        int endPage = grid.get(4).endPage();
+        assertEquals(grid.get(0).endPage(), startPage);
+        assertEquals(grid.get(5).startPage(), endPage);
+
+        List<TextChunk> cover = chunker.cover("hash", book, startPage, endPage);
+
+        String text = String.join("\n\n", cover.stream().map(TextChunk::text).toList());
+        assertTrue(text.contains("Page " + startPage + " opens the scene."), text);
+        assertTrue(text.contains("Page " + endPage + " closes the scene."), text);
+    }
+}
@@ -0,0 +1,58 @@
+package com.bookassistant.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for TokenCounter.
+ * Tests BPE-style piece boundaries, per-model digit handling and chat framing.
+ */
+class TokenCounterTest {
+
+    private final TokenCounter counter = new TokenCounter(TokenCounter.DEFAULT_MODEL);
+
+    @Test
+    void testEmptyTextHasNoTokens() {
+        assertEquals(0, counter.count(null));
+        assertEquals(0, counter.count(""));
+    }
+
+    @Test
+    void testCommonWordsAndPunctuationAreOneTokenEach() {
+        assertEquals(4, counter.count("Hello, world!"));
+        assertEquals(6, counter.count("the cat sat on the mat"));
+    }
+
+    @Test
+    void testLongWordsSplitIntoSeveralPieces() {
+        assertEquals(4, counter.count("internationalization"));
+        assertEquals(2, counter.count("الكتاب"));
+    }
+
+    @Test
+    void testDigitGroupingFollowsTheModel() {
+        assertEquals(4, counter.count("2024"));
+        assertEquals(2, new TokenCounter("llama3.1:8b").count("2024"));
+    }
+
+    @Test
+    void testLineBreaksCostATokenButSingleSpacesDoNot() {
+        assertEquals(2, counter.count("one two"));
+        assertEquals(3, counter.count("one\n\ntwo"));
+    }
+
+    @Test
+    void testCountsAddUpAcrossSpaceSeparatedParts() {
+        String first = "The engine needs fuel, and 3 spare parts.";
+        String second = "المحرك يحتاج وقودا ثم المحرك يحتاج صيانة";
+
+        assertEquals(counter.count(first) + counter.count(second), counter.count(first + " " + second));
+    }
+
+    @Test
+    void testPromptAddsMessageFraming() {
+        assertEquals(2 * TokenCounter.TOKENS_PER_MESSAGE + TokenCounter.REPLY_PRIMING, counter.countPrompt("", ""));
+        assertEquals(counter.count("Be brief.") + counter.count("Hello") + 11, counter.countPrompt("Be brief.", "Hello"));
+    }
+}
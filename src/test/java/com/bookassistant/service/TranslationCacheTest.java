@@ -0,0 +1,125 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.PageData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for TranslationCache.
+ * Tests one-time translation per chunk and language, disk persistence and failure handling.
+ */
+@ExtendWith(MockitoExtension.class)
+class TranslationCacheTest {
+
+    @Mock
+    private AiService aiService;
+
+    @TempDir
+    Path tempDir;
+
+    private BookData book;
+
+    @BeforeEach
+    void setUp() {
+        book = new BookData("book.pdf", List.of(
+                new PageData(1, "الصفحة الأولى تصف خطوة أخرى من القصة الطويلة"),
+                new PageData(2, "الصفحة الثانية تصف خطوة أخرى من القصة الطويلة")),
+                "full text");
+    }
+
+    private TranslationCache newCache() {
+        // One page per chunk: each page fits the budget, two do not
+        return new TranslationCache(aiService, new TextChunker(20, 0), Runnable::run, tempDir.toString(), 100);
+    }
+
+    @Test
+    void testTranslateRange_TranslatesEachChunkOnce() {
+        // Arrange
+        when(aiService.ask(eq(RequestType.TRANSLATION), anyString(), contains("الأولى"), eq("en"))).thenReturn("First page");
+        when(aiService.ask(eq(RequestType.TRANSLATION), anyString(), contains("الثانية"), eq("en"))).thenReturn("Second page");
+        TranslationCache cache = newCache();
+
+        // Act
+        String first = cache.translateRange(book, "hash", 1, 2, "en");
+        String again = cache.translateRange(book, "hash", 2, 2, "en");
+
+        // Assert
+        assertEquals("First page\n\nSecond page", first);
+        assertEquals("Second page", again);
+        verify(aiService, times(2)).ask(eq(RequestType.TRANSLATION), anyString(), anyString(), eq("en"));
+    }
+
+    @Test
+    void testCached_NewInstance_ReadsTranslationFromDisk() {
+        // Arrange
+        when(aiService.ask(eq(RequestType.TRANSLATION), anyString(), anyString(), eq("en"))).thenReturn("First page");
+        newCache().translateRange(book, "hash", 1, 1, "en");
+        String textHash = new TextChunker(20, 0).chunk("hash", book).get(0).contentHash();
+
+        // Act
+        Optional<String> cached = newCache().cached(textHash, "en");
+
+        // Assert
+        assertEquals(Optional.of("First page"), cached);
+        assertEquals(Optional.empty(), newCache().cached(textHash, "ar"));
+        verify(aiService, times(1)).ask(eq(RequestType.TRANSLATION), anyString(), anyString(), eq("en"));
+    }
+
+    @Test
+    void testTranslateRange_FailureIsReturnedAndNotKept() {
+        // Arrange
+        when(aiService.ask(eq(RequestType.TRANSLATION), anyString(), anyString(), eq("en")))
+                .thenReturn("AI error: HTTP 500", "First page");
+        TranslationCache cache = newCache();
+        String textHash = new TextChunker(20, 0).chunk("hash", book).get(0).contentHash();
+
+        // Act
+        String failed = cache.translateRange(book, "hash", 1, 1, "en");
+        Optional<String> afterFailure = cache.cached(textHash, "en");
+        String retried = cache.translateRange(book, "hash", 1, 1, "en");
+
+        // Assert
+        assertEquals("AI error: HTTP 500", failed);
+        assertEquals(Optional.empty(), afterFailure);
+        assertEquals("First page", retried);
+    }
+
+    @Test
+    void testTranslate_Throws_ReturnsErrorAndRetriesLater() {
+        // Arrange
+        when(aiService.ask(eq(RequestType.TRANSLATION), anyString(), anyString(), eq("en")))
+                .thenThrow(new IllegalStateException("boom"))
+                .thenReturn("First page");
+        TranslationCache cache = newCache();
+
+        // Act
+        String failed = cache.translateRange(book, "hash", 1, 1, "en");
+        String retried = cache.translateRange(book, "hash", 1, 1, "en");
+
+        // Assert
+        assertTrue(failed.startsWith("AI error"));
+        assertEquals("First page", retried);
+    }
+
+    @Test
+    void testTranslate_UnsupportedLanguage_IsRejected() {
+        TranslationCache cache = newCache();
+
+        assertThrows(IllegalArgumentException.class, () -> cache.translateRange(book, "hash", 1, 1, "../fr"));
+        assertEquals(Optional.empty(), cache.cached("abc", "fr"));
+        verifyNoInteractions(aiService);
+    }
+}
@@ -0,0 +1,170 @@
+package com.bookassistant.service;
+
+import com.bookassistant.model.BookData;
+import com.bookassistant.model.Chapter;
+import com.bookassistant.model.PageData;
+import com.bookassistant.session.BookClearedEvent;
+import com.bookassistant.session.BookLoadedEvent;
+import com.bookassistant.session.BookSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for WarmupService.
+ * Tests that a loaded book is precomputed in the background and that clearing the session cancels it.
+ */
+@ExtendWith(MockitoExtension.class)
+class WarmupServiceTest {
+
+    @Mock
+    private SummaryTreeService summaryTree;
+
+    @Mock
+    private LibraryService libraryService;
+
+    @Mock
+    private AiService aiService;
+
+    private WarmupService warmup;
+    private BookLoadedEvent event;
+
+    @BeforeEach
+    void setUp() {
+        BookData book = new BookData("book.pdf",
+                List.of(new PageData(1, "One"), new PageData(2, "Two"), new PageData(3, "Three")),
+                "One\n\nTwo\n\nThree",
+                List.of(new Chapter(1, "First", 1, 2), new Chapter(2, "Second", 3, 3)));
+        event = new BookLoadedEvent(new BookSession(), book, book, "hash", "en");
+        lenient().when(summaryTree.summarizeLeafAsync(any(), anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture("summary"));
+        lenient().when(summaryTree.summarizeRangeAsync(any(), anyString(), anyInt(), anyInt(), anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture("summary"));
+        lenient().when(summaryTree.summarizeBookAsync(any(), anyString(), anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture("summary"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (warmup != null) warmup.shutdown();
+    }
+
+    @Test
+    void testOnBookLoaded_Enabled_PrecomputesIndexChaptersAndBook() {
+        // Arrange
+        warmup = new WarmupService(summaryTree, new TextChunker(2000, 0), libraryService, aiService, true, 1);
+
+        // Act
+        warmup.onBookLoaded(event);
+
+        // Assert
+        verify(libraryService, timeout(2000)).shardFor("hash", event.book());
+        verify(summaryTree, timeout(2000).times(2)).summarizeLeafAsync(any(), eq("en"), any());
+        verify(summaryTree, timeout(2000)).summarizeRangeAsync(eq(event.book()), eq("hash"), eq(1), eq(2), eq("en"), any());
+        verify(summaryTree, timeout(2000)).summarizeRangeAsync(eq(event.book()), eq("hash"), eq(3), eq(3), eq("en"), any());
+        verify(summaryTree, timeout(2000)).summarizeBookAsync(eq(event.book()), eq("hash"), eq("en"), any());
+    }
+
+    @Test
+    void testOnBookLoaded_Disabled_DoesNothing() throws InterruptedException {
+        // Arrange
+        warmup = new WarmupService(summaryTree, new TextChunker(2000, 0), libraryService, aiService, false, 1);
+
+        // Act
+        warmup.onBookLoaded(event);
+        Thread.sleep(200);
+
+        // Assert
+        verifyNoInteractions(libraryService, summaryTree);
+    }
+
+    @Test
+    void testOnBookCleared_WhileUpstreamBusy_CancelsRemainingSteps() throws InterruptedException {
+        // Arrange
+        when(aiService.inFlightRequests()).thenReturn(5);
+        warmup = new WarmupService(summaryTree, new TextChunker(2000, 0), libraryService, aiService, true, 1);
+        warmup.onBookLoaded(event);
+        verify(libraryService, timeout(2000)).shardFor("hash", event.book());
+
+        // Act
+        warmup.onBookCleared(new BookClearedEvent(event.session()));
+        lenient().when(aiService.inFlightRequests()).thenReturn(0);
+        Thread.sleep(500);
+
+        // Assert
+        verifyNoInteractions(summaryTree);
+    }
+
+    @Test
+    void testOnBookLoaded_CallsRunOnWarmupThreadOneAtATime() {
+        // Arrange
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(summaryTree.summarizeLeafAsync(any(), anyString(), any())).thenAnswer(invocation -> {
+            Executor calls = invocation.getArgument(2);
+            return CompletableFuture.supplyAsync(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                threads.add(Thread.currentThread().getName());
+                running.decrementAndGet();
+                return "summary";
+            }, calls);
+        });
+        warmup = new WarmupService(summaryTree, new TextChunker(2000, 0), libraryService, aiService, true, 1);
+
+        // Act
+        warmup.onBookLoaded(event);
+
+        // Assert
+        verify(summaryTree, timeout(2000)).summarizeBookAsync(eq(event.book()), eq("hash"), eq("en"), any());
+        assertEquals(1, maxRunning.get());
+        assertEquals(1, threads.size());
+        assertTrue(threads.iterator().next().startsWith("warmup-call-"));
+    }
+
+    @Test
+    void testOnBookCleared_AbortsCallInFlight() throws InterruptedException {
+        // Arrange
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch aborted = new CountDownLatch(1);
+        when(summaryTree.summarizeLeafAsync(any(), anyString(), any())).thenAnswer(invocation -> {
+            Executor calls = invocation.getArgument(2);
+            return CompletableFuture.supplyAsync(() -> {
+                // Stands in for a model call that runs until its request is cancelled
+                RequestContext.current().orElseThrow().onCancel(aborted::countDown);
+                started.countDown();
+                try {
+                    aborted.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "AI error: Request cancelled";
+            }, calls);
+        });
+        warmup = new WarmupService(summaryTree, new TextChunker(2000, 0), libraryService, aiService, true, 1);
+        warmup.onBookLoaded(event);
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+
+        // Act
+        warmup.onBookCleared(new BookClearedEvent(event.session()));
+
+        // Assert
+        assertTrue(aborted.await(2, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,86 @@
+package com.bookassistant.session;
+
+import com.bookassistant.service.ChatMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for QaConversation.
+ * Tests the kept turns, the digest of older ones and the once-per-conversation book decision.
+ */
+class QaConversationTest {
+
+    @Test
+    void testHistory_KeepsRecentTurnsInOrder() {
+        // Arrange
+        QaConversation conversation = new QaConversation();
+
+        // Act
+        conversation.record("Q1", "A1", String::length);
+        conversation.record("Q2", "A2", String::length);
+
+        // Assert
+        assertEquals(List.of(
+                ChatMessage.user("Q1"), ChatMessage.assistant("A1"),
+                ChatMessage.user("Q2"), ChatMessage.assistant("A2")), conversation.history("en"));
+        assertEquals(2, conversation.turns());
+    }
+
+    @Test
+    void testRecord_FoldsOldestTurnsIntoDigest() {
+        // Arrange
+        QaConversation conversation = new QaConversation();
+
+        // Act
+        for (int i = 1; i <= QaConversation.KEEP_TURNS + 1; i++) {
+            conversation.record("Q" + i, "A" + i + "\nsecond line", String::length);
+        }
+        List<ChatMessage> history = conversation.history("en");
+
+        // Assert - one digest pair, then the kept turns word for word
+        assertEquals(2 + 2 * QaConversation.KEEP_TURNS, history.size());
+        assertEquals("user", history.get(0).role());
+        assertTrue(history.get(0).content().endsWith("\n- Q1 → A1 second line"));
+        assertEquals(ChatMessage.user("Q2"), history.get(2));
+        assertEquals(QaConversation.KEEP_TURNS + 1, conversation.turns());
+    }
+
+    @Test
+    void testRecord_FoldsWhenHistoryExceedsTokenBudget() {
+        // Arrange
+        QaConversation conversation = new QaConversation();
+        String longAnswer = "x".repeat(QaConversation.DIGEST_ANSWER_CHARS * 2);
+
+        // Act - every answer counts as more than the whole budget
+        conversation.record("Q1", longAnswer, s -> s.length() > 100 ? QaConversation.HISTORY_TOKENS : 1);
+        conversation.record("Q2", longAnswer, s -> s.length() > 100 ? QaConversation.HISTORY_TOKENS : 1);
+        List<ChatMessage> history = conversation.history("en");
+
+        // Assert - the latest turn is always kept, the earlier one is shortened
+        assertEquals(4, history.size());
+        assertTrue(history.get(0).content().endsWith("x…"));
+        assertEquals(ChatMessage.user("Q2"), history.get(2));
+    }
+
+    @Test
+    void testHistory_EmptyAtStart() {
+        assertTrue(new QaConversation().history("ar").isEmpty());
+    }
+
+    @Test
+    void testBookInPrompt_DecidedOnFirstQuestion() {
+        // Arrange
+        QaConversation conversation = new QaConversation();
+
+        // Act
+        boolean first = conversation.bookInPrompt(true);
+        boolean later = conversation.bookInPrompt(false);
+
+        // Assert
+        assertTrue(first);
+        assertTrue(later);
+    }
+}